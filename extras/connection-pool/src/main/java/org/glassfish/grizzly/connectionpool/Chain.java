@@ -53,9 +53,10 @@ import java.util.LinkedList;
  */
 final class Chain<E> {
     /**
-     * The size of the chain (number of elements stored).
+     * The size of the chain (number of elements stored), volatile, so
+     * the emptiness could be checked without holding the chain's lock.
      */
-    private int size;
+    private volatile int size;
     
     /**
      * The first link in the chain
@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.connectionpool;
 
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import org.glassfish.grizzly.Connection;
 
 /**
@@ -49,12 +50,24 @@ import org.glassfish.grizzly.Connection;
  * @author Alexey Stashok
  */
 public final class ConnectionInfo<E> {
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ConnectionInfo, SingleEndpointPool.ReadyStripe> READY_STRIPE_UPDATER =
+            AtomicReferenceFieldUpdater.newUpdater(ConnectionInfo.class,
+                    SingleEndpointPool.ReadyStripe.class, "readyStripe");
+    
     final Connection connection;
     final Link<ConnectionInfo<E>> readyStateLink;
     final SingleEndpointPool<E> endpointPool;
     
     long ttlTimeout; // the place holder for TTL time stamp
     
+    // the ready connections stripe, the connection belongs to,
+    // or null if the connection is busy
+    volatile SingleEndpointPool.ReadyStripe<E> readyStripe;
+    
+    // true, if the connection has been detached from the pool
+    volatile boolean isDeregistered;
+    
     private final long pooledTimeStamp;
 
     ConnectionInfo(final Connection connection, final SingleEndpointPool<E> endpointPool) {
@@ -70,9 +83,7 @@ public final class ConnectionInfo<E> {
      * if the {@link Connection} is currently busy.
      */
     public boolean isReady() {
-        synchronized(endpointPool.poolSync) {
-            return readyStateLink.isAttached();
-        }
+        return readyStripe != null;
     }
     
     /**
@@ -81,9 +92,7 @@ public final class ConnectionInfo<E> {
      * the {@link Connection} is currently in busy state.
      */
     public long getReadyTimeStamp() {
-        synchronized(endpointPool.poolSync) {
-            return readyStateLink.getAttachmentTimeStamp();
-        }
+        return readyStateLink.getAttachmentTimeStamp();
     }
     
     /**
@@ -94,6 +103,12 @@ public final class ConnectionInfo<E> {
         return pooledTimeStamp;
     }
 
+    boolean compareAndSetReadyStripe(
+            final SingleEndpointPool.ReadyStripe<E> expect,
+            final SingleEndpointPool.ReadyStripe<E> update) {
+        return READY_STRIPE_UPDATER.compareAndSet(this, expect, update);
+    }
+
     @Override
     public String toString() {
         return "ConnectionInfo{"
@@ -71,11 +71,11 @@ public final class Link<E> {
     /**
      * attachment flag
      */
-    private boolean isAttached;
+    private volatile boolean isAttached;
     /**
      * The attachment timestamp, which shows the time when the link was attached.
      */
-    private long linkTimeStamp = -1;
+    private volatile long linkTimeStamp = -1;
     
 
     /**
@@ -43,12 +43,13 @@ package org.glassfish.grizzly.connectionpool;
 import java.io.IOException;
 import java.net.ConnectException;
 import java.net.SocketAddress;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.CloseListener;
@@ -127,15 +128,31 @@ public class SingleEndpointPool<E> {
             new PoolConnectionCloseListener();
     
     /**
-     * The {@link Chain} of ready connections
+     * The max number of the ready connection stripes
      */
-    private final Chain<ConnectionInfo<E>> readyConnections = new Chain<ConnectionInfo<E>>();
+    private static final int MAX_READY_STRIPES = 16;
+    
+    /**
+     * The ready connections, striped by thread to reduce the contention.
+     * A released {@link Connection} goes to the releasing thread's stripe,
+     * which is the first one checked, when the thread takes a {@link Connection}
+     * from the pool. Only if it's empty, the other stripes are checked.
+     * The stripes are accessed without holding {@link #poolSync}, but
+     * {@link #poolSync} could be held, when accessing a stripe.
+     */
+    private final ReadyStripe<E>[] readyStripes = createReadyStripes();
+    private final int readyStripesMask = readyStripes.length - 1;
+    
+    /**
+     * The number of ready connections in all the stripes
+     */
+    private final AtomicInteger readyConnectionsCount = new AtomicInteger();
     
     /**
      * The {@link Map} contains *all* pooled {@link Connection}s
      */
     private final Map<Connection, ConnectionInfo<E>> connectionsMap =
-            new HashMap<Connection, ConnectionInfo<E>>();
+            new ConcurrentHashMap<Connection, ConnectionInfo<E>>();
     
     /**
      * Sync object
@@ -145,7 +162,7 @@ public class SingleEndpointPool<E> {
     /**
      * close flag
      */
-    private boolean isClosed;
+    private volatile boolean isClosed;
     
     /**
      * The thread-pool used by theownDelayedExecutor
@@ -236,11 +253,11 @@ public class SingleEndpointPool<E> {
     /**
      * current pool size
      */
-    private int poolSize;
+    private volatile int poolSize;
     /**
      * Number of connections we're currently trying to establish and waiting for the result
      */
-    protected int pendingConnections;
+    protected volatile int pendingConnections;
 
     /**
      * Number of failed connect attempts.
@@ -536,9 +553,7 @@ public class SingleEndpointPool<E> {
      * @return the current pool size
      */
     public int size() {
-        synchronized (poolSync) {
-            return poolSize + pendingConnections;
-        }
+        return poolSize + pendingConnections;
     }
     
     /**
@@ -547,18 +562,14 @@ public class SingleEndpointPool<E> {
      * (connect in progress) {@link Connection}s.
      */
     public int getOpenConnectionsCount() {
-        synchronized (poolSync) {
-            return poolSize;
-        }
+        return poolSize;
     }
 
     /**
      * @return the number of {@link Connection}s ready to be retrieved and used.
      */
     public int getReadyConnectionsCount() {
-        synchronized (poolSync) {
-            return readyConnections.size();
-        }
+        return readyConnectionsCount.get();
     }
 
     /**
@@ -567,10 +578,8 @@ public class SingleEndpointPool<E> {
      * <tt>false</tt> otherwise.
      */
     public boolean isMaxCapacityReached() {
-        synchronized (poolSync) {
-            return maxPoolSize != -1
-                    && poolSize + pendingConnections >= maxPoolSize;
-        }
+        return maxPoolSize != -1
+                && poolSize + pendingConnections >= maxPoolSize;
     }
     
     /**
@@ -584,9 +593,7 @@ public class SingleEndpointPool<E> {
      * the {@link Connection} is not registered in the pool
      */
     public boolean isRegistered(final Connection connection) {
-        synchronized (poolSync) {
-            return connectionsMap.containsKey(connection);
-        }
+        return connectionsMap.containsKey(connection);
     }
     
     /**
@@ -600,15 +607,11 @@ public class SingleEndpointPool<E> {
      * returns <tt>false</tt>
      */
     public boolean isBusy(final Connection connection) {
-        synchronized (poolSync) {
-            return isBusy0(connectionsMap.get(connection));
-        }
+        return isBusy0(connectionsMap.get(connection));
     }
 
     boolean isBusy0(final ConnectionInfo<E> connectionRecord) {
-        synchronized (poolSync) {
-            return connectionRecord != null && !connectionRecord.isReady();
-        }
+        return connectionRecord != null && !connectionRecord.isReady();
     }
     
     /**
@@ -622,9 +625,7 @@ public class SingleEndpointPool<E> {
      * this pool
      */
     public ConnectionInfo<E> getConnectionInfo(final Connection connection) {
-        synchronized (poolSync) {
-            return connectionsMap.get(connection);
-        }
+        return connectionsMap.get(connection);
     }
     
     /**
@@ -655,8 +656,17 @@ public class SingleEndpointPool<E> {
      * @return {@link GrizzlyFuture}
      */
     public GrizzlyFuture<Connection> take() {
+        if (!isClosed) {
+            // fast path: there is a ready connection, no need to sync
+            final ConnectionInfo<E> info = pollReady();
+            if (info != null) {
+                return Futures.createReadyFuture(info.connection);
+            }
+        }
+        
         int errorCode = 0;
         GrizzlyFuture<Connection> future = null;
+        boolean isWaiting = false;
         boolean isCreateNewConnection = false;
         
         try {
@@ -664,7 +674,8 @@ public class SingleEndpointPool<E> {
                 // we need to maintain this weird if's layout to make sure we
                 // create Exceptions or new connections outside of synchronized.
                 if (!isClosed) {
-                    if (readyConnections.isEmpty()) {
+                    final ConnectionInfo<E> info = pollReady();
+                    if (info == null) {
                         if (!failFastWhenMaxSizeReached
                                 || !isMaxCapacityReached()
                                 || pendingConnections >= getWaitingListSize() + 1) {
@@ -692,6 +703,7 @@ public class SingleEndpointPool<E> {
 
                             asyncPoll.future = cancellableFuture;
                             addToAsyncWaitingList(pollLink);
+                            isWaiting = true;
 
                             isCreateNewConnection = checkBeforeOpeningConnection();
                             future = cancellableFuture;
@@ -699,8 +711,7 @@ public class SingleEndpointPool<E> {
                             errorCode = 2;
                         }
                     } else {
-                        future = Futures.createReadyFuture(
-                                readyConnections.pollLast().getValue().connection);
+                        future = Futures.createReadyFuture(info.connection);
                     }
                 } else {
                     errorCode = 1;
@@ -715,6 +726,12 @@ public class SingleEndpointPool<E> {
                         connect();
                     }
                     
+                    if (isWaiting) {
+                        // a connection might have been released concurrently
+                        // bypassing the waiting list
+                        serveAsyncWaiters();
+                    }
+                    
                     return future;
                 }
                 
@@ -748,8 +765,18 @@ public class SingleEndpointPool<E> {
             throw new IllegalArgumentException("The completionHandler argument can not be null");
         }
         
+        if (!isClosed) {
+            // fast path: there is a ready connection, no need to sync
+            final ConnectionInfo<E> info = pollReady();
+            if (info != null) {
+                completionHandler.completed(info.connection);
+                return;
+            }
+        }
+        
         int errorCode = 0;
         Connection connection = null;
+        boolean isWaiting = false;
         boolean isCreateNewConnection = false;
         
         try {
@@ -757,7 +784,8 @@ public class SingleEndpointPool<E> {
                 // we need to maintain this weird if's layout to make sure we
                 // create Exceptions or new connections outside of synchronized.
                 if (!isClosed) {
-                    if (readyConnections.isEmpty()) {
+                    final ConnectionInfo<E> info = pollReady();
+                    if (info == null) {
                         if (!failFastWhenMaxSizeReached
                                 || !isMaxCapacityReached()
                                 || pendingConnections >= getWaitingListSize() + 1) {
@@ -767,13 +795,14 @@ public class SingleEndpointPool<E> {
                             final Link<AsyncPoll> pollLink = new Link<AsyncPoll>(asyncPoll);
 
                             addToAsyncWaitingList(pollLink);
+                            isWaiting = true;
 
                             isCreateNewConnection = checkBeforeOpeningConnection();
                         } else {
                             errorCode = 2;
                         }
                     } else {
-                        connection = readyConnections.pollLast().getValue().connection;
+                        connection = info.connection;
                     }
                 } else {
                     errorCode = 1;
@@ -788,6 +817,12 @@ public class SingleEndpointPool<E> {
                         connect();
                     }
                     
+                    if (isWaiting) {
+                        // a connection might have been released concurrently
+                        // bypassing the waiting list
+                        serveAsyncWaiters();
+                    }
+                    
                     break;
                 }
                 
@@ -812,15 +847,12 @@ public class SingleEndpointPool<E> {
      * @throws java.io.IOException if the pool is closed
      */
     public Connection poll() throws IOException {
-        synchronized (poolSync) {
-            if (isClosed) {
-                throw new IOException("The pool is closed");
-            }
-
-            return !readyConnections.isEmpty()
-                    ? readyConnections.pollLast().getValue().connection
-                    : null;
+        if (isClosed) {
+            throw new IOException("The pool is closed");
         }
+
+        final ConnectionInfo<E> info = pollReady();
+        return info != null ? info.connection : null;
     }
     
     /**
@@ -841,15 +873,13 @@ public class SingleEndpointPool<E> {
      *  and <code>false</code> will be returned.
      */
     public boolean release(final Connection connection) {
-        synchronized (poolSync) {
-            final ConnectionInfo<E> info = connectionsMap.get(connection);
-            if (info == null) {
-                connection.closeSilently();
-                return false;
-            } 
-            
-            return release0(info);
-        }
+        final ConnectionInfo<E> info = connectionsMap.get(connection);
+        if (info == null) {
+            connection.closeSilently();
+            return false;
+        } 
+
+        return release0(info);
     }
 
     /**
@@ -857,6 +887,30 @@ public class SingleEndpointPool<E> {
      * on connection {@link Link}.
      */
     boolean release0(final ConnectionInfo<E> info) {
+        if (keepAliveTimeoutMillis != 0 && asyncWaitingList.isEmpty()) {
+            // fast path: nobody is waiting, just make the connection ready
+            if (!offerReady(info)) {
+                return false;
+            }
+            
+            if (info.isDeregistered) {
+                // the connection has been detached or the pool has been closed
+                // concurrently
+                if (removeReady(info)) {
+                    info.connection.closeSilently();
+                }
+                
+                return false;
+            }
+            
+            if (!asyncWaitingList.isEmpty()) {
+                // a consumer has started waiting concurrently
+                serveAsyncWaiters();
+            }
+            
+            return true;
+        }
+        
         final boolean isKeepAlive;
         AsyncPoll asyncPoller = null;
         
@@ -865,15 +919,17 @@ public class SingleEndpointPool<E> {
                 return false;
             }
 
-            // close pooled connection, if keepAliveTimeoutMillis == 0
-            if (keepAliveTimeoutMillis == 0 && poolSize > corePoolSize) {
+            if (info.isDeregistered) {
+                isKeepAlive = false;
+            } else if (keepAliveTimeoutMillis == 0 && poolSize > corePoolSize) {
+                // close pooled connection, if keepAliveTimeoutMillis == 0
                 detach(info.connection); // detach in sync block and close outside sync
                 isKeepAlive = false;
             } else {
                 isKeepAlive = true;
                 asyncPoller = getAsyncPoller();
                 if (asyncPoller == null) {
-                    readyConnections.offerLast(info.readyStateLink);
+                    offerReady(info);
                 }
             }
         }
@@ -975,10 +1031,9 @@ public class SingleEndpointPool<E> {
                     ownDelayedExecutorThreadPool.shutdownNow();
                 }
                 
-                final int size = readyConnections.size();
-                for (int i = 0; i < size; i++) {
-                    final Connection c = readyConnections.pollLast().getValue().connection;
-                    c.closeSilently();
+                ConnectionInfo<E> info;
+                while ((info = pollReady()) != null) {
+                    info.connection.closeSilently();
                 }
                 
                 final int asyncWaitingListSize = asyncWaitingList.size();
@@ -1095,22 +1150,33 @@ public class SingleEndpointPool<E> {
                 return true;
             }
 
-            if (!readyConnections.isEmpty() && poolSize > corePoolSize) {
+            if (readyConnectionsCount.get() > 0 && poolSize > corePoolSize) {
                 final long now = System.currentTimeMillis();
 
                 try {
-                    do {
-                        final Link<ConnectionInfo<E>> link = readyConnections.getFirstLink();
-                        
-                        if ((now - link.getAttachmentTimeStamp()) >= keepAliveTimeoutMillis) {
-                            final Connection c = link.getValue().connection;
-                            detach(c);
-                            c.closeSilently();
-                        } else { // the rest of links are ok
-                            break;
+                    for (ReadyStripe<E> stripe : readyStripes) {
+                        while (poolSize > corePoolSize) {
+                            final ConnectionInfo<E> info;
+                            synchronized (stripe) {
+                                final Link<ConnectionInfo<E>> link =
+                                        stripe.connections.getFirstLink();
+                                if (link == null || (now - link.getAttachmentTimeStamp())
+                                        < keepAliveTimeoutMillis) {
+                                    // the rest of links are ok
+                                    break;
+                                }
+
+                                info = link.getValue();
+                            }
+
+                            // the connection might have been taken concurrently
+                            if (removeReady(info)) {
+                                final Connection c = info.connection;
+                                detach(c);
+                                c.closeSilently();
+                            }
                         }
-                        
-                    } while (!readyConnections.isEmpty() && poolSize > corePoolSize);
+                    }
                 } catch (Exception ignore) {
                 }
             }
@@ -1190,12 +1256,148 @@ public class SingleEndpointPool<E> {
             connectionTTLQueue.remove(info);
         }
         
-        readyConnections.remove(info.readyStateLink);
+        info.isDeregistered = true;
+        removeReady(info);
         poolSize--;
 
         onCloseConnection(info);
     }
 
+    /**
+     * @return the ready connections stripe of the current thread
+     */
+    private ReadyStripe<E> getReadyStripe() {
+        return readyStripes[(int) Thread.currentThread().getId() & readyStripesMask];
+    }
+    
+    /**
+     * Switches the {@link Connection} to the ready state by adding it to the
+     * current thread's stripe.
+     * 
+     * @return <tt>false</tt> if the {@link Connection} is already ready
+     */
+    private boolean offerReady(final ConnectionInfo<E> info) {
+        final ReadyStripe<E> stripe = getReadyStripe();
+        
+        synchronized (stripe) {
+            if (!info.compareAndSetReadyStripe(null, stripe)) {
+                return false;
+            }
+            
+            stripe.connections.offerLast(info.readyStateLink);
+            readyConnectionsCount.incrementAndGet();
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Retrieves the most recently released ready {@link Connection}, starting
+     * from the current thread's stripe.
+     * 
+     * @return the {@link ConnectionInfo} switched to the busy state, or
+     *         <tt>null</tt> if there are no ready connections
+     */
+    private ConnectionInfo<E> pollReady() {
+        final int first = (int) Thread.currentThread().getId();
+        
+        for (int i = 0; i < readyStripes.length
+                && readyConnectionsCount.get() > 0; i++) {
+            final ReadyStripe<E> stripe = readyStripes[(first + i) & readyStripesMask];
+            if (stripe.connections.isEmpty()) {
+                continue;
+            }
+            
+            final ConnectionInfo<E> info;
+            synchronized (stripe) {
+                final Link<ConnectionInfo<E>> link = stripe.connections.pollLast();
+                if (link == null) {
+                    continue;
+                }
+                
+                info = link.getValue();
+                info.readyStripe = null;
+                readyConnectionsCount.decrementAndGet();
+            }
+            
+            if (!info.isDeregistered) {
+                return info;
+            }
+            
+            // the connection was released concurrently with detach or close
+            info.connection.closeSilently();
+            i--;
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Switches the ready {@link Connection} to the busy state.
+     * 
+     * @return <tt>true</tt> if the {@link Connection} was ready, or
+     *         <tt>false</tt> otherwise
+     */
+    private boolean removeReady(final ConnectionInfo<E> info) {
+        ReadyStripe<E> stripe;
+        while ((stripe = info.readyStripe) != null) {
+            synchronized (stripe) {
+                if (info.readyStripe == stripe) {
+                    stripe.connections.remove(info.readyStateLink);
+                    info.readyStripe = null;
+                    readyConnectionsCount.decrementAndGet();
+                    return true;
+                }
+            }
+        }
+        
+        return false;
+    }
+    
+    /**
+     * Hands the ready {@link Connection}s over to the waiting consumers, if
+     * any. Covers the case, when a {@link Connection} is released, bypassing
+     * the waiting list, concurrently with a consumer starting to wait.
+     */
+    private void serveAsyncWaiters() {
+        while (true) {
+            final AsyncPoll asyncPoller;
+            final ConnectionInfo<E> info;
+            
+            synchronized (poolSync) {
+                if (isClosed || asyncWaitingList.isEmpty()) {
+                    return;
+                }
+                
+                info = pollReady();
+                if (info == null) {
+                    return;
+                }
+                
+                asyncPoller = obtainFromAsyncWaitingList();
+            }
+            
+            Futures.notifyResult(asyncPoller.future,
+                    asyncPoller.completionHandler, info.connection);
+        }
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <E> ReadyStripe<E>[] createReadyStripes() {
+        final int processors = Runtime.getRuntime().availableProcessors();
+        int stripesCount = 1;
+        while (stripesCount < processors && stripesCount < MAX_READY_STRIPES) {
+            stripesCount <<= 1;
+        }
+        
+        final ReadyStripe<E>[] stripes = new ReadyStripe[stripesCount];
+        for (int i = 0; i < stripesCount; i++) {
+            stripes[i] = new ReadyStripe<E>();
+        }
+        
+        return stripes;
+    }
+    
     private void addToAsyncWaitingList(final Link<AsyncPoll> pollLink) {
         asyncWaitingList.offerLast(pollLink);
 
@@ -1265,7 +1467,7 @@ public class SingleEndpointPool<E> {
                        final ConnectionInfo<E> info = attach0(connection);
                        asyncPoller = getAsyncPoller();
                        if (asyncPoller == null) {
-                           readyConnections.offerLast(info.readyStateLink);
+                           offerReady(info);
                        }
                    }
                 }
@@ -1536,6 +1738,14 @@ public class SingleEndpointPool<E> {
         }
     }
     
+    /**
+     * The stripe of ready {@link Connection}s, guarded by its own monitor.
+     */
+    static final class ReadyStripe<E> {
+        final Chain<ConnectionInfo<E>> connections =
+                new Chain<ConnectionInfo<E>>();
+    }
+    
     protected static final class AsyncPoll {
         private final SingleEndpointPool pool;
         private FutureImpl<Connection> future;
@@ -1564,7 +1774,7 @@ public class SingleEndpointPool<E> {
             }
             
             synchronized(ci.endpointPool.poolSync) {
-                if (ci.isReady()) {
+                if (ci.endpointPool.removeReady(ci)) {
                     ci.connection.close();
                 } else {
                     ci.endpointPool.detach(ci.connection);
@@ -191,6 +191,62 @@ public class SingleEndPointPoolTest {
         }
     }
     
+    @Test
+    public void testConcurrentTakeRelease() throws Exception {
+        final int threadsCount = 8;
+        final int iterations = 2000;
+        final int maxPoolSize = 4;
+        
+        final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
+                .builder(SocketAddress.class)
+                .connectorHandler(transport)
+                .endpointAddress(new InetSocketAddress("localhost", PORT))
+                .maxPoolSize(maxPoolSize)
+                .build();
+        
+        final Set<Connection> busyConnections =
+                Collections.newSetFromMap(new ConcurrentHashMap<>());
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch latch = new CountDownLatch(threadsCount);
+        
+        try {
+            for (int i = 0; i < threadsCount; i++) {
+                new Thread() {
+                    @Override
+                    public void run() {
+                        try {
+                            for (int j = 0; j < iterations; j++) {
+                                final Connection c = pool.take().get(10, TimeUnit.SECONDS);
+                                if (!busyConnections.add(c)) {
+                                    throw new IllegalStateException(
+                                            "The connection is busy: " + c);
+                                }
+                                
+                                assertTrue(pool.isBusy(c));
+                                busyConnections.remove(c);
+                                assertTrue(pool.release(c));
+                            }
+                        } catch (Throwable t) {
+                            error.compareAndSet(null, t);
+                        } finally {
+                            latch.countDown();
+                        }
+                    }
+                }.start();
+            }
+            
+            assertTrue(latch.await(60, TimeUnit.SECONDS));
+            if (error.get() != null) {
+                throw new AssertionError(error.get());
+            }
+            
+            assertTrue(pool.size() <= maxPoolSize);
+            assertEquals(pool.size(), pool.getReadyConnectionsCount());
+        } finally {
+            pool.close();
+        }
+    }
+    
     @Test
     public void testPollWaitForRelease() throws Exception {
         final SingleEndpointPool<SocketAddress> pool = SingleEndpointPool
@@ -92,6 +92,9 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
     protected boolean reuseAddress = NIOTransport.DEFAULT_REUSE_ADDRESS;
     protected int maxPendingBytesPerConnection = AsyncQueueWriter.AUTO_SIZE;
     protected boolean optimizedForMultiplexing = NIOTransport.DEFAULT_OPTIMIZED_FOR_MULTIPLEXING;
+    protected boolean optimizedSelectedKeys = NIOTransport.DEFAULT_OPTIMIZED_SELECTED_KEYS;
+    protected int maxSelectedKeysPerIteration = NIOTransport.DEFAULT_MAX_SELECTED_KEYS_PER_ITERATION;
+    protected int maxPendingTasksPerIteration = NIOTransport.DEFAULT_MAX_PENDING_TASKS_PER_ITERATION;
 
     protected long readTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_READ_TIMEOUT, TimeUnit.SECONDS);
     protected long writeTimeout = TimeUnit.MILLISECONDS.convert(Transport.DEFAULT_WRITE_TIMEOUT, TimeUnit.SECONDS);
@@ -546,6 +549,66 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         return getThis();
     }
 
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#isOptimizedSelectedKeys()
+     *
+     * @since 2.4.3
+     */
+    public boolean isOptimizedSelectedKeys() {
+        return optimizedSelectedKeys;
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#setOptimizedSelectedKeys(boolean)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @since 2.4.3
+     */
+    public T setOptimizedSelectedKeys(final boolean optimizedSelectedKeys) {
+        this.optimizedSelectedKeys = optimizedSelectedKeys;
+        return getThis();
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#getMaxSelectedKeysPerIteration()
+     *
+     * @since 2.4.3
+     */
+    public int getMaxSelectedKeysPerIteration() {
+        return maxSelectedKeysPerIteration;
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#setMaxSelectedKeysPerIteration(int)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @since 2.4.3
+     */
+    public T setMaxSelectedKeysPerIteration(final int maxSelectedKeysPerIteration) {
+        this.maxSelectedKeysPerIteration = maxSelectedKeysPerIteration;
+        return getThis();
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#getMaxPendingTasksPerIteration()
+     *
+     * @since 2.4.3
+     */
+    public int getMaxPendingTasksPerIteration() {
+        return maxPendingTasksPerIteration;
+    }
+
+    /**
+     * @see org.glassfish.grizzly.nio.NIOTransport#setMaxPendingTasksPerIteration(int)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @since 2.4.3
+     */
+    public T setMaxPendingTasksPerIteration(final int maxPendingTasksPerIteration) {
+        this.maxPendingTasksPerIteration = maxPendingTasksPerIteration;
+        return getThis();
+    }
+
     /**
      * @return an {@link NIOTransport} based on the builder's configuration.
      */
@@ -575,6 +638,9 @@ public abstract class NIOTransportBuilder<T extends NIOTransportBuilder> {
         transport.setWriteBufferSize(writeBufferSize);
         transport.setReuseAddress(reuseAddress);
         transport.setOptimizedForMultiplexing(isOptimizedForMultiplexing());
+        transport.setOptimizedSelectedKeys(isOptimizedSelectedKeys());
+        transport.setMaxSelectedKeysPerIteration(getMaxSelectedKeysPerIteration());
+        transport.setMaxPendingTasksPerIteration(getMaxPendingTasksPerIteration());
         transport.getAsyncQueueIO()
                 .getWriter()
                 .setMaxPendingBytesPerConnection(
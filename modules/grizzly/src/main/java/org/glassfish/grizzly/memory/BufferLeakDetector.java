@@ -0,0 +1,274 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+
+/**
+ * Sampling detector of the pooled and composite {@link Buffer}s, which
+ * got garbage collected without being disposed.
+ * 
+ * For the configured fraction of the allocated {@link Buffer}s the detector
+ * records the allocation stack trace and tracks the {@link Buffer} using
+ * a phantom reference. If the {@link Buffer} is garbage collected before
+ * it's disposed - the leak is logged and reported to the {@link MemoryManager}'s
+ * {@link MemoryProbe}s, together with the allocation stack trace.
+ * The leaks are checked every time a new {@link Buffer} is sampled, or
+ * explicitly using {@link #detectLeaks()}.
+ * 
+ * Once a tracked pooled {@link Buffer} is added to a composite {@link Buffer},
+ * the composite {@link Buffer} is tracked instead, so the leaked composite
+ * {@link Buffer} is reported once. The composite {@link Buffer}s, which don't
+ * contain the tracked pooled {@link Buffer}s, are never tracked.
+ * 
+ * The sampling rate is 0 by default, which means the detector is disabled,
+ * and could be changed using the {@value #SAMPLING_RATE_PROPERTY} system
+ * property or {@link #setSamplingRate(float)}. When the detector is disabled,
+ * the only cost is one volatile read per {@link Buffer} allocation.
+ * 
+ * @since 2.4.3
+ */
+public final class BufferLeakDetector {
+    private static final Logger LOGGER = Grizzly.logger(BufferLeakDetector.class);
+    
+    public static final String SAMPLING_RATE_PROPERTY =
+            BufferLeakDetector.class.getName() + ".sampling-rate";
+    
+    private static volatile float samplingRate = initSamplingRate();
+    
+    private static final ReferenceQueue<Object> LEAKED_BUFFERS =
+            new ReferenceQueue<Object>();
+    
+    // the tracked buffers references, the references have to be reachable
+    // to be enqueued
+    private static final Set<LeakReference> TRACKED_BUFFERS =
+            Collections.newSetFromMap(
+                    new ConcurrentHashMap<LeakReference, Boolean>());
+
+    private BufferLeakDetector() {
+    }
+
+    /**
+     * @return the fraction of the allocated {@link Buffer}s to be tracked,
+     *          0 means the detector is disabled
+     */
+    public static float getSamplingRate() {
+        return samplingRate;
+    }
+
+    /**
+     * Sets the fraction of the allocated {@link Buffer}s to be tracked,
+     * 0 means the detector is disabled, 1 means every {@link Buffer}
+     * is tracked.
+     * 
+     * @param samplingRate the value from 0 to 1
+     */
+    public static void setSamplingRate(final float samplingRate) {
+        if (samplingRate < 0f || samplingRate > 1f) {
+            throw new IllegalArgumentException("samplingRate must be greater or equal to zero and less or equal to 1");
+        }
+        
+        BufferLeakDetector.samplingRate = samplingRate;
+    }
+
+    /**
+     * @return the number of the {@link Buffer}s, which are currently tracked
+     */
+    public static int getTrackedBuffersCount() {
+        return TRACKED_BUFFERS.size();
+    }
+
+    /**
+     * Reports the tracked {@link Buffer}s, which have been garbage collected
+     * without being disposed.
+     * 
+     * @return the number of the reported leaks
+     */
+    public static int detectLeaks() {
+        int leaks = 0;
+        
+        LeakReference ref;
+        while ((ref = (LeakReference) LEAKED_BUFFERS.poll()) != null) {
+            if (TRACKED_BUFFERS.remove(ref)) {
+                ref.report();
+                leaks++;
+            }
+        }
+        
+        return leaks;
+    }
+
+    /**
+     * Starts tracking the {@link Buffer}, if it's sampled.
+     * 
+     * @return the reference, which has to be passed to {@link #untrack(LeakReference)},
+     *          once the {@link Buffer} is disposed, or <tt>null</tt> if the
+     *          {@link Buffer} is not sampled
+     */
+    static LeakReference track(final Buffer buffer, final int size,
+            final MonitoringConfig<MemoryProbe> monitoringConfig) {
+        final float rate = samplingRate;
+        if (rate <= 0f
+                || (rate < 1f && ThreadLocalRandom.current().nextFloat() >= rate)) {
+            return null;
+        }
+        
+        detectLeaks();
+        
+        final LeakReference ref = new LeakReference(buffer, size,
+                monitoringConfig);
+        TRACKED_BUFFERS.add(ref);
+        
+        return ref;
+    }
+
+    /**
+     * Moves the tracking of the pooled {@link Buffer} to the composite
+     * {@link Buffer}, which contains it.
+     * 
+     * @param segmentRef the pooled {@link Buffer} reference
+     * @param composite the composite {@link Buffer}
+     * @param compositeRef the composite {@link Buffer} reference, or <tt>null</tt>
+     *          if the composite {@link Buffer} is not tracked yet
+     * @return the composite {@link Buffer} reference
+     */
+    static LeakReference transfer(final LeakReference segmentRef,
+            final Buffer composite, final LeakReference compositeRef) {
+        untrack(segmentRef);
+        if (compositeRef != null) {
+            return compositeRef;
+        }
+        
+        final LeakReference ref = new LeakReference(composite, segmentRef.size,
+                segmentRef.monitoringConfig, segmentRef.allocationTrace);
+        TRACKED_BUFFERS.add(ref);
+        
+        return ref;
+    }
+    
+    /**
+     * Stops tracking the disposed {@link Buffer}.
+     */
+    static void untrack(final LeakReference ref) {
+        if (ref != null) {
+            TRACKED_BUFFERS.remove(ref);
+            ref.clear();
+        }
+    }
+    
+    private static float initSamplingRate() {
+        final String value = System.getProperty(SAMPLING_RATE_PROPERTY);
+        if (value == null) {
+            return 0f;
+        }
+        
+        try {
+            final float rate = Float.parseFloat(value);
+            if (rate >= 0f && rate <= 1f) {
+                return rate;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        
+        LOGGER.log(Level.WARNING, "Invalid {0} value: {1}",
+                new Object[] {SAMPLING_RATE_PROPERTY, value});
+        return 0f;
+    }
+
+    /**
+     * The pooled {@link Buffer}, whose tracking could be taken over by the
+     * composite {@link Buffer} it's added to.
+     */
+    interface TrackedBuffer {
+        /**
+         * Stops tracking the {@link Buffer} by itself.
+         * 
+         * @return the {@link Buffer} reference, or <tt>null</tt> if the
+         *          {@link Buffer} is not tracked
+         */
+        LeakReference detachLeakReference();
+    }
+    
+    /**
+     * The tracked {@link Buffer} reference, which keeps the allocation stack trace.
+     */
+    static final class LeakReference extends PhantomReference<Object> {
+        private final int size;
+        private final MonitoringConfig<MemoryProbe> monitoringConfig;
+        private final Throwable allocationTrace;
+
+        private LeakReference(final Buffer buffer, final int size,
+                final MonitoringConfig<MemoryProbe> monitoringConfig) {
+            this(buffer, size, monitoringConfig, new Throwable(
+                    buffer.getClass().getName() + " allocation"));
+        }
+
+        private LeakReference(final Buffer buffer, final int size,
+                final MonitoringConfig<MemoryProbe> monitoringConfig,
+                final Throwable allocationTrace) {
+            super(buffer, LEAKED_BUFFERS);
+            this.size = size;
+            this.monitoringConfig = monitoringConfig;
+            this.allocationTrace = allocationTrace;
+        }
+
+        private void report() {
+            LOGGER.log(Level.WARNING, "Buffer of size " + size
+                    + " was garbage collected without being disposed",
+                    allocationTrace);
+            
+            if (monitoringConfig != null) {
+                ProbeNotifier.notifyBufferLeak(monitoringConfig, size,
+                        allocationTrace);
+            }
+        }
+    } // END LeakReference
+}
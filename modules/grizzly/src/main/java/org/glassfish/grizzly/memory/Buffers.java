@@ -53,7 +53,9 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import org.glassfish.grizzly.Appender;
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
 import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.asyncqueue.MessageCloner;
 import org.glassfish.grizzly.localization.LogMessages;
 
 /**
@@ -70,6 +72,8 @@ public class Buffers {
     private static final Appender<Buffer> APPENDER_DISPOSABLE = new BuffersAppender(true);
     private static final Appender<Buffer> APPENDER_NOT_DISPOSABLE = new BuffersAppender(false);
 
+    private static final MessageCloner RETAINING_CLONER = new RetainingCloner();
+
     /**
      * Get the {@link Appender} which knows how to append {@link Buffer}s.
      * Returned {@link Appender} uses the same {@link Buffer} appending rules as
@@ -600,6 +604,50 @@ public class Buffers {
         return clone.flip();
     }
 
+    /**
+     * Returns a new read-only reference to the source {@link Buffer} content.
+     * Unlike {@link #cloneBuffer(org.glassfish.grizzly.Buffer)}, the content is
+     * shared, so no memory is allocated. The reference has its own position
+     * and limit and is always disposable, so it has to be released using
+     * {@link Buffer#tryDispose()} independently of the source {@link Buffer}.
+     *
+     * The pooled memory (including the memory of {@link CompositeBuffer}
+     * segments) is returned to the pool only when the source {@link Buffer}
+     * and all its references are disposed, so the same payload could be
+     * written to several {@link Connection}s without copying: every
+     * {@link Connection} gets its own reference, which will be released once
+     * it's written, and the source {@link Buffer} could be disposed right
+     * after the references are created.
+     *
+     * @param srcBuffer the source {@link Buffer}.
+     * @return the new read-only reference to the source {@link Buffer} content.
+     *
+     * @since 2.4.3
+     */
+    public static Buffer retain(final Buffer srcBuffer) {
+        final Buffer reference = srcBuffer.asReadOnlyBuffer();
+        reference.allowBufferDispose(true);
+        
+        return reference;
+    }
+
+    /**
+     * Returns the {@link MessageCloner}, which, when a {@link Buffer} couldn't
+     * be written immediately, queues its {@link #retain(org.glassfish.grizzly.Buffer)}
+     * reference instead of copying the content. The cloner is useful when
+     * the caller keeps the ownership of the written {@link Buffer} (for example
+     * a cached payload, which is not disposable), so the queued reference
+     * makes sure the pooled memory is not reused until the write is completed.
+     *
+     * @return the {@link MessageCloner} retaining the queued {@link Buffer}s.
+     *
+     * @since 2.4.3
+     */
+    @SuppressWarnings("unchecked")
+    public static <E> MessageCloner<E> getRetainingCloner() {
+        return RETAINING_CLONER;
+    }
+
     /**
      * Reads data from the {@link FileChannel} into the {@link Buffer}.
      *
@@ -857,4 +905,15 @@ public class Buffers {
         };
 
     } // END DumpStrings
+
+    private static final class RetainingCloner implements MessageCloner<Object> {
+
+        @Override
+        public Object clone(final Connection connection,
+                final Object originalMessage) {
+            return originalMessage instanceof Buffer
+                    ? retain((Buffer) originalMessage)
+                    : originalMessage;
+        }
+    } // END RetainingCloner
 }
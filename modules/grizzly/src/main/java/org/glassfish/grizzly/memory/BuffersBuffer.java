@@ -96,15 +96,16 @@ public final class BuffersBuffer extends CompositeBuffer {
     private static BuffersBuffer create(final MemoryManager memoryManager,
             final Buffer[] buffers, final int buffersSize,
             final ByteOrder byteOrder, final boolean isReadOnly) {
-        final BuffersBuffer buffer = ThreadCache.takeFromCache(CACHE_IDX);
+        BuffersBuffer buffer = ThreadCache.takeFromCache(CACHE_IDX);
         if (buffer != null) {
             buffer.isDisposed = false;
             buffer.order(byteOrder);
             buffer.set(memoryManager, buffers, buffersSize, isReadOnly);
-            return buffer;
+        } else {
+            buffer = new BuffersBuffer(memoryManager, buffers, buffersSize, isReadOnly);
         }
 
-        return new BuffersBuffer(memoryManager, buffers, buffersSize, isReadOnly);
+        return buffer;
     }
 
     protected Exception disposeStackTrace;
@@ -147,6 +148,9 @@ public final class BuffersBuffer extends CompositeBuffer {
     private int activeBufferLowerBound;
     private Buffer activeBuffer;
     
+    // not null, if the buffer is tracked by the BufferLeakDetector
+    private BufferLeakDetector.LeakReference leakRef;
+    
 
     protected BuffersBuffer(final MemoryManager memoryManager,
             final Buffer[] buffers, final int buffersSize,
@@ -164,6 +168,10 @@ public final class BuffersBuffer extends CompositeBuffer {
             initBuffers(buffers, buffersSize);
             refreshBuffers();
             this.limit = capacity;
+            
+            for (int i = 0; i < buffersSize; i++) {
+                trackLeak(this.buffers[i]);
+            }
         }
 
         this.isReadOnly = isReadOnly;
@@ -178,12 +186,17 @@ public final class BuffersBuffer extends CompositeBuffer {
         }
     }
 
-    private BuffersBuffer duplicateFrom(final BuffersBuffer that) {
+    private BuffersBuffer duplicateFrom(final BuffersBuffer that,
+            final boolean isReadOnly) {
         this.memoryManager = that.memoryManager;
 
+        // read-only segments mark the shared memory, so the memory managers
+        // could keep it until all the references are disposed
         final Buffer[] ba = new Buffer[that.buffers.length];
         for (int i = 0, len = that.buffersSize; i < len; i++) {
-            ba[i] = that.buffers[i].duplicate();
+            ba[i] = isReadOnly
+                    ? that.buffers[i].asReadOnlyBuffer()
+                    : that.buffers[i].duplicate();
         }
         initBuffers(ba, that.buffersSize);
         System.arraycopy(that.bufferBounds, 0, this.bufferBounds, 0, that.buffersSize);
@@ -191,7 +204,7 @@ public final class BuffersBuffer extends CompositeBuffer {
         this.position = that.position;
         this.limit = that.limit;
         this.capacity = that.capacity;
-        this.isReadOnly = that.isReadOnly;
+        this.isReadOnly = isReadOnly || that.isReadOnly;
         this.byteOrder = that.byteOrder;
         
         return this;
@@ -204,6 +217,7 @@ public final class BuffersBuffer extends CompositeBuffer {
             return true;
         } else if (allowInternalBuffersDispose) {
             removeAndDisposeBuffers();
+            untrackLeak();
         }
 
         return false;
@@ -214,6 +228,7 @@ public final class BuffersBuffer extends CompositeBuffer {
         checkDispose();
         isDisposed = true;
         removeAndDisposeBuffers();
+        untrackLeak();
 
         if (DEBUG_MODE) { // if debug is on - clear the buffer content
             // Use static logic class to help JIT optimize the code
@@ -245,6 +260,7 @@ public final class BuffersBuffer extends CompositeBuffer {
         buffers[buffersSize++] = buffer;
         
         limit = capacity;
+        trackLeak(buffer);
 
         resetLastLocation();
         
@@ -270,6 +286,7 @@ public final class BuffersBuffer extends CompositeBuffer {
         refreshBuffers();
         position = 0;
         limit += buffer.remaining();
+        trackLeak(buffer);
 
         resetLastLocation();
 
@@ -288,6 +305,7 @@ public final class BuffersBuffer extends CompositeBuffer {
                 buffers[i] = newBuffer;
                 refreshBuffers();
                 limit = capacity;
+                trackLeak(newBuffer);
 
                 if (position > limit) {
                     position = limit;
@@ -424,8 +442,7 @@ public final class BuffersBuffer extends CompositeBuffer {
     @Override
     public BuffersBuffer asReadOnlyBuffer() {
         checkDispose();
-        final BuffersBuffer buffer = create().duplicateFrom(this);
-        buffer.isReadOnly = true;
+        final BuffersBuffer buffer = create().duplicateFrom(this, true);
 
         return buffer;
     }
@@ -654,7 +671,7 @@ public final class BuffersBuffer extends CompositeBuffer {
     @Override
     public BuffersBuffer duplicate() {
         checkDispose();
-        return create().duplicateFrom(this);
+        return create().duplicateFrom(this, false);
     }
 
     @Override
@@ -731,6 +748,11 @@ public final class BuffersBuffer extends CompositeBuffer {
     @Override
     public void allowInternalBuffersDispose(boolean allowInternalBuffersDispose) {
         this.allowInternalBuffersDispose = allowInternalBuffersDispose;
+        
+        if (!allowInternalBuffersDispose && !allowBufferDispose) {
+            // the buffer doesn't own the memory, so it can't leak
+            untrackLeak();
+        }
     }
 
     @Override
@@ -1694,6 +1716,25 @@ public final class BuffersBuffer extends CompositeBuffer {
         }
     }
 
+    // the composite buffer takes over the leak tracking of the pooled buffers
+    // it contains, so the leaked composite buffer is reported once
+    private void trackLeak(final Buffer buffer) {
+        if (buffer instanceof BufferLeakDetector.TrackedBuffer) {
+            final BufferLeakDetector.LeakReference ref =
+                    ((BufferLeakDetector.TrackedBuffer) buffer).detachLeakReference();
+            if (ref != null) {
+                leakRef = BufferLeakDetector.transfer(ref, this, leakRef);
+            }
+        }
+    }
+
+    private void untrackLeak() {
+        if (leakRef != null) {
+            BufferLeakDetector.untrack(leakRef);
+            leakRef = null;
+        }
+    }
+
     private void removeAndDisposeBuffers() {
         boolean isNulled = false;
 
@@ -532,6 +532,10 @@ public class ByteBufferManager extends AbstractMemoryManager<ByteBufferWrapper>
     private final class TrimAwareWrapper extends ByteBufferWrapper
             implements TrimAware {
 
+        // true, if the memory is shared with a read-only buffer, so it
+        // can't be returned to the thread-local pool
+        private boolean isShared;
+        
         private TrimAwareWrapper(ByteBuffer underlyingByteBuffer) {
             super(underlyingByteBuffer);
         }
@@ -539,6 +543,12 @@ public class ByteBufferManager extends AbstractMemoryManager<ByteBufferWrapper>
         @Override
         @SuppressWarnings("unchecked")
         public void trim() {
+            if (isShared) {
+                // the tail might be referenced by a read-only buffer
+                super.trim();
+                return;
+            }
+            
             final int sizeToReturn = visible.capacity() - visible.position();
 
 
@@ -571,9 +581,22 @@ public class ByteBufferManager extends AbstractMemoryManager<ByteBufferWrapper>
             super.trim();
         }
 
+        @Override
+        public ByteBufferWrapper asReadOnlyBuffer() {
+            checkDispose();
+            isShared = true;
+            return new ByteBufferWrapper(visible.asReadOnlyBuffer());
+        }
+
+        @Override
+        boolean isMemoryShared() {
+            return isShared;
+        }
+
         @Override
         public void recycle() {
             allowBufferDispose = false;
+            isShared = false;
 
             ThreadCache.putToCache(CACHE_IDX, this);
         }
@@ -581,7 +604,9 @@ public class ByteBufferManager extends AbstractMemoryManager<ByteBufferWrapper>
         @Override
         public void dispose() {
             prepareDispose();
-            ByteBufferManager.this.release(this);
+            if (!isShared) {
+                ByteBufferManager.this.release(this);
+            }
             visible = null;
             recycle();
         }
@@ -603,13 +628,34 @@ public class ByteBufferManager extends AbstractMemoryManager<ByteBufferWrapper>
      */
     protected final class SmallByteBufferWrapper extends ByteBufferWrapper implements Cacheable {
 
+        // true, if the memory is shared with a read-only buffer, so it
+        // can't be reused
+        private boolean isShared;
+        
         private SmallByteBufferWrapper(ByteBuffer underlyingByteBuffer) {
             super(underlyingByteBuffer);
         }
 
+        @Override
+        public ByteBufferWrapper asReadOnlyBuffer() {
+            checkDispose();
+            isShared = true;
+            return new ByteBufferWrapper(visible.asReadOnlyBuffer());
+        }
+
+        @Override
+        boolean isMemoryShared() {
+            return isShared;
+        }
+
         @Override
         public void dispose() {
             super.prepareDispose();
+            if (isShared) {
+                visible = null;
+                return;
+            }
+            
             visible.clear();
             recycle();
         }
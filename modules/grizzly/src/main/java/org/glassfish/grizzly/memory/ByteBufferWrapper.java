@@ -895,13 +895,24 @@ public class ByteBufferWrapper implements Buffer {
         return new ByteBufferWrapper(byteBuffer);
     }
 
+    /**
+     * @return <tt>true</tt>, if the memory is shared with other buffers, which
+     *      might still use it once this buffer is disposed
+     */
+    boolean isMemoryShared() {
+        return false;
+    }
+
     private static class DebugLogic {
         static void doDebug(ByteBufferWrapper wrapper) {
-            wrapper.visible.clear();
-            while(wrapper.visible.hasRemaining()) {
-                wrapper.visible.put((byte) 0xFF);
+            // the shared content is still referenced by other buffers
+            if (!wrapper.visible.isReadOnly() && !wrapper.isMemoryShared()) {
+                wrapper.visible.clear();
+                while(wrapper.visible.hasRemaining()) {
+                    wrapper.visible.put((byte) 0xFF);
+                }
+                wrapper.visible.flip();
             }
-            wrapper.visible.flip();
             wrapper.disposeStackTrace = new Exception("ByteBufferWrapper was disposed from: ");
         }
     }
@@ -1016,6 +1016,14 @@ public class HeapBuffer implements Buffer {
     protected void onShareHeap() {
     }
 
+    /**
+     * @return <tt>true</tt>, if the heap is shared with other buffers, which
+     *      might still use it once this buffer is disposed
+     */
+    boolean isHeapShared() {
+        return false;
+    }
+
     /**
      * Create a new {@link HeapBuffer} based on the current heap.
      * 
@@ -1050,11 +1058,14 @@ public class HeapBuffer implements Buffer {
 
     private static class DebugLogic {
         static void doDebug(HeapBuffer heapBuffer) {
-            heapBuffer.clear();
-            while(heapBuffer.hasRemaining()) {
-                heapBuffer.put((byte) 0xFF);
+            // the shared content is still referenced by other buffers
+            if (!heapBuffer.isReadOnly() && !heapBuffer.isHeapShared()) {
+                heapBuffer.clear();
+                while(heapBuffer.hasRemaining()) {
+                    heapBuffer.put((byte) 0xFF);
+                }
+                heapBuffer.flip();
             }
-            heapBuffer.flip();
             heapBuffer.disposeStackTrace = new Exception("HeapBuffer was disposed from: ");
         }
     }
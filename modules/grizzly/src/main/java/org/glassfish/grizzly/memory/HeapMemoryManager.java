@@ -506,6 +506,10 @@ public class HeapMemoryManager extends AbstractMemoryManager<HeapBuffer> impleme
 
         private HeapMemoryManager mm;
         
+        // true, if the heap is shared with a read-only buffer, so the memory
+        // can't be returned to the thread-local pool
+        private boolean isShared;
+        
         private TrimmableHeapBuffer(final HeapMemoryManager mm,
                                     byte[] heap,
                                     int offset,
@@ -518,6 +522,12 @@ public class HeapMemoryManager extends AbstractMemoryManager<HeapBuffer> impleme
         public void trim() {
             checkDispose();
 
+            if (isShared) {
+                // the tail might be referenced by a read-only buffer
+                super.trim();
+                return;
+            }
+            
             final int sizeToReturn = cap - pos;
 
 
@@ -556,7 +566,9 @@ public class HeapMemoryManager extends AbstractMemoryManager<HeapBuffer> impleme
         @Override
         public void dispose() {
             prepareDispose();
-            mm.release(this);
+            if (!isShared) {
+                mm.release(this);
+            }
             mm = null;
 
             byteBuffer = null;
@@ -576,6 +588,17 @@ public class HeapMemoryManager extends AbstractMemoryManager<HeapBuffer> impleme
             return mm.createTrimAwareBuffer(heap, offs + offset, capacity);
         }
 
+        @Override
+        protected void onShareHeap() {
+            super.onShareHeap();
+            isShared = true;
+        }
+
+        @Override
+        boolean isHeapShared() {
+            return isShared;
+        }
+
         void initialize(final HeapMemoryManager mm,
                         final byte[] heap,
                         final int offset,
@@ -587,6 +610,7 @@ public class HeapMemoryManager extends AbstractMemoryManager<HeapBuffer> impleme
             pos = 0;
             cap = length;
             lim = length;
+            isShared = false;
             
             disposeStackTrace = null;
         }
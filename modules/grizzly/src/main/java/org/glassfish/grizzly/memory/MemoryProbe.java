@@ -67,6 +67,45 @@ public interface MemoryProbe {
      */
     void onBufferReleaseToPoolEvent(int size);
 
+    /**
+     * Called by {@link BufferLeakDetector}, when buffer gets garbage collected
+     * without being disposed.
+     * The default implementation does nothing.
+     *
+     * @param size buffer size
+     * @param allocationTrace the stack trace of the buffer allocation
+     *
+     * @since 2.4.3
+     */
+    default void onBufferLeakEvent(int size, Throwable allocationTrace) {
+    }
+
+    /**
+     * Called by {@link MemoryManager}, when the number of buffers held by
+     * a buffer pool (both pooled and used) reaches the new maximum.
+     * The default implementation does nothing.
+     *
+     * @param bufferSize the pool buffer size
+     * @param buffersCount the new max number of buffers held by the pool
+     *
+     * @since 2.4.3
+     */
+    default void onPoolHighWaterMarkEvent(int bufferSize, int buffersCount) {
+    }
+
+    /**
+     * Called by {@link MemoryManager}, when idle buffers get released from
+     * a buffer pool.
+     * The default implementation does nothing.
+     *
+     * @param bufferSize the pool buffer size
+     * @param buffersCount the number of released buffers
+     *
+     * @since 2.4.3
+     */
+    default void onPoolTrimEvent(int bufferSize, int buffersCount) {
+    }
+
 
     // ---------------------------------------------------------- Nested Classes
 
@@ -100,5 +139,7 @@ public interface MemoryProbe {
         @Override
         public void onBufferReleaseToPoolEvent(int size) {}
 
+
+
     } // END Adapter
 }
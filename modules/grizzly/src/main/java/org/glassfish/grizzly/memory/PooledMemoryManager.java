@@ -47,7 +47,9 @@ import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.Arrays;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReferenceArray;
 import java.util.concurrent.locks.LockSupport;
 
@@ -70,6 +72,11 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
  *     <li>The flag indicating whether direct or heap based {@link Buffer}s will be allocated</li>
  * </ul>
  *
+ * The pools grow on demand up to their max size, and optionally shrink back
+ * to the pre-allocated size, releasing the pooled {@link Buffer}s which
+ * haven't been needed during the idle buffer timeout
+ * (see {@link #setIdleBufferTimeout(long, java.util.concurrent.TimeUnit)}).
+ *
  * If no explicit configuration is provided, the following defaults will be used:
  * <ul>
  *     <li>Base buffer size: 4 KiB ({@link #DEFAULT_BASE_BUFFER_SIZE})</li>
@@ -79,6 +86,7 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
  *     <li>Percentage of heap: 3% ({@link #DEFAULT_HEAP_USAGE_PERCENTAGE})</li>
  *     <li>Percentage of buffers to be pre-allocated: 100% ({@link #DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE})</li>
  *     <li>Heap based {@link Buffer}s will be allocated</li>
+ *     <li>The pools never shrink</li>
  * </ul>
  *
  * The main advantage of this manager over {@link org.glassfish.grizzly.memory.HeapMemoryManager} or
@@ -122,6 +130,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     // the max buffer size pooled by this memory manager
     private final int maxPooledBufferSize;
 
+    // the idle buffer timeout in nanoseconds, -1 if the pools never shrink
+    private volatile long idleBufferTimeoutNanos = -1;
+
 
     // ------------------------------------------------------------ Constructors
 
@@ -364,6 +375,69 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     }
 
 
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * Returns the idle buffer timeout, see {@link #setIdleBufferTimeout(long, java.util.concurrent.TimeUnit)}.
+     *
+     * @param timeUnit the {@link TimeUnit} of the returned value
+     * @return the idle buffer timeout, or <tt>-1</tt> if the pools never shrink
+     *
+     * @since 2.4.3
+     */
+    public long getIdleBufferTimeout(final TimeUnit timeUnit) {
+        final long timeoutNanos = idleBufferTimeoutNanos;
+        return timeoutNanos < 0
+                ? -1
+                : timeUnit.convert(timeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Sets the idle buffer timeout. Every pool slice tracks the min number
+     * of pooled {@link Buffer}s during the timeout period, so once the period
+     * is over, the {@link Buffer}s that haven't been needed are released
+     * (though the slice never shrinks below its pre-allocated size).
+     *
+     * The check is performed lazily, when {@link Buffer}s are allocated or
+     * disposed, so if the application could stay completely idle it's
+     * recommended to call {@link #trim()} periodically.
+     *
+     * @param timeout the idle buffer timeout, the value less than or equal
+     *                to zero means the pools never shrink (default)
+     * @param timeUnit the {@link TimeUnit} of the timeout
+     *
+     * @since 2.4.3
+     */
+    public void setIdleBufferTimeout(final long timeout,
+            final TimeUnit timeUnit) {
+        final long timeoutNanos = timeout > 0 ? timeUnit.toNanos(timeout) : -1;
+        idleBufferTimeoutNanos = timeoutNanos;
+        
+        for (Pool pool : pools) {
+            pool.setTrimPeriod(timeoutNanos);
+        }
+    }
+
+    /**
+     * Releases the pooled {@link Buffer}s, which haven't been needed during
+     * the last idle buffer timeout period, in every pool slice whose period
+     * is over. Has no effect, if the idle buffer timeout is not set.
+     *
+     * @since 2.4.3
+     */
+    public void trim() {
+        if (idleBufferTimeoutNanos < 0) {
+            return;
+        }
+        
+        final long now = System.nanoTime();
+        for (Pool pool : pools) {
+            pool.trim(now);
+        }
+    }
+
+
     // ----------------------------------------------- Methods from WrapperAware
 
 
@@ -487,12 +561,23 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     static final class Pool {
         private final PoolSlice[] slices;
         private final int bufferSize;
+        
+        // MemoryProbe configuration.
+        private final DefaultMonitoringConfig<MemoryProbe> monitoringConfig;
+        
+        // the number of Buffers allocated by the pool and not released yet
+        // (both pooled and used).
+        private final AtomicInteger buffersCount = new AtomicInteger();
+        
+        // the max buffersCount value
+        private final AtomicInteger highWaterMark = new AtomicInteger();
 
         public Pool(final int bufferSize, final long memoryPerSubPool,
                 final int numberOfPoolSlices, final float percentPreallocated,
                 final boolean isDirect,
                 final DefaultMonitoringConfig<MemoryProbe> monitoringConfig) {
             this.bufferSize = bufferSize;
+            this.monitoringConfig = monitoringConfig;
             slices = new PoolSlice[numberOfPoolSlices];
             final long memoryPerSlice = memoryPerSubPool / numberOfPoolSlices;
             
@@ -523,6 +608,51 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             return Arrays.copyOf(slices, slices.length);
         }
         
+        /**
+         * @return the number of {@link Buffer}s allocated by this pool and
+         * not released yet, both pooled and used
+         */
+        public int getBuffersCount() {
+            return buffersCount.get();
+        }
+
+        /**
+         * @return the max number of {@link Buffer}s held by this pool
+         * at the same time, both pooled and used
+         */
+        public int getHighWaterMark() {
+            return highWaterMark.get();
+        }
+        
+        void setTrimPeriod(final long trimPeriodNanos) {
+            for (int i = 0; i < slices.length; i++) {
+                slices[i].setTrimPeriod(trimPeriodNanos);
+            }
+        }
+        
+        void trim(final long now) {
+            for (int i = 0; i < slices.length; i++) {
+                slices[i].trim(now);
+            }
+        }
+        
+        private void onBufferAllocated() {
+            final int count = buffersCount.incrementAndGet();
+            
+            int max;
+            while (count > (max = highWaterMark.get())) {
+                if (highWaterMark.compareAndSet(max, count)) {
+                    ProbeNotifier.notifyPoolHighWaterMark(monitoringConfig,
+                            bufferSize, count);
+                    break;
+                }
+            }
+        }
+
+        private void onBuffersReleased(final int count) {
+            buffersCount.addAndGet(-count);
+        }
+        
         public Buffer allocate() {
             final PoolSlice slice = getSlice();
             PoolBuffer b = slice.poll();
@@ -613,6 +743,19 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // MemoryProbe configuration.
         private final DefaultMonitoringConfig<MemoryProbe> monitoringConfig;
 
+        // The number of pre-allocated buffers, the slice never shrinks below.
+        private final int minPoolSize;
+        
+        // The period of the idle buffers check in nanoseconds, -1 if disabled.
+        private volatile long trimPeriodNanos = -1;
+        
+        // The time of the next idle buffers check.
+        private final AtomicLong nextTrimNanos = new AtomicLong();
+        
+        // The min number of pooled buffers during the current period, the
+        // updates are racy, but the approximate value is good enough.
+        private volatile int idleLowWaterMark;
+
 
         // -------------------------------------------------------- Constructors
 
@@ -654,6 +797,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                 pool1.lazySet(idx, allocate().free(true));
             }
             pool2 = new PaddedAtomicReferenceArray<>(maxPoolSize);
+            minPoolSize = preallocatedBufs;
             
             pollIdx = new PaddedAtomicInteger(0);
             offerIdx = new PaddedAtomicInteger(idx);
@@ -664,6 +808,26 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
 
 
         public final PoolBuffer poll() {
+            final PoolBuffer pb = poll0();
+            if (pb != null) {
+                ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
+                                                            bufferSize);
+            }
+            
+            if (trimPeriodNanos > 0) {
+                // remember the demand peak
+                final int idle = pb != null ? elementsCount() : 0;
+                if (idle < idleLowWaterMark) {
+                    idleLowWaterMark = idle;
+                }
+                
+                trim(System.nanoTime());
+            }
+            
+            return pb;
+        }
+
+        private PoolBuffer poll0() {
             int pollIdx;
             for (;;) {
                 pollIdx = this.pollIdx.get();
@@ -688,8 +852,6 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                 // unmask the current read value to the actual array index.
                 final PoolBuffer pb = pool.getAndSet(unmaskedPollIdx, null);
                 if (pb != null) {
-                    ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
-                                                                bufferSize);
                     return pb;
                 }
                 
@@ -706,6 +868,8 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                 
                 // weak isFull check, might return false positives
                 if (isFull(pollIdx, offerIdx)) {
+                    // the buffer is not pooled and will be garbage collected
+                    owner.onBuffersReleased(1);
                     return false;
                 }
                 final int nextOfferIndex = nextIndex(offerIdx);
@@ -724,6 +888,10 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                     ProbeNotifier.notifyBufferReleasedToPool(monitoringConfig,
                                                              bufferSize);
 
+                    if (trimPeriodNanos > 0) {
+                        trim(System.nanoTime());
+                    }
+                    
                     return true;
                 }
                 // give poll at this index time to complete...
@@ -773,6 +941,41 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             while (poll() != null) ;
         }
 
+        void setTrimPeriod(final long trimPeriodNanos) {
+            idleLowWaterMark = elementsCount();
+            nextTrimNanos.set(System.nanoTime() + trimPeriodNanos);
+            this.trimPeriodNanos = trimPeriodNanos;
+        }
+
+        /**
+         * Releases the pooled buffers, which haven't been needed during the
+         * last period, if the period is over.
+         */
+        void trim(final long now) {
+            final long trimPeriod = trimPeriodNanos;
+            final long nextTrim = nextTrimNanos.get();
+            if (trimPeriod <= 0 || now - nextTrim < 0
+                    || !nextTrimNanos.compareAndSet(nextTrim, now + trimPeriod)) {
+                return;
+            }
+            
+            final int idleBuffers = Math.min(idleLowWaterMark,
+                    elementsCount() - minPoolSize);
+            
+            int released = 0;
+            while (released < idleBuffers && poll0() != null) {
+                released++;
+            }
+            
+            idleLowWaterMark = elementsCount();
+            
+            if (released > 0) {
+                owner.onBuffersReleased(released);
+                ProbeNotifier.notifyPoolTrimmed(monitoringConfig, bufferSize,
+                        released);
+            }
+        }
+
         public PoolBuffer allocate() {
             final PoolBuffer buffer =
                     (isDirect || FORCE_BYTE_BUFFER_BASED_BUFFERS) ?
@@ -786,6 +989,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
                     new PoolHeapBuffer(new byte[bufferSize], this);
                     
             
+            owner.onBufferAllocated();
             ProbeNotifier.notifyBufferAllocated(monitoringConfig, bufferSize);
             return buffer;
         }
@@ -910,7 +1114,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
     }
     
     private static final class PoolHeapBuffer extends HeapBuffer
-            implements PoolBuffer {
+            implements PoolBuffer, BufferLeakDetector.TrackedBuffer {
 
         // The pool slice to which this Buffer instance will be returned.
         private final PoolSlice owner;
@@ -928,6 +1132,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // non-null in any 'child' buffers created from the original.
         protected final PoolHeapBuffer source;
 
+        // not null, if the buffer is tracked by the BufferLeakDetector
+        private BufferLeakDetector.LeakReference leakRef;
+
         
         // ------------------------------------------------------------ Constructors
 
@@ -982,10 +1189,19 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         public PoolBuffer prepare() {
             allowBufferDispose = true;
             free = false;
+            leakRef = BufferLeakDetector.track(this, owner.bufferSize,
+                    owner.monitoringConfig);
             
             return this;
         }
 
+        @Override
+        public BufferLeakDetector.LeakReference detachLeakReference() {
+            final BufferLeakDetector.LeakReference ref = leakRef;
+            leakRef = null;
+            return ref;
+        }
+
         @Override
         public PoolSlice owner() {
             return owner;
@@ -1080,6 +1296,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             // clear
             clear();
             
+            BufferLeakDetector.untrack(leakRef);
+            leakRef = null;
+            
             owner.offer(this);
         }
         
@@ -1131,7 +1350,7 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
 
     
     private static final class PoolByteBufferWrapper extends ByteBufferWrapper
-            implements PoolBuffer {
+            implements PoolBuffer, BufferLeakDetector.TrackedBuffer {
 
         // The pool slice to which this Buffer instance will be returned.
         private final PoolSlice owner;
@@ -1149,6 +1368,9 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         // non-null in any 'child' buffers created from the original.
         protected final PoolByteBufferWrapper source;
 
+        // not null, if the buffer is tracked by the BufferLeakDetector
+        private BufferLeakDetector.LeakReference leakRef;
+
         // Used for the special case of the split() method.  This maintains
         // the original wrapper from the pool which must ultimately be returned.
         private final ByteBuffer origVisible;
@@ -1209,9 +1431,18 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
         public PoolBuffer prepare() {
             allowBufferDispose = true;
             free = false;
+            leakRef = BufferLeakDetector.track(this, owner.bufferSize,
+                    owner.monitoringConfig);
             return this;
         }
 
+        @Override
+        public BufferLeakDetector.LeakReference detachLeakReference() {
+            final BufferLeakDetector.LeakReference ref = leakRef;
+            leakRef = null;
+            return ref;
+        }
+
         @Override
         public PoolSlice owner() {
             return owner;
@@ -1296,6 +1527,10 @@ public class PooledMemoryManager implements MemoryManager<Buffer>, WrapperAware
             // should be called on "source" only
             visible = origVisible;
             visible.clear();
+            
+            BufferLeakDetector.untrack(leakRef);
+            leakRef = null;
+            
             owner.offer(this);
         }
     } // END PoolBuffer    
@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.memory;
 
 import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
 
 /**
  * Utility class, which has notification methods for different
@@ -101,4 +102,58 @@ final class ProbeNotifier {
         }
     }
 
+    /**
+     * Notify registered {@link MemoryProbe}s about the "pool high-water mark" event.
+     *
+     * @param bufferSize the pool buffer size
+     * @param buffersCount the new max number of buffers held by the pool
+     */
+    static void notifyPoolHighWaterMark(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int bufferSize, final int buffersCount) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onPoolHighWaterMarkEvent(bufferSize, buffersCount);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link MemoryProbe}s about the "pool trim" event.
+     *
+     * @param bufferSize the pool buffer size
+     * @param buffersCount the number of released buffers
+     */
+    static void notifyPoolTrimmed(
+            final DefaultMonitoringConfig<MemoryProbe> config,
+            final int bufferSize, final int buffersCount) {
+
+        final MemoryProbe[] probes = config.getProbesUnsafe();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onPoolTrimEvent(bufferSize, buffersCount);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link MemoryProbe}s about the "leak" event.
+     *
+     * @param size buffer size
+     * @param allocationTrace the buffer allocation stack trace
+     */
+    static void notifyBufferLeak(
+            final MonitoringConfig<MemoryProbe> config,
+            final int size, final Throwable allocationTrace) {
+
+        final MemoryProbe[] probes = config.getProbes();
+        if (probes != null) {
+            for (MemoryProbe probe : probes) {
+                probe.onBufferLeakEvent(size, allocationTrace);
+            }
+        }
+    }
+
 }
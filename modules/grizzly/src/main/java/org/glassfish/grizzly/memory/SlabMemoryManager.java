@@ -0,0 +1,928 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringUtils;
+import org.glassfish.grizzly.threadpool.Threads;
+
+/**
+ * A {@link MemoryManager} implementation, which allocates direct {@link Buffer}s
+ * from fixed-size off-heap chunks carved into size classes.
+ * 
+ * The chunks are allocated lazily, on demand, and the total size of the
+ * allocated chunks never exceeds the configured max direct memory budget.
+ * Each chunk serves {@link Buffer}s of a single size class, once all the
+ * chunk {@link Buffer}s are released and there is enough free space in
+ * other chunks of the same size class - the chunk is given back, so its
+ * memory could be reclaimed and reused by another size class. The chunk
+ * memory is accounted as allocated until it's reclaimed by the garbage
+ * collector.
+ * 
+ * Every SelectorRunner thread allocates from its own arena, other threads,
+ * and SelectorRunner threads whose arena is out of memory, use the shared
+ * arena. If the budget is exhausted - the {@link Buffer}s are allocated
+ * on heap and the idle chunks of all the size classes are given back
+ * (at most once per {@link #TRIM_INTERVAL_MILLIS}), so the budget is
+ * available again once their memory is reclaimed.
+ * 
+ * There are several tuning options for this {@link MemoryManager} implementation.
+ * <ul>
+ *     <li>The base size of the buffer for the 1st size class, every next class n will have buffer size equal to bufferSize(n-1) * 2^growthFactor</li>
+ *     <li>The number of size classes</li>
+ *     <li>The buffer size growth factor, that defines 2^x multiplier, used to calculate buffer size for next size class</li>
+ *     <li>The chunk size</li>
+ *     <li>The max number of direct memory bytes to be used for the chunks</li>
+ *     <li>The number of SelectorRunner arenas</li>
+ * </ul>
+ *
+ * If no explicit configuration is provided, the following defaults will be used:
+ * <ul>
+ *     <li>Base buffer size: 4 KiB ({@link #DEFAULT_BASE_BUFFER_SIZE})</li>
+ *     <li>Number of size classes: 5 ({@link #DEFAULT_NUMBER_OF_SIZE_CLASSES})</li>
+ *     <li>Growth factor: 1 ({@link #DEFAULT_GROWTH_FACTOR}), which means 4 KiB, 8 KiB, 16 KiB, 32 KiB and 64 KiB size classes</li>
+ *     <li>Chunk size: 1 MiB ({@link #DEFAULT_CHUNK_SIZE})</li>
+ *     <li>Max direct memory: 64 MiB ({@link #DEFAULT_MAX_DIRECT_BYTES})</li>
+ *     <li>Number of arenas: Based on the return value of <code>Runtime.getRuntime().availableProcessors()</code></li>
+ * </ul>
+ *
+ * @see PooledMemoryManager
+ * 
+ * @since 2.4.3
+ */
+public class SlabMemoryManager implements MemoryManager<Buffer>, WrapperAware {
+
+    public static final int DEFAULT_BASE_BUFFER_SIZE = 4 * 1024;
+    public static final int DEFAULT_NUMBER_OF_SIZE_CLASSES = 5;
+    public static final int DEFAULT_GROWTH_FACTOR = 1;
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    public static final long DEFAULT_MAX_DIRECT_BYTES = 64L * 1024 * 1024;
+    
+    /**
+     * The min interval between the idle chunks trims caused by the exhausted
+     * direct memory budget.
+     */
+    public static final long TRIM_INTERVAL_MILLIS = 1000;
+    
+    /**
+     * Basic monitoring support.  Concrete implementations of this class need
+     * only to implement the {@link #createJmxManagementObject()}  method
+     * to plug into the Grizzly 2.0 JMX framework.
+     */
+    protected final DefaultMonitoringConfig<MemoryProbe> monitoringConfig =
+            new DefaultMonitoringConfig<MemoryProbe>(MemoryProbe.class) {
+
+                @Override
+                public Object createManagementObject() {
+                    return createJmxManagementObject();
+                }
+
+            };
+
+    // the buffer sizes of the size classes
+    private final int[] sizeClasses;
+    
+    // the max buffer size served by the size classes
+    private final int maxClassBufferSize;
+    
+    private final int chunkSize;
+    private final long maxDirectBytes;
+    
+    // the number of direct bytes allocated for the chunks
+    private final AtomicLong allocatedDirectBytes = new AtomicLong();
+    
+    // the chunks, which were given back, but whose memory is not reclaimed yet
+    private final Set<Reference<ByteBuffer>> releasedChunks =
+            Collections.newSetFromMap(
+                    new ConcurrentHashMap<Reference<ByteBuffer>, Boolean>());
+    private final ReferenceQueue<ByteBuffer> reclaimedChunks =
+            new ReferenceQueue<ByteBuffer>();
+    
+    // the time (System.nanoTime()) the next budget trim is allowed at
+    private final AtomicLong nextTrimNanos = new AtomicLong(System.nanoTime());
+    
+    private final Arena[] arenas;
+    private final Arena sharedArena;
+    
+    // the SelectorRunner thread arena
+    private final ThreadLocal<Arena> threadArena = new ThreadLocal<Arena>();
+    private final AtomicInteger nextArenaIdx = new AtomicInteger();
+
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Creates a new <code>SlabMemoryManager</code> using the default configuration.
+     */
+    public SlabMemoryManager() {
+        this(DEFAULT_MAX_DIRECT_BYTES);
+    }
+
+    /**
+     * Creates a new <code>SlabMemoryManager</code> using the specified
+     * max direct memory budget and default configuration.
+     *
+     * @param maxDirectBytes the max number of direct memory bytes to be
+     *          used for the chunks
+     */
+    public SlabMemoryManager(final long maxDirectBytes) {
+        this(DEFAULT_BASE_BUFFER_SIZE,
+                DEFAULT_NUMBER_OF_SIZE_CLASSES,
+                DEFAULT_GROWTH_FACTOR,
+                DEFAULT_CHUNK_SIZE,
+                maxDirectBytes,
+                Runtime.getRuntime().availableProcessors());
+    }
+    
+    /**
+     * Creates a new <code>SlabMemoryManager</code> using the specified parameters for configuration.
+     *
+     * @param baseBufferSize the base size of the buffer for the 1st size class, every next class n will have buffer size equal to bufferSize(n-1) * 2^growthFactor
+     * @param numberOfSizeClasses the number of size classes
+     * @param growthFactor the buffer size growth factor, that defines 2^x multiplier, used to calculate buffer size for next size class
+     * @param chunkSize the size of the chunk, which is carved into the size class buffers
+     * @param maxDirectBytes the max number of direct memory bytes to be used for the chunks
+     * @param numberOfArenas the number of arenas, the SelectorRunner threads allocate from
+     */
+    public SlabMemoryManager(
+            final int baseBufferSize,
+            final int numberOfSizeClasses,
+            final int growthFactor,
+            final int chunkSize,
+            final long maxDirectBytes,
+            final int numberOfArenas) {
+        if (baseBufferSize <= 0) {
+            throw new IllegalArgumentException("baseBufferSize must be greater than zero");
+        }
+        if (numberOfSizeClasses <= 0) {
+            throw new IllegalArgumentException("numberOfSizeClasses must be greater than zero");
+        }
+        if (growthFactor == 0 && numberOfSizeClasses > 1) {
+            throw new IllegalArgumentException("if numberOfSizeClasses is greater than 1 - growthFactor must be greater than zero");
+        }
+        if (growthFactor < 0) {
+            throw new IllegalArgumentException("growthFactor must be greater or equal to zero");
+        }
+        if (!isPowerOfTwo(baseBufferSize) || !isPowerOfTwo(chunkSize)) {
+            throw new IllegalArgumentException("baseBufferSize and chunkSize must be a power of two");
+        }
+        if (numberOfArenas <= 0) {
+            throw new IllegalArgumentException("numberOfArenas must be greater than zero");
+        }
+        if (maxDirectBytes < 0) {
+            throw new IllegalArgumentException("maxDirectBytes must be greater or equal to zero");
+        }
+
+        sizeClasses = new int[numberOfSizeClasses];
+        for (int i = 0, bufferSize = baseBufferSize; i < numberOfSizeClasses; i++, bufferSize <<= growthFactor) {
+            if (bufferSize <= 0) {
+                throw new IllegalArgumentException("The max size class buffer size is too big");
+            }
+            sizeClasses[i] = bufferSize;
+        }
+        
+        maxClassBufferSize = sizeClasses[numberOfSizeClasses - 1];
+        if (chunkSize < maxClassBufferSize) {
+            throw new IllegalArgumentException("chunkSize must be greater or equal to the max size class buffer size");
+        }
+        
+        this.chunkSize = chunkSize;
+        this.maxDirectBytes = maxDirectBytes;
+        
+        arenas = new Arena[numberOfArenas];
+        for (int i = 0; i < numberOfArenas; i++) {
+            arenas[i] = new Arena();
+        }
+        
+        sharedArena = new Arena();
+    }
+
+    
+    // ---------------------------------------------- Methods from MemoryManager
+
+
+    /**
+     * For this implementation, this method simply calls through to
+     * {@link #allocateAtLeast(int)};
+     */
+    @Override
+    public Buffer allocate(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Requested allocation size must be greater than or equal to zero.");
+        }
+        return allocateAtLeast(size).limit(size);
+    }
+
+    /**
+     * Allocates a buffer of at least the size requested.
+     * <p/>
+     * Keep in mind that the capacity of the buffer may be greater than the
+     * allocation request.  The limit however, will be set to the specified
+     * size.  The memory beyond the limit, is available for use.
+     *
+     * @param size the min {@link Buffer} size to be allocated.
+     * @return a buffer with a limit of the specified <tt>size</tt>.
+     */
+    @Override
+    public Buffer allocateAtLeast(final int size) {
+        if (size < 0) {
+            throw new IllegalArgumentException("Requested allocation size must be greater than or equal to zero.");
+        }
+        
+        if (size == 0) {
+            return Buffers.EMPTY_BUFFER;
+        }
+        
+        return size <= maxClassBufferSize
+                ? allocateFromSizeClass(getSizeClassIdx(size))
+                : allocateToCompositeBuffer(newCompositeBuffer(), size);
+    }
+
+    /**
+     * Reallocates an existing buffer to at least the specified size.
+     *
+     * @param oldBuffer old {@link Buffer} to be reallocated.
+     * @param newSize   new {@link Buffer} required size.
+     *
+     * @return potentially a new buffer of at least the specified size.
+     */
+    @Override
+    public Buffer reallocate(final Buffer oldBuffer, final int newSize) {
+        if (newSize == 0) {
+            oldBuffer.tryDispose();
+            return Buffers.EMPTY_BUFFER;
+        }
+        
+        final int curBufSize = oldBuffer.capacity();
+        
+        if (oldBuffer.isComposite()) {
+            final CompositeBuffer oldCompositeBuffer = (CompositeBuffer) oldBuffer;
+            if (curBufSize > newSize) {
+                final int oldPos = oldCompositeBuffer.position();
+                Buffers.setPositionLimit(oldBuffer, newSize, newSize);
+                oldCompositeBuffer.trim();
+                oldCompositeBuffer.position(Math.min(oldPos, newSize));
+                
+                return oldCompositeBuffer;
+            } else {
+                return allocateToCompositeBuffer(oldCompositeBuffer,
+                        newSize - curBufSize);
+            }
+        }
+        
+        if (curBufSize >= newSize) {
+            return oldBuffer.limit(newSize);
+        }
+        
+        final int pos = oldBuffer.position();
+        Buffers.setPositionLimit(oldBuffer, 0, curBufSize);
+
+        if (newSize <= maxClassBufferSize) {
+            final Buffer newBuffer = allocateFromSizeClass(
+                    getSizeClassIdx(newSize));
+            newBuffer.put(oldBuffer);
+            Buffers.setPositionLimit(newBuffer, pos, newSize);
+
+            oldBuffer.tryDispose();
+
+            return newBuffer;
+        } else {
+            final CompositeBuffer cb = newCompositeBuffer();
+            cb.append(oldBuffer);
+            allocateToCompositeBuffer(cb, newSize - curBufSize);
+            Buffers.setPositionLimit(cb, pos, newSize);
+            return cb;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void release(final Buffer buffer) {
+        buffer.tryDispose();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean willAllocateDirect(final int size) {
+        return size <= maxClassBufferSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MonitoringConfig<MemoryProbe> getMonitoringConfig() {
+        return monitoringConfig;
+    }
+
+
+    // ----------------------------------------------- Methods from WrapperAware
+
+
+    @Override
+    public Buffer wrap(final byte[] data) {
+        return wrap(ByteBuffer.wrap(data));
+    }
+
+    @Override
+    public Buffer wrap(byte[] data, int offset, int length) {
+        return wrap(ByteBuffer.wrap(data, offset, length));
+    }
+
+    @Override
+    public Buffer wrap(final String s) {
+        return wrap(s.getBytes(Charset.defaultCharset()));
+    }
+
+    @Override
+    public Buffer wrap(final String s, final Charset charset) {
+        return wrap(s.getBytes(charset));
+    }
+
+    @Override
+    public Buffer wrap(final ByteBuffer byteBuffer) {
+        return new ByteBufferWrapper(byteBuffer);
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the size of the chunk, which is carved into the size class buffers
+     */
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * @return the max number of direct memory bytes to be used for the chunks
+     */
+    public long getMaxDirectBytes() {
+        return maxDirectBytes;
+    }
+
+    /**
+     * @return the number of direct memory bytes currently allocated for the
+     *          chunks, including the chunks, which were given back, but whose
+     *          memory is not reclaimed by the garbage collector yet
+     */
+    public long getAllocatedDirectBytes() {
+        pollReclaimedChunks();
+        return allocatedDirectBytes.get();
+    }
+
+    /**
+     * @return the number of arenas, the SelectorRunner threads allocate from
+     */
+    public int getNumberOfArenas() {
+        return arenas.length;
+    }
+
+    /**
+     * @return the number of size classes
+     */
+    public int getSizeClassesCount() {
+        return sizeClasses.length;
+    }
+
+    /**
+     * @param sizeClassIdx the size class index
+     * @return the buffer size of the size class
+     */
+    public int getSizeClassBufferSize(final int sizeClassIdx) {
+        return sizeClasses[sizeClassIdx];
+    }
+
+    /**
+     * @param sizeClassIdx the size class index
+     * @return the number of bytes in all the chunks of the size class
+     */
+    public long getSizeClassCapacity(final int sizeClassIdx) {
+        long capacity = sharedArena.sizeClasses[sizeClassIdx].capacity();
+        for (Arena arena : arenas) {
+            capacity += arena.sizeClasses[sizeClassIdx].capacity();
+        }
+        
+        return capacity;
+    }
+
+    /**
+     * @param sizeClassIdx the size class index
+     * @return the number of bytes of the size class {@link Buffer}s,
+     *          which are currently in use
+     */
+    public long getSizeClassUsedBytes(final int sizeClassIdx) {
+        long used = sharedArena.sizeClasses[sizeClassIdx].usedBytes();
+        for (Arena arena : arenas) {
+            used += arena.sizeClasses[sizeClassIdx].usedBytes();
+        }
+        
+        return used;
+    }
+
+    /**
+     * Gives back all the chunks, whose {@link Buffer}s are not in use,
+     * so their memory could be reclaimed. The chunks stay accounted as
+     * allocated until the garbage collector reclaims their memory.
+     * 
+     * @return the number of bytes given back
+     */
+    public long trim() {
+        long released = sharedArena.trim();
+        for (Arena arena : arenas) {
+            released += arena.trim();
+        }
+        
+        return released;
+    }
+
+
+    // ------------------------------------------------------- Protected Methods
+
+
+    protected Object createJmxManagementObject() {
+        
+        return MonitoringUtils.loadJmxObject(
+                "org.glassfish.grizzly.memory.jmx.SlabMemoryManager", this,
+                SlabMemoryManager.class);
+    }
+
+    
+    // --------------------------------------------------------- Private Methods
+
+
+    private Buffer allocateFromSizeClass(final int sizeClassIdx) {
+        final Arena arena = getArena();
+        
+        Buffer buffer = allocateFromArena(arena, sizeClassIdx);
+        if (buffer == null) {
+            // the direct memory budget is exhausted, give back the idle
+            // chunks, so they could be reused once reclaimed
+            trimIfAllowed();
+            
+            final int bufferSize = sizeClasses[sizeClassIdx];
+            buffer = new ByteBufferWrapper(ByteBuffer.allocate(bufferSize));
+            buffer.allowBufferDispose(true);
+            ProbeNotifier.notifyBufferAllocated(monitoringConfig, bufferSize);
+        }
+        
+        return buffer;
+    }
+    
+    private Buffer allocateFromArena(final Arena arena, final int sizeClassIdx) {
+        final Buffer buffer = arena.sizeClasses[sizeClassIdx].allocate();
+        
+        return buffer == null && arena != sharedArena
+                ? sharedArena.sizeClasses[sizeClassIdx].allocate()
+                : buffer;
+    }
+    
+    private Arena getArena() {
+        if (!Threads.isService()) {
+            return sharedArena;
+        }
+        
+        Arena arena = threadArena.get();
+        if (arena == null) {
+            arena = arenas[(nextArenaIdx.getAndIncrement() & Integer.MAX_VALUE)
+                    % arenas.length];
+            threadArena.set(arena);
+        }
+        
+        return arena;
+    }
+    
+    private int getSizeClassIdx(final int size) {
+        for (int i = 0; i < sizeClasses.length; i++) {
+            if (sizeClasses[i] >= size) {
+                return i;
+            }
+        }
+
+        throw new IllegalStateException(
+                "There is no size class big enough to allocate " + size + " bytes");
+    }
+
+    private CompositeBuffer allocateToCompositeBuffer(
+            final CompositeBuffer cb, int size) {
+
+        assert size >= 0;
+
+        final int maxSizeClassIdx = sizeClasses.length - 1;
+        while (size >= maxClassBufferSize) {
+            cb.append(allocateFromSizeClass(maxSizeClassIdx));
+            size -= maxClassBufferSize;
+        }
+
+        if (size > 0) {
+            cb.append(allocateFromSizeClass(getSizeClassIdx(size)).limit(size));
+        }
+
+        return cb;
+    }
+
+    private CompositeBuffer newCompositeBuffer() {
+        final CompositeBuffer cb = CompositeBuffer.newBuffer(this);
+        cb.allowInternalBuffersDispose(true);
+        cb.allowBufferDispose(true);
+        return cb;
+    }
+    
+    private void trimIfAllowed() {
+        final long now = System.nanoTime();
+        final long next = nextTrimNanos.get();
+        if (now - next >= 0 && nextTrimNanos.compareAndSet(next,
+                now + TimeUnit.MILLISECONDS.toNanos(TRIM_INTERVAL_MILLIS))) {
+            trim();
+        }
+    }
+    
+    private boolean reserveChunk() {
+        pollReclaimedChunks();
+        
+        for (;;) {
+            final long allocated = allocatedDirectBytes.get();
+            if (allocated + chunkSize > maxDirectBytes) {
+                return false;
+            }
+            
+            if (allocatedDirectBytes.compareAndSet(allocated, allocated + chunkSize)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * The chunk memory is reclaimed, once the chunk is garbage collected,
+     * so it's accounted as allocated till then.
+     */
+    private void onChunkReleased(final Chunk chunk) {
+        releasedChunks.add(new PhantomReference<ByteBuffer>(chunk.memory,
+                reclaimedChunks));
+    }
+    
+    private void pollReclaimedChunks() {
+        Reference<? extends ByteBuffer> ref;
+        while ((ref = reclaimedChunks.poll()) != null) {
+            if (releasedChunks.remove(ref)) {
+                allocatedDirectBytes.addAndGet(-chunkSize);
+            }
+        }
+    }
+
+    private static boolean isPowerOfTwo(final int valueToCheck) {
+        return valueToCheck > 0 && ((valueToCheck & (valueToCheck - 1)) == 0);
+    }
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * The set of size classes the chunks are carved into.
+     */
+    private final class Arena {
+        private final SizeClass[] sizeClasses;
+
+        private Arena() {
+            final int[] bufferSizes = SlabMemoryManager.this.sizeClasses;
+            sizeClasses = new SizeClass[bufferSizes.length];
+            for (int i = 0; i < bufferSizes.length; i++) {
+                sizeClasses[i] = new SizeClass(bufferSizes[i]);
+            }
+        }
+        
+        private long trim() {
+            long released = 0;
+            for (SizeClass sizeClass : sizeClasses) {
+                released += sizeClass.trim();
+            }
+            
+            return released;
+        }
+    } // END Arena
+
+    /**
+     * The arena chunks, which serve the {@link Buffer}s of the same size.
+     */
+    private final class SizeClass {
+        private final int bufferSize;
+        private final int buffersPerChunk;
+        
+        // the chunks, which have free buffers
+        private final ArrayDeque<Chunk> availableChunks = new ArrayDeque<Chunk>();
+        
+        private int chunksCount;
+        private int usedBuffersCount;
+
+        private SizeClass(final int bufferSize) {
+            this.bufferSize = bufferSize;
+            this.buffersPerChunk = chunkSize / bufferSize;
+        }
+        
+        private Buffer allocate() {
+            final ByteBuffer slot;
+            final Chunk chunk;
+            final int slotIdx;
+            
+            synchronized (this) {
+                Chunk c = availableChunks.peekFirst();
+                if (c == null) {
+                    if (!reserveChunk()) {
+                        return null;
+                    }
+                    
+                    c = new Chunk(this);
+                    availableChunks.addFirst(c);
+                    chunksCount++;
+                    
+                    ProbeNotifier.notifyBufferAllocated(monitoringConfig,
+                            chunkSize);
+                }
+                
+                slotIdx = c.freeSlots[--c.freeSlotsCount];
+                if (c.freeSlotsCount == 0) {
+                    availableChunks.pollFirst();
+                }
+                
+                usedBuffersCount++;
+                chunk = c;
+                slot = c.slots[slotIdx];
+            }
+            
+            ProbeNotifier.notifyBufferAllocatedFromPool(monitoringConfig,
+                    bufferSize);
+            
+            return new SlabBuffer(slot, chunk, slotIdx);
+        }
+        
+        private void release(final Chunk chunk, final int slotIdx) {
+            synchronized (this) {
+                chunk.freeSlots[chunk.freeSlotsCount++] = slotIdx;
+                usedBuffersCount--;
+                
+                if (chunk.freeSlotsCount == 1) {
+                    // the chunk was full
+                    availableChunks.addLast(chunk);
+                } else if (chunk.freeSlotsCount == buffersPerChunk
+                        && freeBuffersCount() - buffersPerChunk >= buffersPerChunk) {
+                    // the chunk is idle and there is at least one more chunk
+                    // worth of free buffers - give the chunk back
+                    availableChunks.remove(chunk);
+                    releaseChunk(chunk);
+                }
+            }
+            
+            ProbeNotifier.notifyBufferReleasedToPool(monitoringConfig,
+                    bufferSize);
+        }
+        
+        private synchronized long trim() {
+            long released = 0;
+            for (Iterator<Chunk> it = availableChunks.iterator(); it.hasNext();) {
+                final Chunk chunk = it.next();
+                if (chunk.freeSlotsCount == buffersPerChunk) {
+                    it.remove();
+                    releaseChunk(chunk);
+                    released += chunkSize;
+                }
+            }
+            
+            return released;
+        }
+        
+        private synchronized long capacity() {
+            return (long) chunksCount * buffersPerChunk * bufferSize;
+        }
+        
+        private synchronized long usedBytes() {
+            return (long) usedBuffersCount * bufferSize;
+        }
+        
+        private DefaultMonitoringConfig<MemoryProbe> monitoringConfig() {
+            return monitoringConfig;
+        }
+        
+        private int freeBuffersCount() {
+            return chunksCount * buffersPerChunk - usedBuffersCount;
+        }
+        
+        private void releaseChunk(final Chunk chunk) {
+            chunksCount--;
+            onChunkReleased(chunk);
+        }
+    } // END SizeClass
+    
+    /**
+     * The fixed-size direct memory block, carved into the size class buffers.
+     */
+    private static final class Chunk {
+        private final SizeClass owner;
+        private final ByteBuffer memory;
+        private final ByteBuffer[] slots;
+        
+        // the stack of the free slot indexes
+        private final int[] freeSlots;
+        private int freeSlotsCount;
+
+        private Chunk(final SizeClass owner) {
+            this.owner = owner;
+            
+            memory = ByteBuffer.allocateDirect(
+                    owner.buffersPerChunk * owner.bufferSize);
+            
+            slots = new ByteBuffer[owner.buffersPerChunk];
+            freeSlots = new int[owner.buffersPerChunk];
+            
+            for (int i = 0; i < slots.length; i++) {
+                memory.limit((i + 1) * owner.bufferSize).position(i * owner.bufferSize);
+                slots[i] = memory.slice();
+                // the lower slots are allocated first
+                freeSlots[i] = slots.length - 1 - i;
+            }
+            
+            freeSlotsCount = slots.length;
+        }
+    } // END Chunk
+
+    /**
+     * The {@link Buffer}, which wraps the chunk slot and returns it back to
+     * the chunk, once it and all the {@link Buffer}s derived from it are disposed.
+     */
+    private static final class SlabBuffer extends ByteBufferWrapper
+            implements BufferLeakDetector.TrackedBuffer {
+        private final Chunk chunk;
+        private final int slotIdx;
+        
+        // When this Buffer instance is released, this flag will be true.
+        private boolean free;
+
+        // represents the number of 'child' buffers that have been created using
+        // this as the foundation.  This source buffer can't be returned
+        // to the chunk unless this value is zero.
+        private final AtomicInteger shareCount;
+
+        // represents the original buffer from the chunk.  This value will be
+        // non-null in any 'child' buffers created from the original.
+        private final SlabBuffer source;
+
+        // Used for the special case of the split() method.  This maintains
+        // the original slot, which must ultimately be returned.
+        private final ByteBuffer origVisible;
+
+        // not null, if the buffer is tracked by the BufferLeakDetector
+        private BufferLeakDetector.LeakReference leakRef;
+
+        private SlabBuffer(final ByteBuffer slot, final Chunk chunk,
+                final int slotIdx) {
+            this(slot, chunk, slotIdx, null, new AtomicInteger());
+            allowBufferDispose = true;
+            leakRef = BufferLeakDetector.track(this, chunk.owner.bufferSize,
+                    chunk.owner.monitoringConfig());
+        }
+
+        private SlabBuffer(final ByteBuffer underlyingByteBuffer,
+                final Chunk chunk, final int slotIdx,
+                final SlabBuffer source, final AtomicInteger shareCount) {
+            super(underlyingByteBuffer);
+            this.chunk = chunk;
+            this.slotIdx = slotIdx;
+            this.shareCount = shareCount;
+            this.source = source != null ? source : this;
+            
+            this.origVisible = this.source.visible;
+        }
+        
+        @Override
+        public BufferLeakDetector.LeakReference detachLeakReference() {
+            final BufferLeakDetector.LeakReference ref = leakRef;
+            leakRef = null;
+            return ref;
+        }
+
+        // ------------------------------------------ Methods from ByteBufferWrapper
+        
+        @Override
+        public void dispose() {
+            if (free) {
+                return;
+            }
+            free = true;
+            
+            // check shared counter optimistically
+            boolean isNotShared = shareCount.get() == 0;
+            if (!isNotShared) {
+                // try pessimistic check using CAS loop
+                isNotShared = (shareCount.getAndDecrement() == 0);
+                if (isNotShared) {
+                    // if the former check is true - the shared counter is negative,
+                    // so we have to reset it
+                    shareCount.set(0);
+                }
+            }
+            
+            if (isNotShared) {
+                // we can now safely return source back to the chunk
+                source.returnToChunk();
+            }
+        }
+        
+        // ----------------------------------------------------- Protected Methods
+
+
+        @Override
+        protected ByteBufferWrapper wrapByteBuffer(final ByteBuffer buffer) {
+            final SlabBuffer b = new SlabBuffer(buffer, chunk, slotIdx,
+                    source, // pass the 'parent' buffer along
+                    shareCount); // pass the shareCount
+            b.allowBufferDispose(true);
+            shareCount.incrementAndGet();
+
+            return b;
+        }
+        
+        /**
+         * Override the default implementation to check the <tt>free</tt> status
+         * of this buffer (i.e., once released, operations on the buffer will no
+         * longer succeed).
+         */
+        @Override
+        protected final void checkDispose() {
+            if (free) {
+                throw new IllegalStateException(
+                        "SlabBuffer has already been disposed",
+                        disposeStackTrace);
+            }
+        }
+        
+        // ----------------------------------------------------- Private Methods
+        
+        private void returnToChunk() {
+            // should be called on "source" only
+            BufferLeakDetector.untrack(leakRef);
+            leakRef = null;
+            
+            origVisible.clear();
+            chunk.owner.release(chunk, slotIdx);
+        }
+    } // END SlabBuffer
+}
@@ -59,6 +59,7 @@ import org.glassfish.grizzly.asyncqueue.PushBackHandler;
 import org.glassfish.grizzly.asyncqueue.RecordWriteResult;
 import org.glassfish.grizzly.asyncqueue.TaskQueue;
 import org.glassfish.grizzly.asyncqueue.WritableMessage;
+import org.glassfish.grizzly.utils.Futures;
 
 
 /**
@@ -254,7 +255,15 @@ public abstract class AbstractNIOAsyncQueueWriter
                 return;
             }
 
-            if (isCurrent && isAllowDirectWrite) {
+            // if the connection is corked - keep the data in the queue,
+            // unless the amount of corked data is too large, or the write
+            // initiator may block on the write Future, which would never
+            // complete if the Future is waited by the thread holding the cork
+            final boolean isCorked = nioConnection.isCorked()
+                    && pendingBytes <= nioConnection.getWriteBufferSize()
+                    && !Futures.isFutureCompletionHandler(completionHandler);
+            
+            if (isCurrent && isAllowDirectWrite && !isCorked) {
 
                 // If we can write directly - do it w/o creating queue record (simple)
                 final RecordWriteResult writeResult = write0(nioConnection, queueRecord);
@@ -296,9 +305,17 @@ public abstract class AbstractNIOAsyncQueueWriter
 
             if (isCurrent) { //current but not finished.
                 writeTaskQueue.setCurrentElement(queueRecord);
-                onReadyToWrite(nioConnection);
+                if (isCorked) {
+                    nioConnection.holdCorkedWrite();
+                } else {
+                    onReadyToWrite(nioConnection);
+                }
             } else {
                 writeTaskQueue.offer(queueRecord);
+                if (!isCorked && nioConnection.isCorked()) {
+                    // too much data is corked - flush
+                    nioConnection.flushCorkedWrite();
+                }
             }
         } catch (IOException e) {
             if (isLogFine) {
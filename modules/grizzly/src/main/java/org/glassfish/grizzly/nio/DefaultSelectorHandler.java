@@ -104,8 +104,11 @@ public class DefaultSelectorHandler implements SelectorHandler {
     public Set<SelectionKey> select(final SelectorRunner selectorRunner)
             throws IOException {
         final Selector selector = selectorRunner.getSelector();
+        // don't block if there are postponed tasks or pending tasks left
+        // unprocessed because of the per-iteration limit
         final boolean hasPostponedTasks =
-                !selectorRunner.getPostponedTasks().isEmpty();
+                !selectorRunner.getPostponedTasks().isEmpty()
+                || selectorRunner.hasPendingTasks;
         
         // The selector.select(...) returns the *new* SelectionKey count,
         // so it may return 0 even in the case, when there are unprocessed, but
@@ -286,20 +289,35 @@ public class DefaultSelectorHandler implements SelectorHandler {
     private boolean processPendingTasks(final SelectorRunner selectorRunner)
             throws IOException {
 
-        return processPendingTaskQueue(selectorRunner, selectorRunner.obtainPostponedTasks())
+        return processPendingTaskQueue(selectorRunner,
+                selectorRunner.obtainPostponedTasks(), -1)
                 &&
                 (!selectorRunner.hasPendingTasks ||
-                processPendingTaskQueue(selectorRunner, selectorRunner.getPendingTasks()));
+                processPendingTaskQueue(selectorRunner, selectorRunner.getPendingTasks(),
+                        selectorRunner.getTransport().getMaxPendingTasksPerIteration()));
     }
 
     private boolean processPendingTaskQueue(final SelectorRunner selectorRunner,
-            final Queue<SelectorHandlerTask> selectorHandlerTasks)
+            final Queue<SelectorHandlerTask> selectorHandlerTasks,
+            final int maxTasks)
             throws IOException {
+        int tasksLeft = maxTasks > 0 ? maxTasks : Integer.MAX_VALUE;
+        
         SelectorHandlerTask selectorHandlerTask;
         while((selectorHandlerTask = selectorHandlerTasks.poll()) != null) {
             if (!selectorHandlerTask.run(selectorRunner)) {
                 return false;
             }
+            
+            if (--tasksLeft == 0) {
+                // the limit is reached, the rest tasks will be processed
+                // during the next iteration
+                if (!selectorHandlerTasks.isEmpty()) {
+                    selectorRunner.hasPendingTasks = true;
+                }
+                
+                break;
+            }
         }
         
         return true;
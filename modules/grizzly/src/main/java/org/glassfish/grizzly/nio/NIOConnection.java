@@ -56,6 +56,7 @@ import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -140,6 +141,14 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
     private volatile CloseReason closeReason;
     private volatile GrizzlyFuture<CloseReason> closeFuture;
     
+    // the number of active cork() calls, 0 means the connection is not corked
+    private static final AtomicIntegerFieldUpdater<NIOConnection> corkCountUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(NIOConnection.class, "corkCount");
+    private volatile int corkCount;
+    
+    // true, if the async write queue head record is held because of the cork
+    private final AtomicBoolean isCorkedWriteHeld = new AtomicBoolean();
+    
     protected volatile boolean isBlocking;
     protected volatile boolean isStandalone;        
     protected short zeroByteReadCount;
@@ -386,6 +395,87 @@ public abstract class NIOConnection implements Connection<SocketAddress> {
         return asyncWriteQueue;
     }
 
+    /**
+     * Corks the <tt>Connection</tt>'s asynchronous write queue.
+     * While the <tt>Connection</tt> is corked, asynchronous writes are not
+     * flushed to the channel immediately, but are kept in the write queue,
+     * so they could be flushed later using one gathering write, when
+     * {@link #uncork()} is called. If the amount of corked data exceeds the
+     * {@link #getWriteBufferSize() write buffer size} - the data will be
+     * flushed regardless of the cork.
+     * 
+     * Calls to <tt>cork()</tt> could be nested, the <tt>Connection</tt>
+     * remains corked until each <tt>cork()</tt> is matched with
+     * {@link #uncork()}.
+     * 
+     * @since 2.4.3
+     */
+    public void cork() {
+        corkCountUpdater.incrementAndGet(this);
+    }
+
+    /**
+     * Releases the cork, previously set using {@link #cork()}.
+     * If this call releases the last active cork - the data, which has been
+     * queued while the <tt>Connection</tt> was corked, will be flushed.
+     * 
+     * @since 2.4.3
+     */
+    public void uncork() {
+        int count;
+        do {
+            count = corkCount;
+            if (count == 0) {
+                return;
+            }
+        } while (!corkCountUpdater.compareAndSet(this, count, count - 1));
+        
+        if (count == 1) {
+            try {
+                flushCorkedWrite();
+            } catch (IOException e) {
+                terminateWithReason(e);
+            }
+        }
+    }
+
+    /**
+     * @return <tt>true</tt>, if the <tt>Connection</tt> is corked, or
+     *      <tt>false</tt> otherwise
+     * @see #cork()
+     * 
+     * @since 2.4.3
+     */
+    public boolean isCorked() {
+        return corkCount > 0;
+    }
+
+    /**
+     * Marks the current async write queue record as held because of the cork.
+     * The method has to be called by the thread, which has set the
+     * current write queue element, instead of initiating the write.
+     * The writes, whose initiator may block waiting for the result, must
+     * never be held.
+     */
+    void holdCorkedWrite() throws IOException {
+        isCorkedWriteHeld.set(true);
+        
+        // double check, the cork might have been released meanwhile
+        if (!isCorked() || asyncWriteQueue.spaceInBytes() > getWriteBufferSize()) {
+            flushCorkedWrite();
+        }
+    }
+
+    /**
+     * Initiates the async write queue processing, if its current record
+     * has been held because of the cork.
+     */
+    void flushCorkedWrite() throws IOException {
+        if (isCorkedWriteHeld.compareAndSet(true, false)) {
+            simulateIOEvent(IOEvent.WRITE);
+        }
+    }
+
     @Override
     public AttributeHolder getAttributes() {
         return attributes;
@@ -41,6 +41,7 @@
 package org.glassfish.grizzly.nio;
 
 import java.io.IOException;
+import java.nio.channels.Selector;
 import java.nio.channels.spi.SelectorProvider;
 import java.util.HashSet;
 import java.util.Set;
@@ -91,6 +92,9 @@ public abstract class NIOTransport extends AbstractTransport
             SocketConnectorHandler.DEFAULT_CONNECTION_TIMEOUT;
     public static final int DEFAULT_SELECTOR_RUNNER_COUNT = -1;
     public static final boolean DEFAULT_OPTIMIZED_FOR_MULTIPLEXING = false;
+    public static final boolean DEFAULT_OPTIMIZED_SELECTED_KEYS = false;
+    public static final int DEFAULT_MAX_SELECTED_KEYS_PER_ITERATION = -1;
+    public static final int DEFAULT_MAX_PENDING_TASKS_PER_ITERATION = -1;
 
     private static final Logger LOGGER = Grizzly.logger(NIOTransport.class);
 
@@ -119,6 +123,14 @@ public abstract class NIOTransport extends AbstractTransport
 
     private boolean optimizedForMultiplexing = DEFAULT_OPTIMIZED_FOR_MULTIPLEXING;
 
+    private boolean optimizedSelectedKeys = DEFAULT_OPTIMIZED_SELECTED_KEYS;
+
+    private volatile int maxSelectedKeysPerIteration =
+            DEFAULT_MAX_SELECTED_KEYS_PER_ITERATION;
+
+    private volatile int maxPendingTasksPerIteration =
+            DEFAULT_MAX_PENDING_TASKS_PER_ITERATION;
+
     protected SelectorRunner[] selectorRunners;
     
     protected NIOChannelDistributor nioChannelDistributor;
@@ -280,6 +292,106 @@ public abstract class NIOTransport extends AbstractTransport
         getAsyncQueueIO().getWriter().setAllowDirectWrite(!optimizedForMultiplexing);
     }
 
+    /**
+     * Returns <tt>true</tt>, if the {@link Selector}s, created by this
+     * <tt>NIOTransport</tt>, use array based selected keys set instead of
+     * the JDK's default {@link java.util.HashSet}, or <tt>false</tt> otherwise.
+     *
+     * @return <tt>true</tt>, if the {@link Selector}s use array based selected
+     * keys set, or <tt>false</tt> otherwise.
+     * @since 2.4.3
+     */
+    public boolean isOptimizedSelectedKeys() {
+        return optimizedSelectedKeys;
+    }
+
+    /**
+     * Configures <tt>NIOTransport</tt> to replace the selected keys set of the
+     * {@link Selector}s it creates with an array based set, which makes adding,
+     * iterating and clearing selected keys cheaper.
+     * The replacement relies on the JDK {@link Selector} implementation details,
+     * so if it's not possible - the JDK default set is used.
+     * The setting is applied to {@link Selector}s created after the call.
+     *
+     * @param optimizedSelectedKeys <tt>true</tt> to use array based selected
+     * keys set.
+     * @since 2.4.3
+     */
+    public void setOptimizedSelectedKeys(final boolean optimizedSelectedKeys) {
+        this.optimizedSelectedKeys = optimizedSelectedKeys;
+    }
+
+    /**
+     * Returns the max number of selected {@link java.nio.channels.SelectionKey}s
+     * a {@link SelectorRunner} processes during one iteration, a value
+     * less or equal to zero means there is no limit.
+     *
+     * @return the max number of selected keys to process during one
+     * {@link SelectorRunner} iteration.
+     * @since 2.4.3
+     */
+    public int getMaxSelectedKeysPerIteration() {
+        return maxSelectedKeysPerIteration;
+    }
+
+    /**
+     * Sets the max number of selected {@link java.nio.channels.SelectionKey}s
+     * a {@link SelectorRunner} processes during one iteration.
+     * The keys, which haven't been processed because of the limit, are carried
+     * over to the next iteration and processed before the next select, so
+     * the {@link SelectorRunner} tasks (interest registration, resumed
+     * connections etc.) don't have to wait until all the ready keys are
+     * processed. A value less or equal to zero means there is no limit.
+     *
+     * @param maxSelectedKeysPerIteration the max number of selected keys to
+     * process during one {@link SelectorRunner} iteration.
+     * @since 2.4.3
+     */
+    public void setMaxSelectedKeysPerIteration(final int maxSelectedKeysPerIteration) {
+        this.maxSelectedKeysPerIteration = maxSelectedKeysPerIteration;
+    }
+
+    /**
+     * Returns the max number of pending {@link SelectorHandlerTask}s,
+     * submitted by other threads, a {@link SelectorRunner} processes during
+     * one iteration, a value less or equal to zero means there is no limit.
+     *
+     * @return the max number of pending tasks to process during one
+     * {@link SelectorRunner} iteration.
+     * @since 2.4.3
+     */
+    public int getMaxPendingTasksPerIteration() {
+        return maxPendingTasksPerIteration;
+    }
+
+    /**
+     * Sets the max number of pending {@link SelectorHandlerTask}s,
+     * submitted by other threads, a {@link SelectorRunner} processes during
+     * one iteration. The tasks, which haven't been processed because of the
+     * limit, are processed during the next iteration, which doesn't block
+     * waiting for new ready keys. A value less or equal to zero means there
+     * is no limit.
+     *
+     * @param maxPendingTasksPerIteration the max number of pending tasks to
+     * process during one {@link SelectorRunner} iteration.
+     * @since 2.4.3
+     */
+    public void setMaxPendingTasksPerIteration(final int maxPendingTasksPerIteration) {
+        this.maxPendingTasksPerIteration = maxPendingTasksPerIteration;
+    }
+
+    /**
+     * Creates new {@link Selector} to be used by a {@link SelectorRunner}.
+     */
+    Selector openSelector() throws IOException {
+        final Selector selector = Selectors.newSelector(getSelectorProvider());
+        if (optimizedSelectedKeys) {
+            SelectedKeySet.install(selector);
+        }
+        
+        return selector;
+    }
+
     protected synchronized void startSelectorRunners() throws IOException {
         selectorRunners = new SelectorRunner[selectorRunnersCount];
         
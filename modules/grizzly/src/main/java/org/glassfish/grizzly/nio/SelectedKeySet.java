@@ -0,0 +1,179 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * Array based selected {@link SelectionKey}s set, which replaces the
+ * {@link java.util.HashSet} used by the JDK {@link Selector} implementation.
+ * 
+ * The set is populated by the {@link Selector} during select operation and
+ * entirely processed and cleared by the {@link SelectorRunner} before the
+ * next select, so it doesn't need hashing or duplicates check.
+ */
+final class SelectedKeySet extends AbstractSet<SelectionKey> {
+    private static final Logger LOGGER = Grizzly.logger(SelectedKeySet.class);
+    
+    private SelectionKey[] keys = new SelectionKey[1024];
+    private int size;
+
+    /**
+     * Replaces the selected keys set of the passed JDK {@link Selector}
+     * with the {@link SelectedKeySet}.
+     * 
+     * @param selector {@link Selector}
+     * @return <tt>true</tt> if the selected keys set was replaced, or
+     *          <tt>false</tt> if the {@link Selector} implementation doesn't
+     *          allow that
+     */
+    static boolean install(final Selector selector) {
+        try {
+            final Field selectedKeysField = findField(selector.getClass(),
+                    "selectedKeys");
+            final Field publicSelectedKeysField = findField(selector.getClass(),
+                    "publicSelectedKeys");
+            if (selectedKeysField == null || publicSelectedKeysField == null) {
+                return false;
+            }
+            
+            selectedKeysField.setAccessible(true);
+            publicSelectedKeysField.setAccessible(true);
+            
+            final SelectedKeySet keySet = new SelectedKeySet();
+            selectedKeysField.set(selector, keySet);
+            publicSelectedKeysField.set(selector, keySet);
+            return true;
+        } catch (Throwable t) {
+            LOGGER.log(Level.FINE,
+                    "Can not replace the Selector's selected keys set", t);
+            return false;
+        }
+    }
+    
+    private static Field findField(Class<?> clazz, final String name) {
+        while (clazz != null) {
+            try {
+                return clazz.getDeclaredField(name);
+            } catch (NoSuchFieldException ignored) {
+            }
+            
+            clazz = clazz.getSuperclass();
+        }
+        
+        return null;
+    }
+    
+    @Override
+    public boolean add(final SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        
+        keys[size++] = key;
+        return true;
+    }
+
+    /**
+     * The set is always empty, when the {@link Selector} checks whether a key
+     * has been already selected, so the method returns <tt>false</tt>
+     * without scanning the keys.
+     */
+    @Override
+    public boolean contains(final Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+            private int idx;
+            
+            @Override
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (idx >= size) {
+                    throw new NoSuchElementException();
+                }
+                
+                return keys[idx++];
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+}
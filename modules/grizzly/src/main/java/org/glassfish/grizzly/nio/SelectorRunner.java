@@ -101,13 +101,19 @@ public final class SelectorRunner implements Runnable {
     private SelectionKey key = null;
     private int keyReadyOps;
 
+    // Statistics fields
+    private long iterationsCount;
+    private long selectsCount;
+    private long totalSelectedKeysCount;
+    private long lastIterationTimeNanos;
+    private long totalIterationTimeNanos;
+
     private final AtomicBoolean selectorWakeupFlag = new AtomicBoolean();
     private final AtomicInteger runnerThreadActivityCounter = new AtomicInteger();
 
     public static SelectorRunner create(final NIOTransport transport)
             throws IOException {
-        return new SelectorRunner(transport,
-                Selectors.newSelector(transport.getSelectorProvider()));
+        return new SelectorRunner(transport, transport.openSelector());
     }
     
     volatile boolean hasPendingTasks;
@@ -314,44 +320,67 @@ public final class SelectorRunner implements Runnable {
         final SelectorHandler selectorHandler = transport.getSelectorHandler();
         
         try {
+            final long iterationStart = System.nanoTime();
             
             if (isResume) {
-                // If resume SelectorRunner - finish postponed keys
+                // If resume SelectorRunner - finish postponed key
                 isResume = false;
                 
                 // readyKeySet==null means execution was suspended on preSelect(..)
-                if (readyKeySet != null) {
-                    if (keyReadyOps != 0) {
-                        if (!iterateKeyEvents()) return false;
-                    }
-
-                    if (!iterateKeys()) return false;
-                    readyKeySet.clear();
+                if (readyKeySet != null && keyReadyOps != 0) {
+                    if (!iterateKeyEvents()) return false;
                 }
             }
 
+            if (iterator != null) {
+                // there are selected keys left from the previous iteration,
+                // process pending tasks and continue with the keys w/o select
+                if (!selectorHandler.preSelect(this)) {
+                    return false;
+                }
+                
+                if (!iterateKeys(true)) return false;
+                
+                if (!iterator.hasNext()) {
+                    finishSelectedKeys(selectorHandler);
+                }
+                
+                onIterationComplete(iterationStart, 0);
+                return true;
+            }
+            
             lastSelectedKeysCount = 0;
 
             if (!selectorHandler.preSelect(this)) {
                 return false;
             }
 
+            final long selectStart = System.nanoTime();
             readyKeySet = selectorHandler.select(this);
+            final long selectTime = System.nanoTime() - selectStart;
+            
             selectorWakeupFlag.set(false);
 
             if (stateHolder.get() == State.STOPPING) return true;
             
             lastSelectedKeysCount = readyKeySet.size();
+            selectsCount++;
+            totalSelectedKeysCount += lastSelectedKeysCount;
             
             if (lastSelectedKeysCount != 0) {
                 iterator = readyKeySet.iterator();
-                if (!iterateKeys()) return false;
-                readyKeySet.clear();
+                if (!iterateKeys(false)) return false;
+                
+                if (iterator.hasNext()) {
+                    // the keys limit is reached, the rest keys will be
+                    // processed during the next iteration
+                    onIterationComplete(iterationStart, selectTime);
+                    return true;
+                }
             }
 
-            readyKeySet = null;
-            iterator = null;
-            selectorHandler.postSelect(this);
+            finishSelectedKeys(selectorHandler);
+            onIterationComplete(iterationStart, selectTime);
         } catch (ClosedSelectorException e) {
             if (isRunning()) {
                 if (selectorHandler.onSelectorClosed(this)) {
@@ -374,13 +403,43 @@ public final class SelectorRunner implements Runnable {
         return true;
     }
 
-    private boolean iterateKeys() {
+    private void finishSelectedKeys(final SelectorHandler selectorHandler)
+            throws IOException {
+        if (readyKeySet != null) {
+            readyKeySet.clear();
+        }
+        
+        readyKeySet = null;
+        iterator = null;
+        selectorHandler.postSelect(this);
+    }
+    
+    private void onIterationComplete(final long iterationStart,
+            final long selectTime) {
+        lastIterationTimeNanos = System.nanoTime() - iterationStart - selectTime;
+        totalIterationTimeNanos += lastIterationTimeNanos;
+        iterationsCount++;
+    }
+
+    /**
+     * Processes selected keys, but not more than
+     * {@link NIOTransport#getMaxSelectedKeysPerIteration()}.
+     * 
+     * @param isCarriedOver <tt>true</tt>, if the keys were selected during
+     *          one of the previous iterations, so their interest might have
+     *          changed since then
+     */
+    private boolean iterateKeys(final boolean isCarriedOver) {
         final Iterator<SelectionKey> it = iterator;
+        final int maxKeys = transport.getMaxSelectedKeysPerIteration();
+        int keysLeft = maxKeys > 0 ? maxKeys : Integer.MAX_VALUE;
 
-        while (it.hasNext()) {
+        while (keysLeft-- > 0 && it.hasNext()) {
             try {
                 key = it.next();
-                keyReadyOps = key.readyOps();
+                keyReadyOps = isCarriedOver
+                        ? key.readyOps() & key.interestOps()
+                        : key.readyOps();
                 if (!iterateKeyEvents()) {
                     return false;
                 }
@@ -498,9 +557,69 @@ public final class SelectorRunner implements Runnable {
         return lastSelectedKeysCount;
     }
 
+    /**
+     * Number of {@link SelectorRunner} loop iterations.
+     * Operation is not thread-safe.
+     *
+     * @return number of {@link SelectorRunner} loop iterations.
+     * @since 2.4.3
+     */
+    public long getIterationsCount() {
+        return iterationsCount;
+    }
+
+    /**
+     * Number of {@link Selector#select()} calls, it could be less than the
+     * {@link #getIterationsCount() iterations count}, because an iteration,
+     * which processes selected keys carried over from the previous iteration,
+     * doesn't call select.
+     * Operation is not thread-safe.
+     *
+     * @return number of {@link Selector#select()} calls.
+     * @since 2.4.3
+     */
+    public long getSelectsCount() {
+        return selectsCount;
+    }
+
+    /**
+     * Total number of {@link SelectionKey}s, which were selected.
+     * Operation is not thread-safe.
+     *
+     * @return total number of {@link SelectionKey}s, which were selected.
+     * @since 2.4.3
+     */
+    public long getTotalSelectedKeysCount() {
+        return totalSelectedKeysCount;
+    }
+
+    /**
+     * The time, in nanoseconds, the last loop iteration took, excluding
+     * the time the {@link SelectorRunner} was blocked in select.
+     * Operation is not thread-safe.
+     *
+     * @return the time, in nanoseconds, the last loop iteration took.
+     * @since 2.4.3
+     */
+    public long getLastIterationTimeNanos() {
+        return lastIterationTimeNanos;
+    }
+
+    /**
+     * The total time, in nanoseconds, the loop iterations took, excluding
+     * the time the {@link SelectorRunner} was blocked in select.
+     * Operation is not thread-safe.
+     *
+     * @return the total time, in nanoseconds, the loop iterations took.
+     * @since 2.4.3
+     */
+    public long getTotalIterationTimeNanos() {
+        return totalIterationTimeNanos;
+    }
+
     protected final void switchToNewSelector() throws IOException {
         final Selector oldSelector = selector;
-        final Selector newSelector = Selectors.newSelector(transport.getSelectorProvider());
+        final Selector newSelector = transport.openSelector();
 
         final Set<SelectionKey> keys = oldSelector.keys();
         final SelectionKeyHandler selectionKeyHandler =
@@ -0,0 +1,286 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.nio.transport;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.ByteBufferWrapper;
+
+/**
+ * The direct memory arena, owned by a {@link org.glassfish.grizzly.nio.SelectorRunner}
+ * thread, the {@link TCPNIOConnection}s' data is read into.
+ * 
+ * Each read returns a zero-copy slice of the arena. The slice (together with
+ * the {@link Buffer}s derived from it) keeps the arena chunk referenced until
+ * it's disposed, or until its data is copied out at the end of the read event
+ * processing, if the slice is still alive. The chunk could be reused only
+ * when it's not referenced anymore. The number of chunks, which are pinned by
+ * the retained slices, is limited, once the limit is reached the data is read
+ * the regular way, until some of the chunks are released.
+ * 
+ * The arena is not thread-safe and has to be accessed from its owner thread
+ * only, the slices could be disposed from any thread.
+ */
+final class ReadArena {
+    /**
+     * The max number of chunks, which are referenced by the retained slices
+     * only, i.e. besides the current and the spare chunks.
+     */
+    private static final int MAX_PINNED_CHUNKS = 8;
+    
+    private final int chunkSize;
+    
+    // the number of chunks referenced by the arena or by the slices
+    private final AtomicInteger chunksCount = new AtomicInteger();
+    
+    // the chunk the data is currently read into
+    private Chunk current;
+    // the previous chunk, to be reused once all its slices are released
+    private Chunk spare;
+    
+    // the ByteBuffer passed to the last read
+    private ByteBuffer readView;
+    
+    ReadArena(final int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Returns the arena's {@link ByteBuffer} to read at most <tt>size</tt>
+     * bytes into, the result of the read has to be passed to {@link #commit(int)}.
+     * 
+     * @return the {@link ByteBuffer} to read to, or <tt>null</tt> if the
+     *         arena chunk is smaller than <tt>size</tt>, or too many chunks
+     *         are pinned by the retained slices
+     */
+    ByteBuffer prepare(final int size) {
+        if (size > chunkSize) {
+            return null;
+        }
+        
+        if (current == null) {
+            current = new Chunk(chunkSize, chunksCount);
+        } else if (current.isReleased()) {
+            // all the slices are released - start from the beginning
+            current.offset = 0;
+        } else if (chunkSize - current.offset < size) {
+            final Chunk next;
+            if (spare != null && spare.isReleased()) {
+                next = spare;
+                next.offset = 0;
+            } else if (chunksCount.get() < MAX_PINNED_CHUNKS + 2) {
+                next = new Chunk(chunkSize, chunksCount);
+                if (spare != null) {
+                    // the spare chunk is left to its slices
+                    spare.release();
+                }
+            } else {
+                return null;
+            }
+            
+            spare = current;
+            current = next;
+        }
+        
+        readView = current.view;
+        readView.limit(current.offset + size).position(current.offset);
+        return readView;
+    }
+    
+    /**
+     * Completes the read started with {@link #prepare(int)}.
+     * 
+     * @param read the number of bytes read
+     * @return the slice of the arena containing the read data, positioned
+     *         at the end of the data, or <tt>null</tt> if nothing was read
+     */
+    Buffer commit(final int read) {
+        final ByteBuffer view = readView;
+        readView = null;
+        
+        if (read <= 0) {
+            return null;
+        }
+        
+        final Chunk chunk = current;
+        view.limit(chunk.offset + read).position(chunk.offset);
+        final ByteBuffer slice = view.slice();
+        slice.position(read);
+        
+        chunk.offset += read;
+        chunk.refs.incrementAndGet();
+        
+        return new ArenaBuffer(slice, chunk, null, new AtomicInteger());
+    }
+    
+    /**
+     * The part of the arena, which is reused as a whole.
+     */
+    private static final class Chunk {
+        // the number of slices, which are still alive, plus one reference
+        // held by the arena, while the chunk is current or spare
+        private final AtomicInteger refs = new AtomicInteger(1);
+        private final AtomicInteger chunksCount;
+        private final ByteBuffer view;
+        private int offset;
+
+        private Chunk(final int size, final AtomicInteger chunksCount) {
+            view = ByteBuffer.allocateDirect(size);
+            this.chunksCount = chunksCount;
+            chunksCount.incrementAndGet();
+        }
+        
+        /**
+         * @return <tt>true</tt> if there are no slices alive
+         */
+        private boolean isReleased() {
+            return refs.get() == 1;
+        }
+        
+        private void release() {
+            if (refs.decrementAndGet() == 0) {
+                chunksCount.decrementAndGet();
+            }
+        }
+    }
+    
+    /**
+     * The slice of the arena {@link Chunk}. The slice and the {@link Buffer}s
+     * derived from it share the counter, so the chunk is released, once all
+     * of them are disposed.
+     */
+    static final class ArenaBuffer extends ByteBufferWrapper
+            implements FilterChainContext.CompletionListener {
+        private Chunk chunk;
+        private boolean isDisposed;
+        
+        // the number of the derived buffers, which are still alive
+        private final AtomicInteger shareCount;
+        private final ArenaBuffer source;
+
+        private ArenaBuffer(final ByteBuffer slice, final Chunk chunk,
+                final ArenaBuffer source, final AtomicInteger shareCount) {
+            super(slice);
+            this.chunk = chunk;
+            this.source = source != null ? source : this;
+            this.shareCount = shareCount;
+        }
+
+        @Override
+        public void dispose() {
+            if (isDisposed) {
+                return;
+            }
+            
+            super.dispose();
+            isDisposed = true;
+            
+            // same logic as in the PooledMemoryManager buffers
+            boolean isNotShared = shareCount.get() == 0;
+            if (!isNotShared) {
+                isNotShared = (shareCount.getAndDecrement() == 0);
+                if (isNotShared) {
+                    shareCount.set(0);
+                }
+            }
+            
+            if (isNotShared) {
+                source.releaseChunk();
+            }
+        }
+
+        /**
+         * Copies the data out of the arena, if the slice is still alive at
+         * the end of the read event processing, so the arena chunk is not
+         * held by a retained {@link Buffer}. If there are derived
+         * {@link Buffer}s, which point to the arena memory as well, the slice
+         * stays as it is.
+         */
+        @Override
+        public void onComplete(final FilterChainContext context) {
+            if (isDisposed || chunk == null || shareCount.get() != 0) {
+                return;
+            }
+            
+            // the slice ByteBuffer might be in use by another thread (the
+            // write queue of another connection, for example), so it's not
+            // modified
+            final ByteBuffer data = visible.duplicate();
+            final int pos = data.position();
+            final int lim = data.limit();
+            data.clear();
+            
+            final ByteBuffer copy = ByteBuffer.allocate(data.capacity());
+            copy.put(data);
+            Buffers.setPositionLimit(copy, pos, lim);
+            
+            visible = copy;
+            releaseChunk();
+        }
+        
+        @Override
+        protected ByteBufferWrapper wrapByteBuffer(final ByteBuffer byteBuffer) {
+            if (source.chunk == null) {
+                // the data is not in the arena
+                return super.wrapByteBuffer(byteBuffer);
+            }
+            
+            final ArenaBuffer b = new ArenaBuffer(byteBuffer, null,
+                    source, shareCount);
+            b.allowBufferDispose(true);
+            shareCount.incrementAndGet();
+            
+            return b;
+        }
+
+        private void releaseChunk() {
+            // should be called on "source" only
+            final Chunk c = chunk;
+            if (c != null) {
+                chunk = null;
+                c.release();
+            }
+        }
+    }
+}
@@ -130,6 +130,7 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
                             (TCPNIOConnection) connection, (CompositeBuffer) buffer);
                 }
 
+                ((TCPNIOConnection) connection).onWriteOperation();
                 ((TCPNIOConnection) connection).onWrite(buffer, written);
             } catch (IOException e) {
                 // Mark connection as closed remotely.
@@ -139,6 +140,7 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
             }
         } else if (message instanceof FileTransfer) {
             written = ((FileTransfer) message).writeTo((SocketChannel) connection.getChannel());
+            ((TCPNIOConnection) connection).onWriteOperation();
             ((TCPNIOConnection) connection).onWrite(null, written);
         } else {
             throw new IllegalStateException("Unhandled message type");
@@ -192,6 +194,8 @@ public final class TCPNIOAsyncQueueWriter extends AbstractNIOAsyncQueueWriter {
                         TCPNIOUtils.flushByteBuffers(
                         socketChannel, directByteBufferRecord.getArray(), 0, arraySize) ;
 
+                ((TCPNIOConnection) connection).onWriteOperation();
+
             } catch (IOException e) {
                 // Mark connection as closed remotely.
                 ((TCPNIOConnection) connection).terminate0(null,
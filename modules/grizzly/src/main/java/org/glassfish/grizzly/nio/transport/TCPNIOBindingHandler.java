@@ -42,13 +42,18 @@ package org.glassfish.grizzly.nio.transport;
 
 import org.glassfish.grizzly.AbstractBindingHandler;
 import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.utils.Exceptions;
 
 import java.io.IOException;
 import java.net.ServerSocket;
 import java.net.SocketAddress;
+import java.net.SocketOption;
+import java.net.StandardSocketOptions;
 import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.locks.Lock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
  * This class may be used to apply a custom {@link org.glassfish.grizzly.Processor} and/or {@link org.glassfish.grizzly.ProcessorSelector}
@@ -64,6 +69,13 @@ import java.util.concurrent.locks.Lock;
  */
 public class TCPNIOBindingHandler extends AbstractBindingHandler {
 
+    private static final Logger LOGGER = Grizzly.logger(TCPNIOBindingHandler.class);
+
+    /**
+     * SO_REUSEPORT socket option, or <tt>null</tt> if not supported by the JDK.
+     */
+    private static final SocketOption<Boolean> SO_REUSEPORT = getReusePortOption();
+
     private final TCPNIOTransport tcpTransport;
 
     // ------------------------------------------------------------ Constructors
@@ -127,6 +139,10 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
             tcpTransport.getChannelConfigurator().preConfigure(transport,
                     serverSocketChannel);
             
+            final boolean isReusePort = socketAddress != null
+                    && tcpTransport.isReusePortBinding()
+                    && enableReusePort(serverSocketChannel);
+            
             if (socketAddress != null) {
                 serverSocket.bind(socketAddress, backlog);
             }
@@ -137,6 +153,14 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
             serverConnection = tcpTransport.obtainServerNIOConnection(serverSocketChannel);
             serverConnection.setProcessor(getProcessor());
             serverConnection.setProcessorSelector(getProcessorSelector());
+            
+            if (isReusePort) {
+                serverConnection.setAcceptorIndex(0);
+                serverConnection.setReusePortAcceptors(
+                        bindReusePortAcceptors(
+                                serverSocket.getLocalSocketAddress(), backlog));
+            }
+            
             tcpTransport.serverConnections.add(serverConnection);
             serverConnection.resetProperties();
 
@@ -164,6 +188,81 @@ public class TCPNIOBindingHandler extends AbstractBindingHandler {
     }
 
 
+    /**
+     * Binds additional SO_REUSEPORT listening sockets to the address, one per
+     * {@link org.glassfish.grizzly.nio.SelectorRunner} except the first one,
+     * which is served by the main server connection.
+     */
+    private TCPNIOServerConnection[] bindReusePortAcceptors(
+            final SocketAddress socketAddress, final int backlog)
+            throws IOException {
+        
+        final TCPNIOServerConnection[] acceptors =
+                new TCPNIOServerConnection[tcpTransport.getSelectorRunnersCount() - 1];
+        
+        try {
+            for (int i = 0; i < acceptors.length; i++) {
+                final ServerSocketChannel serverSocketChannel =
+                        tcpTransport.getSelectorProvider().openServerSocketChannel();
+                try {
+                    tcpTransport.getChannelConfigurator().preConfigure(transport,
+                            serverSocketChannel);
+                    serverSocketChannel.setOption(SO_REUSEPORT, true);
+                    serverSocketChannel.socket().bind(socketAddress, backlog);
+                    tcpTransport.getChannelConfigurator().postConfigure(transport,
+                            serverSocketChannel);
+                } catch (IOException e) {
+                    serverSocketChannel.close();
+                    throw e;
+                }
+                
+                final TCPNIOServerConnection acceptor =
+                        tcpTransport.obtainServerNIOConnection(serverSocketChannel);
+                acceptor.setProcessor(getProcessor());
+                acceptor.setProcessorSelector(getProcessorSelector());
+                acceptor.setAcceptorIndex(i + 1);
+                acceptor.resetProperties();
+                
+                acceptors[i] = acceptor;
+            }
+            
+            return acceptors;
+        } catch (IOException e) {
+            for (TCPNIOServerConnection acceptor : acceptors) {
+                if (acceptor != null) {
+                    acceptor.closeSilently();
+                }
+            }
+            
+            throw e;
+        }
+    }
+    
+    private static boolean enableReusePort(
+            final ServerSocketChannel serverSocketChannel) throws IOException {
+        if (SO_REUSEPORT == null
+                || !serverSocketChannel.supportedOptions().contains(SO_REUSEPORT)) {
+            LOGGER.log(Level.WARNING, "SO_REUSEPORT is not supported, "
+                    + "a single listening socket will be bound");
+            return false;
+        }
+        
+        serverSocketChannel.setOption(SO_REUSEPORT, true);
+        return true;
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static SocketOption<Boolean> getReusePortOption() {
+        try {
+            // SO_REUSEPORT has been introduced in JDK 9
+            return (SocketOption<Boolean>) StandardSocketOptions.class
+                    .getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+
     // ----------------------------------------------------------- Inner Classes
 
 
@@ -71,6 +71,10 @@ public class TCPNIOConnection extends NIOConnection {
 
     private int readBufferSize = -1;
     private int writeBufferSize = -1;
+    
+    // the number of channel write operations, the writes on a connection
+    // are serialized, so the counter is not updated atomically
+    private volatile long writeOperationsCount;
 
     private AtomicReference<ConnectResultHandler> connectHandlerRef;
 
@@ -314,6 +318,29 @@ public class TCPNIOConnection extends NIOConnection {
         notifyProbesWrite(this, data, size);
     }
 
+    /**
+     * Method will be called, when a write operation (system call) was
+     * performed on the connection's channel.
+     */
+    void onWriteOperation() {
+        writeOperationsCount++;
+    }
+
+    /**
+     * Returns the number of write operations performed on the connection's
+     * channel. Unlike {@link org.glassfish.grizzly.ConnectionProbe#onWriteEvent},
+     * which is notified for each written message, the counter is increased
+     * once per channel write, so it could be used to check how efficiently
+     * outbound messages are gathered (see {@link #cork()}).
+     * 
+     * @return the number of write operations performed on the connection's
+     *      channel
+     * @since 2.4.3
+     */
+    public long getWriteOperationsCount() {
+        return writeOperationsCount;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -55,6 +55,7 @@ import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.nio.RegisterChannelResult;
 import org.glassfish.grizzly.nio.SelectionKeyHandler;
+import org.glassfish.grizzly.nio.SelectorRunner;
 import org.glassfish.grizzly.utils.CompletionHandlerAdapter;
 import org.glassfish.grizzly.utils.Exceptions;
 import org.glassfish.grizzly.utils.Holder;
@@ -74,6 +75,17 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
     private FutureImpl<Connection> acceptListener;
     private final RegisterAcceptedChannelCompletionHandler defaultCompletionHandler;
     private final Object acceptSync = new Object();
+    
+    /**
+     * The index of the {@link SelectorRunner} this SO_REUSEPORT acceptor
+     * is bound to, or <tt>-1</tt> if the connection is not a SO_REUSEPORT
+     * acceptor.
+     */
+    private int acceptorIndex = -1;
+    /**
+     * The SO_REUSEPORT acceptors, sharing the address with this connection.
+     */
+    private TCPNIOServerConnection[] reusePortAcceptors;
 
     public TCPNIOServerConnection(TCPNIOTransport transport,
             ServerSocketChannel serverSocketChannel) {
@@ -89,10 +101,20 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
         final FutureImpl<RegisterChannelResult> future =
                 SafeFutureImpl.create();
         
-        transport.getNIOChannelDistributor().registerServiceChannelAsync(
-                channel, SelectionKey.OP_ACCEPT, this,
+        final CompletionHandler<RegisterChannelResult> completionHandler =
                 new CompletionHandlerAdapter<RegisterChannelResult, RegisterChannelResult>(
-                future, registerCompletionHandler));
+                future, registerCompletionHandler);
+        final SelectorRunner acceptorRunner = acceptorIndex >= 0
+                ? ((TCPNIOTransport) transport).getSelectorRunner(acceptorIndex)
+                : null;
+        
+        if (acceptorRunner != null) {
+            transport.getSelectorHandler().registerChannelAsync(acceptorRunner,
+                    channel, SelectionKey.OP_ACCEPT, this, completionHandler);
+        } else {
+            transport.getNIOChannelDistributor().registerServiceChannelAsync(
+                    channel, SelectionKey.OP_ACCEPT, this, completionHandler);
+        }
         try {
             future.get(10, TimeUnit.SECONDS);
         } catch (ExecutionException e) {
@@ -103,6 +125,39 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
 
         notifyReady();
         notifyProbesBind(this);
+        
+        final TCPNIOServerConnection[] acceptors = reusePortAcceptors;
+        if (acceptors != null) {
+            for (TCPNIOServerConnection acceptor : acceptors) {
+                acceptor.listen();
+            }
+        }
+    }
+
+    /**
+     * Makes the connection a SO_REUSEPORT acceptor, bound to the
+     * {@link SelectorRunner} with the given index.
+     */
+    void setAcceptorIndex(final int acceptorIndex) {
+        this.acceptorIndex = acceptorIndex;
+    }
+    
+    /**
+     * Sets the SO_REUSEPORT acceptors, which share the address with this
+     * connection, and are going to be started and closed along with it.
+     */
+    void setReusePortAcceptors(final TCPNIOServerConnection[] reusePortAcceptors) {
+        this.reusePortAcceptors = reusePortAcceptors;
+    }
+
+    /**
+     * @return the number of listening sockets bound to this connection's
+     *         address: <tt>1</tt> plus the SO_REUSEPORT acceptors, if any
+     * @since 2.4.3
+     */
+    public int getAcceptorsCount() {
+        final TCPNIOServerConnection[] acceptors = reusePortAcceptors;
+        return acceptors != null ? acceptors.length + 1 : 1;
     }
 
     @Override
@@ -209,6 +264,18 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
             throws IOException {
 
         final TCPNIOTransport tcpNIOTransport = (TCPNIOTransport) transport;
+        
+        if (acceptorIndex >= 0) {
+            // keep the accepted connection on the acceptor's SelectorRunner
+            final SelectorRunner acceptorRunner = getSelectorRunner();
+            if (acceptorRunner != null) {
+                tcpNIOTransport.getSelectorHandler().registerChannelAsync(
+                        acceptorRunner, acceptedConnection.getChannel(),
+                        initialSelectionKeyInterest, acceptedConnection,
+                        completionHandler);
+                return;
+            }
+        }
 
         tcpNIOTransport.getNIOChannelDistributor().registerChannelAsync(
                 acceptedConnection.getChannel(), initialSelectionKeyInterest,
@@ -223,6 +290,13 @@ public final class TCPNIOServerConnection extends TCPNIOConnection {
 
         transport.unbind(this);
 
+        final TCPNIOServerConnection[] acceptors = reusePortAcceptors;
+        if (acceptors != null) {
+            for (TCPNIOServerConnection acceptor : acceptors) {
+                acceptor.closeSilently();
+            }
+        }
+        
         super.preClose();
     }
 
@@ -128,6 +128,18 @@ public final class TCPNIOTransport extends NIOTransport implements
      * The socket keepAlive mode.
      */
     boolean isKeepAlive = DEFAULT_KEEP_ALIVE;
+    /**
+     * The size of the per-SelectorRunner read arena chunk, <tt>0</tt> means
+     * the arena is not used.
+     */
+    int readArenaSize;
+    
+    private final ThreadLocal<ReadArena> readArenas = new ThreadLocal<ReadArena>();
+    /**
+     * <tt>true</tt>, if every bound address gets a SO_REUSEPORT listening
+     * socket per {@link SelectorRunner}.
+     */
+    boolean reusePortBinding;
 
     private final Filter defaultTransportFilter;
     final RegisterChannelCompletionHandler selectorRegistrationHandler;
@@ -473,6 +485,102 @@ public final class TCPNIOTransport extends NIOTransport implements
         notifyProbesConfigChanged(this);
     }
 
+    /**
+     * @return the size of the direct memory read arena chunk, owned by every
+     *         {@link SelectorRunner}, or <tt>0</tt> (default) if the read
+     *         arena is not used
+     * @since 2.4.3
+     */
+    public int getReadArenaSize() {
+        return readArenaSize;
+    }
+
+    /**
+     * Enables the read arena mode, if the <tt>readArenaSize</tt> is positive.
+     * In this mode the data, read by a {@link SelectorRunner} thread, lands
+     * in the runner's direct memory arena, and the
+     * {@link org.glassfish.grizzly.filterchain.FilterChain}
+     * receives zero-copy slices of it instead of the newly allocated
+     * {@link Buffer}s. A slice, which is neither disposed nor split
+     * by the end of the read event processing, gets its data copied out, so
+     * the arena could be reused. So the {@link Filter}s, that keep the
+     * {@link Buffer} past the read event, must not access it concurrently
+     * with the event completion. If too many arena chunks are still referenced
+     * by the retained {@link Buffer}s, the data is read the regular way.
+     * The reads, performed by the worker threads, are not affected.
+     * 
+     * @param readArenaSize the size of the arena chunk, it has to be bigger
+     *        than the read buffer size to be used
+     * @since 2.4.3
+     */
+    public void setReadArenaSize(final int readArenaSize) {
+        this.readArenaSize = readArenaSize;
+        notifyProbesConfigChanged(this);
+    }
+
+    /**
+     * @return the {@link ReadArena} the {@link TCPNIOConnection} data could
+     *         be read into by the current thread, or <tt>null</tt>
+     */
+    ReadArena getReadArena(final TCPNIOConnection connection) {
+        final int arenaSize = readArenaSize;
+        if (arenaSize <= 0) {
+            return null;
+        }
+        
+        final SelectorRunner runner = connection.getSelectorRunner();
+        if (runner == null || runner.getRunnerThread() != Thread.currentThread()) {
+            return null;
+        }
+        
+        ReadArena arena = readArenas.get();
+        if (arena == null) {
+            arena = new ReadArena(arenaSize);
+            readArenas.set(arena);
+        }
+        
+        return arena;
+    }
+
+    /**
+     * @return <tt>true</tt>, if every address this <tt>TCPNIOTransport</tt>
+     *         binds to gets a SO_REUSEPORT listening socket per
+     *         {@link SelectorRunner}, or <tt>false</tt> (default) otherwise
+     * @since 2.4.3
+     */
+    public boolean isReusePortBinding() {
+        return reusePortBinding;
+    }
+
+    /**
+     * Enables or disables the SO_REUSEPORT binding mode.
+     * In this mode, the transport binds one SO_REUSEPORT listening socket
+     * per {@link SelectorRunner} to the same address, so the OS load-balances
+     * incoming connections between the sockets, and every accepted connection
+     * is registered on the {@link SelectorRunner}, which accepted it, without
+     * passing the channel to another thread.
+     * If the platform doesn't support SO_REUSEPORT, a single listening
+     * socket is bound as usual.
+     * The setting affects the addresses bound after the call.
+     * 
+     * @param reusePortBinding <tt>true</tt> to enable the SO_REUSEPORT
+     *        binding mode
+     * @since 2.4.3
+     */
+    public void setReusePortBinding(final boolean reusePortBinding) {
+        this.reusePortBinding = reusePortBinding;
+        notifyProbesConfigChanged(this);
+    }
+
+    /**
+     * @return the {@link SelectorRunner} with the given index, or <tt>null</tt>,
+     *         if the transport is not started
+     */
+    SelectorRunner getSelectorRunner(final int index) {
+        final SelectorRunner[] runners = getSelectorRunners();
+        return runners != null ? runners[index % runners.length] : null;
+    }
+
     /**
      * Get the default server connection backlog size.
      * @return the default server connection backlog size.
@@ -662,6 +770,7 @@ public final class TCPNIOTransport extends NIOTransport implements
 
                 final boolean hasWritten = (written >= 0);
 
+                connection.onWriteOperation();
                 connection.onWrite(buffer, written);
 
                 if (hasWritten) {
@@ -682,6 +791,7 @@ public final class TCPNIOTransport extends NIOTransport implements
         } else if (message instanceof FileTransfer) {
             written = (int) ((FileTransfer) message).writeTo((SocketChannel)
                                   connection.getChannel());
+            connection.onWriteOperation();
         } else {
             throw new IllegalStateException("Unhandled message type");
         }
@@ -56,6 +56,8 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
     protected int serverConnectionBackLog = TCPNIOTransport.DEFAULT_SERVER_CONNECTION_BACKLOG;
     protected int serverSocketSoTimeout = TCPNIOTransport.DEFAULT_SERVER_SOCKET_SO_TIMEOUT;
     protected boolean tcpNoDelay = TCPNIOTransport.DEFAULT_TCP_NO_DELAY;
+    protected int readArenaSize;
+    protected boolean reusePortBinding;
 
     // ------------------------------------------------------------ Constructors
 
@@ -157,6 +159,44 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
         return getThis();
     }
 
+    /**
+     * @see TCPNIOTransport#getReadArenaSize()
+     * @since 2.4.3
+     */
+    public int getReadArenaSize() {
+        return readArenaSize;
+    }
+
+    /**
+     * @see TCPNIOTransport#setReadArenaSize(int)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @since 2.4.3
+     */
+    public TCPNIOTransportBuilder setReadArenaSize(int readArenaSize) {
+        this.readArenaSize = readArenaSize;
+        return getThis();
+    }
+
+    /**
+     * @see TCPNIOTransport#isReusePortBinding()
+     * @since 2.4.3
+     */
+    public boolean isReusePortBinding() {
+        return reusePortBinding;
+    }
+
+    /**
+     * @see TCPNIOTransport#setReusePortBinding(boolean)
+     *
+     * @return this <code>TCPNIOTransportBuilder</code>
+     * @since 2.4.3
+     */
+    public TCPNIOTransportBuilder setReusePortBinding(boolean reusePortBinding) {
+        this.reusePortBinding = reusePortBinding;
+        return getThis();
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -168,6 +208,8 @@ public class TCPNIOTransportBuilder extends NIOTransportBuilder<TCPNIOTransportB
         transport.setServerConnectionBackLog(serverConnectionBackLog);
         transport.setTcpNoDelay(tcpNoDelay);
         transport.setServerSocketSoTimeout(serverSocketSoTimeout);
+        transport.setReadArenaSize(readArenaSize);
+        transport.setReusePortBinding(reusePortBinding);
         return transport;
     }
 
@@ -98,6 +98,11 @@ public final class TCPNIOTransportFilter extends BaseFilter {
         } else {
             buffer.trim();
             
+            if (buffer instanceof ReadArena.ArenaBuffer) {
+                // copy the data out of the read arena, if it's retained
+                ctx.addCompletionListener((ReadArena.ArenaBuffer) buffer);
+            }
+            
             ctx.setMessage(buffer);
             ctx.setAddressHolder(connection.peerSocketAddressHolder);
         }
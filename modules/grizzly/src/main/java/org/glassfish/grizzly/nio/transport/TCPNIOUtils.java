@@ -228,7 +228,20 @@ public class TCPNIOUtils {
                     Math.min(TCPNIOTransport.MAX_RECEIVE_BUFFER_SIZE,
                             connection.getReadBufferSize());
         
-            if (!memoryManager.willAllocateDirect(receiveBufferSize)) {
+            final ReadArena readArena = ((TCPNIOTransport) connection.getTransport())
+                    .getReadArena(connection);
+            final ByteBuffer arenaByteBuffer = readArena != null
+                    ? readArena.prepare(receiveBufferSize)
+                    : null;
+            
+            if (arenaByteBuffer != null) {
+                read = 0;
+                try {
+                    read = readSimpleByteBuffer(connection, arenaByteBuffer);
+                } finally {
+                    buffer = readArena.commit(read);
+                }
+            } else if (!memoryManager.willAllocateDirect(receiveBufferSize)) {
                 final DirectByteBufferRecord ioRecord = 
                         DirectByteBufferRecord.get();
                 final ByteBuffer directByteBuffer =
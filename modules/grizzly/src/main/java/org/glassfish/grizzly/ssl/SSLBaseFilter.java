@@ -48,8 +48,11 @@ import java.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Filter;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -130,6 +133,13 @@ public class SSLBaseFilter extends BaseFilter {
             Collections.newSetFromMap(new ConcurrentHashMap<>(2));
     
     private long handshakeTimeoutMillis = -1;
+
+    private volatile Executor handshakeExecutor;
+
+    protected final Set<HandshakeTaskListener> handshakeTaskListeners =
+            Collections.newSetFromMap(new ConcurrentHashMap<>(2));
+
+    private final AtomicInteger queuedHandshakeTasks = new AtomicInteger();
         
     private SSLTransportFilterWrapper optimizedTransportFilter;
     
@@ -233,6 +243,62 @@ public class SSLBaseFilter extends BaseFilter {
         }
     }
 
+    /**
+     * @return the {@link Executor} used to run {@link SSLEngine} delegated
+     * tasks, or <code>null</code> if the tasks are run in the thread, which
+     * processes the handshake (default).
+     *
+     * @since 2.4.3
+     */
+    public Executor getHandshakeExecutor() {
+        return handshakeExecutor;
+    }
+
+    /**
+     * Sets the {@link Executor} to run {@link SSLEngine} delegated tasks
+     * (certificate validation, key exchange computations etc.) during the
+     * non-blocking handshake. While the tasks are running the
+     * {@link FilterChainContext} is suspended, so the thread, which read the
+     * handshake data, is free to serve other connections. If the executor
+     * rejects the tasks - they are run in the current thread.
+     * The executor is not used in blocking handshake mode
+     * (see {@link #setHandshakeTimeout(long, TimeUnit)}).
+     *
+     * @param handshakeExecutor the {@link Executor}, or <code>null</code> to
+     * run the tasks in the thread, which processes the handshake.
+     *
+     * @since 2.4.3
+     */
+    public void setHandshakeExecutor(final Executor handshakeExecutor) {
+        this.handshakeExecutor = handshakeExecutor;
+    }
+
+    /**
+     * @return the number of {@link SSLEngine} delegated task batches, which
+     * were submitted to the handshake {@link Executor}, but haven't been
+     * completed yet.
+     *
+     * @since 2.4.3
+     */
+    public int getQueuedHandshakeTasksCount() {
+        return queuedHandshakeTasks.get();
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    public void addHandshakeTaskListener(final HandshakeTaskListener listener) {
+        handshakeTaskListeners.add(listener);
+    }
+
+    /**
+     * @since 2.4.3
+     */
+    @SuppressWarnings("unused")
+    public void removeHandshakeTaskListener(final HandshakeTaskListener listener) {
+        handshakeTaskListeners.remove(listener);
+    }
+
     /**
      * Completely disables renegotiation.
      *
@@ -334,6 +400,11 @@ public class SSLBaseFilter extends BaseFilter {
                                               doHandshakeStep(sslCtx,
                                                               ctx,
                                                               (Buffer) ctx.getMessage())));
+
+            if (sslEngine.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+                // delegated tasks were left for the handshake executor
+                return offloadDelegatedTasks(ctx, sslCtx, buffer);
+            }
         
             final boolean hasRemaining = buffer != null && buffer.hasRemaining();
             
@@ -705,6 +776,13 @@ public class SSLBaseFilter extends BaseFilter {
                         if (isLoggingFinest) {
                             LOGGER.log(Level.FINEST, "NEED_TASK Engine: {0}", sslEngine);
                         }
+                        if (handshakeExecutor != null && tmpAppBuffer0 == null
+                                && ctx.getInternalContext().getIoEvent() == IOEvent.READ) {
+                            // non-blocking handshake, let handleRead() pass
+                            // the tasks to the handshake executor
+                            break _exitWhile;
+                        }
+                        
                         executeDelegatedTask(sslEngine);
                         handshakeStatus = sslEngine.getHandshakeStatus();
                         break;
@@ -814,6 +892,46 @@ public class SSLBaseFilter extends BaseFilter {
         }
     }
 
+    /**
+     * Suspends the {@link FilterChainContext} and passes the
+     * {@link SSLEngine} delegated tasks to the handshake {@link Executor}.
+     * Once the tasks are completed, the handshake processing is resumed in
+     * the {@link Transport} worker (or kernel) thread pool.
+     */
+    private NextAction offloadDelegatedTasks(final FilterChainContext ctx,
+            final SSLConnectionContext sslCtx, final Buffer remainder) {
+        final Connection connection = ctx.getConnection();
+        
+        final NextAction suspendAction = ctx.getSuspendAction();
+        ctx.setMessage(remainder);
+        ctx.suspend();
+        
+        final DelegatedTasksRunnable tasksRunnable =
+                new DelegatedTasksRunnable(ctx, sslCtx.getSslEngine());
+        
+        final Executor executor = handshakeExecutor;
+        
+        queuedHandshakeTasks.incrementAndGet();
+        try {
+            if (executor == null) { // the executor has just been unset
+                throw new RejectedExecutionException();
+            }
+            
+            executor.execute(tasksRunnable);
+        } catch (RejectedExecutionException e) {
+            if (LOGGER.isLoggable(Level.FINE)) {
+                LOGGER.log(Level.FINE, "Handshake executor rejected delegated"
+                        + " tasks, running them in the current thread."
+                        + " Connection={0}", connection);
+            }
+            
+            notifyHandshakeTasksRejected(connection);
+            tasksRunnable.run();
+        }
+        
+        return suspendAction;
+    }
+
     private Buffer silentRehandshake(final FilterChainContext context,
             final SSLConnectionContext sslCtx) throws SSLException {
         try {
@@ -1032,6 +1150,24 @@ public class SSLBaseFilter extends BaseFilter {
         }
     }
     
+    protected void notifyHandshakeTasksExecuted(final Connection connection,
+            final long queueTimeNanos, final long executionTimeNanos) {
+        if (!handshakeTaskListeners.isEmpty()) {
+            for (final HandshakeTaskListener listener : handshakeTaskListeners) {
+                listener.onTasksExecuted(connection,
+                        queueTimeNanos, executionTimeNanos);
+            }
+        }
+    }
+
+    protected void notifyHandshakeTasksRejected(final Connection connection) {
+        if (!handshakeTaskListeners.isEmpty()) {
+            for (final HandshakeTaskListener listener : handshakeTaskListeners) {
+                listener.onTasksRejected(connection);
+            }
+        }
+    }
+    
     // ----------------------------------------------------------- Inner Classes
 
     public static class CertificateEvent implements FilterChainEvent {
@@ -1106,6 +1242,82 @@ public class SSLBaseFilter extends BaseFilter {
         void onFailure(Connection connection, Throwable t);
     }
     
+    /**
+     * Monitors {@link SSLEngine} delegated tasks passed to the handshake
+     * {@link Executor}.
+     *
+     * @see #setHandshakeExecutor(Executor)
+     * @since 2.4.3
+     */
+    public interface HandshakeTaskListener {
+        /**
+         * Called, when the delegated tasks of a handshake step are completed.
+         *
+         * @param connection the {@link Connection}
+         * @param queueTimeNanos the time the tasks spent waiting for an
+         *                       executor thread
+         * @param executionTimeNanos the time it took to run the tasks
+         */
+        void onTasksExecuted(Connection connection, long queueTimeNanos,
+                long executionTimeNanos);
+        
+        /**
+         * Called, when the handshake executor rejected the delegated tasks,
+         * so they are going to be run in the current thread.
+         *
+         * @param connection the {@link Connection}
+         */
+        void onTasksRejected(Connection connection);
+    }
+    
+    private final class DelegatedTasksRunnable implements Runnable {
+        private final FilterChainContext ctx;
+        private final SSLEngine sslEngine;
+        private final long queuedAt = System.nanoTime();
+
+        private DelegatedTasksRunnable(final FilterChainContext ctx,
+                final SSLEngine sslEngine) {
+            this.ctx = ctx;
+            this.sslEngine = sslEngine;
+        }
+
+        @Override
+        public void run() {
+            final long startedAt = System.nanoTime();
+            try {
+                executeDelegatedTask(sslEngine);
+            } catch (Throwable t) {
+                // SSLEngine will report the failure on the next handshake step
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "Delegated task failed", t);
+                }
+            } finally {
+                queuedHandshakeTasks.decrementAndGet();
+                notifyHandshakeTasksExecuted(ctx.getConnection(),
+                        startedAt - queuedAt, System.nanoTime() - startedAt);
+            }
+            
+            final Transport transport = ctx.getConnection().getTransport();
+            ExecutorService threadPool = transport.getWorkerThreadPool();
+            if (threadPool == null) {
+                threadPool = transport.getKernelThreadPool();
+            }
+            try {
+                threadPool.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        // re-run handleRead() to continue the handshake
+                        ctx.resume();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the suspended context has to be resumed anyway,
+                // so continue the handshake in the current thread
+                ctx.resume();
+            }
+        }
+    }
+    
     protected static class SSLTransportFilterWrapper extends TransportFilter {
         protected final TransportFilter wrappedFilter;
         protected final SSLBaseFilter sslBaseFilter;
@@ -0,0 +1,390 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.strategies;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.IOEventLifeCycleListener;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringAware;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+
+/**
+ * {@link org.glassfish.grizzly.IOStrategy}, which decides whether an
+ * {@link IOEvent} has to be processed in the current (selector) thread or in
+ * a worker thread basing on the measured processing time.
+ *
+ * The strategy tracks the moving average of the {@link IOEvent} processing
+ * time per {@link Connection} and, for {@link Connection}s without
+ * statistics yet, the moving average across all the {@link Connection}s.
+ * The events, which are processed faster than the configured threshold on
+ * average, are processed in the current thread like
+ * {@link SameThreadIOStrategy} does, the slower ones (and the events with
+ * unknown processing time) are passed to the worker thread pool like
+ * {@link WorkerThreadIOStrategy} does. The processing time is measured in
+ * both cases, so a {@link Connection} is able to move back and forth.
+ *
+ * Optionally, if the number of the tasks the strategy has passed to the
+ * worker thread pool, which haven't been started yet, reaches the configured
+ * limit, the events are processed in the current thread, which slows down
+ * the selector and pushes the load back to the peers.
+ *
+ * Unlike other strategies, an <tt>AdaptiveIOStrategy</tt> instance keeps
+ * the statistics, so it's not supposed to be shared among transports.
+ *
+ * @since 2.4.3
+ */
+public final class AdaptiveIOStrategy extends AbstractIOStrategy
+        implements MonitoringAware<AdaptiveIOStrategyProbe> {
+
+    private static final Logger logger = Grizzly.logger(AdaptiveIOStrategy.class);
+
+    /**
+     * The default processing time threshold (microseconds).
+     */
+    public static final long DEFAULT_LATENCY_THRESHOLD_MICROS = 50;
+    
+    /**
+     * The moving average weight of the new sample is 1/2^AVERAGE_WEIGHT_SHIFT.
+     */
+    private static final int AVERAGE_WEIGHT_SHIFT = 3;
+    
+    private static final Attribute<ProcessingStats> STATS_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+                    AdaptiveIOStrategy.class.getName() + ".stats");
+
+    private final long latencyThresholdNanos;
+    private final int maxQueuedTasks;
+    
+    /**
+     * The statistics across all the {@link Connection}s.
+     */
+    private final ProcessingStats globalStats = new ProcessingStats();
+    
+    /**
+     * The number of the tasks passed to the worker thread pool, which haven't
+     * been started yet.
+     */
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    
+    private final DefaultMonitoringConfig<AdaptiveIOStrategyProbe> monitoringConfig =
+            new DefaultMonitoringConfig<AdaptiveIOStrategyProbe>(
+                    AdaptiveIOStrategyProbe.class);
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Constructs <tt>AdaptiveIOStrategy</tt> with the default processing time
+     * threshold and no queued tasks limit.
+     */
+    public AdaptiveIOStrategy() {
+        this(DEFAULT_LATENCY_THRESHOLD_MICROS, TimeUnit.MICROSECONDS, -1);
+    }
+
+    /**
+     * Constructs <tt>AdaptiveIOStrategy</tt>.
+     * 
+     * @param latencyThreshold the average processing time, up to which
+     *        {@link IOEvent}s are processed in the current thread
+     * @param timeUnit the latency threshold {@link TimeUnit}
+     * @param maxQueuedTasks the number of the tasks, passed to the worker
+     *        thread pool and not started yet, starting from which the
+     *        {@link IOEvent}s are processed in the current thread regardless of
+     *        the processing time, <tt>-1</tt> means no limit
+     */
+    public AdaptiveIOStrategy(final long latencyThreshold,
+            final TimeUnit timeUnit, final int maxQueuedTasks) {
+        if (latencyThreshold < 0) {
+            throw new IllegalArgumentException("latencyThreshold can't be negative");
+        }
+        
+        this.latencyThresholdNanos = timeUnit.toNanos(latencyThreshold);
+        this.maxQueuedTasks = maxQueuedTasks;
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @param timeUnit the {@link TimeUnit} to convert the threshold to
+     * @return the average processing time, up to which {@link IOEvent}s are
+     *         processed in the current thread
+     */
+    public long getLatencyThreshold(final TimeUnit timeUnit) {
+        return timeUnit.convert(latencyThresholdNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the number of the tasks, passed to the worker thread pool and
+     *         not started yet, starting from which the {@link IOEvent}s are
+     *         processed in the current thread, <tt>-1</tt> means no limit
+     */
+    public int getMaxQueuedTasks() {
+        return maxQueuedTasks;
+    }
+
+    /**
+     * @return the number of the tasks, passed to the worker thread pool
+     *         by this strategy, which haven't been started yet
+     */
+    public int getQueuedTasks() {
+        return queuedTasks.get();
+    }
+
+    /**
+     * @param connection {@link Connection}
+     * @return the average {@link IOEvent} processing time (nanoseconds) of the
+     *         {@link Connection}, or <tt>-1</tt> if it's not known yet
+     */
+    public long getAverageProcessingTime(final Connection connection) {
+        final ProcessingStats stats = STATS_ATTR.get(connection);
+        return stats != null ? stats.average : -1;
+    }
+
+    /**
+     * @return the average {@link IOEvent} processing time (nanoseconds) across
+     *         all the {@link Connection}s, or <tt>-1</tt> if it's not known yet
+     */
+    public long getAverageProcessingTime() {
+        return globalStats.average;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public MonitoringConfig<AdaptiveIOStrategyProbe> getMonitoringConfig() {
+        return monitoringConfig;
+    }
+
+
+    // ------------------------------------------------- Methods from IOStrategy
+
+
+    @Override
+    public boolean executeIoEvent(final Connection connection,
+            final IOEvent ioEvent, final boolean isIoEventEnabled)
+            throws IOException {
+
+        final Executor threadPool = super.getThreadPoolFor(connection, ioEvent);
+        if (threadPool == null) {
+            // the event is not supposed to be processed in a worker thread
+            return SameThreadIOStrategy.getInstance().executeIoEvent(
+                    connection, ioEvent, isIoEventEnabled);
+        }
+        
+        final ProcessingStats stats = obtainStats(connection);
+        final long average = stats.average != -1
+                ? stats.average
+                : globalStats.average;
+        
+        if (isSameThread(average)) {
+            notifySameThread(connection, ioEvent, average);
+            
+            final long start = System.nanoTime();
+            try {
+                return SameThreadIOStrategy.getInstance().executeIoEvent(
+                        connection, ioEvent, isIoEventEnabled);
+            } finally {
+                onProcessed(connection, ioEvent, stats,
+                        System.nanoTime() - start);
+            }
+        }
+        
+        notifyWorkerThread(connection, ioEvent, average);
+        
+        final IOEventLifeCycleListener listener;
+        if (isReadWrite(ioEvent)) {
+            if (isIoEventEnabled) {
+                connection.disableIOEvent(ioEvent);
+            }
+            
+            listener = ENABLE_INTEREST_LIFECYCLE_LISTENER;
+        } else {
+            listener = null;
+        }
+        
+        queuedTasks.incrementAndGet();
+        try {
+            threadPool.execute(new AdaptiveRunnable(connection, ioEvent,
+                    listener, stats));
+        } catch (RuntimeException e) {
+            queuedTasks.decrementAndGet();
+            throw e;
+        }
+        
+        return true;
+    }
+
+    @Override
+    public Executor getThreadPoolFor(final Connection connection,
+            final IOEvent ioEvent) {
+        final Executor threadPool = super.getThreadPoolFor(connection, ioEvent);
+        if (threadPool == null) {
+            return null;
+        }
+        
+        final ProcessingStats stats = STATS_ATTR.get(connection);
+        final long average = stats != null && stats.average != -1
+                ? stats.average
+                : globalStats.average;
+        
+        return isSameThread(average) ? null : threadPool;
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    private boolean isSameThread(final long average) {
+        if (maxQueuedTasks >= 0 && queuedTasks.get() >= maxQueuedTasks) {
+            return true;
+        }
+        
+        return average != -1 && average <= latencyThresholdNanos;
+    }
+    
+    private static ProcessingStats obtainStats(final Connection connection) {
+        ProcessingStats stats = STATS_ATTR.get(connection);
+        if (stats == null) {
+            stats = new ProcessingStats();
+            STATS_ATTR.set(connection, stats);
+        }
+        
+        return stats;
+    }
+    
+    private void onProcessed(final Connection connection, final IOEvent ioEvent,
+            final ProcessingStats stats, final long processingNanos) {
+        stats.update(processingNanos);
+        globalStats.update(processingNanos);
+        
+        final AdaptiveIOStrategyProbe[] probes =
+                monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (AdaptiveIOStrategyProbe probe : probes) {
+                probe.onProcessingTimeEvent(this, connection, ioEvent,
+                        processingNanos);
+            }
+        }
+    }
+    
+    private void notifySameThread(final Connection connection,
+            final IOEvent ioEvent, final long average) {
+        final AdaptiveIOStrategyProbe[] probes =
+                monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (AdaptiveIOStrategyProbe probe : probes) {
+                probe.onSameThreadEvent(this, connection, ioEvent, average);
+            }
+        }
+    }
+
+    private void notifyWorkerThread(final Connection connection,
+            final IOEvent ioEvent, final long average) {
+        final AdaptiveIOStrategyProbe[] probes =
+                monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (AdaptiveIOStrategyProbe probe : probes) {
+                probe.onWorkerThreadEvent(this, connection, ioEvent, average);
+            }
+        }
+    }
+    
+    
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * The moving average of the {@link IOEvent} processing time.
+     * The updates are not synchronized, the lost samples don't matter much
+     * for the statistics.
+     */
+    private static final class ProcessingStats {
+        volatile long average = -1;
+        
+        void update(final long sample) {
+            final long current = average;
+            average = current == -1
+                    ? sample
+                    : current + ((sample - current) >> AVERAGE_WEIGHT_SHIFT);
+        }
+    }
+    
+    private final class AdaptiveRunnable implements Runnable {
+        final Connection connection;
+        final IOEvent ioEvent;
+        final IOEventLifeCycleListener lifeCycleListener;
+        final ProcessingStats stats;
+
+        private AdaptiveRunnable(final Connection connection,
+                final IOEvent ioEvent,
+                final IOEventLifeCycleListener lifeCycleListener,
+                final ProcessingStats stats) {
+            this.connection = connection;
+            this.ioEvent = ioEvent;
+            this.lifeCycleListener = lifeCycleListener;
+            this.stats = stats;
+        }
+
+        @Override
+        public void run() {
+            queuedTasks.decrementAndGet();
+            
+            final long start = System.nanoTime();
+            try {
+                fireIOEvent(connection, ioEvent, lifeCycleListener, logger);
+            } finally {
+                onProcessed(connection, ioEvent, stats,
+                        System.nanoTime() - start);
+            }
+        }
+    }
+}
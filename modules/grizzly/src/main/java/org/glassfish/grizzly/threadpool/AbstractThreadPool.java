@@ -201,7 +201,7 @@ public abstract class AbstractThreadPool extends AbstractExecutorService
     /**
      * @return the number of allocated threads in the thread pool
      */
-    public final int getSize() {
+    public int getSize() {
         synchronized (stateLock) {
             return workers.size();
         }
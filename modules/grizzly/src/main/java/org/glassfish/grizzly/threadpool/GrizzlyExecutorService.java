@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.threadpool;
 
+import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.memory.MemoryManager;
 
 import java.util.List;
@@ -47,6 +48,8 @@ import java.util.Queue;
 import java.util.concurrent.AbstractExecutorService;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import org.glassfish.grizzly.monitoring.MonitoringAware;
 import org.glassfish.grizzly.monitoring.MonitoringConfig;
 
@@ -57,6 +60,8 @@ import org.glassfish.grizzly.monitoring.MonitoringConfig;
 public class GrizzlyExecutorService extends AbstractExecutorService
         implements MonitoringAware<ThreadPoolProbe> {
 
+    private static final Logger LOGGER = Grizzly.logger(GrizzlyExecutorService.class);
+
     private final Object statelock = new Object();
     private volatile AbstractThreadPool pool;
     protected volatile ThreadPoolConfig config;
@@ -93,6 +98,23 @@ public class GrizzlyExecutorService extends AbstractExecutorService
             cfg.setMemoryManager(MemoryManager.DEFAULT_MEMORY_MANAGER);
         }
         
+        if (cfg.isVirtualThreads()) {
+            if (VirtualThreadPool.isSupported()) {
+                this.pool = new VirtualThreadPool(cfg);
+                this.config = cfg;
+                return;
+            }
+            
+            LOGGER.log(Level.WARNING, "Virtual threads are not supported by "
+                    + "the JDK, the platform thread pool will be used");
+        }
+        
+        if (cfg.isWorkStealing()) {
+            this.pool = new WorkStealingThreadPool(cfg);
+            this.config = cfg;
+            return;
+        }
+        
         final Queue<Runnable> queue = cfg.getQueue();
         if ((queue == null || queue instanceof BlockingQueue) &&
                 (cfg.getCorePoolSize() < 0 || cfg.getCorePoolSize() == cfg.getMaxPoolSize())) {
@@ -97,6 +97,8 @@ public final class ThreadPoolConfig {
     protected DelayedExecutor transactionMonitor;
     protected long transactionTimeoutMillis;
     protected ClassLoader initialClassLoader;
+    protected boolean virtualThreads;
+    protected boolean workStealing;
 
     /**
      * Thread pool probes
@@ -155,6 +157,8 @@ public final class ThreadPoolConfig {
         this.keepAliveTimeMillis   = cfg.keepAliveTimeMillis;
         this.mm              = cfg.mm;
         this.initialClassLoader = cfg.initialClassLoader;
+        this.virtualThreads = cfg.virtualThreads;
+        this.workStealing = cfg.workStealing;
         
         this.threadPoolMonitoringConfig =
                 new DefaultMonitoringConfig<ThreadPoolProbe>(ThreadPoolProbe.class);
@@ -420,6 +424,67 @@ public final class ThreadPoolConfig {
         return this;
     }
 
+    /**
+     * @return <tt>true</tt>, if the thread pool is going to run each task in
+     *  a new virtual thread, or <tt>false</tt> otherwise
+     *
+     * @since 2.4.3
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads;
+    }
+
+    /**
+     * Specifies whether the thread pool has to run each task in a new virtual
+     * thread instead of the pooled platform threads.
+     * Virtual threads are available starting from JDK 21, on earlier JDKs
+     * the option is ignored.
+     * For the virtual thread based pool the pool size, queue and thread factory
+     * settings don't apply.
+     *
+     * @param virtualThreads <tt>true</tt> to run tasks in virtual threads
+     *
+     * @return the {@link ThreadPoolConfig}
+     *
+     * @since 2.4.3
+     */
+    public ThreadPoolConfig setVirtualThreads(final boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
+        return this;
+    }
+
+    /**
+     * @return <tt>true</tt>, if the thread pool is going to use per-thread
+     *  task queues and work stealing, or <tt>false</tt> otherwise
+     *
+     * @since 2.4.3
+     */
+    public boolean isWorkStealing() {
+        return workStealing;
+    }
+
+    /**
+     * Specifies whether the thread pool has to use per-thread task queues and
+     * work stealing instead of the single shared task queue.
+     * The tasks, submitted by the same thread (for example a
+     * {@link org.glassfish.grizzly.nio.SelectorRunner}) are preferably
+     * processed by the same pool thread, the idle threads steal the tasks
+     * from the busy ones.
+     * The work stealing thread pool has fixed size of {@link #getCorePoolSize()}
+     * threads (or {@link #getMaxPoolSize()}, if the core pool size is not set),
+     * the queue setting doesn't apply.
+     *
+     * @param workStealing <tt>true</tt> to use the work stealing thread pool
+     *
+     * @return the {@link ThreadPoolConfig}
+     *
+     * @since 2.4.3
+     */
+    public ThreadPoolConfig setWorkStealing(final boolean workStealing) {
+        this.workStealing = workStealing;
+        return this;
+    }
+
     @Override
     public String toString() {
         return ThreadPoolConfig.class.getSimpleName() + " :\r\n"
@@ -434,6 +499,8 @@ public final class ThreadPoolConfig {
                 + "  transactionTimeoutMillis: " + transactionTimeoutMillis + "\r\n"
                 + "  priority: " + priority + "\r\n"
                 + "  isDaemon: " + isDaemon + "\r\n"
-                + "  initialClassLoader: " + initialClassLoader;
+                + "  initialClassLoader: " + initialClassLoader + "\r\n"
+                + "  virtualThreads: " + virtualThreads + "\r\n"
+                + "  workStealing: " + workStealing;
     }
 }
@@ -0,0 +1,251 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.threadpool;
+
+import java.lang.reflect.Method;
+import java.util.AbstractQueue;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Thread pool, which runs each task in a new virtual thread.
+ * Virtual threads are looked up reflectively, so the class could be loaded
+ * on any JDK, but {@link #isSupported()} returns <tt>true</tt> only
+ * starting from JDK 21.
+ * 
+ * The pool doesn't have a task queue: the tasks offered to the
+ * {@link #getQueue()} (for example, when {@link GrizzlyExecutorService}
+ * is reconfigured) are executed right away.
+ * 
+ * The tasks are submitted without taking the pool's state lock, the running
+ * virtual threads are tracked in a concurrent set instead of
+ * {@link #workers}.
+ */
+final class VirtualThreadPool extends AbstractThreadPool {
+    
+    private static final Method OF_VIRTUAL_METHOD;
+    private static final Method NAME_METHOD;
+    private static final Method FACTORY_METHOD;
+    
+    static {
+        Method ofVirtualMethod;
+        Method nameMethod;
+        Method factoryMethod;
+        
+        try {
+            ofVirtualMethod = Thread.class.getMethod("ofVirtual");
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            nameMethod = builderClass.getMethod("name", String.class, long.class);
+            factoryMethod = builderClass.getMethod("factory");
+            
+            // fails on JDKs, where virtual threads are a preview feature
+            ofVirtualMethod.invoke(null);
+        } catch (Throwable t) {
+            ofVirtualMethod = null;
+            nameMethod = null;
+            factoryMethod = null;
+        }
+        
+        OF_VIRTUAL_METHOD = ofVirtualMethod;
+        NAME_METHOD = nameMethod;
+        FACTORY_METHOD = factoryMethod;
+    }
+    
+    private final ExecutingQueue queue = new ExecutingQueue();
+    
+    private final Set<Worker> activeWorkers = Collections.newSetFromMap(
+            new ConcurrentHashMap<Worker, Boolean>());
+    
+    /**
+     * @return <tt>true</tt> if the JDK supports virtual threads, or
+     *         <tt>false</tt> otherwise
+     */
+    static boolean isSupported() {
+        return OF_VIRTUAL_METHOD != null;
+    }
+    
+    VirtualThreadPool(final ThreadPoolConfig config) {
+        // don't leak the virtual thread factory to the caller's config,
+        // it might be reused to create a platform thread pool
+        super(config.copy().setThreadFactory(
+                createVirtualThreadFactory(config.getPoolName())));
+        
+        ProbeNotifier.notifyThreadPoolStarted(this);
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (running) {
+            final TaskWorker worker = new TaskWorker(command);
+            worker.t = config.getThreadFactory().newThread(worker);
+            activeWorkers.add(worker);
+            
+            // doublecheck the pool is still running
+            if (!running && activeWorkers.remove(worker)) {
+                notifyIfTerminated();
+                throw new RejectedExecutionException("ThreadPool is not running");
+            }
+            
+            onTaskQueued(command);
+            worker.t.start();
+            return;
+        }
+        
+        throw new RejectedExecutionException("ThreadPool is not running");
+    }
+
+    @Override
+    public int getSize() {
+        return activeWorkers.size();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        final List<Runnable> drained = super.shutdownNow();
+        for (Worker w : activeWorkers) {
+            w.t.interrupt();
+        }
+        
+        return drained;
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return !running && activeWorkers.isEmpty();
+    }
+
+    @Override
+    public Queue<Runnable> getQueue() {
+        return queue;
+    }
+
+    @Override
+    protected void poisonAll() {
+        // there are no idle threads waiting for tasks
+    }
+
+    @Override
+    protected void onWorkerExit(final Worker worker) {
+        activeWorkers.remove(worker);
+        if (delayedQueue != null) {
+            delayedQueue.remove(worker);
+        }
+        
+        notifyIfTerminated();
+        ProbeNotifier.notifyThreadReleased(this, worker.t);
+    }
+
+    private void notifyIfTerminated() {
+        if (isTerminated()) {
+            // notify awaitTermination threads
+            synchronized (stateLock) {
+                stateLock.notifyAll();
+            }
+        }
+    }
+
+    private static ThreadFactory createVirtualThreadFactory(final String poolName) {
+        if (!isSupported()) {
+            throw new IllegalStateException("Virtual threads are not supported");
+        }
+        
+        try {
+            final Object builder = NAME_METHOD.invoke(
+                    OF_VIRTUAL_METHOD.invoke(null), poolName + "-virtual-", 1L);
+            return (ThreadFactory) FACTORY_METHOD.invoke(builder);
+        } catch (Exception e) {
+            throw new IllegalStateException("Can not create virtual thread factory", e);
+        }
+    }
+    
+    private final class TaskWorker extends Worker {
+        private Runnable task;
+
+        private TaskWorker(final Runnable task) {
+            this.task = task;
+        }
+        
+        @Override
+        protected Runnable getTask() {
+            final Runnable r = task;
+            task = null;
+            return r;
+        }
+    }
+    
+    /**
+     * The {@link Queue}, which executes the offered tasks.
+     */
+    private final class ExecutingQueue extends AbstractQueue<Runnable> {
+
+        @Override
+        public boolean offer(final Runnable task) {
+            execute(task);
+            return true;
+        }
+
+        @Override
+        public Runnable poll() {
+            return null;
+        }
+
+        @Override
+        public Runnable peek() {
+            return null;
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            return Collections.<Runnable>emptyList().iterator();
+        }
+
+        @Override
+        public int size() {
+            return 0;
+        }
+    }
+}
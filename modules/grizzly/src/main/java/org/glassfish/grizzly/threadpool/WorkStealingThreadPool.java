@@ -0,0 +1,322 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.threadpool;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed size thread pool, where each worker has its own task deque.
+ * The pool size is the configured core pool size, or max pool size, if the
+ * core pool size is not set.
+ * 
+ * A task is added to the deque of the submitting thread's "home" worker,
+ * which is assigned to the submitting thread on its first submission, so
+ * the tasks coming from the same thread (for example a
+ * {@link org.glassfish.grizzly.nio.SelectorRunner}) are preferably processed
+ * by the same worker. A worker polls its own deque first and, if it's empty,
+ * steals tasks from the tail of the other workers' deques, so the load is
+ * still balanced.
+ */
+final class WorkStealingThreadPool extends AbstractThreadPool {
+    
+    private static final long MAX_PARK_NANOS = TimeUnit.SECONDS.toNanos(1);
+    
+    private final StealingWorker[] stealingWorkers;
+    private final int queueLimit;
+    /**
+     * The number of tasks in all the deques.
+     */
+    private final AtomicInteger queuedTasks = new AtomicInteger();
+    private final AtomicInteger idleWorkers = new AtomicInteger();
+    private final AtomicInteger homeCounter = new AtomicInteger();
+    private final ThreadLocal<StealingWorker> homeWorker =
+            new ThreadLocal<StealingWorker>();
+    private final DequesView queue = new DequesView();
+    
+    WorkStealingThreadPool(final ThreadPoolConfig config) {
+        super(config);
+        
+        queueLimit = config.getQueueLimit();
+        stealingWorkers = new StealingWorker[config.getCorePoolSize() > 0
+                ? config.getCorePoolSize()
+                : config.getMaxPoolSize()];
+        
+        synchronized (stateLock) {
+            for (int i = 0; i < stealingWorkers.length; i++) {
+                stealingWorkers[i] = new StealingWorker(i);
+                startWorker(stealingWorkers[i]);
+            }
+        }
+        
+        ProbeNotifier.notifyThreadPoolStarted(this);
+        super.onMaxNumberOfThreadsReached();
+    }
+
+    @Override
+    public void execute(final Runnable command) {
+        if (command == null) { // must nullcheck to ensure queuesize is valid
+            throw new IllegalArgumentException("Runnable task is null");
+        }
+        
+        if (!running) {
+            throw new RejectedExecutionException("ThreadPool is not running");
+        }
+        
+        if (queueLimit >= 0 && queuedTasks.get() >= queueLimit) {
+            onTaskQueueOverflow();
+        }
+        
+        push(getHomeWorker(), command);
+        
+        // doublecheck the pool is still running
+        if (!running && remove(command)) {
+            throw new RejectedExecutionException("ThreadPool is not running");
+        }
+        
+        onTaskQueued(command);
+    }
+
+    /**
+     * @return the view of all the worker deques
+     */
+    @Override
+    public Queue<Runnable> getQueue() {
+        return queue;
+    }
+    
+    private StealingWorker getHomeWorker() {
+        StealingWorker worker = homeWorker.get();
+        if (worker == null) {
+            worker = stealingWorkers[(homeCounter.getAndIncrement() & 0x7fffffff)
+                    % stealingWorkers.length];
+            homeWorker.set(worker);
+        }
+        
+        return worker;
+    }
+    
+    private void push(final StealingWorker worker, final Runnable task) {
+        queuedTasks.incrementAndGet();
+        worker.deque.offer(task);
+        
+        // wake up the home worker, if it's idle, or any idle worker,
+        // which will steal the task
+        if (!worker.wakeUp() && idleWorkers.get() > 0) {
+            final int length = stealingWorkers.length;
+            for (int i = 1; i < length; i++) {
+                if (stealingWorkers[(worker.index + i) % length].wakeUp()) {
+                    break;
+                }
+            }
+        }
+    }
+    
+    private Runnable steal(final StealingWorker thief) {
+        final int length = stealingWorkers.length;
+        for (int i = 1; i < length; i++) {
+            final Runnable task =
+                    stealingWorkers[(thief.index + i) % length].deque.pollLast();
+            if (task != null) {
+                queuedTasks.decrementAndGet();
+                return task;
+            }
+        }
+        
+        return null;
+    }
+
+    private Runnable pollAny() {
+        for (StealingWorker worker : stealingWorkers) {
+            final Runnable task = worker.deque.poll();
+            if (task != null) {
+                queuedTasks.decrementAndGet();
+                return task;
+            }
+        }
+        
+        return null;
+    }
+    
+    private boolean remove(final Runnable task) {
+        for (StealingWorker worker : stealingWorkers) {
+            if (worker.deque.remove(task)) {
+                queuedTasks.decrementAndGet();
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private final class StealingWorker extends Worker {
+        private final int index;
+        private final ConcurrentLinkedDeque<Runnable> deque =
+                new ConcurrentLinkedDeque<Runnable>();
+        private final AtomicBoolean isIdle = new AtomicBoolean();
+
+        private StealingWorker(final int index) {
+            this.index = index;
+        }
+        
+        @Override
+        protected Runnable getTask() throws InterruptedException {
+            while (true) {
+                Runnable task = poll();
+                if (task != null) {
+                    return task;
+                }
+                
+                // announce the worker is idle and recheck the deques, so
+                // the task added concurrently is not missed
+                isIdle.set(true);
+                idleWorkers.incrementAndGet();
+                
+                task = poll();
+                if (task != null) {
+                    if (isIdle.compareAndSet(true, false)) {
+                        idleWorkers.decrementAndGet();
+                    }
+                    
+                    return task;
+                }
+                
+                LockSupport.parkNanos(this, MAX_PARK_NANOS);
+                
+                if (isIdle.compareAndSet(true, false)) {
+                    idleWorkers.decrementAndGet();
+                }
+                
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+        }
+        
+        private Runnable poll() {
+            final Runnable task = deque.poll();
+            if (task != null) {
+                queuedTasks.decrementAndGet();
+                return task;
+            }
+            
+            return steal(this);
+        }
+        
+        /**
+         * Wakes up the worker, if it's idle.
+         * 
+         * @return <tt>true</tt> if the worker has been idle, or <tt>false</tt>
+         *         otherwise
+         */
+        private boolean wakeUp() {
+            if (isIdle.get() && isIdle.compareAndSet(true, false)) {
+                idleWorkers.decrementAndGet();
+                LockSupport.unpark(t);
+                return true;
+            }
+            
+            return false;
+        }
+    }
+    
+    /**
+     * The {@link Queue} view of all the worker deques.
+     */
+    private final class DequesView extends AbstractQueue<Runnable> {
+
+        @Override
+        public boolean offer(final Runnable task) {
+            final StealingWorker worker = stealingWorkers[
+                    (homeCounter.getAndIncrement() & 0x7fffffff)
+                    % stealingWorkers.length];
+            push(worker, task);
+            return true;
+        }
+
+        @Override
+        public Runnable poll() {
+            return pollAny();
+        }
+
+        @Override
+        public Runnable peek() {
+            for (StealingWorker worker : stealingWorkers) {
+                final Runnable task = worker.deque.peek();
+                if (task != null) {
+                    return task;
+                }
+            }
+            
+            return null;
+        }
+
+        @Override
+        public boolean remove(final Object o) {
+            return o instanceof Runnable
+                    && WorkStealingThreadPool.this.remove((Runnable) o);
+        }
+
+        @Override
+        public Iterator<Runnable> iterator() {
+            final List<Runnable> tasks = new ArrayList<Runnable>();
+            for (StealingWorker worker : stealingWorkers) {
+                tasks.addAll(worker.deque);
+            }
+            
+            return tasks.iterator();
+        }
+
+        @Override
+        public int size() {
+            return Math.max(queuedTasks.get(), 0);
+        }
+    }
+}
@@ -40,7 +40,6 @@
 
 package org.glassfish.grizzly.utils;
 
-import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -49,12 +48,40 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 /**
- * 
+ * Executes {@link Worker}s once the timeout of the element, registered on a
+ * {@link DelayQueue}, expires.
+ * <p>
+ * Timeouts are tracked using a hierarchical hashed timing wheel, so adding,
+ * re-adding and removing an element is O(1), and the executor thread only
+ * touches the elements, whose timeouts are about to expire, instead of
+ * scanning all the registered elements every check interval.
+ * The wheel advances with a tick of {@link #getTickMillis()} (the check
+ * interval, but not more than 100 ms), which is the timeout precision.
+ * <p>
+ * The {@link Resolver} remains the source of truth for an element's timeout:
+ * when the element's time comes its timeout is re-read and, if it has been
+ * moved further by the resolver directly, the element is rescheduled.
+ * Timeouts, which are too far in the future to be tracked by the wheel
+ * (like {@link Long#MAX_VALUE}, typically used to mark an element as "in use"),
+ * are re-read every check interval, so they may be changed directly via
+ * {@link Resolver#setTimeoutMillis(Object, long)} to any value. A finite
+ * timeout may only be moved earlier by re-adding the element to the
+ * {@link DelayQueue}.
+ *
  * @author Alexey Stashok
  */
 public class DelayedExecutor {
     public final static long UNSET_TIMEOUT = -1;
-    
+
+    private static final long MAX_TICK_MILLIS = 100;
+
+    // wheel geometry: 4 levels of 256 slots each, covering 2^32 ticks
+    private static final int LEVEL_BITS = 8;
+    private static final int LEVELS = 4;
+    private static final int SLOTS = 1 << LEVEL_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final long MAX_DELTA_TICKS = 1L << (LEVEL_BITS * LEVELS);
+
     private final ExecutorService threadPool;
 
     private final DelayedRunnable runnable = new DelayedRunnable();
@@ -62,11 +89,23 @@ public class DelayedExecutor {
     private final Queue<DelayQueue> queues =
              new ConcurrentLinkedQueue<DelayQueue>();
 
+    // entries added or cancelled by user threads, to be applied to the wheel
+    // by the executor thread, which is the only one touching the wheel
+    private final Queue<Entry> pendingEntries =
+            new ConcurrentLinkedQueue<Entry>();
+    private final Queue<Entry> cancelledEntries =
+            new ConcurrentLinkedQueue<Entry>();
+
+    private final Entry[][] wheel = new Entry[LEVELS][SLOTS];
+    private final long originMillis = System.currentTimeMillis();
+    private long currentTick;
+
     private final Object sync = new Object();
 
     private volatile boolean isStarted;
 
     private final long checkIntervalMillis;
+    private final long tickMillis;
 
     public DelayedExecutor(final ExecutorService threadPool) {
         this(threadPool, 1000, TimeUnit.MILLISECONDS);
@@ -80,6 +119,7 @@ public class DelayedExecutor {
         
         this.threadPool = threadPool;
         this.checkIntervalMillis = TimeUnit.MILLISECONDS.convert(checkInterval, timeunit);
+        this.tickMillis = Math.max(1, Math.min(checkIntervalMillis, MAX_TICK_MILLIS));
     }
 
     public void start() {
@@ -103,6 +143,9 @@ public class DelayedExecutor {
     public void destroy() {
         stop();
         synchronized(sync) {
+            for (DelayQueue queue : queues) {
+                queue.isDestroyed = true;
+            }
             queues.clear();
         }
     }
@@ -112,6 +155,15 @@ public class DelayedExecutor {
         return threadPool;
     }
 
+    /**
+     * @return the timing wheel tick duration in milliseconds, which is
+     *          the precision timeouts are tracked with.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
     public <E> DelayQueue<E> createDelayQueue(final Worker<E> worker,
             final Resolver<E> resolver) {
         
@@ -126,51 +178,179 @@ public class DelayedExecutor {
         return l1 != l2;
     }
 
+    // ------------------------------------------- Timing wheel (executor thread)
+
+
+    private void advance(final long currentTimeMillis) {
+        Entry e;
+        while ((e = cancelledEntries.poll()) != null) {
+            if (e.level != -1) {
+                unlink(e);
+            }
+        }
+
+        while ((e = pendingEntries.poll()) != null) {
+            if (!e.isCancelled) {
+                schedule(e, currentTimeMillis, false);
+            }
+        }
+
+        final long nowTick = (currentTimeMillis - originMillis) / tickMillis;
+        while (currentTick <= nowTick) {
+            processTick(currentTimeMillis);
+        }
+    }
+
+    private void processTick(final long currentTimeMillis) {
+        final long tick = currentTick;
+
+        // cascade the higher level slots, whose time has come, down the wheel
+        for (int level = 1; level < LEVELS; level++) {
+            if ((tick & ((1L << (LEVEL_BITS * level)) - 1)) != 0) {
+                break;
+            }
+
+            Entry e = detach(level,
+                    (int) ((tick >>> (LEVEL_BITS * level)) & SLOT_MASK));
+            while (e != null) {
+                final Entry next = e.next;
+                insert(e);
+                e = next;
+            }
+        }
+
+        Entry e = detach(0, (int) (tick & SLOT_MASK));
+        currentTick = tick + 1;
+
+        while (e != null) {
+            final Entry next = e.next;
+            fire(e, currentTimeMillis);
+            e = next;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void fire(final Entry e, final long currentTimeMillis) {
+        final DelayQueue delayQueue = e.delayQueue;
+        if (e.isCancelled || delayQueue.isDestroyed) {
+            return;
+        }
+
+        final Object element = e.element;
+        final Resolver resolver = delayQueue.resolver;
+        final long timeoutMillis = resolver.getTimeoutMillis(element);
+
+        if (timeoutMillis == UNSET_TIMEOUT) {
+            delayQueue.queue.remove(element, e);
+        } else if (wasModified(timeoutMillis, e.timeoutMillis)
+                || currentTimeMillis - timeoutMillis < 0) {
+            schedule(e, currentTimeMillis, false);
+        } else {
+            boolean isDone = true;
+            try {
+                isDone = delayQueue.worker.doWork(element);
+            } catch (Exception ignored) {
+            }
+
+            if (isDone) {
+                delayQueue.queue.remove(element, e);
+            } else {
+                schedule(e, currentTimeMillis, true);
+            }
+        }
+    }
+
+    /**
+     * (Re)schedules the entry according to the element's current timeout.
+     * If the timeout is too far in the future to be tracked, or the worker
+     * asked to retry an expired element, the entry is checked again
+     * in a check interval.
+     */
+    @SuppressWarnings("unchecked")
+    private void schedule(final Entry e, final long currentTimeMillis,
+            final boolean isRetry) {
+        final DelayQueue delayQueue = e.delayQueue;
+        final long timeoutMillis =
+                delayQueue.resolver.getTimeoutMillis(e.element);
+
+        if (timeoutMillis == UNSET_TIMEOUT) {
+            delayQueue.queue.remove(e.element, e);
+            return;
+        }
+
+        final long checkAtMillis;
+        if ((isRetry && !wasModified(timeoutMillis, e.timeoutMillis))
+                || timeoutMillis - currentTimeMillis >= MAX_DELTA_TICKS * tickMillis) {
+            checkAtMillis = currentTimeMillis + checkIntervalMillis;
+        } else {
+            checkAtMillis = timeoutMillis;
+        }
+
+        e.timeoutMillis = timeoutMillis;
+        // round up, so the entry never fires before its time
+        final long millisFromOrigin = checkAtMillis - originMillis;
+        e.tick = millisFromOrigin <= 0
+                ? 0
+                : (millisFromOrigin + tickMillis - 1) / tickMillis;
+        insert(e);
+    }
+
+    private void insert(final Entry e) {
+        final long tick = Math.max(e.tick, currentTick);
+        final long delta = tick - currentTick;
+
+        int level = 0;
+        while (level < LEVELS - 1
+                && delta >= (1L << (LEVEL_BITS * (level + 1)))) {
+            level++;
+        }
+
+        final int slot = (int) ((tick >>> (LEVEL_BITS * level)) & SLOT_MASK);
+        final Entry head = wheel[level][slot];
+        e.level = level;
+        e.slot = slot;
+        e.prev = null;
+        e.next = head;
+        if (head != null) {
+            head.prev = e;
+        }
+        wheel[level][slot] = e;
+    }
+
+    private void unlink(final Entry e) {
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            wheel[e.level][e.slot] = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        }
+        e.prev = e.next = null;
+        e.level = -1;
+    }
+
+    private Entry detach(final int level, final int slot) {
+        final Entry head = wheel[level][slot];
+        wheel[level][slot] = null;
+        for (Entry e = head; e != null; e = e.next) {
+            e.level = -1;
+        }
+        return head;
+    }
+
     private class DelayedRunnable implements Runnable {
 
-        @SuppressWarnings("unchecked")
         @Override
         public void run() {
             while(isStarted) {
-                final long currentTimeMillis = System.currentTimeMillis();
-                
-                for (final DelayQueue delayQueue : queues) {
-                    if (delayQueue.queue.isEmpty()) continue;
-                    
-                    final Resolver resolver = delayQueue.resolver;
-
-                    for (Iterator it = delayQueue.queue.keySet().iterator(); it.hasNext(); ) {
-                        final Object element = it.next();
-                        final long timeoutMillis = resolver.getTimeoutMillis(element);
-                        
-                        if (timeoutMillis == UNSET_TIMEOUT) {
-                            it.remove();
-                            if (wasModified(timeoutMillis,
-                                    resolver.getTimeoutMillis(element))) {                                
-                                delayQueue.queue.put(element, delayQueue);
-                            }
-                        } else if (currentTimeMillis - timeoutMillis >= 0) {
-                            it.remove();
-                            if (wasModified(timeoutMillis,
-                                    resolver.getTimeoutMillis(element))) {
-                                delayQueue.queue.put(element, delayQueue);
-                            } else {
-                                try {
-                                    if (!delayQueue.worker.doWork(element)) {
-                                        delayQueue.queue.put(element, delayQueue);
-                                    }
-                                } catch (Exception ignored) {
-                                }
-                            }
-                        }
-                    }
-                }
+                advance(System.currentTimeMillis());
 
                 synchronized(sync) {
                     if (!isStarted) return;
                     
                     try {
-                        sync.wait(checkIntervalMillis);
+                        sync.wait(tickMillis);
                     } catch (InterruptedException ignored) {
                     }
                 }
@@ -178,12 +358,37 @@ public class DelayedExecutor {
         }
     }
 
+    /**
+     * The timing wheel record of the element registered on a {@link DelayQueue}.
+     * Apart from the cancellation flag, it's accessed by the executor thread only.
+     */
+    private static final class Entry {
+        private final DelayQueue delayQueue;
+        private final Object element;
+
+        private volatile boolean isCancelled;
+
+        private long timeoutMillis;
+        private long tick;
+        private int level = -1;
+        private int slot;
+        private Entry prev;
+        private Entry next;
+
+        private Entry(final DelayQueue delayQueue, final Object element) {
+            this.delayQueue = delayQueue;
+            this.element = element;
+        }
+    }
+
     public class DelayQueue<E> {
-        final ConcurrentMap<E, DelayQueue> queue = new ConcurrentHashMap<>();
+        final ConcurrentMap<E, Entry> queue = new ConcurrentHashMap<>();
 
         final Worker<E> worker;
         final Resolver<E> resolver;
 
+        volatile boolean isDestroyed;
+
         public DelayQueue(final Worker<E> worker, final Resolver<E> resolver) {
             this.worker = worker;
             this.resolver = resolver;
@@ -194,17 +399,29 @@ public class DelayedExecutor {
                 final long delayWithSysTime =
                         System.currentTimeMillis() + TimeUnit.MILLISECONDS.convert(delay, timeUnit);
                 resolver.setTimeoutMillis(elem, ((delayWithSysTime < 0) ? Long.MAX_VALUE : delayWithSysTime));
-                queue.put(elem, this);
+
+                final Entry entry = new Entry(this, elem);
+                cancel(queue.put(elem, entry));
+                pendingEntries.offer(entry);
             }
         }
 
         public void remove(final E elem) {
             resolver.removeTimeout(elem);
+            cancel(queue.remove(elem));
         }
 
         public void destroy() {
+            isDestroyed = true;
             queues.remove(this);
         }
+
+        private void cancel(final Entry entry) {
+            if (entry != null) {
+                entry.isCancelled = true;
+                cancelledEntries.offer(entry);
+            }
+        }
     }
 
     public interface Worker<E> {
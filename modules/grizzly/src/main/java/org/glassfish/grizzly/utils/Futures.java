@@ -223,6 +223,25 @@ public class Futures {
                 future, completionHandler, adapter);
     }
 
+    /**
+     * Checks whether the {@link CompletionHandler} passes its notifications
+     * to a {@link FutureImpl}, in other words whether the initiator of the
+     * operation may block waiting for the operation result.
+     * 
+     * @param completionHandler the {@link CompletionHandler} to check
+     * @return <tt>true</tt> if the {@link CompletionHandler} has been created
+     *      using one of the <tt>toCompletionHandler(...)</tt> or
+     *      <tt>toAdaptedCompletionHandler(...)</tt> methods, or
+     *      <tt>false</tt> otherwise
+     * 
+     * @since 2.4.3
+     */
+    public static boolean isFutureCompletionHandler(
+            final CompletionHandler<?> completionHandler) {
+        return completionHandler instanceof FutureToCompletionHandler
+                || completionHandler instanceof CompletionHandlerAdapter;
+    }
+
     private static final class FutureToCompletionHandler<E>
             extends EmptyCompletionHandler<E> {
 
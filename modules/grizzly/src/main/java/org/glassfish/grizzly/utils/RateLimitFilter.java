@@ -0,0 +1,660 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.utils;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Context;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.IOEvent;
+import org.glassfish.grizzly.IOEventLifeCycleListener;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.monitoring.DefaultMonitoringConfig;
+import org.glassfish.grizzly.monitoring.MonitoringAware;
+import org.glassfish.grizzly.monitoring.MonitoringConfig;
+import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.NIOTransport;
+import org.glassfish.grizzly.nio.SelectorHandler;
+
+/**
+ * The Filter limits the rate data is read from a {@link Connection}.
+ * The number of bytes and read events per second is limited per
+ * {@link Connection} and (optionally) per remote address, using token buckets,
+ * which allow short bursts of up to 100 milliseconds worth of traffic.
+ * Once the remote address limit is exceeded, it's shared equally among
+ * the {@link Connection}s, which are competing for it, so a single
+ * {@link Connection} can't take the entire address bandwidth.
+ * 
+ * Once a {@link Connection} exceeds a limit, the Filter doesn't block
+ * the processing thread, but disables the {@link Connection}'s
+ * {@link IOEvent#READ} interest, when the current read event processing
+ * is completed, and enables it back using the {@link DelayedExecutor},
+ * when the {@link Connection} is allowed to read again.
+ * 
+ * The Filter has to be added to a FilterChain right after the
+ * {@link org.glassfish.grizzly.filterchain.TransportFilter}, so it could
+ * see the number of bytes, which has been read.
+ * 
+ * @see IdleTimeoutFilter
+ * 
+ * @since 2.4.3
+ */
+public class RateLimitFilter extends BaseFilter
+        implements MonitoringAware<RateLimitFilterProbe> {
+    private static final Logger LOGGER = Grizzly.logger(RateLimitFilter.class);
+    
+    public static final long UNLIMITED = -1;
+    
+    // the records of different filter instances have to be stored
+    // using different attributes
+    private static final AtomicInteger INSTANCES_COUNTER = new AtomicInteger();
+    
+    private final long bytesPerSecond;
+    private final long eventsPerSecond;
+    private final long addressBytesPerSecond;
+    private final long addressEventsPerSecond;
+    
+    private final Attribute<ConnectionRecord> recordAttr;
+    private final DelayedExecutor.DelayQueue<Connection> queue;
+    
+    private final ConcurrentMap<InetAddress, AddressRecord> addressRecords =
+            new ConcurrentHashMap<InetAddress, AddressRecord>();
+    
+    private final DefaultMonitoringConfig<RateLimitFilterProbe> monitoringConfig =
+            new DefaultMonitoringConfig<RateLimitFilterProbe>(
+                    RateLimitFilterProbe.class);
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Constructs the <tt>RateLimitFilter</tt>, which limits the read rate
+     * per {@link Connection}.
+     * 
+     * @param executor the {@link DelayedExecutor} used to resume throttled
+     *          {@link Connection}s, its check interval defines how precisely
+     *          the rate limits are followed
+     * @param bytesPerSecond the max number of bytes per second to be read
+     *          from a {@link Connection}, or {@link #UNLIMITED}
+     * @param eventsPerSecond the max number of read events per second to be
+     *          processed for a {@link Connection}, or {@link #UNLIMITED}
+     */
+    public RateLimitFilter(final DelayedExecutor executor,
+                           final long bytesPerSecond,
+                           final long eventsPerSecond) {
+        this(executor, bytesPerSecond, eventsPerSecond, UNLIMITED, UNLIMITED);
+    }
+    
+    /**
+     * Constructs the <tt>RateLimitFilter</tt>, which limits the read rate
+     * per {@link Connection} and per remote address.
+     * 
+     * @param executor the {@link DelayedExecutor} used to resume throttled
+     *          {@link Connection}s, its check interval defines how precisely
+     *          the rate limits are followed
+     * @param bytesPerSecond the max number of bytes per second to be read
+     *          from a {@link Connection}, or {@link #UNLIMITED}
+     * @param eventsPerSecond the max number of read events per second to be
+     *          processed for a {@link Connection}, or {@link #UNLIMITED}
+     * @param addressBytesPerSecond the max number of bytes per second to be
+     *          read from all the {@link Connection}s with the same remote
+     *          address, or {@link #UNLIMITED}
+     * @param addressEventsPerSecond the max number of read events per second
+     *          to be processed for all the {@link Connection}s with the same
+     *          remote address, or {@link #UNLIMITED}
+     */
+    public RateLimitFilter(final DelayedExecutor executor,
+                           final long bytesPerSecond,
+                           final long eventsPerSecond,
+                           final long addressBytesPerSecond,
+                           final long addressEventsPerSecond) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor cannot be null");
+        }
+        
+        this.bytesPerSecond = bytesPerSecond;
+        this.eventsPerSecond = eventsPerSecond;
+        this.addressBytesPerSecond = addressBytesPerSecond;
+        this.addressEventsPerSecond = addressEventsPerSecond;
+        
+        recordAttr = Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+                RateLimitFilter.class.getName() + ".record-"
+                        + INSTANCES_COUNTER.incrementAndGet(),
+                new NullaryFunction<ConnectionRecord>() {
+
+                    @Override
+                    public ConnectionRecord evaluate() {
+                        return new ConnectionRecord();
+                    }
+                });
+        
+        queue = executor.createDelayQueue(new ResumeWorker(), new Resolver());
+    }
+
+
+    // ----------------------------------------------------- Methods from Filter
+
+
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx) throws IOException {
+        final Connection connection = ctx.getConnection();
+        final ConnectionRecord record = recordAttr.get(connection);
+        
+        final Object message = ctx.getMessage();
+        final long bytes = message instanceof Buffer
+                ? ((Buffer) message).remaining()
+                : 0;
+        
+        final long delayNanos = record.consume(connection, bytes);
+        
+        // blocking mode means this read is initiated by a filter or handler,
+        // so it's not possible to pause the reading
+        if (delayNanos > 0 && !ctx.getTransportContext().isBlocking()) {
+            final Context context = ctx.getInternalContext();
+            if (!context.hasLifeCycleListener(record)) {
+                // disable reading once the event processing is completed,
+                // otherwise the IOStrategy may enable it back
+                context.addLifeCycleListener(record);
+                record.pauseNanos = delayNanos;
+            } else {
+                record.pauseNanos = Math.max(record.pauseNanos, delayNanos);
+            }
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+    @Override
+    public NextAction handleClose(final FilterChainContext ctx) throws IOException {
+        final Connection connection = ctx.getConnection();
+        queue.remove(connection);
+        
+        final ConnectionRecord record = recordAttr.remove(connection);
+        if (record != null) {
+            record.close();
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * @return the max number of bytes per second to be read from
+     *          a {@link Connection}, or {@link #UNLIMITED}
+     */
+    public long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * @return the max number of read events per second to be processed for
+     *          a {@link Connection}, or {@link #UNLIMITED}
+     */
+    public long getEventsPerSecond() {
+        return eventsPerSecond;
+    }
+
+    /**
+     * @return the max number of bytes per second to be read from all the
+     *          {@link Connection}s with the same remote address,
+     *          or {@link #UNLIMITED}
+     */
+    public long getAddressBytesPerSecond() {
+        return addressBytesPerSecond;
+    }
+
+    /**
+     * @return the max number of read events per second to be processed for
+     *          all the {@link Connection}s with the same remote address,
+     *          or {@link #UNLIMITED}
+     */
+    public long getAddressEventsPerSecond() {
+        return addressEventsPerSecond;
+    }
+
+    /**
+     * @return the <tt>RateLimitFilter</tt> monitoring configuration.
+     */
+    @Override
+    public MonitoringConfig<RateLimitFilterProbe> getMonitoringConfig() {
+        return monitoringConfig;
+    }
+
+    public static DelayedExecutor createDefaultRateLimitDelayedExecutor() {
+
+        return createDefaultRateLimitDelayedExecutor(10, TimeUnit.MILLISECONDS);
+
+    }
+
+    public static DelayedExecutor createDefaultRateLimitDelayedExecutor(
+            final long checkInterval, final TimeUnit checkIntervalUnit) {
+
+        final ExecutorService executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+            @Override
+            public Thread newThread(Runnable r) {
+                final Thread newThread = new Thread(r);
+                newThread.setName("Grizzly-RateLimitFilter-Resume");
+                newThread.setDaemon(true);
+                return newThread;
+            }
+        });
+        return new DelayedExecutor(executor,
+                                   ((checkInterval > 0)
+                                       ? checkInterval
+                                       : 10L),
+                                   ((checkIntervalUnit != null)
+                                       ? checkIntervalUnit
+                                       : TimeUnit.MILLISECONDS));
+
+    }
+
+
+    // ------------------------------------------------------- Private Methods
+
+
+    private AddressRecord obtainAddressRecord(final Connection connection) {
+        if (addressBytesPerSecond <= 0 && addressEventsPerSecond <= 0) {
+            return null;
+        }
+        
+        final Object peerAddress = connection.getPeerAddress();
+        if (!(peerAddress instanceof InetSocketAddress)) {
+            return null;
+        }
+        
+        final InetAddress address = ((InetSocketAddress) peerAddress).getAddress();
+        if (address == null) {
+            return null;
+        }
+        
+        while (true) {
+            AddressRecord record = addressRecords.get(address);
+            if (record == null) {
+                final AddressRecord newRecord = new AddressRecord(address);
+                record = addressRecords.putIfAbsent(address, newRecord);
+                if (record == null) {
+                    record = newRecord;
+                }
+            }
+            
+            if (record.acquire()) {
+                return record;
+            }
+            
+            // the record is being removed, try again
+        }
+    }
+
+    private void pause(final Connection connection,
+            final ConnectionRecord record, final long delayNanos) {
+        if (connection instanceof NIOConnection) {
+            // the IOStrategy might have enabled READ interest using
+            // a selector task, so disable it using a selector task as well,
+            // to make sure it's done in the right order
+            final NIOConnection nioConnection = (NIOConnection) connection;
+            ((NIOTransport) nioConnection.getTransport()).getSelectorHandler()
+                    .execute(nioConnection.getSelectorRunner(),
+                    new SelectorHandler.Task() {
+
+                @Override
+                public boolean run() throws Exception {
+                    nioConnection.disableIOEvent(IOEvent.READ);
+                    return true;
+                }
+            }, null);
+        } else {
+            try {
+                connection.disableIOEvent(IOEvent.READ);
+            } catch (IOException e) {
+                LOGGER.log(Level.FINE, "Can't disable READ interest", e);
+                return;
+            }
+        }
+        
+        record.pausedAtNanos = System.nanoTime();
+        if (record.addressRecord != null) {
+            record.addressRecord.onPause(record);
+        }
+        
+        notifyProbesThrottle(connection, delayNanos);
+        
+        queue.add(connection,
+                (delayNanos + 999999) / 1000000, TimeUnit.MILLISECONDS);
+    }
+    
+    private void notifyProbesThrottle(final Connection connection,
+            final long delayNanos) {
+        final RateLimitFilterProbe[] probes = monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (RateLimitFilterProbe probe : probes) {
+                probe.onThrottleEvent(this, connection, delayNanos);
+            }
+        }
+    }
+
+    private void notifyProbesResume(final Connection connection,
+            final long throttledNanos) {
+        final RateLimitFilterProbe[] probes = monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (RateLimitFilterProbe probe : probes) {
+                probe.onResumeEvent(this, connection, throttledNanos);
+            }
+        }
+    }
+
+
+    // ----------------------------------------------------------- Inner Classes
+
+
+    /**
+     * Token bucket, which allows bursts of up to 100 milliseconds worth of
+     * tokens. The tokens might go below zero, which means the consumer has
+     * to wait until the debt is paid.
+     */
+    private static final class TokenBucket {
+        private final double tokensPerNano;
+        private final double capacity;
+        
+        private double tokens;
+        private long lastRefillNanos;
+
+        private TokenBucket(final long tokensPerSecond) {
+            tokensPerNano = tokensPerSecond / 1000000000d;
+            capacity = tokensPerSecond / 10d;
+            tokens = capacity;
+            lastRefillNanos = System.nanoTime();
+        }
+
+        /**
+         * Consumes the tokens and returns the time (nanoseconds)
+         * the consumer has to wait until the balance is not negative.
+         */
+        private synchronized long consume(final long amount, final long nowNanos) {
+            tokens = Math.min(capacity,
+                    tokens + (nowNanos - lastRefillNanos) * tokensPerNano);
+            lastRefillNanos = nowNanos;
+            
+            tokens -= amount;
+            
+            return tokens >= 0 ? 0 : (long) Math.ceil(-tokens / tokensPerNano);
+        }
+        
+        private static TokenBucket create(final long tokensPerSecond) {
+            return tokensPerSecond > 0 ? new TokenBucket(tokensPerSecond) : null;
+        }
+        
+        private static long consume(final TokenBucket bucket,
+                final long amount, final long nowNanos) {
+            return bucket != null ? bucket.consume(amount, nowNanos) : 0;
+        }
+        
+        /**
+         * Consumes the tokens from the shared bucket and returns the time
+         * (nanoseconds) the consumer may proceed at. If the bucket is in debt,
+         * the consumer gets its equal share of the rate, so it has to wait
+         * the <tt>sharersCount</tt> times longer, than the amount would
+         * take on its own.
+         */
+        private static long consumeShared(final TokenBucket bucket,
+                final long amount, final long nowNanos,
+                final int sharersCount, final long readyAtNanos) {
+            if (bucket == null || bucket.consume(amount, nowNanos) == 0) {
+                return nowNanos;
+            }
+            
+            return Math.max(readyAtNanos, nowNanos)
+                    + (long) Math.ceil(amount * sharersCount / bucket.tokensPerNano);
+        }
+    } // END TokenBucket
+
+    /**
+     * The rate limits shared by all the {@link Connection}s with the same
+     * remote address.
+     */
+    private final class AddressRecord {
+        private final InetAddress address;
+        private final TokenBucket bytesBucket =
+                TokenBucket.create(addressBytesPerSecond);
+        private final TokenBucket eventsBucket =
+                TokenBucket.create(addressEventsPerSecond);
+        
+        // the number of connections using the record, -1 means it's removed
+        private int connectionsCount;
+        // the number of paused connections, which compete for the bandwidth
+        private int pausedCount;
+
+        private AddressRecord(final InetAddress address) {
+            this.address = address;
+        }
+        
+        private synchronized boolean acquire() {
+            if (connectionsCount < 0) {
+                return false;
+            }
+            
+            connectionsCount++;
+            return true;
+        }
+        
+        private synchronized long consume(final ConnectionRecord record,
+                final long bytes, final long nowNanos) {
+            final int sharersCount = pausedCount + (record.isPaused ? 0 : 1);
+            
+            record.bytesReadyAtNanos = TokenBucket.consumeShared(bytesBucket,
+                    bytes, nowNanos, sharersCount, record.bytesReadyAtNanos);
+            record.eventsReadyAtNanos = TokenBucket.consumeShared(eventsBucket,
+                    1, nowNanos, sharersCount, record.eventsReadyAtNanos);
+            
+            return Math.max(record.bytesReadyAtNanos,
+                    record.eventsReadyAtNanos) - nowNanos;
+        }
+        
+        private synchronized void onPause(final ConnectionRecord record) {
+            if (!record.isPaused) {
+                record.isPaused = true;
+                pausedCount++;
+            }
+        }
+        
+        private synchronized void onResume(final ConnectionRecord record) {
+            if (record.isPaused) {
+                record.isPaused = false;
+                pausedCount--;
+            }
+        }
+        
+        private synchronized void release() {
+            if (--connectionsCount == 0) {
+                connectionsCount = -1;
+                addressRecords.remove(address, this);
+            }
+        }
+    } // END AddressRecord
+    
+    /**
+     * The {@link Connection} rate limits, which also works as a listener,
+     * which pauses the reading once the read event processing is completed.
+     */
+    private final class ConnectionRecord
+            extends IOEventLifeCycleListener.Adapter {
+        private final TokenBucket bytesBucket =
+                TokenBucket.create(bytesPerSecond);
+        private final TokenBucket eventsBucket =
+                TokenBucket.create(eventsPerSecond);
+        
+        private boolean isAddressResolved;
+        private volatile AddressRecord addressRecord;
+        
+        // the address share state, guarded by the AddressRecord
+        private boolean isPaused;
+        private long bytesReadyAtNanos;
+        private long eventsReadyAtNanos;
+        
+        // the delay requested by the current read event
+        private long pauseNanos;
+        private long pausedAtNanos;
+        
+        private volatile long resumeTimeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+
+        private long consume(final Connection connection, final long bytes) {
+            if (!isAddressResolved) {
+                isAddressResolved = true;
+                addressRecord = obtainAddressRecord(connection);
+            }
+            
+            final long now = System.nanoTime();
+            long delayNanos = Math.max(
+                    TokenBucket.consume(bytesBucket, bytes, now),
+                    TokenBucket.consume(eventsBucket, 1, now));
+            
+            if (addressRecord != null) {
+                delayNanos = Math.max(delayNanos,
+                        addressRecord.consume(this, bytes, now));
+            }
+            
+            return delayNanos;
+        }
+        
+        private void close() {
+            final AddressRecord record = addressRecord;
+            if (record != null) {
+                addressRecord = null;
+                record.onResume(this);
+                record.release();
+            }
+        }
+        
+        @Override
+        public void onComplete(final Context context, final Object data)
+                throws IOException {
+            final long delayNanos = pauseNanos;
+            pauseNanos = 0;
+
+            final Connection connection = context.getConnection();
+            if (delayNanos > 0 && connection.isOpen()) {
+                pause(connection, this, delayNanos);
+            }
+        }
+    } // END ConnectionRecord
+
+    private final class Resolver implements DelayedExecutor.Resolver<Connection> {
+
+        @Override
+        public boolean removeTimeout(final Connection connection) {
+            final ConnectionRecord record = recordAttr.peek(connection);
+            if (record != null) {
+                record.resumeTimeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+            }
+            return true;
+        }
+
+        @Override
+        public long getTimeoutMillis(final Connection connection) {
+            final ConnectionRecord record = recordAttr.peek(connection);
+            return record != null
+                    ? record.resumeTimeoutMillis
+                    : DelayedExecutor.UNSET_TIMEOUT;
+        }
+
+        @Override
+        public void setTimeoutMillis(final Connection connection,
+                final long timeoutMillis) {
+            final ConnectionRecord record = recordAttr.peek(connection);
+            if (record != null) {
+                record.resumeTimeoutMillis = timeoutMillis;
+            }
+        }
+
+    } // END Resolver
+
+    private final class ResumeWorker implements DelayedExecutor.Worker<Connection> {
+
+        @Override
+        public boolean doWork(final Connection connection) {
+            // don't use get(), which would re-create the record
+            // of the closed connection
+            final ConnectionRecord record = recordAttr.peek(connection);
+            if (record == null) {
+                return true;
+            }
+            
+            record.resumeTimeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+            
+            final AddressRecord addressRecord = record.addressRecord;
+            if (addressRecord != null) {
+                addressRecord.onResume(record);
+            }
+            
+            if (connection.isOpen()) {
+                try {
+                    connection.enableIOEvent(IOEvent.READ);
+                } catch (IOException e) {
+                    LOGGER.log(Level.FINE, "Can't enable READ interest", e);
+                }
+                
+                notifyProbesResume(connection,
+                        System.nanoTime() - record.pausedAtNanos);
+            }
+
+            return true;
+        }
+
+    } // END ResumeWorker
+}
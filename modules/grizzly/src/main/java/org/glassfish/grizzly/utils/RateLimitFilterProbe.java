@@ -0,0 +1,109 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.utils;
+
+import org.glassfish.grizzly.Connection;
+
+/**
+ * Monitoring probe providing callbacks that may be invoked by
+ * {@link RateLimitFilter} when it throttles a {@link Connection}.
+ *
+ * @since 2.4.3
+ */
+public interface RateLimitFilterProbe {
+    /**
+     * <p>
+     * This event may be fired when the {@link RateLimitFilter} pauses
+     * reading from a {@link Connection}, because it exceeded its rate limit.
+     * </p>
+     *
+     * @param filter the {@link RateLimitFilter} being monitored
+     * @param connection the throttled {@link Connection}
+     * @param delayNanos the time (nanoseconds) the reading is going to be
+     *  paused for
+     */
+    void onThrottleEvent(RateLimitFilter filter, Connection connection,
+            long delayNanos);
+
+    /**
+     * <p>
+     * This event may be fired when the {@link RateLimitFilter} resumes
+     * reading from a previously throttled {@link Connection}.
+     * </p>
+     *
+     * @param filter the {@link RateLimitFilter} being monitored
+     * @param connection the {@link Connection}
+     * @param throttledNanos the time (nanoseconds) the reading was actually
+     *  paused for
+     */
+    void onResumeEvent(RateLimitFilter filter, Connection connection,
+            long throttledNanos);
+
+
+    // ---------------------------------------------------------- Nested Classes
+
+
+    /**
+     * {@link RateLimitFilterProbe} adapter that provides no-op implementations
+     * for all interface methods allowing easy extension by the developer.
+     */
+    @SuppressWarnings("UnusedDeclaration")
+    class Adapter implements RateLimitFilterProbe {
+
+
+        // ---------------------------------- Methods from RateLimitFilterProbe
+
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onThrottleEvent(RateLimitFilter filter,
+                Connection connection, long delayNanos) {}
+
+        /**
+         * {@inheritDoc}
+         */
+        @Override
+        public void onResumeEvent(RateLimitFilter filter,
+                Connection connection, long throttledNanos) {}
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.utils;
+
+import java.io.IOException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SocketChannel;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.EmptyCompletionHandler;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.WriteHandler;
+import org.glassfish.grizzly.WriteResult;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.NIOConnection;
+
+/**
+ * The Filter, which relays the data between two {@link Connection}s
+ * {@link #splice(org.glassfish.grizzly.Connection, org.glassfish.grizzly.Connection) spliced}
+ * together, so the input of one {@link Connection} becomes the output of
+ * the other one and vice versa, which is what TCP tunnels and L4 proxies do.
+ * 
+ * The read {@link Buffer} is passed to the peer {@link Connection} as it is,
+ * without copying, and is disposed by the asynchronous write queue, once
+ * it's written.
+ * If the peer's asynchronous write queue size exceeds the limit, the reading
+ * from the source {@link Connection} is paused by suspending the read event
+ * processing, until the peer's write queue is drained below the limit.
+ * 
+ * Both {@link Connection}s have to be processed by a FilterChain, which
+ * contains the <tt>RelayFilter</tt>, usually right after the
+ * {@link org.glassfish.grizzly.filterchain.TransportFilter}. The data read
+ * from a {@link Connection}, which wasn't spliced yet, is passed to the
+ * next Filter in chain, which, for example, might connect the peer and
+ * splice the {@link Connection}s.
+ * Once one of the {@link Connection}s is closed (for example, the EOF is
+ * read), the other one is closed gracefully as well: after the pending data
+ * is written, its output is shut down, so the EOF is propagated to the remote
+ * peer, and then the {@link Connection} is closed.
+ * 
+ * @since 2.4.3
+ */
+public class RelayFilter extends BaseFilter {
+    private static final Logger LOGGER = Grizzly.logger(RelayFilter.class);
+    
+    /**
+     * The max pending bytes value, which means the peer {@link Connection}'s
+     * own {@link Connection#getMaxAsyncWriteQueueSize()} is used.
+     */
+    public static final int AUTO_SIZE = -2;
+    
+    private final Attribute<Connection<?>> peerAttr =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            RelayFilter.class.getName() + ".peer");
+    
+    private final int maxPendingBytes;
+
+    // ------------------------------------------------------------ Constructors
+
+
+    /**
+     * Constructs the <tt>RelayFilter</tt>, which pauses reading, when
+     * the peer's asynchronous write queue size exceeds the peer's
+     * {@link Connection#getMaxAsyncWriteQueueSize()}.
+     */
+    public RelayFilter() {
+        this(AUTO_SIZE);
+    }
+
+    /**
+     * Constructs the <tt>RelayFilter</tt>.
+     * 
+     * @param maxPendingBytes the max number of bytes, which may be queued
+     *          for writing on the peer {@link Connection}, before the reading
+     *          from the source {@link Connection} is paused, or {@link #AUTO_SIZE}
+     */
+    public RelayFilter(final int maxPendingBytes) {
+        this.maxPendingBytes = maxPendingBytes;
+    }
+
+
+    // ----------------------------------------------------- Methods from Filter
+
+
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx) throws IOException {
+        final Connection<?> peer = peerAttr.get(ctx.getConnection());
+        
+        if (peer == null) {
+            return ctx.getInvokeAction();
+        }
+        
+        final Buffer buffer = ctx.getMessage();
+        
+        if (!peer.isOpen()) {
+            buffer.tryDispose();
+            return ctx.getStopAction();
+        }
+        
+        // the Buffer ownership is passed to the peer's write queue
+        peer.write(buffer, null);
+        
+        if (peer.canWrite()) {
+            return ctx.getStopAction();
+        }
+        
+        // the peer can't keep up - don't read from the connection,
+        // until the peer's write queue is drained
+        final NextAction suspendAction = ctx.getSuspendAction();
+        ctx.suspend();
+        
+        peer.notifyCanWrite(new WriteHandler() {
+
+            @Override
+            public void onWritePossible() throws Exception {
+                ctx.resume(ctx.getStopAction());
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                LOGGER.log(Level.FINE, "Relay peer write failed", t);
+                ctx.resume(ctx.getStopAction());
+            }
+        });
+        
+        return suspendAction;
+    }
+
+    @Override
+    public NextAction handleClose(final FilterChainContext ctx) throws IOException {
+        final Connection<?> peer = peerAttr.remove(ctx.getConnection());
+        
+        if (peer != null) {
+            peerAttr.remove(peer);
+            shutdownOutput(peer);
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+
+    // ---------------------------------------------------------- Public Methods
+
+
+    /**
+     * Splices two {@link Connection}s, so the data read from one of them
+     * is written to the other one.
+     * 
+     * @param connection1 the first {@link Connection}
+     * @param connection2 the second {@link Connection}
+     */
+    public void splice(final Connection<?> connection1,
+            final Connection<?> connection2) {
+        if (connection1 == null || connection2 == null) {
+            throw new IllegalArgumentException("Connection cannot be null");
+        }
+        
+        if (maxPendingBytes != AUTO_SIZE) {
+            connection1.setMaxAsyncWriteQueueSize(maxPendingBytes);
+            connection2.setMaxAsyncWriteQueueSize(maxPendingBytes);
+        }
+        
+        peerAttr.set(connection1, connection2);
+        peerAttr.set(connection2, connection1);
+    }
+
+    /**
+     * @param connection the {@link Connection}
+     * @return the {@link Connection}, which is spliced with the passed one,
+     *          or <tt>null</tt>, if the {@link Connection} is not spliced
+     */
+    public Connection<?> getPeer(final Connection<?> connection) {
+        return peerAttr.get(connection);
+    }
+
+    /**
+     * @return the max number of bytes, which may be queued for writing on
+     *          the peer {@link Connection}, before the reading from the source
+     *          {@link Connection} is paused, or {@link #AUTO_SIZE}
+     */
+    public int getMaxPendingBytes() {
+        return maxPendingBytes;
+    }
+
+
+    // --------------------------------------------------------- Private Methods
+
+
+    /**
+     * Shuts down the peer's output, once the pending data is written, so the
+     * EOF is propagated to the remote peer even if it's still sending data,
+     * and closes the peer.
+     */
+    private static <L> void shutdownOutput(final Connection<L> peer) {
+        peer.write(Buffers.EMPTY_BUFFER,
+                new EmptyCompletionHandler<WriteResult<Buffer, L>>() {
+
+            @Override
+            public void completed(final WriteResult<Buffer, L> result) {
+                if (peer instanceof NIOConnection) {
+                    final SelectableChannel channel =
+                            ((NIOConnection) peer).getChannel();
+                    if (channel instanceof SocketChannel) {
+                        try {
+                            ((SocketChannel) channel).socket().shutdownOutput();
+                        } catch (IOException e) {
+                            LOGGER.log(Level.FINE, "Relay peer output shutdown failed", e);
+                        }
+                    }
+                }
+                
+                peer.closeSilently();
+            }
+
+            @Override
+            public void failed(final Throwable throwable) {
+                peer.closeSilently();
+            }
+        });
+    }
+}
@@ -0,0 +1,169 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.utils;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.glassfish.grizzly.CompletionHandler;
+import org.glassfish.grizzly.Connection;
+import org.glassfish.grizzly.Context;
+import org.glassfish.grizzly.Grizzly;
+import org.glassfish.grizzly.IOEventLifeCycleListener;
+import org.glassfish.grizzly.attributes.Attribute;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.nio.NIOConnection;
+
+/**
+ * The Filter, which {@link NIOConnection#cork() corks} the {@link Connection}
+ * for the time a read event is being processed, so all the asynchronous
+ * writes, initiated during the read event processing (for example responses
+ * to pipelined requests), are flushed to the network using one gathering
+ * write, once the read event processing is completed, suspended or
+ * switched to manual IOEvent control mode.
+ * 
+ * The Filter is usually added to a FilterChain right after the
+ * {@link org.glassfish.grizzly.filterchain.TransportFilter}.
+ * 
+ * Please note, the writes initiated while the {@link Connection} is corked
+ * are not completed until the read event processing is finished, so a
+ * {@link org.glassfish.grizzly.filterchain.Filter} must not block in
+ * <tt>handleRead(...)</tt> waiting for a write's {@link CompletionHandler}
+ * to be notified, otherwise it deadlocks. The writes which return a
+ * {@link java.util.concurrent.Future} (or use a {@link CompletionHandler}
+ * created by {@link Futures}) are never held by the cork, so the initiator
+ * may wait for their result.
+ * 
+ * @see NIOConnection#cork()
+ * @see NIOConnection#uncork()
+ * 
+ * @since 2.4.3
+ */
+public class WriteCorkFilter extends BaseFilter {
+    public static final String CORK_ATTRIBUTE_NAME = "connection-write-cork-attribute";
+    private static final Attribute<Cork> CORK_ATTR =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            CORK_ATTRIBUTE_NAME, new NullaryFunction<Cork>() {
+
+        @Override
+        public Cork evaluate() {
+            return new Cork();
+        }
+    });
+
+    @Override
+    public NextAction handleRead(final FilterChainContext ctx) throws IOException {
+        final Connection connection = ctx.getConnection();
+        
+        // blocking mode means this read is initiated by a filter or handler
+        if (!ctx.getTransportContext().isBlocking()
+                && connection instanceof NIOConnection) {
+            final Cork cork = CORK_ATTR.get(connection);
+            if (cork.cork((NIOConnection) connection)) {
+                ctx.getInternalContext().addLifeCycleListener(cork);
+            }
+        }
+        
+        return ctx.getInvokeAction();
+    }
+
+    /**
+     * The per-connection cork, which is released once the read event
+     * processing is finished.
+     */
+    private static final class Cork extends IOEventLifeCycleListener.Adapter {
+        private final AtomicBoolean isCorked = new AtomicBoolean();
+
+        private boolean cork(final NIOConnection connection) {
+            if (isCorked.compareAndSet(false, true)) {
+                connection.cork();
+                return true;
+            }
+            
+            return false;
+        }
+        
+        private void uncork(final Connection connection) {
+            if (isCorked.compareAndSet(true, false)) {
+                ((NIOConnection) connection).uncork();
+            }
+        }
+        
+        @Override
+        public void onContextSuspend(final Context context) throws IOException {
+            uncork(context.getConnection());
+        }
+
+        @Override
+        public void onContextManualIOEventControl(final Context context)
+                throws IOException {
+            uncork(context.getConnection());
+        }
+
+        @Override
+        public void onComplete(final Context context, final Object data)
+                throws IOException {
+            uncork(context.getConnection());
+        }
+
+        @Override
+        public void onLeave(final Context context) throws IOException {
+            uncork(context.getConnection());
+        }
+
+        @Override
+        public void onTerminate(final Context context) throws IOException {
+            uncork(context.getConnection());
+        }
+
+        @Override
+        public void onError(final Context context, final Object description)
+                throws IOException {
+            uncork(context.getConnection());
+        }
+
+        @Override
+        public void onNotRun(final Context context) throws IOException {
+            uncork(context.getConnection());
+        }
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedTransferQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnectorHandler;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.strategies.AdaptiveIOStrategy;
+import org.glassfish.grizzly.strategies.AdaptiveIOStrategyProbe;
+import org.glassfish.grizzly.threadpool.Threads;
+import org.glassfish.grizzly.utils.StringFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link AdaptiveIOStrategy} tests.
+ */
+public class AdaptiveIOStrategyTest {
+    private static final int PORT = 7790;
+    
+    @Test
+    public void testFastAndSlowEvents() throws Exception {
+        final AdaptiveIOStrategy strategy = new AdaptiveIOStrategy(
+                2, TimeUnit.MILLISECONDS, -1);
+        final AtomicInteger sameThreadEvents = new AtomicInteger();
+        final AtomicInteger workerThreadEvents = new AtomicInteger();
+        strategy.getMonitoringConfig().addProbes(new AdaptiveIOStrategyProbe.Adapter() {
+            @Override
+            public void onSameThreadEvent(AdaptiveIOStrategy strategy,
+                    Connection connection, IOEvent ioEvent,
+                    long averageProcessingNanos) {
+                sameThreadEvents.incrementAndGet();
+            }
+
+            @Override
+            public void onWorkerThreadEvent(AdaptiveIOStrategy strategy,
+                    Connection connection, IOEvent ioEvent,
+                    long averageProcessingNanos) {
+                workerThreadEvents.incrementAndGet();
+            }
+        });
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setIOStrategy(strategy)
+                .build();
+        transport.setProcessor(FilterChainBuilder.stateless()
+                .add(new TransportFilter())
+                .add(new StringFilter())
+                .add(new BaseFilter() {
+                    @Override
+                    public NextAction handleRead(FilterChainContext ctx)
+                            throws IOException {
+                        final String message = ctx.getMessage();
+                        if (message.startsWith("slow")) {
+                            try {
+                                Thread.sleep(20);
+                            } catch (InterruptedException ignored) {
+                            }
+                        }
+                        
+                        // reply with the type of the thread the message
+                        // has been processed in
+                        ctx.write(Threads.isService() ? "selector" : "worker");
+                        return ctx.getStopAction();
+                    }
+                })
+                .build());
+
+        final TCPNIOTransport clientTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        
+        Connection connection = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+            clientTransport.start();
+            
+            final BlockingQueue<String> resultQueue = new LinkedTransferQueue<>();
+            connection = TCPNIOConnectorHandler.builder(clientTransport)
+                    .processor(FilterChainBuilder.stateless()
+                        .add(new TransportFilter())
+                        .add(new StringFilter())
+                        .add(new BaseFilter() {
+                            @Override
+                            public NextAction handleRead(FilterChainContext ctx)
+                                    throws IOException {
+                                resultQueue.add((String) ctx.getMessage());
+                                return ctx.getStopAction();
+                            }
+                        })
+                        .build())
+                    .build()
+                    .connect("localhost", PORT)
+                    .get(10, TimeUnit.SECONDS);
+            
+            // the first event's processing time is unknown
+            connection.write("fast");
+            assertEquals("worker", resultQueue.poll(10, TimeUnit.SECONDS));
+            
+            String result = null;
+            for (int i = 0; i < 50; i++) {
+                connection.write("fast");
+                result = resultQueue.poll(10, TimeUnit.SECONDS);
+            }
+            assertEquals("selector", result);
+            
+            for (int i = 0; i < 5; i++) {
+                connection.write("slow");
+                result = resultQueue.poll(10, TimeUnit.SECONDS);
+            }
+            assertEquals("worker", result);
+            
+            assertTrue(sameThreadEvents.get() > 0);
+            assertTrue(workerThreadEvents.get() > 0);
+            assertTrue(strategy.getAverageProcessingTime()
+                    > strategy.getLatencyThreshold(TimeUnit.NANOSECONDS));
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            clientTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+}
@@ -68,6 +68,7 @@ import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOConnection;
 import org.glassfish.grizzly.nio.transport.TCPNIOConnectorHandler;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
@@ -76,6 +77,7 @@ import org.glassfish.grizzly.utils.Charsets;
 import org.glassfish.grizzly.utils.EchoFilter;
 import org.glassfish.grizzly.utils.Futures;
 import org.glassfish.grizzly.utils.StringFilter;
+import org.glassfish.grizzly.utils.WriteCorkFilter;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
@@ -578,6 +580,252 @@ public class AsyncWriteQueueTest {
         }
     }
     
+    @Test
+    public void testCorkedWrites() throws Exception {
+        Connection connection = null;
+
+        final int packetsCount = 10;
+        final String packet = "corked-packet";
+        final int expectedBytes = packetsCount * packet.length();
+        
+        final AtomicInteger serverRcvdBytes = new AtomicInteger();
+        final FutureImpl<Boolean> resultFuture = SafeFutureImpl.create();
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new BaseFilter() {
+
+            @Override
+            public NextAction handleRead(FilterChainContext ctx)
+                    throws IOException {
+                if (serverRcvdBytes.addAndGet(((Buffer) ctx.getMessage()).remaining())
+                        == expectedBytes) {
+                    resultFuture.result(Boolean.TRUE);
+                }
+                return ctx.getStopAction();
+            }
+        });
+
+        final TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(filterChainBuilder.build());
+
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            Future<Connection> future = transport.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            connection.configureStandalone(true);
+
+            final TCPNIOConnection nioConnection = (TCPNIOConnection) connection;
+            final AsyncQueueWriter<SocketAddress> asyncQueueWriter =
+                    transport.getAsyncQueueIO().getWriter();
+            final MemoryManager mm = transport.getMemoryManager();
+
+            nioConnection.cork();
+            assertTrue(nioConnection.isCorked());
+            
+            final FutureImpl<WriteResult<WritableMessage, SocketAddress>> lastWriteFuture =
+                    Futures.createSafeFuture();
+            // the writes completing a Future are not corked, so use
+            // a plain CompletionHandler
+            final CompletionHandler<WriteResult<WritableMessage, SocketAddress>> lastWriteHandler =
+                    new EmptyCompletionHandler<WriteResult<WritableMessage, SocketAddress>>() {
+
+                @Override
+                public void completed(final WriteResult<WritableMessage, SocketAddress> result) {
+                    lastWriteFuture.result(result);
+                }
+
+                @Override
+                public void failed(final Throwable throwable) {
+                    lastWriteFuture.failure(throwable);
+                }
+            };
+            
+            for (int i = 0; i < packetsCount; i++) {
+                asyncQueueWriter.write(connection, Buffers.wrap(mm, packet),
+                        i == packetsCount - 1 ? lastWriteHandler : null);
+            }
+
+            Thread.sleep(200);
+            assertEquals(0, nioConnection.getWriteOperationsCount());
+            assertEquals(0, serverRcvdBytes.get());
+            
+            nioConnection.uncork();
+            assertFalse(nioConnection.isCorked());
+            
+            assertTrue(resultFuture.get(10, TimeUnit.SECONDS));
+            lastWriteFuture.get(10, TimeUnit.SECONDS);
+            // all the corked packets have to be written using one write
+            assertEquals(1, nioConnection.getWriteOperationsCount());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testWriteCorkFilter() throws Exception {
+        Connection connection = null;
+
+        final String request = "abcdefghijklmnopqrstuvwxyz";
+        
+        final AtomicInteger serverReadEvents = new AtomicInteger();
+        final FutureImpl<TCPNIOConnection> serverConnectionFuture =
+                SafeFutureImpl.create();
+        final AtomicInteger clientRcvdBytes = new AtomicInteger();
+        final FutureImpl<Boolean> resultFuture = SafeFutureImpl.create();
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new WriteCorkFilter());
+        filterChainBuilder.add(new BaseFilter() {
+
+            @Override
+            public NextAction handleRead(FilterChainContext ctx)
+                    throws IOException {
+                serverReadEvents.incrementAndGet();
+                serverConnectionFuture.result((TCPNIOConnection) ctx.getConnection());
+                
+                // echo each byte using a separate write
+                final Buffer buffer = ctx.getMessage();
+                while (buffer.hasRemaining()) {
+                    ctx.write(Buffers.wrap(ctx.getMemoryManager(),
+                            new byte[] {buffer.get()}));
+                }
+                
+                return ctx.getStopAction();
+            }
+        });
+
+        final TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(filterChainBuilder.build());
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            FilterChain clientFilterChain = FilterChainBuilder.stateless()
+                    .add(new TransportFilter())
+                    .add(new BaseFilter() {
+
+                @Override
+                public NextAction handleRead(FilterChainContext ctx) throws IOException {
+                    if (clientRcvdBytes.addAndGet(((Buffer) ctx.getMessage()).remaining())
+                            == request.length()) {
+                        resultFuture.result(Boolean.TRUE);
+                    }
+                    return ctx.getStopAction();
+                }
+            }).build();
+            
+            SocketConnectorHandler connectorHandler = 
+                    TCPNIOConnectorHandler.builder(transport)
+                    .processor(clientFilterChain)
+                    .build();
+            
+            Future<Connection> future = connectorHandler.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            connection.write(Buffers.wrap(transport.getMemoryManager(), request));
+            
+            assertTrue(resultFuture.get(10, TimeUnit.SECONDS));
+            
+            // the responses, produced during one read event, have to be
+            // written using one write
+            final long serverWrites = serverConnectionFuture.get(10, TimeUnit.SECONDS)
+                    .getWriteOperationsCount();
+            assertTrue("reads=" + serverReadEvents + " writes=" + serverWrites,
+                    serverWrites <= serverReadEvents.get());
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+    
+    @Test
+    public void testWriteCorkFilterBlockingWrite() throws Exception {
+        Connection connection = null;
+
+        final String request = "blocking-write";
+        
+        final FutureImpl<Boolean> serverWriteFuture = SafeFutureImpl.create();
+        final FutureImpl<Boolean> resultFuture = SafeFutureImpl.create();
+
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(new WriteCorkFilter());
+        filterChainBuilder.add(new BaseFilter() {
+
+            @Override
+            public NextAction handleRead(FilterChainContext ctx)
+                    throws IOException {
+                // the write, returning a Future, is not held by the cork
+                try {
+                    ctx.getConnection().write(ctx.getMessage())
+                            .get(10, TimeUnit.SECONDS);
+                    serverWriteFuture.result(Boolean.TRUE);
+                } catch (Exception e) {
+                    serverWriteFuture.failure(e);
+                }
+                
+                return ctx.getStopAction();
+            }
+        });
+
+        final TCPNIOTransport transport = createTransport(isOptimizedForMultiplexing);
+        transport.setProcessor(filterChainBuilder.build());
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            FilterChain clientFilterChain = FilterChainBuilder.stateless()
+                    .add(new TransportFilter())
+                    .add(new BaseFilter() {
+
+                private int clientRcvdBytes;
+                
+                @Override
+                public NextAction handleRead(FilterChainContext ctx) throws IOException {
+                    clientRcvdBytes += ((Buffer) ctx.getMessage()).remaining();
+                    if (clientRcvdBytes == request.length()) {
+                        resultFuture.result(Boolean.TRUE);
+                    }
+                    return ctx.getStopAction();
+                }
+            }).build();
+            
+            SocketConnectorHandler connectorHandler = 
+                    TCPNIOConnectorHandler.builder(transport)
+                    .processor(clientFilterChain)
+                    .build();
+            
+            Future<Connection> future = connectorHandler.connect("localhost", PORT);
+            connection = future.get(10, TimeUnit.SECONDS);
+            assertTrue(connection != null);
+
+            connection.write(Buffers.wrap(transport.getMemoryManager(), request));
+            
+            assertTrue(serverWriteFuture.get(20, TimeUnit.SECONDS));
+            assertTrue(resultFuture.get(10, TimeUnit.SECONDS));
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+
+            transport.shutdownNow();
+        }
+    }
+    
     // ---------------------------------------------------------- Nested Classes
 
 
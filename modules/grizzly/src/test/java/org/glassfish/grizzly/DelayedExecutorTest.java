@@ -0,0 +1,232 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing {@link DelayedExecutor}.
+ */
+public class DelayedExecutorTest {
+
+    private ExecutorService threadPool;
+    private DelayedExecutor executor;
+
+    @Before
+    public void setUp() {
+        threadPool = Executors.newSingleThreadExecutor();
+        executor = new DelayedExecutor(threadPool, 50, TimeUnit.MILLISECONDS);
+        executor.start();
+    }
+
+    @After
+    public void tearDown() {
+        executor.destroy();
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void testTimeoutPrecision() throws Exception {
+        final Element element = new Element();
+        final DelayedExecutor.DelayQueue<Element> queue =
+                executor.createDelayQueue(new LatchWorker(), new ElementResolver());
+
+        final long start = System.currentTimeMillis();
+        queue.add(element, 300, TimeUnit.MILLISECONDS);
+
+        assertTrue(element.latch.await(5, TimeUnit.SECONDS));
+        final long elapsed = element.firedAt - start;
+        assertTrue("Fired too early: " + elapsed, elapsed >= 300);
+        assertTrue("Fired too late: " + elapsed, elapsed < 1000);
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        final Element removed = new Element();
+        final Element kept = new Element();
+        final DelayedExecutor.DelayQueue<Element> queue =
+                executor.createDelayQueue(new LatchWorker(), new ElementResolver());
+
+        queue.add(removed, 100, TimeUnit.MILLISECONDS);
+        queue.add(kept, 200, TimeUnit.MILLISECONDS);
+        queue.remove(removed);
+
+        assertTrue(kept.latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, removed.latch.getCount());
+    }
+
+    @Test
+    public void testReAddPostpones() throws Exception {
+        final Element element = new Element();
+        final DelayedExecutor.DelayQueue<Element> queue =
+                executor.createDelayQueue(new LatchWorker(), new ElementResolver());
+
+        final long start = System.currentTimeMillis();
+        queue.add(element, 100, TimeUnit.MILLISECONDS);
+        queue.add(element, 400, TimeUnit.MILLISECONDS);
+
+        assertTrue(element.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(element.firedAt - start >= 400);
+        assertEquals(1, element.fireCount.get());
+    }
+
+    @Test
+    public void testTimeoutChangedByResolver() throws Exception {
+        final Element element = new Element();
+        final ElementResolver resolver = new ElementResolver();
+        final DelayedExecutor.DelayQueue<Element> queue =
+                executor.createDelayQueue(new LatchWorker(), resolver);
+
+        // mark as "in use", then set the actual timeout directly
+        queue.add(element, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        Thread.sleep(100);
+        assertEquals(1, element.latch.getCount());
+
+        final long start = System.currentTimeMillis();
+        resolver.setTimeoutMillis(element, start + 200);
+
+        assertTrue(element.latch.await(5, TimeUnit.SECONDS));
+        assertTrue(element.firedAt - start >= 200);
+
+        // move a finite timeout further
+        final Element element2 = new Element();
+        queue.add(element2, 100, TimeUnit.MILLISECONDS);
+        resolver.setTimeoutMillis(element2, System.currentTimeMillis() + 400);
+        Thread.sleep(250);
+        assertEquals(1, element2.latch.getCount());
+        assertTrue(element2.latch.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testWorkerRetry() throws Exception {
+        final Element element = new Element();
+        final DelayedExecutor.DelayQueue<Element> queue =
+                executor.createDelayQueue(new DelayedExecutor.Worker<Element>() {
+                    @Override
+                    public boolean doWork(final Element element) {
+                        element.latch.countDown();
+                        return element.fireCount.incrementAndGet() == 3;
+                    }
+                }, new ElementResolver());
+
+        queue.add(element, 10, TimeUnit.MILLISECONDS);
+        Thread.sleep(1000);
+        assertEquals(3, element.fireCount.get());
+    }
+
+    @Test
+    public void testManyElements() throws Exception {
+        final int count = 20000;
+        final ConcurrentMap<Element, Boolean> fired =
+                new ConcurrentHashMap<Element, Boolean>();
+        final CountDownLatch latch = new CountDownLatch(count);
+        final DelayedExecutor.DelayQueue<Element> queue =
+                executor.createDelayQueue(new DelayedExecutor.Worker<Element>() {
+                    @Override
+                    public boolean doWork(final Element element) {
+                        assertTrue(System.currentTimeMillis() >= element.timeoutMillis);
+                        assertNull(fired.put(element, Boolean.TRUE));
+                        latch.countDown();
+                        return true;
+                    }
+                }, new ElementResolver());
+
+        for (int i = 0; i < count; i++) {
+            queue.add(new Element(), i % 700, TimeUnit.MILLISECONDS);
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals(count, fired.size());
+    }
+
+    private static final class Element {
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private final AtomicInteger fireCount = new AtomicInteger();
+        private volatile long timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+        private volatile long firedAt;
+    }
+
+    private static final class LatchWorker implements DelayedExecutor.Worker<Element> {
+
+        @Override
+        public boolean doWork(final Element element) {
+            element.firedAt = System.currentTimeMillis();
+            element.fireCount.incrementAndGet();
+            element.latch.countDown();
+            return true;
+        }
+    }
+
+    private static final class ElementResolver implements DelayedExecutor.Resolver<Element> {
+
+        @Override
+        public boolean removeTimeout(final Element element) {
+            if (element.timeoutMillis != DelayedExecutor.UNSET_TIMEOUT) {
+                element.timeoutMillis = DelayedExecutor.UNSET_TIMEOUT;
+                return true;
+            }
+
+            return false;
+        }
+
+        @Override
+        public long getTimeoutMillis(final Element element) {
+            return element.timeoutMillis;
+        }
+
+        @Override
+        public void setTimeoutMillis(final Element element, final long timeoutMillis) {
+            element.timeoutMillis = timeoutMillis;
+        }
+    }
+}
@@ -41,14 +41,18 @@
 package org.glassfish.grizzly;
 
 import java.util.concurrent.ExecutorService;
+import org.glassfish.grizzly.impl.FutureImpl;
+import org.glassfish.grizzly.threadpool.DefaultWorkerThread;
 import org.glassfish.grizzly.threadpool.GrizzlyExecutorService;
 import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
 import java.util.LinkedList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import org.glassfish.grizzly.threadpool.ThreadPoolProbe;
 import org.glassfish.grizzly.utils.DelayedExecutor;
+import org.glassfish.grizzly.utils.Futures;
 
 /**
  *
@@ -173,6 +177,153 @@ public class GrizzlyExecutorServiceTest extends GrizzlyTestCase {
         assertTrue(r.isTerminated());
     }
     
+    public void testVirtualThreads() throws Exception {
+        final int tasks = 1000;
+        final ThreadPoolConfig cfg = ThreadPoolConfig.defaultConfig()
+                .setPoolName("test")
+                .setVirtualThreads(true);
+        assertTrue(cfg.copy().isVirtualThreads());
+
+        // on JDKs without virtual threads the platform thread pool is used
+        final GrizzlyExecutorService r = GrizzlyExecutorService.createInstance(cfg);
+        
+        // all the tasks have to be blocked at the same time
+        final CountDownLatch started = new CountDownLatch(tasks);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < tasks; i++) {
+            r.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            });
+        }
+        
+        try {
+            assertTrue("latch timed out", started.await(30, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+        
+        // the platform thread pool doesn't inherit the virtual thread factory
+        r.reconfigure(r.getConfiguration().setVirtualThreads(false));
+        final FutureImpl<Thread> threadFuture = Futures.createSafeFuture();
+        r.execute(new Runnable() {
+            @Override
+            public void run() {
+                threadFuture.result(Thread.currentThread());
+            }
+        });
+        assertTrue(threadFuture.get(10, TimeUnit.SECONDS) instanceof DefaultWorkerThread);
+        
+        r.shutdown();
+        assertTrue(r.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(r.isTerminated());
+    }
+    
+    public void testWorkStealing() throws Exception {
+        final int threads = 8;
+        final ThreadPoolConfig cfg = ThreadPoolConfig.defaultConfig()
+                .setPoolName("test")
+                .setCorePoolSize(threads).setMaxPoolSize(threads)
+                .setWorkStealing(true);
+        assertTrue(cfg.copy().isWorkStealing());
+        
+        final GrizzlyExecutorService r = GrizzlyExecutorService.createInstance(cfg);
+        final int tasks = 200000;
+        doTest(r, tasks);
+        
+        // tasks submitted by different threads
+        final CountDownLatch cl = new CountDownLatch(tasks);
+        final Thread[] submitters = new Thread[4];
+        for (int i = 0; i < submitters.length; i++) {
+            submitters[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < tasks / submitters.length; j++) {
+                        r.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                cl.countDown();
+                            }
+                        });
+                    }
+                }
+            };
+            submitters[i].start();
+        }
+        assertTrue("latch timed out", cl.await(30, TimeUnit.SECONDS));
+        
+        // the tasks queued to the blocked thread have to be stolen
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch started = new CountDownLatch(threads);
+        for (int i = 0; i < threads; i++) {
+            r.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            });
+        }
+        
+        try {
+            assertTrue("latch timed out", started.await(30, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+        }
+
+        doTest(r.reconfigure(r.getConfiguration().setWorkStealing(false)), tasks);
+        r.shutdown();
+        assertTrue(r.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(r.isTerminated());
+    }
+
+    public void testWorkStealingQueueLimit() throws Exception {
+        final int queueLimit = 10;
+        final ThreadPoolConfig cfg = ThreadPoolConfig.defaultConfig()
+                .setPoolName("test")
+                .setCorePoolSize(1).setMaxPoolSize(1)
+                .setQueueLimit(queueLimit)
+                .setWorkStealing(true);
+        
+        final GrizzlyExecutorService r = GrizzlyExecutorService.createInstance(cfg);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            r.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException ignore) {
+                    }
+                }
+            });
+            assertTrue(started.await(10, TimeUnit.SECONDS));
+            
+            runTasks(r, queueLimit);
+            try {
+                runTasks(r, 1);
+                fail("The task has to be rejected");
+            } catch (RejectedExecutionException expected) {
+            }
+        } finally {
+            release.countDown();
+        }
+        
+        r.shutdown();
+        assertTrue(r.awaitTermination(10, TimeUnit.SECONDS));
+    }
+    
     public void testMonitoringProbesCopying() {
         final ThreadPoolProbe probe = new ThreadPoolProbe.Adapter();
         
@@ -0,0 +1,262 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.DelayedExecutor;
+import org.glassfish.grizzly.utils.RateLimitFilter;
+import org.glassfish.grizzly.utils.RateLimitFilterProbe;
+
+/**
+ * Test {@link RateLimitFilter}
+ */
+public class RateLimitFilterTest extends GrizzlyTestCase {
+    public static final int PORT = 7791;
+
+    public void testFairBandwidthSharing() throws Exception {
+        final int clientsCount = 2;
+        final int bytesPerClient = 30000;
+        final int addressBytesPerSecond = 20000;
+        
+        final DelayedExecutor executor =
+                RateLimitFilter.createDefaultRateLimitDelayedExecutor();
+        executor.start();
+        
+        final RateLimitFilter rateLimitFilter = new RateLimitFilter(executor,
+                RateLimitFilter.UNLIMITED, RateLimitFilter.UNLIMITED,
+                addressBytesPerSecond, RateLimitFilter.UNLIMITED);
+        
+        final AtomicInteger throttleEvents = new AtomicInteger();
+        final AtomicLong throttledNanos = new AtomicLong();
+        rateLimitFilter.getMonitoringConfig().addProbes(new RateLimitFilterProbe.Adapter() {
+
+            @Override
+            public void onThrottleEvent(RateLimitFilter filter,
+                    Connection connection, long delayNanos) {
+                throttleEvents.incrementAndGet();
+            }
+
+            @Override
+            public void onResumeEvent(RateLimitFilter filter,
+                    Connection connection, long throttledTime) {
+                throttledNanos.addAndGet(throttledTime);
+            }
+        });
+        
+        final ConcurrentMap<Connection, AtomicInteger> receivedBytes =
+                new ConcurrentHashMap<Connection, AtomicInteger>();
+        final ConcurrentMap<Connection, Long> finishTimes =
+                new ConcurrentHashMap<Connection, Long>();
+        final CountDownLatch latch = new CountDownLatch(clientsCount);
+        
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(rateLimitFilter);
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(FilterChainContext ctx)
+                    throws IOException {
+                final Connection connection = ctx.getConnection();
+                AtomicInteger counter = receivedBytes.get(connection);
+                if (counter == null) {
+                    final AtomicInteger newCounter = new AtomicInteger();
+                    counter = receivedBytes.putIfAbsent(connection, newCounter);
+                    if (counter == null) {
+                        counter = newCounter;
+                    }
+                }
+                
+                final Buffer buffer = ctx.getMessage();
+                if (counter.addAndGet(buffer.remaining()) == bytesPerClient) {
+                    finishTimes.put(connection, System.currentTimeMillis());
+                    latch.countDown();
+                }
+                
+                buffer.tryDispose();
+                return ctx.getStopAction();
+            }
+        });
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setReadBufferSize(1024)
+                .build();
+        transport.setProcessor(filterChainBuilder.build());
+        
+        final Connection[] connections = new Connection[clientsCount];
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            for (int i = 0; i < clientsCount; i++) {
+                connections[i] = transport.connect("localhost", PORT)
+                        .get(10, TimeUnit.SECONDS);
+            }
+            
+            final long start = System.currentTimeMillis();
+            for (Connection connection : connections) {
+                connection.write(Buffers.wrap(transport.getMemoryManager(),
+                        new byte[bytesPerClient]));
+            }
+
+            assertTrue(latch.await(20, TimeUnit.SECONDS));
+            
+            // 100ms worth of data is allowed as a burst,
+            // the rest has to be read at the limited rate
+            final long minDuration = (clientsCount * bytesPerClient
+                    - addressBytesPerSecond / 10) * 1000L / addressBytesPerSecond;
+            final long duration = System.currentTimeMillis() - start;
+            assertTrue("duration=" + duration, duration >= minDuration * 3 / 4);
+            
+            // the connections share the bandwidth, so they finish almost
+            // at the same time
+            long minFinishTime = Long.MAX_VALUE;
+            long maxFinishTime = Long.MIN_VALUE;
+            for (Long finishTime : finishTimes.values()) {
+                minFinishTime = Math.min(minFinishTime, finishTime);
+                maxFinishTime = Math.max(maxFinishTime, finishTime);
+            }
+            assertTrue("finish time difference=" + (maxFinishTime - minFinishTime),
+                    maxFinishTime - minFinishTime < minDuration / 2);
+            
+            assertTrue(throttleEvents.get() > 0);
+            assertTrue(throttledNanos.get() > 0);
+        } finally {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    connection.closeSilently();
+                }
+            }
+            
+            executor.stop();
+            executor.destroy();
+            transport.shutdownNow();
+        }
+    }
+
+    public void testCloseThrottledConnection() throws Exception {
+        final DelayedExecutor executor =
+                RateLimitFilter.createDefaultRateLimitDelayedExecutor();
+        executor.start();
+        
+        final RateLimitFilter rateLimitFilter = new RateLimitFilter(executor,
+                1000, RateLimitFilter.UNLIMITED,
+                RateLimitFilter.UNLIMITED, RateLimitFilter.UNLIMITED);
+        
+        final CountDownLatch throttledLatch = new CountDownLatch(1);
+        final AtomicReference<Connection> throttledConnection =
+                new AtomicReference<Connection>();
+        rateLimitFilter.getMonitoringConfig().addProbes(new RateLimitFilterProbe.Adapter() {
+
+            @Override
+            public void onThrottleEvent(RateLimitFilter filter,
+                    Connection connection, long delayNanos) {
+                throttledConnection.compareAndSet(null, connection);
+                throttledLatch.countDown();
+            }
+        });
+        
+        FilterChainBuilder filterChainBuilder = FilterChainBuilder.stateless();
+        filterChainBuilder.add(new TransportFilter());
+        filterChainBuilder.add(rateLimitFilter);
+        filterChainBuilder.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(FilterChainContext ctx)
+                    throws IOException {
+                final Buffer buffer = ctx.getMessage();
+                buffer.tryDispose();
+                return ctx.getStopAction();
+            }
+        });
+
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setReadBufferSize(1024)
+                .build();
+        transport.setProcessor(filterChainBuilder.build());
+        
+        Connection connection = null;
+        try {
+            transport.bind(PORT);
+            transport.start();
+
+            connection = transport.connect("localhost", PORT)
+                    .get(10, TimeUnit.SECONDS);
+            connection.write(Buffers.wrap(transport.getMemoryManager(),
+                    new byte[4096]));
+            
+            assertTrue(throttledLatch.await(10, TimeUnit.SECONDS));
+            
+            // close the connection, while it's paused
+            final Connection serverConnection = throttledConnection.get();
+            serverConnection.closeSilently();
+            
+            // let the resume task run
+            Thread.sleep(2000);
+            
+            for (String name : serverConnection.getAttributes().getAttributeNames()) {
+                assertFalse("the record of the closed connection was re-created",
+                        name.startsWith(RateLimitFilter.class.getName()));
+            }
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            
+            executor.stop();
+            executor.destroy();
+            transport.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,309 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.FilterChainBuilder;
+import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.filterchain.NextAction;
+import org.glassfish.grizzly.filterchain.TransportFilter;
+import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.nio.NIOConnection;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransportBuilder;
+import org.glassfish.grizzly.utils.EchoFilter;
+import org.glassfish.grizzly.utils.RelayFilter;
+
+/**
+ * Test {@link RelayFilter}
+ */
+public class RelayFilterTest extends GrizzlyTestCase {
+    public static final int PROXY_PORT = 7792;
+    public static final int BACKEND_PORT = 7793;
+
+    public void testRelayWithBackpressure() throws Exception {
+        final int size = 2 * 1024 * 1024;
+        final int maxPendingBytes = 64 * 1024;
+        final int readBufferSize = 16 * 1024;
+        
+        // slow echo backend
+        final FilterChainBuilder backendChain = FilterChainBuilder.stateless();
+        backendChain.add(new TransportFilter());
+        backendChain.add(new BaseFilter() {
+            @Override
+            public NextAction handleAccept(final FilterChainContext ctx)
+                    throws IOException {
+                // small socket buffer, so the proxy's write queue grows
+                ctx.getConnection().setReadBufferSize(4096);
+                return ctx.getInvokeAction();
+            }
+            
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException ignored) {
+                }
+                
+                return ctx.getInvokeAction();
+            }
+        });
+        backendChain.add(new EchoFilter());
+        
+        final TCPNIOTransport backendTransport =
+                TCPNIOTransportBuilder.newInstance()
+                .setReadBufferSize(4096)
+                .build();
+        backendTransport.setProcessor(backendChain.build());
+        
+        // proxy, which connects the backend and splices the connections
+        final RelayFilter relayFilter = new RelayFilter(maxPendingBytes);
+        final AtomicReference<Connection> backendConnectionRef =
+                new AtomicReference<Connection>();
+        final TCPNIOTransport proxyTransport = createProxyTransport(
+                relayFilter, backendConnectionRef, readBufferSize);
+        
+        // client, which verifies the echoed data
+        final byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        
+        final AtomicInteger received = new AtomicInteger();
+        final AtomicInteger mismatches = new AtomicInteger();
+        final CountDownLatch latch = new CountDownLatch(1);
+        
+        final FilterChainBuilder clientChain = FilterChainBuilder.stateless();
+        clientChain.add(new TransportFilter());
+        clientChain.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer buffer = ctx.getMessage();
+                int offset = received.get();
+                while (buffer.hasRemaining()) {
+                    if (buffer.get() != data[offset++]) {
+                        mismatches.incrementAndGet();
+                    }
+                }
+                
+                if (received.addAndGet(offset - received.get()) == size) {
+                    latch.countDown();
+                }
+                
+                buffer.tryDispose();
+                return ctx.getStopAction();
+            }
+        });
+        
+        final TCPNIOTransport clientTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        clientTransport.setProcessor(clientChain.build());
+        
+        Connection connection = null;
+        try {
+            backendTransport.bind(BACKEND_PORT);
+            backendTransport.start();
+            proxyTransport.bind(PROXY_PORT);
+            proxyTransport.start();
+            clientTransport.start();
+
+            connection = clientTransport.connect("localhost", PROXY_PORT)
+                    .get(10, TimeUnit.SECONDS);
+            connection.write(Buffers.wrap(clientTransport.getMemoryManager(), data));
+            
+            // watch the proxy's write queue to the backend
+            int maxQueueSize = 0;
+            while (!latch.await(1, TimeUnit.MILLISECONDS)) {
+                final NIOConnection backendConnection =
+                        (NIOConnection) backendConnectionRef.get();
+                if (backendConnection != null) {
+                    maxQueueSize = Math.max(maxQueueSize,
+                            backendConnection.getAsyncWriteQueue().spaceInBytes());
+                }
+                
+                assertTrue("Timeout. Received " + received.get() + " bytes",
+                        received.get() < size);
+            }
+            
+            assertEquals(0, mismatches.get());
+            assertTrue("maxQueueSize=" + maxQueueSize,
+                    maxQueueSize <= maxPendingBytes + readBufferSize);
+            
+            final Connection backendConnection = backendConnectionRef.get();
+            assertSame(backendConnection,
+                    relayFilter.getPeer(relayFilter.getPeer(backendConnection)));
+            
+            // closing one side closes the other one
+            connection.close().get(10, TimeUnit.SECONDS);
+            backendConnection.closeFuture().get(10, TimeUnit.SECONDS);
+            assertNull(relayFilter.getPeer(backendConnection));
+        } finally {
+            if (connection != null) {
+                connection.closeSilently();
+            }
+            
+            clientTransport.shutdownNow();
+            proxyTransport.shutdownNow();
+            backendTransport.shutdownNow();
+        }
+    }
+    
+    public void testEofPropagation() throws Exception {
+        final byte[] data = new byte[64 * 1024];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i % 251);
+        }
+        
+        // backend, which counts the bytes received before the EOF
+        final AtomicInteger received = new AtomicInteger();
+        final CountDownLatch closeLatch = new CountDownLatch(1);
+        final AtomicReference<CloseType> closeTypeRef =
+                new AtomicReference<CloseType>();
+        
+        final FilterChainBuilder backendChain = FilterChainBuilder.stateless();
+        backendChain.add(new TransportFilter());
+        backendChain.add(new BaseFilter() {
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Buffer buffer = ctx.getMessage();
+                received.addAndGet(buffer.remaining());
+                buffer.tryDispose();
+                return ctx.getStopAction();
+            }
+
+            @Override
+            public NextAction handleClose(final FilterChainContext ctx)
+                    throws IOException {
+                closeTypeRef.set(ctx.getConnection().getCloseReason().getType());
+                closeLatch.countDown();
+                return ctx.getInvokeAction();
+            }
+        });
+        
+        final TCPNIOTransport backendTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        backendTransport.setProcessor(backendChain.build());
+        
+        final RelayFilter relayFilter = new RelayFilter();
+        final TCPNIOTransport proxyTransport = createProxyTransport(
+                relayFilter, new AtomicReference<Connection>(), 16 * 1024);
+        
+        final Socket socket = new Socket();
+        try {
+            backendTransport.bind(BACKEND_PORT);
+            backendTransport.start();
+            proxyTransport.bind(PROXY_PORT);
+            proxyTransport.start();
+            
+            socket.connect(new InetSocketAddress("localhost", PROXY_PORT), 10000);
+            socket.getOutputStream().write(data);
+            socket.getOutputStream().flush();
+            // the client's EOF has to reach the backend after the data
+            socket.shutdownOutput();
+            
+            assertTrue(closeLatch.await(10, TimeUnit.SECONDS));
+            assertEquals(CloseType.REMOTELY, closeTypeRef.get());
+            assertEquals(data.length, received.get());
+        } finally {
+            socket.close();
+            proxyTransport.shutdownNow();
+            backendTransport.shutdownNow();
+        }
+    }
+    
+    private static TCPNIOTransport createProxyTransport(
+            final RelayFilter relayFilter,
+            final AtomicReference<Connection> backendConnectionRef,
+            final int readBufferSize) {
+        final TCPNIOTransport proxyTransport =
+                TCPNIOTransportBuilder.newInstance()
+                .setReadBufferSize(readBufferSize)
+                .build();
+        
+        final FilterChainBuilder proxyChain = FilterChainBuilder.stateless();
+        proxyChain.add(new TransportFilter());
+        proxyChain.add(relayFilter);
+        proxyChain.add(new BaseFilter() {
+            // the first read from a client - connect the backend
+            @Override
+            public NextAction handleRead(final FilterChainContext ctx)
+                    throws IOException {
+                final Object message = ctx.getMessage();
+                final NextAction suspendAction = ctx.getSuspendAction();
+                ctx.suspend();
+                
+                proxyTransport.connect(new InetSocketAddress("localhost", BACKEND_PORT),
+                        new EmptyCompletionHandler<Connection>() {
+
+                    @Override
+                    public void completed(final Connection backendConnection) {
+                        backendConnection.setWriteBufferSize(4096);
+                        relayFilter.splice(ctx.getConnection(), backendConnection);
+                        backendConnectionRef.set(backendConnection);
+                        backendConnection.write(message);
+                        ctx.resume(ctx.getStopAction());
+                    }
+
+                    @Override
+                    public void failed(final Throwable throwable) {
+                        ctx.getConnection().closeSilently();
+                        ctx.resume(ctx.getStopAction());
+                    }
+                });
+                
+                return suspendAction;
+            }
+        });
+        proxyTransport.setProcessor(proxyChain.build());
+        
+        return proxyTransport;
+    }
+}
@@ -69,7 +69,9 @@ import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
 import java.io.IOException;
 import java.net.URL;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import org.glassfish.grizzly.filterchain.TransportFilter;
@@ -77,6 +79,7 @@ import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.MemoryManager;
 import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.ssl.SSLBaseFilter;
 import org.glassfish.grizzly.ssl.SSLContextConfigurator;
 import org.glassfish.grizzly.ssl.SSLEngineConfigurator;
 import org.glassfish.grizzly.ssl.SSLFilter;
@@ -89,6 +92,7 @@ import org.glassfish.grizzly.utils.EchoFilter;
 import org.glassfish.grizzly.utils.StringFilter;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.net.ssl.KeyManager;
@@ -240,6 +244,52 @@ public class SSLTest {
         doTestPingPongFilterChain(false, 5, 1, new ChunkingFilter(1));
     }
 
+    @Test
+    public void testPingPongFilterChainHandshakeExecutor() throws Exception {
+        final ExecutorService handshakeExecutor = Executors.newFixedThreadPool(2);
+        final AtomicInteger executedCounter = new AtomicInteger();
+        final AtomicInteger rejectedCounter = new AtomicInteger();
+        
+        final SSLFilter sslFilter = createPingPongSSLFilter();
+        sslFilter.setHandshakeExecutor(handshakeExecutor);
+        sslFilter.addHandshakeTaskListener(
+                new CountingHandshakeTaskListener(executedCounter, rejectedCounter));
+        
+        try {
+            doTestPingPongFilterChain(sslFilter, false, 5, 0);
+        } finally {
+            handshakeExecutor.shutdownNow();
+        }
+        
+        // both client and server side delegated tasks were offloaded
+        assertTrue(executedCounter.get() >= 2);
+        assertEquals(0, rejectedCounter.get());
+        assertEquals(0, sslFilter.getQueuedHandshakeTasksCount());
+    }
+
+    @Test
+    public void testPingPongFilterChainHandshakeExecutorRejected() throws Exception {
+        final AtomicInteger executedCounter = new AtomicInteger();
+        final AtomicInteger rejectedCounter = new AtomicInteger();
+        
+        final SSLFilter sslFilter = createPingPongSSLFilter();
+        sslFilter.setHandshakeExecutor(new Executor() {
+            @Override
+            public void execute(final Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        sslFilter.addHandshakeTaskListener(
+                new CountingHandshakeTaskListener(executedCounter, rejectedCounter));
+        
+        doTestPingPongFilterChain(sslFilter, false, 5, 0);
+        
+        // rejected tasks are run in the current thread
+        assertTrue(rejectedCounter.get() >= 2);
+        assertEquals(rejectedCounter.get(), executedCounter.get());
+        assertEquals(0, sslFilter.getQueuedHandshakeTasksCount());
+    }
+
     @Test
     public void testSimplePendingSSLClientWrites() throws Exception {
         doTestPendingSSLClientWrites(1, 1);
@@ -404,25 +454,17 @@ public class SSLTest {
     protected void doTestPingPongFilterChain(boolean isBlocking,
             int turnAroundsNum, int filterIndex, Filter... filters)
             throws Exception {
+        doTestPingPongFilterChain(createPingPongSSLFilter(), isBlocking,
+                turnAroundsNum, filterIndex, filters);
+    }
+
+    protected void doTestPingPongFilterChain(final SSLFilter sslFilter,
+            boolean isBlocking, int turnAroundsNum, int filterIndex,
+            Filter... filters) throws Exception {
 
         final Integer pingPongTurnArounds = turnAroundsNum;
 
         Connection connection = null;
-        SSLContextConfigurator sslContextConfigurator = createSSLContextConfigurator();
-        SSLEngineConfigurator clientSSLEngineConfigurator = null;
-        SSLEngineConfigurator serverSSLEngineConfigurator = null;
-
-        if (sslContextConfigurator.validateConfiguration(true)) {
-            clientSSLEngineConfigurator =
-                    new SSLEngineConfigurator(sslContextConfigurator.createSSLContext(true));
-            serverSSLEngineConfigurator =
-                    new SSLEngineConfigurator(sslContextConfigurator.createSSLContext(true),
-                    false, false, false);
-        } else {
-            fail("Failed to validate SSLContextConfiguration.");
-        }
-        final SSLFilter sslFilter = new SSLFilter(serverSSLEngineConfigurator,
-                clientSSLEngineConfigurator);
         final SSLPingPongFilter pingPongFilter = new SSLPingPongFilter(
                 sslFilter, pingPongTurnArounds);
 
@@ -785,6 +827,24 @@ public class SSLTest {
 
     // --------------------------------------------------------- Private Methods
 
+
+    private SSLFilter createPingPongSSLFilter() {
+        SSLContextConfigurator sslContextConfigurator = createSSLContextConfigurator();
+        SSLEngineConfigurator clientSSLEngineConfigurator = null;
+        SSLEngineConfigurator serverSSLEngineConfigurator = null;
+
+        if (sslContextConfigurator.validateConfiguration(true)) {
+            clientSSLEngineConfigurator =
+                    new SSLEngineConfigurator(sslContextConfigurator.createSSLContext(true));
+            serverSSLEngineConfigurator =
+                    new SSLEngineConfigurator(sslContextConfigurator.createSSLContext(true),
+                    false, false, false);
+        } else {
+            fail("Failed to validate SSLContextConfiguration.");
+        }
+        return new SSLFilter(serverSSLEngineConfigurator,
+                clientSSLEngineConfigurator);
+    }
     
     private SSLContextConfigurator createSSLContextConfigurator() {
         SSLContextConfigurator sslContextConfigurator =
@@ -836,6 +896,29 @@ public class SSLTest {
     // ---------------------------------------------------------- Nested Classes
 
 
+    private static class CountingHandshakeTaskListener
+            implements SSLBaseFilter.HandshakeTaskListener {
+        private final AtomicInteger executedCounter;
+        private final AtomicInteger rejectedCounter;
+
+        private CountingHandshakeTaskListener(final AtomicInteger executedCounter,
+                final AtomicInteger rejectedCounter) {
+            this.executedCounter = executedCounter;
+            this.rejectedCounter = rejectedCounter;
+        }
+
+        @Override
+        public void onTasksExecuted(final Connection connection,
+                final long queueTimeNanos, final long executionTimeNanos) {
+            executedCounter.incrementAndGet();
+        }
+
+        @Override
+        public void onTasksRejected(final Connection connection) {
+            rejectedCounter.incrementAndGet();
+        }
+    }
+    
     private static class SSLPingPongFilter extends BaseFilter {
         private final Attribute<Integer> turnAroundAttr =
                 Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute("TurnAroundAttr");
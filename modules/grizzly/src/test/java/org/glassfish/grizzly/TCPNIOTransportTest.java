@@ -43,7 +43,9 @@ package org.glassfish.grizzly;
 import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
 import java.nio.channels.SelectableChannel;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Arrays;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutionException;
@@ -57,7 +59,9 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.glassfish.grizzly.attributes.Attribute;
 import org.glassfish.grizzly.filterchain.BaseFilter;
+import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.filterchain.FilterChainBuilder;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
 import org.glassfish.grizzly.filterchain.NextAction;
@@ -65,6 +69,7 @@ import org.glassfish.grizzly.filterchain.TransportFilter;
 import org.glassfish.grizzly.impl.FutureImpl;
 import org.glassfish.grizzly.impl.SafeFutureImpl;
 import org.glassfish.grizzly.memory.ByteBufferWrapper;
+import org.glassfish.grizzly.memory.HeapMemoryManager;
 import org.glassfish.grizzly.nio.AbstractNIOConnectionDistributor;
 import org.glassfish.grizzly.nio.NIOConnection;
 import org.glassfish.grizzly.nio.NIOTransport;
@@ -91,6 +96,7 @@ import static junit.framework.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 
 /**
@@ -104,6 +110,11 @@ public class TCPNIOTransportTest {
 
     private static final Logger logger = Grizzly.logger(TCPNIOTransportTest.class);
 
+    // the echoed messages received by the checkEcho() client connection
+    private static final Attribute<BlockingQueue<String>> resultQueueAttr =
+            Grizzly.DEFAULT_ATTRIBUTE_BUILDER.createAttribute(
+            TCPNIOTransportTest.class.getName() + ".resultQueue");
+
     @Before
     public void setUp() throws Exception {
         ByteBufferWrapper.DEBUG_MODE = true;
@@ -147,6 +158,41 @@ public class TCPNIOTransportTest {
         }
     }
 
+    @Test
+    public void testReusePortBinding() throws Exception {
+        assumeTrue("SO_REUSEPORT is not supported", isReusePortSupported());
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setReusePortBinding(true)
+                .build();
+        transport.setSelectorRunnersCount(4);
+
+        final TCPNIOTransport clientTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        
+        try {
+            final TCPNIOServerConnection serverConnection = transport.bind(PORT);
+            // one listening socket per SelectorRunner
+            assertEquals(4, serverConnection.getAcceptorsCount());
+            
+            checkEcho(transport, null, clientTransport, 32, "Hello");
+            
+            transport.unbindAll();
+
+            final Future<Connection> future =
+                    clientTransport.connect("localhost", PORT);
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("Server connections should be closed!");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IOException);
+            }
+        } finally {
+            clientTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+
     @Test
     public void testMultiBind() throws Exception {
         Connection connection = null;
@@ -269,6 +315,116 @@ public class TCPNIOTransportTest {
         }        
     }
 
+    @Test
+    public void testReadArena() throws Exception {
+        final int messagesCount = 200;
+        
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setIOStrategy(SameThreadIOStrategy.getInstance())
+                .setReadArenaSize(16384)
+                .setReadBufferSize(4096)
+                .setMemoryManager(new HeapMemoryManager())
+                .build();
+
+        final TCPNIOTransport clientTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        
+        // the heap memory manager never reads to direct buffers, the arena does
+        final AtomicInteger directReads = new AtomicInteger();
+        final AtomicInteger heapReads = new AtomicInteger();
+        try {
+            transport.bind(PORT);
+            
+            // the messages are pipelined, so the server reads get several
+            // messages and the incomplete ones are kept till the next read
+            final String[] messages = new String[messagesCount];
+            for (int i = 0; i < messagesCount; i++) {
+                final char[] chars = new char[(i * 37) % 3000 + 1];
+                Arrays.fill(chars, (char) ('a' + i % 26));
+                messages[i] = i + ":" + new String(chars);
+            }
+            
+            checkEcho(transport, new BaseFilter() {
+                @Override
+                public NextAction handleRead(FilterChainContext ctx)
+                        throws IOException {
+                    if (((Buffer) ctx.getMessage()).isDirect()) {
+                        directReads.incrementAndGet();
+                    } else {
+                        heapReads.incrementAndGet();
+                    }
+                    return ctx.getInvokeAction();
+                }
+            }, clientTransport, 1, messages);
+            
+            assertTrue(directReads.get() > 0);
+            assertEquals(0, heapReads.get());
+        } finally {
+            clientTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testOptimizedSelectedKeys() throws Exception {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setOptimizedSelectedKeys(true)
+                .build();
+
+        final TCPNIOTransport clientTransport = TCPNIOTransportBuilder.newInstance()
+                .setOptimizedSelectedKeys(true)
+                .build();
+        
+        final FutureImpl<NIOConnection> serverConnectionFuture =
+                Futures.createSafeFuture();
+        try {
+            transport.bind(PORT);
+            
+            checkEcho(transport, new ConnectionCaptureFilter(serverConnectionFuture),
+                    clientTransport, 16, messages(50));
+            
+            if (System.getProperty("java.specification.version").startsWith("1.")) {
+                // JDK 9+ may not allow to replace the selected keys set
+                assertEquals("SelectedKeySet", serverConnectionFuture
+                        .get(10, TimeUnit.SECONDS).getSelectorRunner()
+                        .getSelector().selectedKeys().getClass().getSimpleName());
+            }
+        } finally {
+            clientTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSelectorRunnerIterationLimits() throws Exception {
+        final TCPNIOTransport transport = TCPNIOTransportBuilder.newInstance()
+                .setSelectorRunnersCount(1)
+                .setMaxSelectedKeysPerIteration(2)
+                .setMaxPendingTasksPerIteration(1)
+                .build();
+
+        final TCPNIOTransport clientTransport =
+                TCPNIOTransportBuilder.newInstance().build();
+        
+        final FutureImpl<NIOConnection> serverConnectionFuture =
+                Futures.createSafeFuture();
+        try {
+            transport.bind(PORT);
+            
+            checkEcho(transport, new ConnectionCaptureFilter(serverConnectionFuture),
+                    clientTransport, 16, messages(50));
+            
+            final SelectorRunner runner = serverConnectionFuture
+                    .get(10, TimeUnit.SECONDS).getSelectorRunner();
+            assertTrue(runner.getTotalSelectedKeysCount() > 0);
+            assertTrue(runner.getIterationsCount() >= runner.getSelectsCount());
+            assertTrue(runner.getTotalIterationTimeNanos() > 0);
+        } finally {
+            clientTransport.shutdownNow();
+            transport.shutdownNow();
+        }
+    }
+
     @Test
     public void testSelectorSwitch() throws Exception {
         Connection connection = null;
@@ -588,9 +744,127 @@ public class TCPNIOTransportTest {
         }
     }
     
+    /**
+     * Starts the echo server <tt>transport</tt>, which has to be bound on
+     * {@link #PORT}, connects <tt>connectionsCount</tt> clients using the
+     * <tt>clientTransport</tt>, pipelines all the <tt>messages</tt> over every
+     * connection and checks they are echoed back in order.
+     * 
+     * @param serverFilter the {@link Filter} to be added to the server chain
+     *        right after the {@link TransportFilter}, or <tt>null</tt>
+     */
+    private static void checkEcho(final TCPNIOTransport transport,
+            final Filter serverFilter, final TCPNIOTransport clientTransport,
+            final int connectionsCount, final String... messages)
+            throws Exception {
+        final FilterChainBuilder serverChainBuilder = FilterChainBuilder.stateless()
+                .add(new TransportFilter());
+        if (serverFilter != null) {
+            serverChainBuilder.add(serverFilter);
+        }
+        transport.setProcessor(serverChainBuilder
+                .add(new StringFilter())
+                .add(new EchoFilter())
+                .build());
+        transport.start();
+        clientTransport.start();
+        
+        final TCPNIOConnectorHandler connectorHandler =
+                TCPNIOConnectorHandler.builder(clientTransport)
+                .processor(FilterChainBuilder.stateless()
+                    .add(new TransportFilter())
+                    .add(new StringFilter())
+                    .add(new BaseFilter() {
+                        @Override
+                        public NextAction handleRead(FilterChainContext ctx)
+                                throws IOException {
+                            resultQueueAttr.get(ctx.getConnection())
+                                    .add((String) ctx.getMessage());
+                            return ctx.getStopAction();
+                        }
+                    })
+                    .build())
+                .build();
+        
+        final Connection[] connections = new Connection[connectionsCount];
+        try {
+            for (int i = 0; i < connectionsCount; i++) {
+                connections[i] = connectorHandler.connect("localhost", PORT)
+                        .get(10, TimeUnit.SECONDS);
+                resultQueueAttr.set(connections[i],
+                        new LinkedTransferQueue<String>());
+            }
+            
+            for (String message : messages) {
+                for (Connection connection : connections) {
+                    connection.write(message);
+                }
+            }
+            
+            for (int i = 0; i < connectionsCount; i++) {
+                final BlockingQueue<String> resultQueue =
+                        resultQueueAttr.get(connections[i]);
+                for (int j = 0; j < messages.length; j++) {
+                    assertEquals("Unexpected response (" + i + "-" + j + ")",
+                            messages[j], resultQueue.poll(10, TimeUnit.SECONDS));
+                }
+            }
+        } finally {
+            for (Connection connection : connections) {
+                if (connection != null) {
+                    connection.closeSilently();
+                }
+            }
+        }
+    }
     
+    private static String[] messages(final int count) {
+        final String[] messages = new String[count];
+        for (int i = 0; i < count; i++) {
+            messages[i] = "Message " + i;
+        }
+        return messages;
+    }
+    
+    private static boolean isReusePortSupported() throws IOException {
+        final Object reusePortOption;
+        try {
+            // SO_REUSEPORT has been introduced in JDK 9
+            reusePortOption = StandardSocketOptions.class
+                    .getField("SO_REUSEPORT").get(null);
+        } catch (Exception e) {
+            return false;
+        }
+        
+        final ServerSocketChannel channel = ServerSocketChannel.open();
+        try {
+            return channel.supportedOptions().contains(reusePortOption);
+        } finally {
+            channel.close();
+        }
+    }
+
+
     // ---------------------------------------------------------- Nested Classes
 
+    /**
+     * Passes the connection of the first read event to the future.
+     */
+    private static final class ConnectionCaptureFilter extends BaseFilter {
+        private final FutureImpl<NIOConnection> connectionFuture;
+
+        private ConnectionCaptureFilter(
+                final FutureImpl<NIOConnection> connectionFuture) {
+            this.connectionFuture = connectionFuture;
+        }
+
+        @Override
+        public NextAction handleRead(FilterChainContext ctx) throws IOException {
+            connectionFuture.result((NIOConnection) ctx.getConnection());
+            return ctx.getInvokeAction();
+        }
+    }
+
     static class SameThreadIOStrategyInterruptWrapper implements IOStrategy {
         private final IOStrategy delegate = SameThreadIOStrategy.getInstance();
         private volatile boolean interruptedOnce = false;
@@ -681,4 +955,5 @@ public class TCPNIOTransportTest {
             return runners[index];
         }
     }
+
 }
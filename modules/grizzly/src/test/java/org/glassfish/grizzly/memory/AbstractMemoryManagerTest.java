@@ -59,6 +59,7 @@ public class AbstractMemoryManagerTest {
                 {0},
                 {1},
                 {2},
+                {3},
         });
     }
 
@@ -73,6 +74,9 @@ public class AbstractMemoryManagerTest {
             case 2:
                 mm = createPooledMemoryManager();
                 break;
+            case 3:
+                mm = createSlabMemoryManager();
+                break;
             default:
                 throw new IllegalStateException("Unknown memory manager type");
         }
@@ -82,6 +86,10 @@ public class AbstractMemoryManagerTest {
         return new PooledMemoryManager();
     }
 
+    protected SlabMemoryManager createSlabMemoryManager() {
+        return new SlabMemoryManager();
+    }
+
     protected ByteBufferManager createByteBufferManager() {
         return new ByteBufferManager();
     }
@@ -0,0 +1,190 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.glassfish.grizzly.Buffer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class BufferLeakDetectorTest {
+
+    private LeakProbe probe;
+    private PooledMemoryManager mm;
+    
+    @Before
+    public void setUp() {
+        BufferLeakDetector.detectLeaks();
+        BufferLeakDetector.setSamplingRate(1f);
+        
+        mm = new PooledMemoryManager();
+        probe = new LeakProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+    }
+
+    @After
+    public void tearDown() {
+        BufferLeakDetector.setSamplingRate(0f);
+    }
+    
+    @Test
+    public void testInvalidSamplingRate() {
+        try {
+            BufferLeakDetector.setSamplingRate(-0.1f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        
+        try {
+            BufferLeakDetector.setSamplingRate(1.1f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+    
+    @Test
+    public void testDisabled() {
+        BufferLeakDetector.setSamplingRate(0f);
+        final int tracked = BufferLeakDetector.getTrackedBuffersCount();
+        
+        mm.allocate(1024);
+        
+        assertEquals(tracked, BufferLeakDetector.getTrackedBuffersCount());
+    }
+    
+    @Test
+    public void testPooledBufferLeak() throws Exception {
+        allocateAndDrop();
+        
+        assertEquals(1, awaitLeaks(1));
+        assertEquals(1, probe.leaked.get());
+    }
+
+    @Test
+    public void testCompositeBufferLeak() throws Exception {
+        allocateCompositeAndDrop();
+        
+        // the composite takes over the tracking of the pooled buffer it contains
+        assertEquals(1, awaitLeaks(2));
+        assertEquals(1, probe.leaked.get());
+    }
+
+    @Test
+    public void testLargeBufferLeak() throws Exception {
+        allocateLargeAndDrop();
+        
+        assertEquals(1, awaitLeaks(2));
+        assertEquals(1, probe.leaked.get());
+    }
+
+    @Test
+    public void testHeapCompositeBufferIsNotTracked() {
+        final HeapMemoryManager heapMM = new HeapMemoryManager();
+        final int tracked = BufferLeakDetector.getTrackedBuffersCount();
+        
+        final CompositeBuffer composite = CompositeBuffer.newBuffer(heapMM);
+        composite.append(heapMM.allocate(1024));
+        composite.append(heapMM.allocate(1024));
+        
+        assertEquals(tracked, BufferLeakDetector.getTrackedBuffersCount());
+    }
+    
+    @Test
+    public void testDisposedBuffersAreNotReported() throws Exception {
+        final int tracked = BufferLeakDetector.getTrackedBuffersCount();
+        
+        for (int i = 0; i < 16; i++) {
+            final Buffer buffer = mm.allocate(1024);
+            buffer.putInt(i);
+            buffer.tryDispose();
+        }
+        
+        final CompositeBuffer composite = CompositeBuffer.newBuffer(mm);
+        composite.allowInternalBuffersDispose(true);
+        composite.append(mm.allocate(1024));
+        composite.tryDispose();
+        
+        assertEquals(tracked, BufferLeakDetector.getTrackedBuffersCount());
+        
+        allocateAndDrop();
+        assertEquals(1, awaitLeaks(1));
+        assertEquals(1, probe.leaked.get());
+    }
+    
+    private void allocateAndDrop() {
+        mm.allocate(1024).putInt(1);
+    }
+
+    private void allocateLargeAndDrop() {
+        final Buffer buffer = mm.allocate(1024 * 1024);
+        assertTrue(buffer.isComposite());
+        buffer.putInt(1);
+    }
+
+    private void allocateCompositeAndDrop() {
+        final CompositeBuffer composite = CompositeBuffer.newBuffer(mm);
+        composite.append(mm.allocate(1024));
+    }
+    
+    private static int awaitLeaks(final int expected)
+            throws InterruptedException {
+        int leaks = 0;
+        for (int i = 0; i < 50 && leaks < expected; i++) {
+            System.gc();
+            Thread.sleep(20);
+            leaks += BufferLeakDetector.detectLeaks();
+        }
+        
+        return leaks;
+    }
+    
+    private static final class LeakProbe extends MemoryProbe.Adapter {
+        private final AtomicInteger leaked = new AtomicInteger();
+
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationTrace) {
+            leaked.incrementAndGet();
+        }
+    }
+}
@@ -48,8 +48,12 @@ import java.nio.ByteBuffer;
 import java.nio.InvalidMarkException;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.asyncqueue.MessageCloner;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 @RunWith(Parameterized.class)
@@ -144,4 +148,119 @@ public class GeneralMemoryManagerTest extends AbstractMemoryManagerTest {
         assertMarkExceptionThrown(newBuffer);
     }
 
+    @Test
+    public void testRetainedReference() {
+        final Buffer payload = mm.allocate(1024);
+        fillPattern(payload);
+        
+        final Buffer[] references = new Buffer[8];
+        for (int i = 0; i < references.length; i++) {
+            references[i] = Buffers.retain(payload);
+            assertTrue(references[i].isReadOnly());
+            assertTrue(references[i].allowBufferDispose());
+        }
+        
+        payload.tryDispose();
+        overwriteReleasedMemory(1024);
+
+        // each reference has its own position
+        references[0].get();
+        assertEquals(1023, references[0].remaining());
+        
+        for (int i = 1; i < references.length; i++) {
+            assertPattern(references[i]);
+            assertTrue(references[i].tryDispose());
+        }
+        
+        references[0].tryDispose();
+    }
+
+    @Test
+    public void testRetainedReferenceInDebugMode() {
+        final boolean heapDebugMode = HeapBuffer.DEBUG_MODE;
+        final boolean wrapperDebugMode = ByteBufferWrapper.DEBUG_MODE;
+        
+        // the debug mode clears the disposed buffers content
+        HeapBuffer.DEBUG_MODE = true;
+        ByteBufferWrapper.DEBUG_MODE = true;
+        try {
+            final Buffer payload = mm.allocate(1024);
+            fillPattern(payload);
+            final Buffer reference = Buffers.retain(payload);
+            
+            payload.tryDispose();
+            
+            assertPattern(reference);
+            assertTrue(reference.tryDispose());
+        } finally {
+            HeapBuffer.DEBUG_MODE = heapDebugMode;
+            ByteBufferWrapper.DEBUG_MODE = wrapperDebugMode;
+        }
+    }
+
+    @Test
+    public void testRetainedCompositeReference() {
+        final CompositeBuffer payload = CompositeBuffer.newBuffer(mm,
+                mm.allocate(100), mm.allocate(200), mm.allocate(300));
+        payload.allowBufferDispose(true);
+        payload.allowInternalBuffersDispose(true);
+        fillPattern(payload);
+        
+        final Buffer reference = Buffers.retain(payload);
+        assertTrue(reference.isComposite());
+        assertTrue(reference.isReadOnly());
+        
+        payload.tryDispose();
+        overwriteReleasedMemory(300);
+        
+        assertPattern(reference);
+        assertTrue(reference.tryDispose());
+    }
+
+    @Test
+    public void testRetainingCloner() {
+        final Buffer payload = mm.allocate(1024);
+        fillPattern(payload);
+        // the caller keeps the ownership
+        payload.allowBufferDispose(false);
+
+        final MessageCloner<Buffer> cloner = Buffers.getRetainingCloner();
+        final Buffer queued = cloner.clone(null, payload);
+        assertNotSame(payload, queued);
+        assertTrue(queued.isReadOnly());
+        
+        // the direct write completion doesn't affect the caller's buffer
+        assertFalse(payload.tryDispose());
+        
+        payload.dispose();
+        overwriteReleasedMemory(1024);
+        
+        assertPattern(queued);
+        assertTrue(queued.tryDispose());
+    }
+
+    private static void fillPattern(final Buffer buffer) {
+        for (int i = 0; buffer.hasRemaining(); i++) {
+            buffer.put((byte) i);
+        }
+        
+        buffer.flip();
+    }
+    
+    private static void assertPattern(final Buffer buffer) {
+        for (int i = 0; buffer.hasRemaining(); i++) {
+            assertEquals((byte) i, buffer.get());
+        }
+    }
+    
+    private void overwriteReleasedMemory(final int size) {
+        for (int i = 0; i < 16; i++) {
+            final Buffer b = mm.allocate(size);
+            while (b.hasRemaining()) {
+                b.put((byte) 0xFF);
+            }
+            b.tryDispose();
+        }
+    }
+
 }
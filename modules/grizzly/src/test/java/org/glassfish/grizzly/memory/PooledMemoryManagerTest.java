@@ -45,6 +45,7 @@ import org.junit.Test;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 import java.util.Random;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -699,6 +700,174 @@ public class PooledMemoryManagerTest {
     }
 
 
+    @Test
+    public void testIdleBuffersTrimming() throws Exception {
+        final int bufferSize = 64 * 1024;
+        final int maxPoolSize = 256;
+        final long idleTimeoutMillis = 200;
+        
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                bufferSize, 1, 0, 1,
+                (float) maxPoolSize * bufferSize / Runtime.getRuntime().maxMemory(),
+                0.25f,
+                isDirect);
+        final PoolProbe probe = new PoolProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        mm.setIdleBufferTimeout(idleTimeoutMillis, TimeUnit.MILLISECONDS);
+        assertEquals(idleTimeoutMillis,
+                mm.getIdleBufferTimeout(TimeUnit.MILLISECONDS));
+        
+        final Pool pool = mm.getPools()[0];
+        final int baseline = pool.elementsCount();
+        assertEquals(maxPoolSize / 4, baseline);
+        final long baselineHeap = usedHeap();
+        
+        // load spike
+        final int spike = 200;
+        final List<Buffer> buffers = new ArrayList<Buffer>(spike);
+        for (int i = 0; i < spike; i++) {
+            buffers.add(mm.allocate(bufferSize));
+        }
+        
+        for (Buffer buffer : buffers) {
+            buffer.tryDispose();
+        }
+        buffers.clear();
+        
+        assertEquals(spike, pool.elementsCount());
+        assertEquals(spike, pool.getBuffersCount());
+        assertEquals(spike, pool.getHighWaterMark());
+        assertEquals(spike, probe.poolHighWaterMark.get());
+        if (!isDirect) {
+            final long spikeHeap = usedHeap();
+            assertTrue("heap: baseline=" + baselineHeap + " spike=" + spikeHeap,
+                    spikeHeap - baselineHeap >= (spike - baseline) * bufferSize / 2);
+        }
+        
+        // light load, the buffers needed during the spike are released
+        // once the load stays below the peak for the whole period
+        final long deadline = System.currentTimeMillis() + idleTimeoutMillis * 3;
+        while (System.currentTimeMillis() < deadline) {
+            final Buffer b1 = mm.allocate(bufferSize);
+            final Buffer b2 = mm.allocate(bufferSize);
+            b1.tryDispose();
+            b2.tryDispose();
+            Thread.sleep(10);
+        }
+        
+        // the light load buffers might have been in use during the trimming
+        final int lightLoadPoolSize = pool.elementsCount();
+        assertTrue("pool size: " + lightLoadPoolSize,
+                lightLoadPoolSize >= baseline && lightLoadPoolSize <= baseline + 2);
+        assertEquals(lightLoadPoolSize, pool.getBuffersCount());
+        assertEquals(spike - lightLoadPoolSize, probe.poolTrimmed.get());
+        assertEquals(spike, pool.getHighWaterMark());
+        if (!isDirect) {
+            final long trimmedHeap = usedHeap();
+            assertTrue("heap: baseline=" + baselineHeap + " trimmed=" + trimmedHeap,
+                    trimmedHeap - baselineHeap < (spike - baseline) * bufferSize / 2);
+        }
+        
+        // another spike followed by the complete silence
+        for (int i = 0; i < spike; i++) {
+            buffers.add(mm.allocate(bufferSize));
+        }
+        
+        for (Buffer buffer : buffers) {
+            buffer.tryDispose();
+        }
+        
+        for (int i = 0; i < 3; i++) {
+            Thread.sleep(idleTimeoutMillis + 10);
+            mm.trim();
+        }
+        
+        assertEquals(baseline, pool.elementsCount());
+        assertEquals(baseline, pool.getBuffersCount());
+        assertEquals(2 * spike - lightLoadPoolSize - baseline,
+                probe.poolTrimmed.get());
+    }
+
+    @Test
+    public void testIdleBuffersTrimmingDisabled() throws Exception {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                128, 1, 0, 1,
+                1024.0f / Runtime.getRuntime().maxMemory(),
+                0f,
+                isDirect);
+        assertEquals(-1, mm.getIdleBufferTimeout(TimeUnit.MILLISECONDS));
+        
+        final Buffer buffer = mm.allocate(128);
+        buffer.tryDispose();
+        
+        final Pool pool = mm.getPools()[0];
+        assertEquals(1, pool.elementsCount());
+        
+        mm.trim();
+        assertEquals(1, pool.elementsCount());
+        
+        mm.setIdleBufferTimeout(1, TimeUnit.MILLISECONDS);
+        mm.setIdleBufferTimeout(0, TimeUnit.MILLISECONDS);
+        assertEquals(-1, mm.getIdleBufferTimeout(TimeUnit.MILLISECONDS));
+        
+        Thread.sleep(10);
+        mm.trim();
+        assertEquals(1, pool.elementsCount());
+    }
+    
+    @Test
+    public void testRetainedReferencesFanOut() {
+        final PooledMemoryManager mm = new PooledMemoryManager(
+                128, 1, 0, 1,
+                1024.0f / Runtime.getRuntime().maxMemory(),
+                DEFAULT_PREALLOCATED_BUFFERS_PERCENTAGE,
+                isDirect);
+        final TestProbe probe = new TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+        final int recipients = 100;
+        
+        final Buffer payload = mm.allocate(128);
+        final List<Buffer> references = new ArrayList<Buffer>(recipients);
+        for (int i = 0; i < recipients; i++) {
+            references.add(Buffers.retain(payload));
+        }
+        
+        // no memory is allocated per recipient
+        assertEquals(1, probe.bufferAllocatedFromPool.get());
+        assertEquals(0, probe.bufferAllocated.get());
+        
+        payload.tryDispose();
+        for (int i = 0; i < recipients - 1; i++) {
+            references.get(i).tryDispose();
+        }
+        assertEquals(0, probe.bufferReleasedToPool.get());
+        
+        // the last reference returns the buffer to the pool
+        references.get(recipients - 1).tryDispose();
+        assertEquals(1, probe.bufferReleasedToPool.get());
+        
+        // composite buffer
+        final Buffer compositePayload = mm.allocate(300);
+        assertTrue(compositePayload.isComposite());
+        assertEquals(4, probe.bufferAllocatedFromPool.get());
+        
+        references.clear();
+        for (int i = 0; i < recipients; i++) {
+            references.add(Buffers.retain(compositePayload));
+        }
+        assertEquals(4, probe.bufferAllocatedFromPool.get());
+        assertEquals(0, probe.bufferAllocated.get());
+        
+        compositePayload.tryDispose();
+        for (int i = 0; i < recipients - 1; i++) {
+            references.get(i).tryDispose();
+        }
+        assertEquals(1, probe.bufferReleasedToPool.get());
+        
+        references.get(recipients - 1).tryDispose();
+        assertEquals(4, probe.bufferReleasedToPool.get());
+    }
+
     @Test
     public void circularityBoundaryTest() {
         final PooledMemoryManager mm = new PooledMemoryManager(
@@ -832,6 +1001,17 @@ public class PooledMemoryManagerTest {
     }
 
 
+    private static long usedHeap() throws InterruptedException {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+    
+    
     // ---------------------------------------------------------- Nested Classes
 
 
@@ -855,4 +1035,19 @@ public class PooledMemoryManagerTest {
             bufferReleasedToPool.incrementAndGet();
         }
     }
+    
+    static final class PoolProbe extends MemoryProbe.Adapter {
+        final AtomicInteger poolHighWaterMark = new AtomicInteger();
+        final AtomicInteger poolTrimmed = new AtomicInteger();
+
+        @Override
+        public void onPoolHighWaterMarkEvent(int bufferSize, int buffersCount) {
+            poolHighWaterMark.set(buffersCount);
+        }
+
+        @Override
+        public void onPoolTrimEvent(int bufferSize, int buffersCount) {
+            poolTrimmed.addAndGet(buffersCount);
+        }
+    }
 }
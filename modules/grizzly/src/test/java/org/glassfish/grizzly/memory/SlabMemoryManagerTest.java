@@ -0,0 +1,267 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory;
+
+import org.glassfish.grizzly.Buffer;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.glassfish.grizzly.memory.SlabMemoryManager.*;
+import static org.junit.Assert.*;
+
+public class SlabMemoryManagerTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+    
+    @Test
+    public void testDefaultConfiguration() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager();
+        
+        assertEquals(DEFAULT_NUMBER_OF_SIZE_CLASSES, mm.getSizeClassesCount());
+        int bufSize = DEFAULT_BASE_BUFFER_SIZE;
+        for (int i = 0; i < mm.getSizeClassesCount(); i++) {
+            assertEquals(bufSize, mm.getSizeClassBufferSize(i));
+            // nothing is preallocated
+            assertEquals(0, mm.getSizeClassCapacity(i));
+            bufSize <<= DEFAULT_GROWTH_FACTOR;
+        }
+        
+        assertEquals(DEFAULT_CHUNK_SIZE, mm.getChunkSize());
+        assertEquals(DEFAULT_MAX_DIRECT_BYTES, mm.getMaxDirectBytes());
+        assertEquals(0, mm.getAllocatedDirectBytes());
+        assertEquals(Runtime.getRuntime().availableProcessors(),
+                mm.getNumberOfArenas());
+    }
+
+    @Test
+    public void testInvalidConstructorArguments() {
+        try {
+            new SlabMemoryManager(1000, 1, 1, CHUNK_SIZE, CHUNK_SIZE, 1);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        
+        try {
+            new SlabMemoryManager(4096, 1, 1, 1000 * 1000, CHUNK_SIZE, 1);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        
+        try {
+            // the chunk is smaller than the max size class buffer
+            new SlabMemoryManager(4096, 3, 2, 32 * 1024, CHUNK_SIZE, 1);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        
+        try {
+            new SlabMemoryManager(4096, 1, 1, CHUNK_SIZE, -1, 1);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+        
+        try {
+            new SlabMemoryManager(4096, 1, 1, CHUNK_SIZE, CHUNK_SIZE, 0);
+            fail();
+        } catch (IllegalArgumentException ignored) {
+        }
+    }
+
+    @Test
+    public void testSimpleAllocationAndDispose() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager(
+                4096, 2, 1, CHUNK_SIZE, CHUNK_SIZE * 4, 1);
+        
+        final PooledMemoryManagerTest.TestProbe probe =
+                new PooledMemoryManagerTest.TestProbe();
+        mm.getMonitoringConfig().addProbes(probe);
+
+        final Buffer b = mm.allocate(5000);
+        assertEquals(5000, b.remaining());
+        assertEquals(8192, b.capacity());
+        assertTrue(b.isDirect());
+        assertTrue(b.allowBufferDispose());
+        
+        // the chunk was carved into 8K buffers
+        assertEquals(1, probe.bufferAllocated.get());
+        assertEquals(1, probe.bufferAllocatedFromPool.get());
+        assertEquals(CHUNK_SIZE, mm.getAllocatedDirectBytes());
+        assertEquals(0, mm.getSizeClassCapacity(0));
+        assertEquals(CHUNK_SIZE, mm.getSizeClassCapacity(1));
+        assertEquals(8192, mm.getSizeClassUsedBytes(1));
+
+        b.tryDispose();
+        assertEquals(1, probe.bufferReleasedToPool.get());
+        assertEquals(0, mm.getSizeClassUsedBytes(1));
+        
+        // the only chunk is kept
+        assertEquals(CHUNK_SIZE, mm.getAllocatedDirectBytes());
+        
+        // the slot is reused
+        final Buffer b2 = mm.allocate(8192);
+        assertEquals(1, probe.bufferAllocated.get());
+        assertEquals(2, probe.bufferAllocatedFromPool.get());
+        b2.tryDispose();
+        
+        assertEquals(CHUNK_SIZE, mm.trim());
+        assertEquals(0, mm.getSizeClassCapacity(1));
+    }
+
+    @Test
+    public void testTrimmedChunkAccounting() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager(
+                4096, 1, 0, CHUNK_SIZE, CHUNK_SIZE * 4, 1);
+        
+        mm.allocate(4096).tryDispose();
+        assertEquals(CHUNK_SIZE, mm.trim());
+        assertEquals(0, mm.getSizeClassCapacity(0));
+        
+        // the chunk is accounted until its memory is reclaimed
+        awaitAllocatedDirectBytes(mm, 0);
+    }
+
+    @Test
+    public void testCompositeAllocation() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager(
+                4096, 2, 1, CHUNK_SIZE, CHUNK_SIZE * 4, 1);
+        
+        final Buffer b = mm.allocate(8192 * 2 + 100);
+        assertTrue(b.isComposite());
+        assertEquals(8192 * 2 + 100, b.remaining());
+        assertEquals(8192 * 2, mm.getSizeClassUsedBytes(1));
+        assertEquals(4096, mm.getSizeClassUsedBytes(0));
+        
+        b.tryDispose();
+        assertEquals(0, mm.getSizeClassUsedBytes(0));
+        assertEquals(0, mm.getSizeClassUsedBytes(1));
+    }
+
+    @Test
+    public void testSharedBufferDispose() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager(
+                4096, 1, 0, CHUNK_SIZE, CHUNK_SIZE, 1);
+        
+        final Buffer b = mm.allocate(4096);
+        final Buffer slice = b.slice(0, 100);
+        final Buffer split = b.split(2048);
+        
+        b.tryDispose();
+        assertEquals(4096, mm.getSizeClassUsedBytes(0));
+        slice.tryDispose();
+        assertEquals(4096, mm.getSizeClassUsedBytes(0));
+        split.tryDispose();
+        assertEquals(0, mm.getSizeClassUsedBytes(0));
+        
+        // the slot is returned as a whole
+        final Buffer b2 = mm.allocate(4096);
+        assertEquals(0, b2.position());
+        assertEquals(4096, b2.limit());
+        assertEquals(4096, b2.capacity());
+        b2.tryDispose();
+    }
+
+    @Test
+    public void testDirectBudget() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager(
+                4096, 1, 0, CHUNK_SIZE, CHUNK_SIZE * 2, 1);
+        
+        final List<Buffer> buffers = new ArrayList<Buffer>();
+        for (int i = 0; i < 2 * CHUNK_SIZE / 4096; i++) {
+            final Buffer b = mm.allocate(4096);
+            assertTrue(b.isDirect());
+            buffers.add(b);
+        }
+        
+        assertEquals(CHUNK_SIZE * 2, mm.getAllocatedDirectBytes());
+        
+        // the budget is exhausted
+        final Buffer heapBuffer = mm.allocate(4096);
+        assertFalse(heapBuffer.isDirect());
+        assertEquals(CHUNK_SIZE * 2, mm.getAllocatedDirectBytes());
+        heapBuffer.tryDispose();
+        
+        for (Buffer b : buffers) {
+            b.tryDispose();
+        }
+        buffers.clear();
+        
+        // one idle chunk is given back, the other one is kept
+        assertEquals(CHUNK_SIZE, mm.getSizeClassCapacity(0));
+        assertEquals(0, mm.getSizeClassUsedBytes(0));
+        awaitAllocatedDirectBytes(mm, CHUNK_SIZE);
+    }
+
+    @Test
+    public void testChunkRebalancing() throws Exception {
+        final SlabMemoryManager mm = new SlabMemoryManager(
+                4096, 2, 4, CHUNK_SIZE, CHUNK_SIZE, 1);
+        assertEquals(65536, mm.getSizeClassBufferSize(1));
+        
+        mm.allocate(4096).tryDispose();
+        assertEquals(CHUNK_SIZE, mm.getSizeClassCapacity(0));
+        
+        // the budget is exhausted, so the buffer is allocated on heap and
+        // the idle 4K chunk is given back
+        final Buffer heapBuffer = mm.allocate(65536);
+        assertFalse(heapBuffer.isDirect());
+        assertEquals(0, mm.getSizeClassCapacity(0));
+        heapBuffer.tryDispose();
+        
+        // once the 4K chunk is reclaimed, its memory serves the 64K size class
+        awaitAllocatedDirectBytes(mm, 0);
+        final Buffer b = mm.allocate(65536);
+        assertTrue(b.isDirect());
+        assertEquals(CHUNK_SIZE, mm.getSizeClassCapacity(1));
+        b.tryDispose();
+    }
+    
+    private static void awaitAllocatedDirectBytes(final SlabMemoryManager mm,
+            final long expected) throws InterruptedException {
+        for (int i = 0; i < 100 && mm.getAllocatedDirectBytes() != expected; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        
+        assertEquals(expected, mm.getAllocatedDirectBytes());
+    }
+}
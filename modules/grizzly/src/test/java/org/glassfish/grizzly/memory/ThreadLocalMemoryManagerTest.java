@@ -389,6 +389,92 @@ public class ThreadLocalMemoryManagerTest extends AbstractThreadLocalMemoryManag
         }
     }
 
+    @Test
+    public void testRetainedReferenceDispose() throws Exception {
+        Runnable r = new Runnable() {
+
+            @Override
+            public void run() {
+                final int allocSize = 16384;
+
+                // Initialize memory manager
+                mm.allocate(33);
+
+                final int initialSize = mm.getReadyThreadBufferSize();
+
+                final Buffer buffer = mm.allocate(allocSize);
+                for (int i = 0; i < allocSize; i++) {
+                    buffer.put(i, (byte) 1);
+                }
+                final Buffer reference = Buffers.retain(buffer);
+                
+                buffer.dispose();
+
+                // the shared memory is not returned to the thread-local pool
+                assertEquals(initialSize - allocSize,
+                        mm.getReadyThreadBufferSize());
+                
+                final Buffer buffer2 = mm.allocate(allocSize);
+                for (int i = 0; i < allocSize; i++) {
+                    buffer2.put(i, (byte) 2);
+                }
+                
+                while (reference.hasRemaining()) {
+                    assertEquals(1, reference.get());
+                }
+                
+                reference.dispose();
+                assertEquals(initialSize - allocSize * 2,
+                        mm.getReadyThreadBufferSize());
+            }
+        };
+
+        testInWorkerThread(mm, r);
+    }
+
+    @Test
+    public void testRetainedReferenceTrim() throws Exception {
+        Runnable r = new Runnable() {
+
+            @Override
+            public void run() {
+                final int allocSize = 16384;
+
+                // Initialize memory manager
+                mm.allocate(33);
+
+                final Buffer buffer = mm.allocate(allocSize);
+                for (int i = 0; i < allocSize; i++) {
+                    buffer.put(i, (byte) 1);
+                }
+                buffer.position(allocSize / 2);
+                final Buffer reference = Buffers.retain(buffer);
+                
+                final int sizeBeforeTrim = mm.getReadyThreadBufferSize();
+                buffer.trim();
+
+                // the shared tail is not returned to the thread-local pool
+                assertEquals(sizeBeforeTrim, mm.getReadyThreadBufferSize());
+                
+                final Buffer buffer2 = mm.allocate(allocSize);
+                for (int i = 0; i < allocSize; i++) {
+                    buffer2.put(i, (byte) 2);
+                }
+                
+                assertEquals(allocSize / 2, reference.remaining());
+                while (reference.hasRemaining()) {
+                    assertEquals(1, reference.get());
+                }
+                
+                reference.dispose();
+                buffer.dispose();
+                buffer2.dispose();
+            }
+        };
+
+        testInWorkerThread(mm, r);
+    }
+
     private void testInWorkerThread(final MemoryManager mm,
                                     final Runnable task) throws Exception {
         final FutureImpl<Boolean> future = SafeFutureImpl.create();
@@ -0,0 +1,356 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.HeaderValue;
+import org.glassfish.grizzly.http.util.HttpStatus;
+import org.glassfish.grizzly.utils.Charsets;
+
+/**
+ * The byte ranges (RFC 7233) requested by a client for a static resource of
+ * the known length.
+ * 
+ * Overlapping and adjacent ranges are coalesced, so the response contains
+ * each byte at most once. If there is more than one range left - the
+ * response has to be sent as <tt>multipart/byteranges</tt>.
+ */
+final class ByteRanges {
+    /**
+     * The max number of ranges (after coalescing) we're ready to serve,
+     * if the client asks for more - the entire resource is sent.
+     */
+    static final int MAX_RANGES = 32;
+
+    private static final String BYTES_UNIT = "bytes";
+    private static final byte[] CRLF = {'\r', '\n'};
+    
+    private final long resourceLength;
+    // [start0, end0, start1, end1...], end is inclusive
+    private final long[] ranges;
+    private final int size;
+    
+    private String boundary;
+
+    private ByteRanges(final long resourceLength,
+            final long[] ranges, final int size) {
+        this.resourceLength = resourceLength;
+        this.ranges = ranges;
+        this.size = size;
+    }
+
+    /**
+     * Parses the <tt>Range</tt> header value.
+     * 
+     * @param rangeHeader the <tt>Range</tt> header value
+     * @param resourceLength the resource length
+     * @return {@link ByteRanges}, or <tt>null</tt> if the header is absent,
+     *      malformed or asks for too many ranges, so it has to be ignored and
+     *      the entire resource sent. The returned {@link ByteRanges} may be
+     *      {@link #isSatisfiable() not satisfiable}.
+     */
+    static ByteRanges parse(final String rangeHeader, final long resourceLength) {
+        if (rangeHeader == null) {
+            return null;
+        }
+        
+        final int eq = rangeHeader.indexOf('=');
+        if (eq == -1 || !BYTES_UNIT.equalsIgnoreCase(
+                rangeHeader.substring(0, eq).trim())) {
+            return null;
+        }
+        
+        final String[] specs = rangeHeader.substring(eq + 1).split(",");
+        long[] ranges = new long[Math.min(specs.length, MAX_RANGES) * 2];
+        int size = 0;
+        
+        for (String spec : specs) {
+            spec = spec.trim();
+            if (spec.isEmpty()) {
+                continue;
+            }
+            
+            final int dash = spec.indexOf('-');
+            if (dash == -1) {
+                return null;
+            }
+            
+            final long start;
+            final long end;
+            if (dash == 0) { // suffix-byte-range-spec
+                final long suffixLength = parseLong(spec, 1, spec.length());
+                if (suffixLength == -1) {
+                    return null;
+                }
+                
+                if (suffixLength == 0 || resourceLength == 0) {
+                    continue; // unsatisfiable
+                }
+                
+                start = Math.max(0, resourceLength - suffixLength);
+                end = resourceLength - 1;
+            } else {
+                start = parseLong(spec, 0, dash);
+                final long last = dash == spec.length() - 1
+                        ? Long.MAX_VALUE
+                        : parseLong(spec, dash + 1, spec.length());
+                if (start == -1 || last == -1 || last < start) {
+                    return null;
+                }
+                
+                if (start >= resourceLength) {
+                    continue; // unsatisfiable
+                }
+                
+                end = Math.min(last, resourceLength - 1);
+            }
+            
+            if (size * 2 == ranges.length) {
+                ranges = Arrays.copyOf(ranges, ranges.length * 2);
+            }
+            
+            ranges[size * 2] = start;
+            ranges[size * 2 + 1] = end;
+            size++;
+        }
+        
+        size = coalesce(ranges, size);
+        if (size > MAX_RANGES) {
+            return null;
+        }
+        
+        return new ByteRanges(resourceLength, ranges, size);
+    }
+
+    /**
+     * Checks the <tt>If-Range</tt> precondition.
+     * 
+     * @return <tt>true</tt> if there is no <tt>If-Range</tt> or the resource
+     *      matches it, so the <tt>Range</tt> has to be applied, or
+     *      <tt>false</tt> if the entire resource has to be sent.
+     */
+    static boolean isIfRangeMatched(final String ifRange,
+            final String eTag, final String lastModified) {
+        if (ifRange == null) {
+            return true;
+        }
+        
+        final String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/")) {
+            // only a strong entity-tag can match
+            return eTag != null && !eTag.startsWith("W/")
+                    && validator.equals(eTag);
+        }
+        
+        return validator.equals(lastModified);
+    }
+
+    /**
+     * Prepares the 206 response headers for the partial content.
+     * If the ranges are not satisfiable - prepares 416 response.
+     * 
+     * @return the response content length
+     */
+    long prepareResponse(final HttpResponsePacket response,
+            final String contentType) {
+        if (!isSatisfiable()) {
+            response.setStatus(HttpStatus.REQUEST_RANGE_NOT_SATISFIABLE_416);
+            response.setHeader(Header.ContentRange,
+                    BYTES_UNIT + " */" + resourceLength);
+            response.setContentLengthLong(0);
+            return 0;
+        }
+        
+        response.setStatus(HttpStatus.PARTIAL_CONTENT_206);
+        // the ranges refer to the identity representation,
+        // so prevent compression
+        response.setHeader(Header.ContentEncoding, HeaderValue.IDENTITY);
+        
+        final long contentLength;
+        if (isMultipart()) {
+            response.setContentType(getMultipartContentType());
+            contentLength = getMultipartLength(contentType);
+        } else {
+            response.setHeader(Header.ContentRange, getContentRange(0));
+            contentLength = getLength(0);
+        }
+        
+        response.setContentLengthLong(contentLength);
+        return contentLength;
+    }
+    
+    boolean isSatisfiable() {
+        return size > 0;
+    }
+
+    boolean isMultipart() {
+        return size > 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    long getStart(final int idx) {
+        return ranges[idx * 2];
+    }
+
+    long getLength(final int idx) {
+        return ranges[idx * 2 + 1] - ranges[idx * 2] + 1;
+    }
+
+    String getContentRange(final int idx) {
+        return BYTES_UNIT + ' ' + ranges[idx * 2] + '-' + ranges[idx * 2 + 1]
+                + '/' + resourceLength;
+    }
+
+    String getMultipartContentType() {
+        return "multipart/byteranges; boundary=" + getBoundary();
+    }
+
+    /**
+     * @return the multipart body part header, which precedes the range's bytes
+     */
+    byte[] getPartHeader(final int idx, final String contentType) {
+        final StringBuilder sb = new StringBuilder(128);
+        if (idx > 0) {
+            sb.append("\r\n");
+        }
+        sb.append("--").append(getBoundary()).append("\r\n");
+        if (contentType != null) {
+            sb.append(Header.ContentType).append(": ")
+                    .append(contentType).append("\r\n");
+        }
+        sb.append(Header.ContentRange).append(": ")
+                .append(getContentRange(idx)).append("\r\n\r\n");
+        
+        return sb.toString().getBytes(Charsets.ASCII_CHARSET);
+    }
+
+    /**
+     * @return the multipart body close-delimiter
+     */
+    byte[] getMultipartTrailer() {
+        return ("\r\n--" + getBoundary() + "--\r\n")
+                .getBytes(Charsets.ASCII_CHARSET);
+    }
+
+    long getMultipartLength(final String contentType) {
+        long length = getMultipartTrailer().length;
+        for (int i = 0; i < size; i++) {
+            length += getPartHeader(i, contentType).length + getLength(i);
+        }
+        
+        return length;
+    }
+
+    private String getBoundary() {
+        if (boundary == null) {
+            boundary = "GRIZZLY_" + Long.toHexString(
+                    ThreadLocalRandom.current().nextLong());
+        }
+        
+        return boundary;
+    }
+
+    /**
+     * Sorts the ranges by start and merges overlapping and adjacent ones.
+     * 
+     * @return the number of ranges after merging
+     */
+    private static int coalesce(final long[] ranges, final int size) {
+        if (size < 2) {
+            return size;
+        }
+        
+        // insertion sort, the number of ranges is small
+        for (int i = 1; i < size; i++) {
+            final long start = ranges[i * 2];
+            final long end = ranges[i * 2 + 1];
+            int j = i - 1;
+            while (j >= 0 && ranges[j * 2] > start) {
+                ranges[(j + 1) * 2] = ranges[j * 2];
+                ranges[(j + 1) * 2 + 1] = ranges[j * 2 + 1];
+                j--;
+            }
+            ranges[(j + 1) * 2] = start;
+            ranges[(j + 1) * 2 + 1] = end;
+        }
+        
+        int last = 0;
+        for (int i = 1; i < size; i++) {
+            if (ranges[i * 2] <= ranges[last * 2 + 1] + 1) {
+                ranges[last * 2 + 1] =
+                        Math.max(ranges[last * 2 + 1], ranges[i * 2 + 1]);
+            } else {
+                last++;
+                ranges[last * 2] = ranges[i * 2];
+                ranges[last * 2 + 1] = ranges[i * 2 + 1];
+            }
+        }
+        
+        return last + 1;
+    }
+    
+    /**
+     * @return the parsed non-negative value, or <tt>-1</tt> if the value
+     *      is not a valid number
+     */
+    private static long parseLong(final String s, final int start, final int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            final char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        
+        return value;
+    }
+}
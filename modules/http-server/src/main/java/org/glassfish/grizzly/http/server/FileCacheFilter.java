@@ -43,6 +43,7 @@ package org.glassfish.grizzly.http.server;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -66,6 +67,7 @@ import org.glassfish.grizzly.http.server.filecache.FileCache.CacheType;
 import org.glassfish.grizzly.http.server.filecache.FileCacheEntry;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.memory.Buffers;
+import org.glassfish.grizzly.memory.MemoryManager;
 
 /**
  *
@@ -96,9 +98,9 @@ public class FileCacheFilter extends BaseFilter {
             final FileCacheEntry cacheEntry = fileCache.get(request);
             if (cacheEntry != null) {
                 final HttpResponsePacket response = request.getResponse();
-                prepareResponse(cacheEntry, response);
                 
                 if (response.getStatus() != 200) {
+                    prepareResponse(cacheEntry, response);
                     // The cache hit - return empty response
                     ctx.write(HttpContent.builder(response)
                             .content(Buffers.EMPTY_BUFFER)
@@ -108,6 +110,26 @@ public class FileCacheFilter extends BaseFilter {
                     return flush(ctx);
                 }
 
+                final ByteRanges ranges = getRequestedRanges(request, cacheEntry);
+                if (ranges != null) {
+                    prepareResponse(cacheEntry, response);
+                    return sendRanges(ctx, request, response, cacheEntry, ranges);
+                }
+                
+                final FileCacheEntry.PrecompressedFile precompressedFile =
+                        cacheEntry.getPrecompressedFile(request);
+                if (precompressedFile != null) {
+                    // the file compressed in advance is sent from the file system
+                    response.setContentType(cacheEntry.contentType.prepare());
+                    response.setPreEncodedHeaders(
+                            cacheEntry.getPreEncodedHeaders(precompressedFile));
+                    response.setContentLengthLong(precompressedFile.getFileSize());
+                    
+                    return sendFile(ctx, request, response, cacheEntry,
+                            precompressedFile.getFile(),
+                            precompressedFile.getFileSize());
+                }
+                
                 // check if we can send plain or compressed data back.
                 // depends on client request headers and file cache entry
                 final boolean isServeCompressed =
@@ -131,11 +153,9 @@ public class FileCacheFilter extends BaseFilter {
                     return flush(ctx);
                 }
                 
-                return fileCache.isFileSendEnabled() && !request.isSecure()
-                        ? sendFileZeroCopy(ctx, response, cacheEntry,
-                            isServeCompressed)
-                        : sendFileUsingBuffers(ctx, response, cacheEntry,
-                            isServeCompressed);
+                return sendFile(ctx, request, response, cacheEntry,
+                        cacheEntry.getFile(isServeCompressed),
+                        cacheEntry.getFileSize(isServeCompressed));
             }
         }
 
@@ -157,32 +177,175 @@ public class FileCacheFilter extends BaseFilter {
         if (entry.server != null) {
             response.addHeader(Header.Server, entry.server);
         }
+        
+        if (entry.isVaryByEncoding()) {
+            response.addHeader(Header.Vary, "Accept-Encoding");
+        }
     }
     
     
     /**
-     * Prepare response with payload headers.
+     * Prepare response with payload headers. The headers, which are the same
+     * for all the responses, are added as a block encoded in advance.
      */
     private void prepareResponseWithPayload(final FileCacheEntry entry,
             final HttpResponsePacket response, final boolean isServeCompressed)
             throws IOException {
-        response.addHeader(Header.ETag, entry.Etag);
-        response.addHeader(Header.LastModified, entry.lastModifiedHeader);
+        response.setContentType(entry.contentType.prepare());
+        response.setPreEncodedHeaders(
+                entry.getPreEncodedHeaders(isServeCompressed));
 
         response.setContentLengthLong(entry.getFileSize(isServeCompressed));
+    }
+
+    /**
+     * Returns the {@link ByteRanges} the response has to be limited to, or
+     * <tt>null</tt> if the entire resource has to be sent.
+     */
+    private static ByteRanges getRequestedRanges(final HttpRequestPacket request,
+            final FileCacheEntry entry) {
+        final String range = request.getHeader(Header.Range);
+        if (range == null || !ByteRanges.isIfRangeMatched(
+                request.getHeader(Header.IfRange),
+                entry.Etag, entry.lastModifiedHeader)) {
+            return null;
+        }
+        
+        // ranges are always served from the plain (not compressed) resource
+        return ByteRanges.parse(range, entry.getFileSize(false));
+    }
+    
+    /**
+     * Sends the requested ranges of the cache entry as 206 (or 416) response.
+     */
+    private NextAction sendRanges(final FilterChainContext ctx,
+            final HttpRequestPacket request, final HttpResponsePacket response,
+            final FileCacheEntry cacheEntry, final ByteRanges ranges) {
+        response.addHeader(Header.ETag, cacheEntry.Etag);
+        response.addHeader(Header.LastModified, cacheEntry.lastModifiedHeader);
+        
+        final String contentType = response.getContentType();
+        ranges.prepareResponse(response, contentType);
+        
+        if (!ranges.isSatisfiable()) {
+            ctx.write(HttpContent.builder(response)
+                    .content(Buffers.EMPTY_BUFFER)
+                    .last(true)
+                    .build());
+
+            return flush(ctx);
+        }
+        
+        if (cacheEntry.type != CacheType.FILE) {
+            // the payload is available in a ByteBuffer, send its slices
+            final MemoryManager mm = ctx.getMemoryManager();
+            final ByteBuffer bb = cacheEntry.getByteBuffer(false);
+            final boolean isMultipart = ranges.isMultipart();
+            
+            for (int i = 0; i < ranges.size(); i++) {
+                if (isMultipart) {
+                    ctx.write(HttpContent.builder(response)
+                            .content(Buffers.wrap(mm,
+                                    ranges.getPartHeader(i, contentType)))
+                            .build());
+                }
+                
+                final ByteBuffer slice = bb.duplicate();
+                final int start = (int) ranges.getStart(i);
+                slice.limit(start + (int) ranges.getLength(i));
+                slice.position(start);
+                
+                ctx.write(HttpContent.builder(response)
+                        .content(Buffers.wrap(mm, slice))
+                        .last(!isMultipart && i == ranges.size() - 1)
+                        .build());
+            }
+            
+            if (isMultipart) {
+                ctx.write(HttpContent.builder(response)
+                        .content(Buffers.wrap(mm, ranges.getMultipartTrailer()))
+                        .last(true)
+                        .build());
+            }
+            
+            return flush(ctx);
+        }
+        
+        if (fileCache.isFileSendEnabled() && !request.isSecure()) {
+            return sendRangesZeroCopy(ctx, response, cacheEntry, ranges,
+                    contentType);
+        }
+        
+        try {
+            final FileSendEntry sendEntry = FileSendEntry.create(ctx, response,
+                    cacheEntry.getFile(false), ranges, contentType);
+            
+            ctx.suspend();
+            sendEntry.send();
+            return ctx.getSuspendAction();
+        } catch (IOException e) {
+        }
+
+        // FAILURE
+        return ctx.getInvokeAction();
+    }
+    
+    private NextAction sendRangesZeroCopy(final FilterChainContext ctx,
+            final HttpResponsePacket response, final FileCacheEntry cacheEntry,
+            final ByteRanges ranges, final String contentType) {
+        
+        final File file = cacheEntry.getFile(false);
+        final MemoryManager mm = ctx.getMemoryManager();
+        final boolean isMultipart = ranges.isMultipart();
+        
+        // flush response
+        ctx.write(response);
         
-        if (isServeCompressed) {
-            response.addHeader(Header.ContentEncoding, "gzip");
+        // send-file each range, the multipart delimiters are sent as
+        // regular content in between
+        for (int i = 0; i < ranges.size(); i++) {
+            if (isMultipart) {
+                ctx.write(HttpContent.builder(response)
+                        .content(Buffers.wrap(mm,
+                                ranges.getPartHeader(i, contentType)))
+                        .build());
+            }
+            
+            final FileTransfer f = new FileTransfer(file,
+                    ranges.getStart(i), ranges.getLength(i));
+            ctx.write(f, new EmptyCompletionHandler<WriteResult>() {
+                @Override
+                public void failed(Throwable throwable) {
+                    LOGGER.log(Level.FINE, "Error reported during file-send entry: " +
+                            cacheEntry, throwable);
+                }
+            });
         }
+        
+        if (isMultipart) {
+            ctx.write(HttpContent.builder(response)
+                    .content(Buffers.wrap(mm, ranges.getMultipartTrailer()))
+                    .last(true)
+                    .build());
+        }
+        
+        return flush(ctx);
     }
 
+    private NextAction sendFile(final FilterChainContext ctx,
+            final HttpRequestPacket request, final HttpResponsePacket response,
+            final FileCacheEntry cacheEntry, final File file, final long size) {
+        return fileCache.isFileSendEnabled() && !request.isSecure()
+                ? sendFileZeroCopy(ctx, response, cacheEntry, file, size)
+                : sendFileUsingBuffers(ctx, response, file, size);
+    }
+    
     private NextAction sendFileUsingBuffers(final FilterChainContext ctx,
-            final HttpResponsePacket response, final FileCacheEntry cacheEntry,
-            final boolean isServeCompressed) {
+            final HttpResponsePacket response, final File file,
+            final long size) {
         try {
             final FileSendEntry sendEntry = FileSendEntry.create(ctx, response,
-                    cacheEntry.getFile(isServeCompressed),
-                    cacheEntry.getFileSize(isServeCompressed));
+                    file, size);
             
             ctx.suspend();
             sendEntry.send();
@@ -196,15 +359,13 @@ public class FileCacheFilter extends BaseFilter {
     
     private NextAction sendFileZeroCopy(final FilterChainContext ctx,
             final HttpResponsePacket response, final FileCacheEntry cacheEntry,
-            final boolean isServeCompressed) {
+            final File file, final long size) {
         
         // flush response
         ctx.write(response);
 
         // send-file
-        final FileTransfer f = new FileTransfer(
-                cacheEntry.getFile(isServeCompressed),
-                0, cacheEntry.getFileSize(isServeCompressed));
+        final FileTransfer f = new FileTransfer(file, 0, size);
         ctx.write(f, new EmptyCompletionHandler<WriteResult>() {
             @Override
             public void failed(Throwable throwable) {
@@ -258,6 +419,11 @@ public class FileCacheFilter extends BaseFilter {
         private final HttpResponsePacket response;
         private final OutputSink output;
         
+        // the ranges to be sent, or null if the entire file has to be sent
+        private final ByteRanges ranges;
+        private final String contentType;
+        private int rangeIdx = -1;
+        
         private long remaining;
 
         public static FileSendEntry create(final FilterChainContext ctx,
@@ -267,19 +433,41 @@ public class FileCacheFilter extends BaseFilter {
             final FileInputStream fis = new FileInputStream(file);
             final FileChannel fc = fis.getChannel();
             
-            return new FileSendEntry(ctx, response, fis, fc, size);
+            return new FileSendEntry(ctx, response, fis, fc, size, null, null);
+        }
+        
+        static FileSendEntry create(final FilterChainContext ctx,
+                final HttpResponsePacket response, final File file,
+                final ByteRanges ranges, final String contentType)
+                throws IOException {
+            
+            final FileInputStream fis = new FileInputStream(file);
+            final FileChannel fc = fis.getChannel();
+            
+            return new FileSendEntry(ctx, response, fis, fc, 0, ranges,
+                    contentType);
         }
         
         public FileSendEntry(final FilterChainContext ctx,
                 final HttpResponsePacket response,
                 final FileInputStream fis, final FileChannel fc,
                 final long size) {
+            this(ctx, response, fis, fc, size, null, null);
+        }
+        
+        private FileSendEntry(final FilterChainContext ctx,
+                final HttpResponsePacket response,
+                final FileInputStream fis, final FileChannel fc,
+                final long size, final ByteRanges ranges,
+                final String contentType) {
 
             this.ctx = ctx;
             this.response = response;
             this.fis = fis;
             this.fc = fc;
             this.remaining = size;
+            this.ranges = ranges;
+            this.contentType = contentType;
             
             final HttpContext httpContext = response.getProcessingState().getHttpContext();
             assert httpContext != null;
@@ -300,18 +488,38 @@ public class FileCacheFilter extends BaseFilter {
             try {
                 boolean isLast;
                 do {
+                    if (remaining <= 0 && ranges != null) {
+                        startNextRange();
+                    }
+                    
                     final Buffer buffer = ctx.getMemoryManager().allocate(chunkSize);
                     buffer.allowBufferDispose(true);
+                    if (ranges != null && remaining < chunkSize) {
+                        // don't read beyond the range
+                        buffer.limit((int) remaining);
+                    }
                     
                     final long readNow = Buffers.readFromFileChannel(fc, buffer);
-                    isLast = readNow <= 0 || (remaining -= readNow) <= 0;
+                    isLast = readNow <= 0 ||
+                            ((remaining -= readNow) <= 0 && isLastRange());
 
                     buffer.trim();
-                    ctx.write(HttpContent.builder(response)
-                            .content(buffer)
-                            .last(isLast)
-                            .build());
                     
+                    if (isLast && ranges != null && ranges.isMultipart()) {
+                        ctx.write(HttpContent.builder(response)
+                                .content(buffer)
+                                .build());
+                        ctx.write(HttpContent.builder(response)
+                                .content(Buffers.wrap(ctx.getMemoryManager(),
+                                        ranges.getMultipartTrailer()))
+                                .last(true)
+                                .build());
+                    } else {
+                        ctx.write(HttpContent.builder(response)
+                                .content(buffer)
+                                .last(isLast)
+                                .build());
+                    }
                 } while (!isLast && output.canWrite());
                 
                 if (isLast) {
@@ -324,6 +532,23 @@ public class FileCacheFilter extends BaseFilter {
             }
         }
 
+        private boolean isLastRange() {
+            return ranges == null || rangeIdx == ranges.size() - 1;
+        }
+        
+        private void startNextRange() throws IOException {
+            rangeIdx++;
+            if (ranges.isMultipart()) {
+                ctx.write(HttpContent.builder(response)
+                        .content(Buffers.wrap(ctx.getMemoryManager(),
+                                ranges.getPartHeader(rangeIdx, contentType)))
+                        .build());
+            }
+            
+            fc.position(ranges.getStart(rangeIdx));
+            remaining = ranges.getLength(rangeIdx);
+        }
+
         private void done() {
             close();
             ctx.resume(ctx.getStopAction());
@@ -441,7 +441,7 @@ public class HttpServer {
 
             final String[] names = listeners.keySet().toArray(new String[listeners.size()]);
             for (final String name : names) {
-                removeListener(name);
+                removeListener(name).getFileCache().destroy();
             }
 
             delayedExecutor.stop();
@@ -53,6 +53,8 @@ import org.glassfish.grizzly.WriteHandler;
 import org.glassfish.grizzly.filterchain.Filter;
 import org.glassfish.grizzly.filterchain.FilterChain;
 import org.glassfish.grizzly.filterchain.FilterChainContext;
+import org.glassfish.grizzly.http.HttpResponsePacket;
+import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.server.filecache.FileCache;
 import org.glassfish.grizzly.http.io.NIOOutputStream;
 import org.glassfish.grizzly.http.io.OutputBuffer;
@@ -115,14 +117,21 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
     
     public static void sendFile(final Response response, final File file)
             throws IOException {
-        response.setStatus(HttpStatus.OK_200);
-
         // In case this sendFile(...) is called directly by user - pickup the content-type
         pickupContentType(response, file.getPath());
 
         final long length = file.length();
-        response.setContentLengthLong(length);
         response.addDateHeader(Header.Date, System.currentTimeMillis());
+        response.setHeader(Header.AcceptRanges, "bytes");
+        
+        final ByteRanges ranges = getRequestedRanges(response, length);
+        if (ranges != null) {
+            sendRanges(response, file, ranges);
+            return;
+        }
+        
+        response.setStatus(HttpStatus.OK_200);
+        response.setContentLengthLong(length);
         if (!response.isSendFileEnabled() || response.getRequest().isSecure()) {
             sendUsingBuffers(response, file);
         } else {
@@ -130,6 +139,54 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         }
     }
 
+    /**
+     * Returns the {@link ByteRanges} the response has to be limited to, or
+     * <tt>null</tt> if the entire resource has to be sent.
+     */
+    private static ByteRanges getRequestedRanges(final Response response,
+            final long length) {
+        final Request request = response.getRequest();
+        final String range = request.getHeader(Header.Range);
+        if (range == null || !Method.GET.equals(request.getMethod())) {
+            return null;
+        }
+        
+        final HttpResponsePacket responsePacket = response.getResponse();
+        if (!ByteRanges.isIfRangeMatched(request.getHeader(Header.IfRange),
+                responsePacket.getHeader(Header.ETag),
+                responsePacket.getHeader(Header.LastModified))) {
+            return null;
+        }
+        
+        return ByteRanges.parse(range, length);
+    }
+    
+    private static void sendRanges(final Response response, final File file,
+            final ByteRanges ranges) throws IOException {
+        final String contentType = response.getContentType();
+        ranges.prepareResponse(response.getResponse(), contentType);
+        
+        if (!ranges.isSatisfiable()) {
+            return;
+        }
+        
+        // only one file transfer is allowed per response, so a multipart
+        // response is always sent using buffers
+        if (!ranges.isMultipart() && response.isSendFileEnabled()
+                && !response.getRequest().isSecure()) {
+            response.getOutputBuffer().sendfile(file, ranges.getStart(0),
+                    ranges.getLength(0), null);
+        } else {
+            response.suspend();
+
+            final NIOOutputStream outputStream = response.getNIOOutputStream();
+
+            outputStream.notifyCanWrite(
+                    new NonBlockingDownloadHandler(response, outputStream,
+                            file, 8192, ranges, contentType));
+        }
+    }
+
     private static void sendUsingBuffers(final Response response, final File file)
             throws FileNotFoundException, IOException {
         final int chunkSize = 8192;
@@ -140,7 +197,7 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         
         outputStream.notifyCanWrite(
                 new NonBlockingDownloadHandler(response, outputStream,
-                        file, chunkSize));
+                        file, chunkSize, null, null));
 
     }
 
@@ -304,7 +361,7 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
     }
     
     private static class NonBlockingDownloadHandler implements WriteHandler {
-        // keep the remaining size
+        // keep the remaining size (of the current range)
         private volatile long size;
         
         private final Response response;
@@ -313,9 +370,15 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
         private final MemoryManager mm;
         private final int chunkSize;
         
+        // the ranges to be sent, or null if the entire file has to be sent
+        private final ByteRanges ranges;
+        private final String contentType;
+        private int rangeIdx = -1;
+        
         NonBlockingDownloadHandler(final Response response,
                 final NIOOutputStream outputStream, final File file,
-                final int chunkSize) {
+                final int chunkSize, final ByteRanges ranges,
+                final String contentType) {
             
             try {
                 fileChannel = new FileInputStream(file).getChannel();
@@ -323,12 +386,14 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
                 throw new IllegalStateException("File should have existed", e);
             }
             
-            size = file.length();
+            size = ranges == null ? file.length() : 0;
             
             this.response = response;
             this.outputStream = outputStream;
             mm = response.getRequest().getContext().getMemoryManager();
             this.chunkSize = chunkSize;
+            this.ranges = ranges;
+            this.contentType = contentType;
         }
         
         @Override
@@ -354,10 +419,19 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
          * Send next CHUNK_SIZE of file
          */
         private boolean sendChunk() throws IOException {
+            if (size <= 0 && !startNextRange()) {
+                complete(false);
+                return false;
+            }
+            
             // allocate Buffer
             final Buffer buffer = mm.allocate(chunkSize);
             // mark it available for disposal after content is written
             buffer.allowBufferDispose(true);
+            if (size < chunkSize) {
+                // don't read beyond the range
+                buffer.limit((int) size);
+            }
 
             // read file to the Buffer
             final int justReadBytes = (int) Buffers.readFromFileChannel(
@@ -376,7 +450,7 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
             size -= justReadBytes;
 
             // check the remaining size here to avoid extra onWritePossible() invocation
-            if (size <= 0) {
+            if (size <= 0 && !startNextRange()) {
                 complete(false);
                 return false;
             }
@@ -384,6 +458,34 @@ public abstract class StaticHttpHandlerBase extends HttpHandler {
             return true;
         }
 
+        /**
+         * Starts sending the next range, if any.
+         * 
+         * @return <tt>false</tt> if there are no more ranges to be sent
+         */
+        private boolean startNextRange() throws IOException {
+            if (ranges == null) {
+                return false;
+            }
+            
+            if (++rangeIdx < ranges.size()) {
+                if (ranges.isMultipart()) {
+                    outputStream.write(
+                            ranges.getPartHeader(rangeIdx, contentType));
+                }
+                
+                fileChannel.position(ranges.getStart(rangeIdx));
+                size = ranges.getLength(rangeIdx);
+                return true;
+            }
+            
+            if (ranges.isMultipart()) {
+                outputStream.write(ranges.getMultipartTrailer());
+            }
+            
+            return false;
+        }
+
         /**
          * Complete the download
          */
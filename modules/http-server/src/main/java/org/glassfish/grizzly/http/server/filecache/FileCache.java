@@ -59,6 +59,8 @@ import java.io.OutputStream;
 import java.nio.ByteBuffer;
 import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.StringTokenizer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
@@ -69,6 +71,8 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.zip.GZIPOutputStream;
 import org.glassfish.grizzly.http.CompressionConfig;
+import org.glassfish.grizzly.http.GZipContentEncoding;
+import org.glassfish.grizzly.http.LZMAContentEncoding;
 import org.glassfish.grizzly.http.Method;
 import org.glassfish.grizzly.http.util.ContentType;
 import org.glassfish.grizzly.localization.LogMessages;
@@ -80,6 +84,10 @@ import org.glassfish.grizzly.monitoring.MonitoringUtils;
 /**
  * This class implements a file caching mechanism used to cache static resources.
  *
+ * When the cache runs out of entries, heap or mapped memory, the new resource
+ * has to compete for the room with the cached ones: the less popular of them,
+ * according to the recent request frequency, is evicted (W-TinyLFU).
+ *
  * @author Jeanfrancois Arcand
  * @author Scott Oaks
  */
@@ -88,6 +96,15 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
             new File(System.getProperty("java.io.tmpdir"));
     
     final static String[] COMPRESSION_ALIASES = {"gzip"};
+    
+    /**
+     * The pre-compressed file extensions and the content-encodings they
+     * correspond to, in the order of preference.
+     */
+    final static String[][] PRECOMPRESSED_FILE_TYPES = {
+        {".lzma", LZMAContentEncoding.NAME},
+        {".gz", GZipContentEncoding.NAME}
+    };
 
     public enum CacheType {
         HEAP, MAPPED, FILE, TIMESTAMP
@@ -116,6 +133,12 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     
     private final FileCacheEntry NULL_CACHE_ENTRY = new FileCacheEntry(this);
 
+    /**
+     * Admission and eviction policy, which decides what entries stay in
+     * the cache, when it runs out of room.
+     */
+    private final WindowTinyLfuPolicy policy = new WindowTinyLfuPolicy(this);
+
     /**
      * Specifies the maximum time in seconds a resource may be cached.
      */
@@ -179,6 +202,19 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
      */
     private boolean fileSendEnabled;
     
+    /**
+     * <tt>true</tt>, if the cached files have to be watched for changes.
+     */
+    private boolean fileWatchEnabled;
+    
+    /**
+     * <tt>true</tt>, if the pre-compressed files, located next to the cached
+     * ones, have to be served to the clients supporting their content-encoding.
+     */
+    private boolean precompressedFilesEnabled;
+    
+    private volatile FileWatcher fileWatcher;
+    
     /**
      * File cache probes
      */
@@ -198,6 +234,32 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     public void initialize(final DelayedExecutor delayedExecutor) {
         delayQueue = delayedExecutor.createDelayQueue(new EntryWorker(),
                 new EntryResolver());
+        
+        if (fileWatchEnabled && fileWatcher == null) {
+            try {
+                final FileWatcher watcher = new FileWatcher(this);
+                delayedExecutor.getThreadPool().execute(watcher);
+                fileWatcher = watcher;
+            } catch (Exception e) {
+                notifyProbesError(this, e);
+                LOGGER.log(Level.WARNING,
+                        LogMessages.WARNING_GRIZZLY_HTTP_SERVER_FILECACHE_GENERAL_ERROR(), e);
+            }
+        }
+    }
+
+    /**
+     * Releases the resources associated with this <tt>FileCache</tt>,
+     * the cached entries stay valid.
+     *
+     * @since 2.4.3
+     */
+    public void destroy() {
+        final FileWatcher watcher = fileWatcher;
+        if (watcher != null) {
+            fileWatcher = null;
+            watcher.close();
+        }
     }
 
     /**
@@ -241,14 +303,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
             return CacheResult.FAILED_ENTRY_EXISTS;
         }
 
-        final int size = cacheSize.incrementAndGet();
-        // cache is full.
-        if (size > getMaxCacheEntries()) {
-            cacheSize.decrementAndGet();
-            fileCacheMap.remove(key);
-            key.recycle();
-            return CacheResult.FAILED_CACHE_FULL;
-        }
+        cacheSize.incrementAndGet();
 
         final HttpResponsePacket response = request.getResponse();
         final MimeHeaders headers = response.getHeaders();
@@ -276,7 +331,43 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         entry.Etag = headers.getHeader(Header.ETag);
         entry.server = headers.getHeader(Header.Server);
 
-        fileCacheMap.put(key, entry);
+        // start watching before the entry is admitted, so it is never
+        // released before being registered
+        final FileWatcher watcher = entry.plainFile != null
+                ? registerFileWatch(entry)
+                : null;
+        
+        final List<FileCacheEntry> evicted = new ArrayList<FileCacheEntry>(2);
+        final List<FileCacheEntry> rejected = new ArrayList<FileCacheEntry>(2);
+        final boolean isAdmitted = policy.admit(entry, evicted, rejected);
+        evict(evicted, false);
+        evict(rejected, true);
+        
+        if (!isAdmitted) {
+            // the cache is full and the resource is less popular than the
+            // ones it would have to replace
+            if (fileCacheMap.remove(key, NULL_CACHE_ENTRY)) {
+                cacheSize.decrementAndGet();
+            }
+            if (watcher != null) {
+                watcher.unregister(entry);
+            }
+            key.recycle();
+            notifyProbesEntryRejected(this, entry);
+            return CacheResult.FAILED_CACHE_FULL;
+        }
+        
+        if (entry.type == CacheType.MAPPED) {
+            addMappedMemorySize(entry.plainFileSize);
+        } else if (entry.type == CacheType.HEAP) {
+            addHeapSize(entry.plainFileSize);
+        }
+        
+        if (!fileCacheMap.replace(key, NULL_CACHE_ENTRY, entry)) {
+            // the entry has been evicted by a concurrent add(...)
+            // before it was published
+            return CacheResult.FAILED_CACHE_FULL;
+        }
         
         notifyProbesEntryAdded(this, entry);
         
@@ -285,6 +376,11 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
             delayQueue.add(entry, secondsMaxAgeLocal, TimeUnit.SECONDS);
         }
 
+        if (watcher != null && entry.plainFile.lastModified() != lastModified) {
+            // the file has been changed before the watch was registered
+            remove(entry);
+        }
+        
         return ((entry.type == CacheType.TIMESTAMP)
                     ? CacheResult.OK_CACHED_TIMESTAMP
                     : CacheResult.OK_CACHED);
@@ -301,9 +397,12 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
 
         final LazyFileCacheKey key = LazyFileCacheKey.create(request);
         final FileCacheEntry entry = fileCacheMap.get(key);
+        final int keyHashCode = key.hashCode();
         key.recycle();
         try {
             if (entry != null && entry != NULL_CACHE_ENTRY) {
+                policy.onHit(entry);
+                
                 // determine if we need to send the cache entry bytes
                 // to the user-agent
                 final HttpStatus httpStatus = checkIfHeaders(entry, request);
@@ -321,6 +420,7 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                 return entry;
             }
             
+            policy.onMiss(keyHashCode);
             notifyProbesEntryMissed(this, request);
         } catch (Exception e) {
             notifyProbesError(this, e);
@@ -334,14 +434,54 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     }
 
     protected void remove(final FileCacheEntry entry) {
-        if (fileCacheMap.remove(entry.key) != null) {
+        if (policy.remove(entry)) {
+            release(entry);
+        }
+    }
+
+    /**
+     * Removes the entries, evicted or not admitted to the main space by
+     * the {@link WindowTinyLfuPolicy}.
+     */
+    private void evict(final List<FileCacheEntry> entries,
+            final boolean isRejected) {
+        for (int i = 0; i < entries.size(); i++) {
+            final FileCacheEntry entry = entries.get(i);
+            if (delayQueue != null) {
+                delayQueue.remove(entry);
+            }
+            
+            release(entry);
+            if (isRejected) {
+                notifyProbesEntryRejected(this, entry);
+            } else {
+                notifyProbesEntryEvicted(this, entry);
+            }
+        }
+    }
+
+    /**
+     * Removes the entry, which is not tracked by the policy anymore, from the
+     * cache map and releases the memory it occupies.
+     */
+    private void release(final FileCacheEntry entry) {
+        final FileWatcher watcher = fileWatcher;
+        if (watcher != null && entry.plainFile != null) {
+            watcher.unregister(entry);
+        }
+        
+
+        // the entry could be still represented by the placeholder, if it
+        // has been evicted before add(...) published it
+        if (fileCacheMap.remove(entry.key, entry)
+                || fileCacheMap.remove(entry.key, NULL_CACHE_ENTRY)) {
             cacheSize.decrementAndGet();
         }
 
         if (entry.type == FileCache.CacheType.MAPPED) {
-            subMappedMemorySize(entry.bb.remaining());
+            subMappedMemorySize(entry.plainFileSize);
         } else if (entry.type == FileCache.CacheType.HEAP) {
-            subHeapSize(entry.bb.remaining());
+            subHeapSize(entry.plainFileSize);
         }
 
         notifyProbesEntryRemoved(this, entry);
@@ -353,6 +493,36 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
                 this, FileCache.class);
     }
 
+    /**
+     * @return <tt>true</tt>, if the changes of the cached files are tracked
+     *         by the {@link FileWatcher}
+     */
+    boolean isWatchingFiles() {
+        return fileWatcher != null;
+    }
+
+    /**
+     * Registers the entry file with the {@link FileWatcher}, if the file
+     * watch is enabled.
+     *
+     * @return the {@link FileWatcher}, the entry has been registered with,
+     *         or <tt>null</tt> otherwise
+     */
+    private FileWatcher registerFileWatch(final FileCacheEntry entry) {
+        final FileWatcher watcher = fileWatcher;
+        if (watcher != null) {
+            try {
+                watcher.register(entry);
+                return watcher;
+            } catch (Exception e) {
+                // the entry will be removed once it expires
+                notifyProbesError(this, e);
+            }
+        }
+        
+        return null;
+    }
+    
     /**
      * Creates {@link FileCacheEntry}.
      */
@@ -365,10 +535,47 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         
         entry.plainFile = file;
         entry.plainFileSize = file.length();
+        
+        if (precompressedFilesEnabled) {
+            entry.precompressedFiles = findPrecompressedFiles(file);
+        }
 
         return entry;
     }
     
+    /**
+     * Looks for the compressed representations of the file, like
+     * <tt>foo.js.gz</tt> for <tt>foo.js</tt>, produced in advance.
+     * @return the found files in the order of preference, or <tt>null</tt>
+     *         if there are none
+     */
+    private FileCacheEntry.PrecompressedFile[] findPrecompressedFiles(
+            final File file) {
+        List<FileCacheEntry.PrecompressedFile> files = null;
+        
+        for (String[] fileType : PRECOMPRESSED_FILE_TYPES) {
+            final File compressedFile = new File(file.getPath() + fileType[0]);
+            
+            // the compressed file, which is older than the plain one, is
+            // likely left from the previous deployment
+            if (compressedFile.isFile()
+                    && compressedFile.lastModified() >= file.lastModified()) {
+                if (files == null) {
+                    files = new ArrayList<FileCacheEntry.PrecompressedFile>(
+                            PRECOMPRESSED_FILE_TYPES.length);
+                }
+                
+                files.add(new FileCacheEntry.PrecompressedFile(fileType[1],
+                        compressedFile, compressedFile.length(),
+                        compressedFile.lastModified()));
+            }
+        }
+        
+        return files != null
+                ? files.toArray(new FileCacheEntry.PrecompressedFile[files.size()])
+                : null;
+    }
+    
     /**
      * Map the file to a {@link ByteBuffer}
      * @return the preinitialized {@link FileCacheEntry}
@@ -385,18 +592,16 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         FileChannel fileChannel = null;
         FileInputStream stream = null;
         try {
+            // the memory limits are enforced by the admission policy, here
+            // we only check if the file could fit the cache at all
             if (size > getMinEntrySize()) {
-                if (addMappedMemorySize(size) > getMaxLargeFileCacheSize()) {
-                    // Cache full
-                    subMappedMemorySize(size);
+                if (size > getMaxLargeFileCacheSize()) {
                     return null;
                 }
                 
                 type = CacheType.MAPPED;
             } else {
-                if (addHeapSize(size) > getMaxSmallFileCacheSize()) {
-                    // Cache full
-                    subHeapSize(size);
+                if (size > getMaxSmallFileCacheSize()) {
                     return null;
                 }
 
@@ -654,6 +859,60 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
     public void setFileSendEnabled(boolean fileSendEnabled) {
         this.fileSendEnabled = fileSendEnabled;
     }
+
+    /**
+     * Returns <code>true</code> if the cached files are watched for changes
+     * using {@link java.nio.file.WatchService}, or <code>false</code> (default)
+     * if the cached entries could be stale until they expire
+     * (see {@link #getSecondsMaxAge()}).
+     *
+     * @since 2.4.3
+     */
+    public boolean isFileWatchEnabled() {
+        return fileWatchEnabled;
+    }
+
+    /**
+     * Configures whether the cached files have to be watched for changes
+     * using {@link java.nio.file.WatchService}. If enabled, a cache entry is
+     * removed as soon as its file is modified, deleted or replaced, so the
+     * next request gets the latest resource version. The request processing
+     * doesn't access the file system either way.
+     * The property has to be set before the {@link FileCache} is initialized.
+     *
+     * @param fileWatchEnabled <code>true</code> to enable the file watch.
+     * @since 2.4.3
+     */
+    public void setFileWatchEnabled(boolean fileWatchEnabled) {
+        this.fileWatchEnabled = fileWatchEnabled;
+    }
+
+    /**
+     * Returns <code>true</code> if the pre-compressed files, located next to
+     * the cached ones, are served to the clients supporting their
+     * content-encoding, or <code>false</code> (default) otherwise.
+     *
+     * @since 2.4.3
+     */
+    public boolean isPrecompressedFilesEnabled() {
+        return precompressedFilesEnabled;
+    }
+
+    /**
+     * Configures whether the pre-compressed files, produced at build time,
+     * have to be served. If enabled, for the cached file <tt>foo.js</tt> the
+     * cache looks for <tt>foo.js.lzma</tt> and <tt>foo.js.gz</tt> and sends
+     * the first one, whose content-encoding is accepted by the client, using
+     * file transfer, so the resource is never compressed at runtime.
+     * The compressed file older than the plain one is ignored.
+     *
+     * @param precompressedFilesEnabled <code>true</code> to serve the
+     *        pre-compressed files.
+     * @since 2.4.3
+     */
+    public void setPrecompressedFilesEnabled(boolean precompressedFilesEnabled) {
+        this.precompressedFilesEnabled = precompressedFilesEnabled;
+    }
     
     /**
      * Creates a temporary compressed representation of the given cache entry.
@@ -998,6 +1257,40 @@ public class FileCache implements MonitoringAware<FileCacheProbe> {
         }
     }
 
+    /**
+     * Notify registered {@link FileCacheProbe}s about the "entry evicted" event.
+     *
+     * @param fileCache the <tt>FileCache</tt> event occurred on.
+     * @param entry entry been evicted
+     */
+    protected static void notifyProbesEntryEvicted(final FileCache fileCache,
+            final FileCacheEntry entry) {
+        final FileCacheProbe[] probes =
+                fileCache.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (FileCacheProbe probe : probes) {
+                probe.onEntryEvictedEvent(fileCache, entry);
+            }
+        }
+    }
+
+    /**
+     * Notify registered {@link FileCacheProbe}s about the "entry rejected" event.
+     *
+     * @param fileCache the <tt>FileCache</tt> event occurred on.
+     * @param entry entry been rejected
+     */
+    protected static void notifyProbesEntryRejected(final FileCache fileCache,
+            final FileCacheEntry entry) {
+        final FileCacheProbe[] probes =
+                fileCache.monitoringConfig.getProbesUnsafe();
+        if (probes != null) {
+            for (FileCacheProbe probe : probes) {
+                probe.onEntryRejectedEvent(fileCache, entry);
+            }
+        }
+    }
+
     /**
      * Notify registered {@link FileCacheProbe}s about the "entry hit event.
      *
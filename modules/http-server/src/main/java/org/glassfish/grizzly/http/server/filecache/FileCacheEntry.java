@@ -50,6 +50,8 @@ import org.glassfish.grizzly.Grizzly;
 import org.glassfish.grizzly.http.CompressionConfig;
 import org.glassfish.grizzly.http.HttpRequestPacket;
 import org.glassfish.grizzly.http.util.ContentType;
+import org.glassfish.grizzly.http.util.Header;
+import org.glassfish.grizzly.http.util.PreEncodedHeaders;
 
 /**
  * The entry value in the file cache map.
@@ -76,6 +78,9 @@ public final class FileCacheEntry implements Runnable {
     ByteBuffer compressedBb;
     long compressedFileSize = -1;
     
+    // the compressed files produced in advance, in the order of preference
+    PrecompressedFile[] precompressedFiles;
+    
     public String xPoweredBy;
     public FileCache.CacheType type;
     public String date;
@@ -85,6 +90,15 @@ public final class FileCacheEntry implements Runnable {
 
     public volatile long timeoutMillis;
 
+    // the response headers, lazily encoded on the first hit
+    private volatile PreEncodedHeaders plainHeaders;
+    private volatile PreEncodedHeaders compressedHeaders;
+
+    // WindowTinyLfuPolicy state, guarded by the policy lock
+    int queueType = WindowTinyLfuPolicy.NOT_RESIDENT;
+    FileCacheEntry prevInAccessOrder;
+    FileCacheEntry nextInAccessOrder;
+
     private final FileCache fileCache;
 
     public FileCacheEntry(FileCache fileCache) {
@@ -126,6 +140,49 @@ public final class FileCacheEntry implements Runnable {
         return compressedFile != null;
     }
     
+    /**
+     * Returns the pre-compressed representation of this entry, which could be
+     * served as response to this (passed) specific {@link HttpRequestPacket},
+     * or <tt>null</tt> if there is no such representation.
+     * 
+     * @since 2.4.3
+     */
+    public PrecompressedFile getPrecompressedFile(
+            final HttpRequestPacket request) {
+        final PrecompressedFile[] files = precompressedFiles;
+        if (files == null ||
+                !fileCache.getCompressionConfig().checkUserAgent(request)) {
+            return null;
+        }
+        
+        for (PrecompressedFile file : files) {
+            if (CompressionConfig.isClientSupportContentEncoding(
+                    request, file.aliases)) {
+                if (!fileCache.isWatchingFiles() && !file.isUpToDate()) {
+                    // the file has been replaced or deleted, the entry will
+                    // be cached again with the up to date variants
+                    fileCache.remove(this);
+                    return null;
+                }
+                
+                return file;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Returns <tt>true</tt> if the response for this entry depends on the
+     * request <tt>Accept-Encoding</tt> header, because the entry could be
+     * served compressed, or <tt>false</tt> otherwise.
+     * 
+     * @since 2.4.3
+     */
+    public boolean isVaryByEncoding() {
+        return canBeCompressed || precompressedFiles != null;
+    }
+    
     /**
      * Returns the entry file size.
      * @param isCompressed if <tt>true</tt> the compressed file size will be
@@ -158,6 +215,59 @@ public final class FileCacheEntry implements Runnable {
         return isCompressed ? compressedBb : bb;
     }
     
+    /**
+     * Returns the pre-encoded headers of the full (status 200) response
+     * for this entry.
+     * @param isCompressed if <tt>true</tt> the headers of the compressed
+     *        response will be returned, otherwise the headers of the plain one.
+     * @return the entry's {@link PreEncodedHeaders}
+     */
+    public PreEncodedHeaders getPreEncodedHeaders(final boolean isCompressed) {
+        PreEncodedHeaders headers = isCompressed ? compressedHeaders : plainHeaders;
+        if (headers == null) {
+            // the race is harmless: the headers are immutable
+            headers = createPreEncodedHeaders(isCompressed ? "gzip" : null);
+            
+            if (isCompressed) {
+                compressedHeaders = headers;
+            } else {
+                plainHeaders = headers;
+            }
+        }
+        
+        return headers;
+    }
+    
+    /**
+     * Returns the pre-encoded headers of the full (status 200) response
+     * for the given pre-compressed representation of this entry.
+     * 
+     * @since 2.4.3
+     */
+    public PreEncodedHeaders getPreEncodedHeaders(
+            final PrecompressedFile precompressedFile) {
+        PreEncodedHeaders headers = precompressedFile.headers;
+        if (headers == null) {
+            headers = createPreEncodedHeaders(precompressedFile.contentEncoding);
+            precompressedFile.headers = headers;
+        }
+        
+        return headers;
+    }
+    
+    private PreEncodedHeaders createPreEncodedHeaders(
+            final String contentEncoding) {
+        return PreEncodedHeaders.builder()
+                .add(Header.ContentType, contentType.get())
+                .add(Header.Server, server)
+                .add(Header.ETag, Etag)
+                .add(Header.LastModified, lastModifiedHeader)
+                .add(Header.AcceptRanges, "bytes")
+                .add(Header.ContentEncoding, contentEncoding)
+                .add(Header.Vary, isVaryByEncoding() ? "Accept-Encoding" : null)
+                .build();
+    }
+    
     @Override
     public void run() {
         fileCache.remove(this);
@@ -197,4 +307,66 @@ public final class FileCacheEntry implements Runnable {
         
         super.finalize();
     }
+    
+    /**
+     * The compressed representation of the cached file, produced in advance
+     * and located next to it, like <tt>foo.js.gz</tt> for <tt>foo.js</tt>.
+     * 
+     * @since 2.4.3
+     */
+    public static final class PrecompressedFile {
+        private final String contentEncoding;
+        private final String[] aliases;
+        private final File file;
+        private final long fileSize;
+        private final long lastModified;
+        
+        private volatile PreEncodedHeaders headers;
+
+        PrecompressedFile(final String contentEncoding, final File file,
+                final long fileSize, final long lastModified) {
+            this.contentEncoding = contentEncoding;
+            this.aliases = new String[] {contentEncoding};
+            this.file = file;
+            this.fileSize = fileSize;
+            this.lastModified = lastModified;
+        }
+
+        /**
+         * @return the content-encoding of the file, like <tt>gzip</tt>
+         */
+        public String getContentEncoding() {
+            return contentEncoding;
+        }
+
+        /**
+         * @return the compressed {@link File} reference
+         */
+        public File getFile() {
+            return file;
+        }
+
+        /**
+         * @return the compressed file size
+         */
+        public long getFileSize() {
+            return fileSize;
+        }
+
+        /**
+         * @return <tt>true</tt>, if the file hasn't been changed or deleted
+         *         since it was found
+         */
+        boolean isUpToDate() {
+            // lastModified() returns 0 for a deleted file
+            return file.lastModified() == lastModified
+                    && file.length() == fileSize;
+        }
+
+        @Override
+        public String toString() {
+            return "PrecompressedFile{" + "contentEncoding=" + contentEncoding
+                    + ", file=" + file + ", fileSize=" + fileSize + '}';
+        }
+    }
 }
@@ -64,6 +64,38 @@ public interface FileCacheProbe {
      */
     void onEntryRemovedEvent(FileCache fileCache, FileCacheEntry entry);
 
+    /**
+     * Method will be called, when file cache entry gets evicted to make room
+     * for a more popular resource.
+     * The {@link #onEntryRemovedEvent(FileCache, FileCacheEntry)} is called
+     * for the evicted entry as well.
+     * The default implementation does nothing.
+     *
+     * @param fileCache {@link FileCache}, the event belongs to.
+     * @param entry {@link FileCacheEntry} been evicted.
+     *
+     * @since 2.4.3
+     */
+    default void onEntryEvictedEvent(FileCache fileCache, FileCacheEntry entry) {
+    }
+
+    /**
+     * Method will be called, when file cache entry is not admitted to the
+     * cache, because the cache is full and the resource is less popular than
+     * the cached ones.
+     * If the entry has been added before (to the admission window), the
+     * {@link #onEntryRemovedEvent(FileCache, FileCacheEntry)} is called
+     * for it as well.
+     * The default implementation does nothing.
+     *
+     * @param fileCache {@link FileCache}, the event belongs to.
+     * @param entry {@link FileCacheEntry} been rejected.
+     *
+     * @since 2.4.3
+     */
+    default void onEntryRejectedEvent(FileCache fileCache, FileCacheEntry entry) {
+    }
+
     /**
      * Method will be called, when file cache entry gets hit.
      *
@@ -0,0 +1,247 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.glassfish.grizzly.Grizzly;
+
+/**
+ * Watches the directories of the cached files using {@link WatchService} and
+ * removes the {@link FileCacheEntry}s, whose files (or their pre-compressed
+ * variants) have been modified, deleted or replaced, from the {@link FileCache}.
+ *
+ * This way the cache never serves stale content for longer than it takes the
+ * file system to report the change, while the request processing doesn't
+ * have to check the file modification time.
+ */
+final class FileWatcher implements Runnable {
+    private static final Logger LOGGER = Grizzly.logger(FileWatcher.class);
+    
+    private final FileCache fileCache;
+    private final WatchService watchService;
+    
+    // watched directories, guarded by "this"
+    private final Map<Path, WatchedDirectory> directories =
+            new HashMap<Path, WatchedDirectory>();
+
+    FileWatcher(final FileCache fileCache) throws IOException {
+        this.fileCache = fileCache;
+        this.watchService = FileSystems.getDefault().newWatchService();
+    }
+
+    /**
+     * Starts watching the file of the entry.
+     */
+    void register(final FileCacheEntry entry) throws IOException {
+        final Path file = entry.plainFile.toPath().toAbsolutePath();
+        final Path dir = file.getParent();
+        
+        synchronized (this) {
+            WatchedDirectory directory = directories.get(dir);
+            if (directory == null) {
+                final WatchKey key = dir.register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE,
+                        StandardWatchEventKinds.ENTRY_MODIFY);
+                directory = new WatchedDirectory(key);
+                directories.put(dir, directory);
+            }
+
+            directory.add(file.getFileName(), entry);
+        }
+    }
+
+    /**
+     * Stops watching the file of the entry.
+     */
+    void unregister(final FileCacheEntry entry) {
+        final Path file = entry.plainFile.toPath().toAbsolutePath();
+        final Path dir = file.getParent();
+        
+        synchronized (this) {
+            final WatchedDirectory directory = directories.get(dir);
+            if (directory != null && directory.remove(file.getFileName(), entry)) {
+                directory.key.cancel();
+                directories.remove(dir);
+            }
+        }
+    }
+
+    /**
+     * Stops watching, the {@link #run()} loop completes.
+     */
+    void close() {
+        try {
+            watchService.close();
+        } catch (IOException ignored) {
+        }
+    }
+    
+    @Override
+    public void run() {
+        final List<FileCacheEntry> changed = new ArrayList<FileCacheEntry>();
+        
+        while (true) {
+            final WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                close();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            
+            synchronized (this) {
+                final Path dir = (Path) key.watchable();
+                final WatchedDirectory directory = directories.get(dir);
+                final List<WatchEvent<?>> events = key.pollEvents();
+                
+                if (directory != null && directory.key == key) {
+                    for (WatchEvent<?> event : events) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                            // some events were lost
+                            directory.collectAll(changed);
+                        } else {
+                            directory.collect((Path) event.context(), changed);
+                        }
+                    }
+
+                    if (!key.reset()) {
+                        // the directory is not accessible anymore
+                        directory.collectAll(changed);
+                    }
+                }
+            }
+            
+            for (int i = 0; i < changed.size(); i++) {
+                final FileCacheEntry entry = changed.get(i);
+                if (LOGGER.isLoggable(Level.FINE)) {
+                    LOGGER.log(Level.FINE, "File {0} has been changed, remove {1}",
+                            new Object[]{entry.plainFile, entry});
+                }
+                
+                fileCache.remove(entry);
+            }
+            
+            changed.clear();
+        }
+    }
+
+    /**
+     * The cache entries, which belong to the watched directory.
+     */
+    private static final class WatchedDirectory {
+        private final WatchKey key;
+        private final Map<Path, List<FileCacheEntry>> entries =
+                new HashMap<Path, List<FileCacheEntry>>();
+
+        private WatchedDirectory(final WatchKey key) {
+            this.key = key;
+        }
+
+        private void add(final Path fileName, final FileCacheEntry entry) {
+            List<FileCacheEntry> list = entries.get(fileName);
+            if (list == null) {
+                // usually a file is cached once
+                list = new ArrayList<FileCacheEntry>(1);
+                entries.put(fileName, list);
+            }
+            
+            list.add(entry);
+        }
+
+        /**
+         * @return <tt>true</tt>, if the directory has no more entries
+         */
+        private boolean remove(final Path fileName, final FileCacheEntry entry) {
+            final List<FileCacheEntry> list = entries.get(fileName);
+            if (list != null && list.remove(entry) && list.isEmpty()) {
+                entries.remove(fileName);
+            }
+            
+            return entries.isEmpty();
+        }
+
+        private void collect(final Path fileName,
+                final List<FileCacheEntry> changed) {
+            final List<FileCacheEntry> list = entries.get(fileName);
+            if (list != null) {
+                changed.addAll(list);
+            }
+            
+            // a pre-compressed variant, like foo.js.gz, has been created,
+            // changed or deleted, so the foo.js entry is stale
+            final String name = fileName.toString();
+            for (String[] fileType : FileCache.PRECOMPRESSED_FILE_TYPES) {
+                final String extension = fileType[0];
+                if (name.length() > extension.length()
+                        && name.endsWith(extension)) {
+                    final List<FileCacheEntry> plainList = entries.get(
+                            fileName.getFileSystem().getPath(name.substring(
+                                    0, name.length() - extension.length())));
+                    if (plainList != null) {
+                        changed.addAll(plainList);
+                    }
+                }
+            }
+        }
+
+        private void collectAll(final List<FileCacheEntry> changed) {
+            for (List<FileCacheEntry> list : entries.values()) {
+                changed.addAll(list);
+            }
+        }
+    }
+}
@@ -0,0 +1,456 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server.filecache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * W-TinyLFU admission and eviction policy of the {@link FileCache}.
+ *
+ * New entries are placed into a small admission window, ordered by recency
+ * (LRU). Entries evicted from the window become candidates for the main space,
+ * which is a segmented LRU with a probation and a protected segment. When the
+ * cache runs out of room, a candidate has to compete with the main space
+ * victims using their estimated popularity, tracked by the
+ * {@link FrequencySketch}: the one with lower frequency gets evicted. This way
+ * a burst of one-off requests can not push frequently requested resources out
+ * of the cache.
+ *
+ * The room is measured in three dimensions at once: the number of entries,
+ * the heap memory and the mapped memory, each of them is limited by the
+ * correspondent {@link FileCache} setting. An entry is weighted by its size in
+ * the memory it occupies, so only the victims, which release the exhausted
+ * resource, are evicted.
+ *
+ * Accesses are recorded only if the policy lock is not contended, so the
+ * request processing never blocks on the cache bookkeeping.
+ */
+final class WindowTinyLfuPolicy {
+    static final int NOT_RESIDENT = -1;
+    static final int WINDOW = 0;
+    static final int PROBATION = 1;
+    static final int PROTECTED = 2;
+    
+    private static final int ENTRIES = 0;
+    private static final int HEAP = 1;
+    private static final int MAPPED = 2;
+    private static final int DIMENSIONS = 3;
+    
+    private static final int WINDOW_PERCENT = 1;
+    private static final int PROTECTED_PERCENT = 80;
+    
+    private final FileCache fileCache;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final FrequencySketch sketch = new FrequencySketch();
+    
+    private final AccessOrderQueue window = new AccessOrderQueue();
+    private final AccessOrderQueue probation = new AccessOrderQueue();
+    private final AccessOrderQueue protectedQueue = new AccessOrderQueue();
+    
+    private final long[] total = new long[DIMENSIONS];
+    private final long[] maximum = new long[DIMENSIONS];
+
+    WindowTinyLfuPolicy(final FileCache fileCache) {
+        this.fileCache = fileCache;
+    }
+
+    /**
+     * Tries to add the entry to the cache.
+     *
+     * @param entry the new {@link FileCacheEntry}
+     * @param evicted the list to be filled with the entries, which have to be
+     *        evicted to make room for more popular ones
+     * @param rejected the list to be filled with the window entries, which
+     *        have not been admitted to the main space
+     * @return <tt>true</tt>, if the entry has been added, or <tt>false</tt>
+     *        otherwise
+     */
+    boolean admit(final FileCacheEntry entry,
+            final List<FileCacheEntry> evicted,
+            final List<FileCacheEntry> rejected) {
+        lock.lock();
+        try {
+            updateMaximum();
+            
+            for (int d = 0; d < DIMENSIONS; d++) {
+                if (weight(entry, d) > maximum[d]) {
+                    return false;
+                }
+            }
+
+            window.addLast(entry);
+            entry.queueType = WINDOW;
+            add(entry);
+            
+            evict(evictFromWindow(), evicted, rejected);
+
+            return entry.queueType != NOT_RESIDENT;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the cache hit for the entry.
+     */
+    void onHit(final FileCacheEntry entry) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        
+        try {
+            sketch.increment(entry.key.hashCode());
+            
+            switch (entry.queueType) {
+                case WINDOW: {
+                    window.moveToLast(entry);
+                    break;
+                }
+                case PROBATION: {
+                    probation.remove(entry);
+                    protectedQueue.addLast(entry);
+                    entry.queueType = PROTECTED;
+                    
+                    // demote the least recently used protected entries
+                    while (exceeds(protectedQueue, PROTECTED_PERCENT)) {
+                        final FileCacheEntry demoted = protectedQueue.first;
+                        protectedQueue.remove(demoted);
+                        probation.addLast(demoted);
+                        demoted.queueType = PROBATION;
+                    }
+                    break;
+                }
+                case PROTECTED: {
+                    protectedQueue.moveToLast(entry);
+                    break;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records the cache miss for the resource with the given key hash code.
+     */
+    void onMiss(final int keyHashCode) {
+        if (!lock.tryLock()) {
+            return;
+        }
+        
+        try {
+            sketch.increment(keyHashCode);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the entry from the policy.
+     *
+     * @return <tt>true</tt>, if the entry was resident, or <tt>false</tt> if
+     *        it has been already removed or evicted
+     */
+    boolean remove(final FileCacheEntry entry) {
+        lock.lock();
+        try {
+            if (entry.queueType == NOT_RESIDENT) {
+                return false;
+            }
+
+            unlink(entry);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Moves the least recently used entries, which exceed the window limits,
+     * to the probation segment.
+     *
+     * @return the list of the moved entries, the eldest first
+     */
+    private List<FileCacheEntry> evictFromWindow() {
+        List<FileCacheEntry> candidates = null;
+        while (window.first != null && exceeds(window, WINDOW_PERCENT)) {
+            final FileCacheEntry candidate = window.first;
+            window.remove(candidate);
+            probation.addLast(candidate);
+            candidate.queueType = PROBATION;
+            
+            if (candidates == null) {
+                candidates = new ArrayList<FileCacheEntry>(2);
+            }
+            candidates.add(candidate);
+        }
+        
+        return candidates;
+    }
+
+    /**
+     * Evicts the entries, until the cache fits its limits. The candidates
+     * compete with the probation victims by frequency, the loser gets evicted.
+     */
+    private void evict(final List<FileCacheEntry> candidates,
+            final List<FileCacheEntry> evicted,
+            final List<FileCacheEntry> rejected) {
+        if (candidates != null) {
+            for (int i = 0; i < candidates.size() && isFull(); i++) {
+                final FileCacheEntry candidate = candidates.get(i);
+                final int candidateFrequency =
+                        sketch.frequency(candidate.key.hashCode());
+                
+                while (isFull() && isReleasing(candidate)) {
+                    final FileCacheEntry victim = nextVictim(candidate);
+                    if (victim == null ||
+                            candidateFrequency <= sketch.frequency(victim.key.hashCode())) {
+                        evict(candidate, rejected);
+                        break;
+                    }
+
+                    evict(victim, evicted);
+                }
+            }
+        }
+        
+        // the cache could still exceed the limits, if the window is big
+        // relative to the main space, or the limits have been decreased.
+        while (isFull()) {
+            FileCacheEntry victim = firstReleasing(probation.first, null);
+            if (victim == null) {
+                victim = firstReleasing(protectedQueue.first, null);
+                if (victim == null) {
+                    victim = firstReleasing(window.first, null);
+                    if (victim == null) {
+                        break;
+                    }
+                }
+            }
+            
+            evict(victim, evicted);
+        }
+    }
+
+    /**
+     * Returns the least recently used probation (then protected) entry, which
+     * releases an exhausted resource, excluding the candidate.
+     */
+    private FileCacheEntry nextVictim(final FileCacheEntry candidate) {
+        final FileCacheEntry victim = firstReleasing(probation.first, candidate);
+        return victim != null
+                ? victim
+                : firstReleasing(protectedQueue.first, candidate);
+    }
+
+    private FileCacheEntry firstReleasing(FileCacheEntry entry,
+            final FileCacheEntry exclude) {
+        while (entry != null) {
+            if (entry != exclude && isReleasing(entry)) {
+                return entry;
+            }
+            entry = entry.nextInAccessOrder;
+        }
+        
+        return null;
+    }
+
+    private void evict(final FileCacheEntry entry,
+            final List<FileCacheEntry> evicted) {
+        unlink(entry);
+        evicted.add(entry);
+    }
+
+    private void unlink(final FileCacheEntry entry) {
+        queueOf(entry).remove(entry);
+        entry.queueType = NOT_RESIDENT;
+        
+        for (int d = 0; d < DIMENSIONS; d++) {
+            total[d] -= weight(entry, d);
+        }
+    }
+
+    private void add(final FileCacheEntry entry) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            total[d] += weight(entry, d);
+        }
+    }
+    
+    private AccessOrderQueue queueOf(final FileCacheEntry entry) {
+        switch (entry.queueType) {
+            case WINDOW: return window;
+            case PROBATION: return probation;
+            case PROTECTED: return protectedQueue;
+            default: throw new IllegalStateException("Entry is not resident: " + entry);
+        }
+    }
+
+    /**
+     * Returns <tt>true</tt>, if the cache exceeds any of its limits.
+     */
+    private boolean isFull() {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            if (total[d] > maximum[d]) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+    /**
+     * Returns <tt>true</tt>, if the entry eviction releases any of the
+     * exhausted resources.
+     */
+    private boolean isReleasing(final FileCacheEntry entry) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            if (total[d] > maximum[d] && weight(entry, d) > 0) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+
+    /**
+     * Returns <tt>true</tt>, if the queue exceeds the given percent of the
+     * main space (for protected segment), or of the whole cache (for window)
+     * in any dimension.
+     */
+    private boolean exceeds(final AccessOrderQueue queue, final int percent) {
+        for (int d = 0; d < DIMENSIONS; d++) {
+            final long limit;
+            if (queue == window) {
+                limit = Math.max(d == ENTRIES ? 1 : 0,
+                        percentOf(maximum[d], percent));
+            } else {
+                limit = percentOf(maximum[d]
+                        - percentOf(maximum[d], WINDOW_PERCENT), percent);
+            }
+            
+            if (queue.weight[d] > limit) {
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
+    private void updateMaximum() {
+        maximum[ENTRIES] = fileCache.getMaxCacheEntries();
+        maximum[HEAP] = fileCache.getMaxSmallFileCacheSize();
+        maximum[MAPPED] = fileCache.getMaxLargeFileCacheSize();
+        
+        sketch.ensureCapacity(maximum[ENTRIES]);
+    }
+
+    private static long percentOf(final long value, final int percent) {
+        // avoid the overflow for the unlimited (Long.MAX_VALUE) values
+        return value / 100 * percent + value % 100 * percent / 100;
+    }
+
+    private static long weight(final FileCacheEntry entry, final int dimension) {
+        switch (dimension) {
+            case ENTRIES: return 1;
+            case HEAP: return entry.type == FileCache.CacheType.HEAP
+                    ? entry.plainFileSize : 0;
+            case MAPPED: return entry.type == FileCache.CacheType.MAPPED
+                    ? entry.plainFileSize : 0;
+            default: throw new IllegalArgumentException("Unknown dimension: " + dimension);
+        }
+    }
+
+    /**
+     * Doubly-linked list of the entries, the least recently used first.
+     */
+    private static final class AccessOrderQueue {
+        private final long[] weight = new long[DIMENSIONS];
+        private FileCacheEntry first;
+        private FileCacheEntry last;
+        
+        void addLast(final FileCacheEntry entry) {
+            entry.prevInAccessOrder = last;
+            entry.nextInAccessOrder = null;
+            if (last == null) {
+                first = entry;
+            } else {
+                last.nextInAccessOrder = entry;
+            }
+            last = entry;
+            
+            for (int d = 0; d < DIMENSIONS; d++) {
+                weight[d] += weight(entry, d);
+            }
+        }
+        
+        void remove(final FileCacheEntry entry) {
+            final FileCacheEntry prev = entry.prevInAccessOrder;
+            final FileCacheEntry next = entry.nextInAccessOrder;
+            if (prev == null) {
+                first = next;
+            } else {
+                prev.nextInAccessOrder = next;
+            }
+            
+            if (next == null) {
+                last = prev;
+            } else {
+                next.prevInAccessOrder = prev;
+            }
+            
+            entry.prevInAccessOrder = null;
+            entry.nextInAccessOrder = null;
+            
+            for (int d = 0; d < DIMENSIONS; d++) {
+                weight[d] -= weight(entry, d);
+            }
+        }
+        
+        void moveToLast(final FileCacheEntry entry) {
+            if (entry != last) {
+                remove(entry);
+                addLast(entry);
+            }
+        }
+    }
+}
@@ -66,7 +66,11 @@ import org.glassfish.grizzly.memory.CompositeBuffer;
  * buffering HTTP responses and then writing them as one operation.
  * 
  * Please note, this addon is not thread-safe, so it can't be used with HTTP
- * requests, that require asynchronous processing.
+ * requests, that require asynchronous processing. The
+ * {@link org.glassfish.grizzly.utils.WriteCorkFilter} provides similar
+ * optimization on the async write queue level and doesn't have this limitation.
+ * 
+ * @see org.glassfish.grizzly.utils.WriteCorkFilter
  * 
  * @author Alexey Stashok
  */
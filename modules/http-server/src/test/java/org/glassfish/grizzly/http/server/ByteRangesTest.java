@@ -0,0 +1,137 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.server;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * {@link ByteRanges} test.
+ */
+public class ByteRangesTest {
+
+    @Test
+    public void testParse() {
+        ByteRanges ranges = ByteRanges.parse("bytes=0-499", 1000);
+        assertEquals(1, ranges.size());
+        assertEquals(0, ranges.getStart(0));
+        assertEquals(500, ranges.getLength(0));
+        assertEquals("bytes 0-499/1000", ranges.getContentRange(0));
+
+        ranges = ByteRanges.parse("bytes=500-", 1000);
+        assertEquals("bytes 500-999/1000", ranges.getContentRange(0));
+
+        ranges = ByteRanges.parse("bytes=-200", 1000);
+        assertEquals("bytes 800-999/1000", ranges.getContentRange(0));
+
+        ranges = ByteRanges.parse("bytes=-2000", 1000);
+        assertEquals("bytes 0-999/1000", ranges.getContentRange(0));
+
+        ranges = ByteRanges.parse("Bytes = 900-1999", 1000);
+        assertEquals("bytes 900-999/1000", ranges.getContentRange(0));
+    }
+
+    @Test
+    public void testCoalesce() {
+        ByteRanges ranges = ByteRanges.parse("bytes=500-600, 0-9, 601-700, 550-551", 1000);
+        assertTrue(ranges.isMultipart());
+        assertEquals(2, ranges.size());
+        assertEquals("bytes 0-9/1000", ranges.getContentRange(0));
+        assertEquals("bytes 500-700/1000", ranges.getContentRange(1));
+
+        ranges = ByteRanges.parse("bytes=0-9, 5-", 1000);
+        assertFalse(ranges.isMultipart());
+        assertEquals("bytes 0-999/1000", ranges.getContentRange(0));
+    }
+
+    @Test
+    public void testIgnored() {
+        assertNull(ByteRanges.parse(null, 1000));
+        assertNull(ByteRanges.parse("items=0-1", 1000));
+        assertNull(ByteRanges.parse("bytes=5-1", 1000));
+        assertNull(ByteRanges.parse("bytes=a-b", 1000));
+        assertNull(ByteRanges.parse("bytes=1", 1000));
+        assertNull(ByteRanges.parse("bytes=0-1,x", 1000));
+
+        final StringBuilder sb = new StringBuilder("bytes=");
+        for (int i = 0; i <= ByteRanges.MAX_RANGES; i++) {
+            sb.append(i * 10).append('-').append(i * 10 + 1).append(',');
+        }
+        assertNull(ByteRanges.parse(sb.toString(), 1000));
+    }
+
+    @Test
+    public void testNotSatisfiable() {
+        assertFalse(ByteRanges.parse("bytes=1000-", 1000).isSatisfiable());
+        assertFalse(ByteRanges.parse("bytes=-0", 1000).isSatisfiable());
+        assertFalse(ByteRanges.parse("bytes=0-", 0).isSatisfiable());
+        assertTrue(ByteRanges.parse("bytes=1000-, 0-0", 1000).isSatisfiable());
+    }
+
+    @Test
+    public void testIfRange() {
+        assertTrue(ByteRanges.isIfRangeMatched(null, "\"1-2\"", null));
+        assertTrue(ByteRanges.isIfRangeMatched("\"1-2\"", "\"1-2\"", null));
+        assertFalse(ByteRanges.isIfRangeMatched("\"1-3\"", "\"1-2\"", null));
+        assertFalse(ByteRanges.isIfRangeMatched("W/\"1-2\"", "W/\"1-2\"", null));
+        assertTrue(ByteRanges.isIfRangeMatched(
+                "Thu, 01 Jan 1970 00:00:00 GMT", null,
+                "Thu, 01 Jan 1970 00:00:00 GMT"));
+        assertFalse(ByteRanges.isIfRangeMatched(
+                "Thu, 01 Jan 1970 00:00:01 GMT", null,
+                "Thu, 01 Jan 1970 00:00:00 GMT"));
+    }
+
+    @Test
+    public void testMultipartLength() {
+        final ByteRanges ranges = ByteRanges.parse("bytes=0-9,20-29", 100);
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < ranges.size(); i++) {
+            sb.append(new String(ranges.getPartHeader(i, "text/plain")));
+            for (int j = 0; j < ranges.getLength(i); j++) {
+                sb.append('x');
+            }
+        }
+        sb.append(new String(ranges.getMultipartTrailer()));
+        assertEquals(sb.length(), ranges.getMultipartLength("text/plain"));
+    }
+}
@@ -83,13 +83,16 @@ import java.util.Date;
 import java.util.Locale;
 import java.util.Random;
 import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
 import org.glassfish.grizzly.http.CompressionConfig.CompressionMode;
 
 import org.glassfish.grizzly.http.server.filecache.FileCacheProbe;
+import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.MimeType;
 import org.junit.After;
 import org.junit.Before;
@@ -1117,6 +1120,360 @@ public class FileCacheTest {
 
     }
 
+    @Test
+    public void testAdmissionPolicy() throws Exception {
+        final StatsCacheProbe cacheProbe = new StatsCacheProbe();
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(cacheProbe);
+        
+        final File hotFile = createTempFile();
+        startHttpServer(new StaticHttpHandler(hotFile.getParent()));
+        httpServer.getListener("grizzly").getFileCache().setMaxCacheEntries(10);
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+
+        for (int i = 0; i < 5; i++) {
+            requestFile(c, responseFuture, hotFile);
+        }
+        
+        // the burst of one-off requests must not push the hot file out
+        for (int i = 0; i < 20; i++) {
+            requestFile(c, responseFuture, createTempFile());
+        }
+        
+        assertTrue(cacheProbe.toString(), cacheProbe.getEntryRejectedCounter() > 0);
+        assertTrue(cacheProbe.toString(),
+                cacheProbe.getEntryAddedCounter() - cacheProbe.getEntryRemovedCounter() <= 10);
+        
+        int hits = cacheProbe.getEntryHitCounter();
+        requestFile(c, responseFuture, hotFile);
+        assertEquals(cacheProbe.toString(), hits + 1, cacheProbe.getEntryHitCounter());
+        
+        // the resource, which became popular, replaces a cold one
+        final File warmFile = createTempFile();
+        for (int i = 0; i < 4; i++) {
+            requestFile(c, responseFuture, warmFile);
+        }
+        requestFile(c, responseFuture, createTempFile());
+
+        assertTrue(cacheProbe.toString(), cacheProbe.getEntryEvictedCounter() > 0);
+        hits = cacheProbe.getEntryHitCounter();
+        requestFile(c, responseFuture, warmFile);
+        requestFile(c, responseFuture, hotFile);
+        assertEquals(cacheProbe.toString(), hits + 2, cacheProbe.getEntryHitCounter());
+    }
+
+    @Test
+    public void testFileWatch() throws Exception {
+        final CountDownLatch removedLatch = new CountDownLatch(1);
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(
+                new FileCacheProbe.Adapter() {
+                    @Override
+                    public void onEntryRemovedEvent(FileCache fileCache, FileCacheEntry entry) {
+                        removedLatch.countDown();
+                    }
+                });
+        
+        final File file = createTempFile();
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.setFileWatchEnabled(true);
+        fileCache.setSecondsMaxAge(120);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        
+        // the 1st request caches the file, the 2nd is served from the cache
+        requestFile(c, responseFuture, file);
+        requestFile(c, responseFuture, file);
+        
+        final FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write("updated".getBytes());
+        } finally {
+            out.close();
+        }
+        
+        // without the watcher the entry would be removed only when it
+        // expires in 120 seconds
+        assertTrue("The cache entry has not been invalidated",
+                removedLatch.await(30, TimeUnit.SECONDS));
+
+        final HttpContent response = requestFile(c, responseFuture, file);
+        assertEquals("updated", response.getContent().toStringContent());
+    }
+
+    @Test
+    public void testPrecompressedFiles() throws Exception {
+        final File file = createTempFile();
+        final File gzFile = createGzipFile(file, "gzip variant");
+        
+        // the client decodes the gzip content only, so for LZMA just the
+        // content-length is checked
+        final File lzmaFile = new File(file.getPath() + ".lzma");
+        lzmaFile.deleteOnExit();
+        final FileOutputStream lzmaOut = new FileOutputStream(lzmaFile);
+        try {
+            lzmaOut.write("lzma variant".getBytes());
+        } finally {
+            lzmaOut.close();
+        }
+        
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.setPrecompressedFilesEnabled(true);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        
+        // the 1st request caches the file
+        requestFile(c, responseFuture, file);
+        
+        HttpContent response = requestFile(c, responseFuture, file, "gzip");
+        assertEquals("gzip", response.getHttpHeader().getHeader(Header.ContentEncoding));
+        assertEquals("Accept-Encoding", response.getHttpHeader().getHeader(Header.Vary));
+        assertEquals("gzip variant", response.getContent().toStringContent());
+        
+        response = requestFile(c, responseFuture, file, "gzip, lzma");
+        assertEquals("lzma", response.getHttpHeader().getHeader(Header.ContentEncoding));
+        assertEquals(lzmaFile.length(), response.getHttpHeader().getContentLength());
+        
+        response = requestFile(c, responseFuture, file, "lzma;q=0, gzip");
+        assertEquals("gzip", response.getHttpHeader().getHeader(Header.ContentEncoding));
+        assertEquals("gzip variant", response.getContent().toStringContent());
+        
+        response = requestFile(c, responseFuture, file);
+        assertNull(response.getHttpHeader().getHeader(Header.ContentEncoding));
+        // the plain response varies by the encoding as well
+        assertEquals("Accept-Encoding", response.getHttpHeader().getHeader(Header.Vary));
+    }
+    
+    @Test
+    public void testPrecompressedFileReplaced() throws Exception {
+        final File file = createTempFile();
+        final File gzFile = createGzipFile(file, "gzip variant");
+        
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.setPrecompressedFilesEnabled(true);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        
+        // the 1st request caches the file
+        requestFile(c, responseFuture, file);
+        HttpContent response = requestFile(c, responseFuture, file, "gzip");
+        assertEquals("gzip variant", response.getContent().toStringContent());
+        
+        createGzipFile(file, "replaced gzip variant");
+        assertTrue(gzFile.setLastModified(file.lastModified() + 2000));
+        
+        // the stale variant is never served, the entry gets cached again
+        // with the new one
+        String content = null;
+        for (int i = 0; i < 3 && !"replaced gzip variant".equals(content); i++) {
+            response = requestFile(c, responseFuture, file, "gzip");
+            content = response.getContent().toStringContent();
+            assertFalse("gzip variant".equals(content));
+        }
+        
+        assertEquals("replaced gzip variant", content);
+    }
+
+    @Test
+    public void testPrecompressedFileWatch() throws Exception {
+        final CountDownLatch removedLatch = new CountDownLatch(1);
+        httpServer.getServerConfiguration().getMonitoringConfig().getFileCacheConfig().addProbes(
+                new FileCacheProbe.Adapter() {
+                    @Override
+                    public void onEntryRemovedEvent(FileCache fileCache, FileCacheEntry entry) {
+                        removedLatch.countDown();
+                    }
+                });
+        
+        final File file = createTempFile();
+        final File gzFile = createGzipFile(file, "gzip variant");
+        
+        final FileCache fileCache = httpServer.getListener("grizzly").getFileCache();
+        fileCache.setPrecompressedFilesEnabled(true);
+        fileCache.setFileWatchEnabled(true);
+        fileCache.setSecondsMaxAge(120);
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+        
+        // the 1st request caches the file
+        requestFile(c, responseFuture, file);
+        HttpContent response = requestFile(c, responseFuture, file, "gzip");
+        assertEquals("gzip variant", response.getContent().toStringContent());
+        
+        // deleting the variant invalidates the plain file entry
+        assertTrue(gzFile.delete());
+        assertTrue("The cache entry has not been invalidated",
+                removedLatch.await(30, TimeUnit.SECONDS));
+        
+        response = requestFile(c, responseFuture, file, "gzip");
+        assertNull(response.getHttpHeader().getHeader(Header.ContentEncoding));
+    }
+    
+    private static File createGzipFile(final File file, final String content)
+            throws IOException {
+        final File gzFile = new File(file.getPath() + ".gz");
+        gzFile.deleteOnExit();
+        final GZIPOutputStream gzOut =
+                new GZIPOutputStream(new FileOutputStream(gzFile));
+        try {
+            gzOut.write(content.getBytes());
+        } finally {
+            gzOut.close();
+        }
+        
+        return gzFile;
+    }
+    
+    private HttpContent requestFile(final Connection c,
+            final ReusableFuture<HttpContent> responseFuture,
+            final File file, final String acceptEncoding) throws Exception {
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/" + file.getName())
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .header("Accept-Encoding", acceptEncoding)
+                .build();
+        
+        responseFuture.reset();
+        c.write(request);
+        final HttpContent response = responseFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(200, ((HttpResponsePacket) response.getHttpHeader()).getStatus());
+        return response;
+    }
+
+    private HttpContent requestFile(final Connection c,
+            final ReusableFuture<HttpContent> responseFuture,
+            final File file) throws Exception {
+        final HttpRequestPacket request = HttpRequestPacket.builder()
+                .method("GET")
+                .uri("/" + file.getName())
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .build();
+        
+        responseFuture.reset();
+        c.write(request);
+        final HttpContent response = responseFuture.get(10, TimeUnit.SECONDS);
+        assertEquals(200, ((HttpResponsePacket) response.getHttpHeader()).getStatus());
+        assertEquals(file.length(), response.getContent().remaining());
+        return response;
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        // small file is cached in a ByteBuffer
+        checkRanges(Long.MAX_VALUE);
+    }
+
+    @Test
+    public void testRangesFileEntry() throws Exception {
+        // large file is cached as a File reference
+        checkRanges(100);
+    }
+
+    private void checkRanges(final long maxEntrySize) throws Exception {
+        final File file = createTempFile();
+        final String requestPath = "/" + file.getName();
+        startHttpServer(new StaticHttpHandler(file.getParent()));
+        httpServer.getListener("grizzly").getFileCache().setMaxEntrySize(maxEntrySize);
+
+        InputStream fis = new FileInputStream(file);
+        byte[] data = new byte[(int) file.length()];
+        fis.read(data);
+        fis.close();
+
+        final String pattern = new String(data);
+        final int length = data.length;
+        
+        final ReusableFuture<HttpContent> responseFuture =
+                new ReusableFuture<HttpContent>();
+        final Connection c = getConnection("localhost", PORT, responseFuture);
+
+        // the 1st response is sent from disk, the 2nd - from the file cache
+        for (int i = 0; i < 2; i++) {
+            final HttpContent single = sendRangeRequest(c, responseFuture,
+                    requestPath, "bytes=10-19", null);
+            final HttpResponsePacket singleResponse =
+                    (HttpResponsePacket) single.getHttpHeader();
+            assertEquals(206, singleResponse.getStatus());
+            assertEquals("bytes 10-19/" + length,
+                    singleResponse.getHeader(Header.ContentRange));
+            assertEquals(10, singleResponse.getContentLength());
+            assertEquals(pattern.substring(10, 20),
+                    single.getContent().toStringContent());
+        }
+
+        final HttpContent suffix = sendRangeRequest(c, responseFuture,
+                requestPath, "bytes=-5", null);
+        assertEquals(206, ((HttpResponsePacket) suffix.getHttpHeader()).getStatus());
+        assertEquals(pattern.substring(length - 5),
+                suffix.getContent().toStringContent());
+
+        final HttpContent multi = sendRangeRequest(c, responseFuture,
+                requestPath, "bytes=0-1, 20-29, 25-30", null);
+        final HttpResponsePacket multiResponse =
+                (HttpResponsePacket) multi.getHttpHeader();
+        assertEquals(206, multiResponse.getStatus());
+        final String contentType = multiResponse.getContentType();
+        assertTrue(contentType, contentType.startsWith("multipart/byteranges"));
+        final String boundary =
+                contentType.substring(contentType.indexOf("boundary=") + 9);
+        final String body = multi.getContent().toStringContent();
+        assertEquals(multiResponse.getContentLength(), body.length());
+        assertTrue(body, body.startsWith("--" + boundary + "\r\n"));
+        assertTrue(body, body.contains("Content-Range: bytes 0-1/" + length
+                + "\r\n\r\n" + pattern.substring(0, 2) + "\r\n--" + boundary + "\r\n"));
+        assertTrue(body, body.contains("Content-Range: bytes 20-30/" + length
+                + "\r\n\r\n" + pattern.substring(20, 31)));
+        assertTrue(body, body.endsWith("\r\n--" + boundary + "--\r\n"));
+
+        final HttpContent unsatisfiable = sendRangeRequest(c, responseFuture,
+                requestPath, "bytes=" + length + "-", null);
+        final HttpResponsePacket unsatisfiableResponse =
+                (HttpResponsePacket) unsatisfiable.getHttpHeader();
+        assertEquals(416, unsatisfiableResponse.getStatus());
+        assertEquals("bytes */" + length,
+                unsatisfiableResponse.getHeader(Header.ContentRange));
+
+        final HttpContent ifRangeMismatch = sendRangeRequest(c, responseFuture,
+                requestPath, "bytes=10-19", "\"outdated\"");
+        assertEquals(200, ((HttpResponsePacket) ifRangeMismatch.getHttpHeader()).getStatus());
+        assertEquals(pattern, ifRangeMismatch.getContent().toStringContent());
+    }
+
+    private HttpContent sendRangeRequest(final Connection c,
+            final ReusableFuture<HttpContent> responseFuture,
+            final String requestPath, final String range, final String ifRange)
+            throws Exception {
+        final HttpRequestPacket.Builder builder = HttpRequestPacket.builder()
+                .method("GET")
+                .uri(requestPath)
+                .protocol("HTTP/1.1")
+                .header("Host", "localhost")
+                .header("Range", range);
+        if (ifRange != null) {
+            builder.header("If-Range", ifRange);
+        }
+        
+        responseFuture.reset();
+        c.write(builder.build());
+        return responseFuture.get(10, TimeUnit.SECONDS);
+    }
+
 
     private void configureHttpServer() throws Exception {
         httpServer = new HttpServer();
@@ -1317,6 +1674,8 @@ public class FileCacheTest {
         final AtomicInteger entryHitCounter = new AtomicInteger();
         final AtomicInteger entryMissedCounter = new AtomicInteger();
         final AtomicInteger entryErrorCounter = new AtomicInteger();
+        final AtomicInteger entryEvictedCounter = new AtomicInteger();
+        final AtomicInteger entryRejectedCounter = new AtomicInteger();
 
         @Override
         public void onEntryAddedEvent(FileCache fileCache, FileCacheEntry entry) {
@@ -1328,6 +1687,16 @@ public class FileCacheTest {
             entryRemovedCounter.incrementAndGet();
         }
 
+        @Override
+        public void onEntryEvictedEvent(FileCache fileCache, FileCacheEntry entry) {
+            entryEvictedCounter.incrementAndGet();
+        }
+
+        @Override
+        public void onEntryRejectedEvent(FileCache fileCache, FileCacheEntry entry) {
+            entryRejectedCounter.incrementAndGet();
+        }
+
         @Override
         public void onEntryHitEvent(FileCache fileCache, FileCacheEntry entry) {
             entryHitCounter.incrementAndGet();
@@ -1359,6 +1728,12 @@ public class FileCacheTest {
         public int getEntryErrorCounter() {
             return entryErrorCounter.get();
         }
+        public int getEntryEvictedCounter() {
+            return entryEvictedCounter.get();
+        }
+        public int getEntryRejectedCounter() {
+            return entryRejectedCounter.get();
+        }
 
         @Override
         public String toString() {
@@ -1368,6 +1743,8 @@ public class FileCacheTest {
             .append(", hit=").append(getEntryHitCounter())
             .append(", missed=").append(getEntryMissedCounter())
             .append(", error=").append(getEntryErrorCounter())
+            .append(", evicted=").append(getEntryEvictedCounter())
+            .append(", rejected=").append(getEntryRejectedCounter())
             .append("]");
 
             return sb.toString();
@@ -403,7 +403,14 @@ public final class CompressionConfig {
 
     }
     
-    private static boolean isClientSupportContentEncoding(
+    /**
+     * Returns <tt>true</tt> if the {@link HttpRequestPacket} Accept-Encoding
+     * header lists one of the given content-encoding aliases and doesn't
+     * disable it with <tt>q=0</tt>, or <tt>false</tt> otherwise.
+     *
+     * @since 2.4.3
+     */
+    public static boolean isClientSupportContentEncoding(
             HttpRequestPacket request, final String[] aliases) {
         // Check if browser support gzip encoding
         final DataChunk acceptEncodingDC =
@@ -58,6 +58,7 @@ import org.glassfish.grizzly.http.util.Constants;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.MimeHeaders;
+import org.glassfish.grizzly.http.util.PreEncodedHeaders;
 import org.glassfish.grizzly.memory.Buffers;
 import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.CompositeBuffer.DisposeOrder;
@@ -1604,6 +1605,15 @@ public abstract class HttpCodecFilter extends HttpBaseFilter
             encodedBuffer = put(memoryManager, encodedBuffer, CRLF_BYTES);
             onInitialLineEncoded(httpHeader, ctx);
 
+            final PreEncodedHeaders preEncodedHeaders =
+                    httpHeader.getPreEncodedHeaders();
+            if (preEncodedHeaders != null) {
+                // copying the block is cheaper, than splitting the header
+                // buffer to append the block as a separate segment
+                encodedBuffer = put(memoryManager, encodedBuffer,
+                        preEncodedHeaders.getEncoded());
+            }
+            
             encodedBuffer = encodeKnownHeaders(memoryManager, encodedBuffer,
                     httpHeader);
 
@@ -56,6 +56,7 @@ import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.HeaderValue;
 import org.glassfish.grizzly.http.util.HttpUtils;
 import org.glassfish.grizzly.http.util.MimeHeaders;
+import org.glassfish.grizzly.http.util.PreEncodedHeaders;
 import org.glassfish.grizzly.utils.Charsets;
 
 /**
@@ -119,6 +120,11 @@ public abstract class HttpHeader extends HttpPacket
 
     Buffer headerBuffer;
 
+    /**
+     * The headers block, which doesn't have to be serialized.
+     */
+    private PreEncodedHeaders preEncodedHeaders;
+
     /**
      * Is chunking allowed to be used or not.
      */
@@ -619,6 +625,34 @@ public abstract class HttpHeader extends HttpPacket
         return headers;
     }
 
+    /**
+     * Adds the {@link PreEncodedHeaders} block to this HTTP message.
+     * The headers become part of {@link #getHeaders()}, but they are marked as
+     * serialized, so the codec writes the pre-encoded block as it is instead.
+     * The headers from the block must not be changed afterwards.
+     * Only one block could be added to a message.
+     *
+     * @param preEncodedHeaders {@link PreEncodedHeaders}
+     * @since 2.4.3
+     */
+    public void setPreEncodedHeaders(final PreEncodedHeaders preEncodedHeaders) {
+        if (this.preEncodedHeaders != null) {
+            throw new IllegalStateException("The pre-encoded headers are already set");
+        }
+        
+        this.preEncodedHeaders = preEncodedHeaders;
+        preEncodedHeaders.addTo(headers);
+    }
+
+    /**
+     * @return the {@link PreEncodedHeaders} block added to this HTTP message,
+     *         or <tt>null</tt> if none
+     * @since 2.4.3
+     */
+    public PreEncodedHeaders getPreEncodedHeaders() {
+        return preEncodedHeaders;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -883,6 +917,7 @@ public abstract class HttpHeader extends HttpPacket
         parsedProtocol = null;
         contentEncodings.clear();
         headers.clear();
+        preEncodedHeaders = null;
         isCommitted = false;
         isChunked = false;
         contentLength = -1;
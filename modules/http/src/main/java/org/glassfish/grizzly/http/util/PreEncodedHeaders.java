@@ -0,0 +1,194 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.glassfish.grizzly.utils.Charsets;
+
+import static org.glassfish.grizzly.http.util.HttpCodecUtils.*;
+
+/**
+ * Immutable block of HTTP headers, which is encoded once and then could be
+ * added to many responses, like the file cache responses, without any
+ * per-response serialization.
+ * 
+ * For HTTP/1.x the block is kept as a ready-to-send byte array of
+ * <tt>name: value\r\n</tt> lines, which is bulk-copied into the response
+ * header buffer, for HTTP/2 - as a list of lower-case names and values,
+ * which could be passed directly to the HPACK encoder.
+ * 
+ * The headers are still added to the response {@link MimeHeaders} (marked as
+ * serialized), because the application and the codecs look them up there.
+ * 
+ * @see org.glassfish.grizzly.http.HttpHeader#setPreEncodedHeaders(PreEncodedHeaders)
+ * @since 2.4.3
+ */
+public final class PreEncodedHeaders {
+    private final Header[] names;
+    private final String[] values;
+    private final byte[][] valueBytes;
+    private final byte[] encoded;
+
+    /**
+     * @return the {@link Builder} to construct a new <tt>PreEncodedHeaders</tt>
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+    
+    private PreEncodedHeaders(final List<Header> names,
+            final List<String> values) {
+        final int size = names.size();
+        this.names = names.toArray(new Header[size]);
+        this.values = values.toArray(new String[size]);
+        this.valueBytes = new byte[size][];
+        
+        int length = 0;
+        for (int i = 0; i < size; i++) {
+            valueBytes[i] = toCheckedByteArray(this.values[i]);
+            length += this.names[i].getLength() + valueBytes[i].length + 4;
+        }
+        
+        encoded = new byte[length];
+        int offs = 0;
+        for (int i = 0; i < size; i++) {
+            final byte[] nameBytes = this.names[i].toByteArray();
+            System.arraycopy(nameBytes, 0, encoded, offs, nameBytes.length);
+            offs += nameBytes.length;
+            encoded[offs++] = Constants.COLON;
+            encoded[offs++] = Constants.SP;
+            System.arraycopy(valueBytes[i], 0, encoded, offs, valueBytes[i].length);
+            offs += valueBytes[i].length;
+            encoded[offs++] = Constants.CR;
+            encoded[offs++] = Constants.LF;
+        }
+    }
+
+    /**
+     * @return the number of headers in the block
+     */
+    public int size() {
+        return names.length;
+    }
+
+    /**
+     * @return the name of the header with the given index
+     */
+    public Header getName(final int idx) {
+        return names[idx];
+    }
+
+    /**
+     * @return the value of the header with the given index
+     */
+    public String getValue(final int idx) {
+        return values[idx];
+    }
+
+    /**
+     * @return the US-ASCII representation of the value of the header with the
+     *         given index. The returned array must not be modified.
+     */
+    public byte[] getValueBytes(final int idx) {
+        return valueBytes[idx];
+    }
+    
+    /**
+     * @return the HTTP/1.x representation of the headers block, the returned
+     *         array must not be modified
+     */
+    public byte[] getEncoded() {
+        return encoded;
+    }
+
+    /**
+     * Adds the headers to the given {@link MimeHeaders} marked as
+     * already serialized, so that they are visible to the application and
+     * the codecs, but are not encoded again.
+     */
+    public void addTo(final MimeHeaders headers) {
+        for (int i = 0; i < names.length; i++) {
+            final int idx = headers.size();
+            headers.addValue(names[i]).setBytes(valueBytes[i]);
+            if (headers.size() > idx) {
+                headers.setSerialized(idx, true);
+            }
+        }
+    }
+    
+    @Override
+    public String toString() {
+        return new String(encoded, Charsets.ASCII_CHARSET);
+    }
+    
+    /**
+     * <tt>PreEncodedHeaders</tt> builder.
+     */
+    public static final class Builder {
+        private final List<Header> names = new ArrayList<Header>();
+        private final List<String> values = new ArrayList<String>();
+
+        private Builder() {
+        }
+        
+        /**
+         * Adds the header, if the value is not <tt>null</tt>.
+         * 
+         * @return this <tt>Builder</tt>
+         */
+        public Builder add(final Header name, final String value) {
+            if (value != null) {
+                names.add(name);
+                values.add(value);
+            }
+            
+            return this;
+        }
+        
+        /**
+         * @return the new <tt>PreEncodedHeaders</tt>
+         */
+        public PreEncodedHeaders build() {
+            return new PreEncodedHeaders(names, values);
+        }
+    }
+}
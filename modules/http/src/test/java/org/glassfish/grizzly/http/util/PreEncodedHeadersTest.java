@@ -0,0 +1,81 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http.util;
+
+import org.glassfish.grizzly.utils.Charsets;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PreEncodedHeadersTest {
+
+    @Test
+    public void testEncoded() {
+        final PreEncodedHeaders headers = PreEncodedHeaders.builder()
+                .add(Header.ContentType, "text/html")
+                .add(Header.ETag, null)
+                .add(Header.AcceptRanges, "bytes")
+                .build();
+
+        Assert.assertEquals(2, headers.size());
+        Assert.assertEquals(Header.ContentType, headers.getName(0));
+        Assert.assertEquals("bytes", headers.getValue(1));
+        Assert.assertEquals("Content-Type: text/html\r\nAccept-Ranges: bytes\r\n",
+                new String(headers.getEncoded(), Charsets.ASCII_CHARSET));
+    }
+
+    @Test
+    public void testAddTo() {
+        final MimeHeaders mimeHeaders = new MimeHeaders();
+        mimeHeaders.addValue("custom").setString("one");
+
+        PreEncodedHeaders.builder()
+                .add(Header.ETag, "\"1-2\"")
+                .add(Header.AcceptRanges, "bytes")
+                .build().addTo(mimeHeaders);
+
+        Assert.assertEquals(3, mimeHeaders.size());
+        Assert.assertFalse(mimeHeaders.isSerialized(0));
+        Assert.assertTrue(mimeHeaders.isSerialized(1));
+        Assert.assertTrue(mimeHeaders.isSerialized(2));
+        Assert.assertEquals("\"1-2\"", mimeHeaders.getHeader(Header.ETag));
+        Assert.assertEquals("bytes", mimeHeaders.getHeader("accept-ranges"));
+    }
+}
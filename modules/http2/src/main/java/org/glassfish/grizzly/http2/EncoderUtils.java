@@ -52,6 +52,7 @@ import org.glassfish.grizzly.http.util.ByteChunk;
 import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http.util.Header;
 import org.glassfish.grizzly.http.util.MimeHeaders;
+import org.glassfish.grizzly.http.util.PreEncodedHeaders;
 
 import static org.glassfish.grizzly.http.util.DataChunk.Type.Buffer;
 import static org.glassfish.grizzly.http.util.DataChunk.Type.Bytes;
@@ -93,6 +94,7 @@ class EncoderUtils extends EncoderDecoderUtilsBase {
         encoder.encodeHeader(STATUS_HEADER,
                 String.valueOf(response.getHttpStatus().getStatusCode()), capture);
 
+        encodePreEncodedHeaders(response.getPreEncodedHeaders(), encoder, capture);
         encodeUserHeaders(headers, encoder, capture);
 
         return encoder.flushHeaders();
@@ -229,6 +231,26 @@ class EncoderUtils extends EncoderDecoderUtilsBase {
         return encoder.flushHeaders();
     }
 
+    /**
+     * Encodes the {@link PreEncodedHeaders} block, its headers are marked as
+     * serialized in the {@link MimeHeaders}, so they are skipped by
+     * {@link #encodeUserHeaders(MimeHeaders, HeadersEncoder, Map)}.
+     */
+    private static void encodePreEncodedHeaders(
+            final PreEncodedHeaders preEncodedHeaders,
+            final HeadersEncoder encoder,
+            final Map<String,String> capture) {
+        if (preEncodedHeaders == null) {
+            return;
+        }
+        
+        final int size = preEncodedHeaders.size();
+        for (int i = 0; i < size; i++) {
+            encoder.encodeHeader(preEncodedHeaders.getName(i).getLowerCase(),
+                    preEncodedHeaders.getValue(i), capture);
+        }
+    }
+    
     @SuppressWarnings("unchecked")
     private static void encodeUserHeaders(final MimeHeaders headers,
                                           final HeadersEncoder encoder,
@@ -240,10 +262,9 @@ class EncoderUtils extends EncoderDecoderUtilsBase {
         for (int i = 0; i < mimeHeadersCount; i++) {
 
             if (!headers.setSerialized(i, true)) {
-                final String nameStr = nameToLowerCase(headers.getName(i));
                 final DataChunk value = headers.getValue(i);
                 if (!value.isNull()) {
-                    encoder.encodeHeader(nameStr, value.toString(), capture);
+                    encoder.encodeHeader(headers.getName(i), value, capture);
                 }
 
             }
@@ -278,34 +299,6 @@ class EncoderUtils extends EncoderDecoderUtilsBase {
         
         return lowercase;
     }
-
-    private static String nameToLowerCase(final DataChunk name) {
-        final int length = name.getLength();
-        final StringBuilder sb = new StringBuilder(length);
-        
-        if (name.getType() == Bytes) {
-            final ByteChunk byteChunk = name.getByteChunk();
-            final byte[] bytes = byteChunk.getBuffer();
-            final int offs = byteChunk.getStart();
-            for (int i = 0; i < length; i++) {
-                sb.append((char) Ascii.toLower(bytes[i + offs]));
-            }
-        } else if (name.getType() == Buffer) {
-            final BufferChunk bufferChunk = name.getBufferChunk();
-            final Buffer buffer = bufferChunk.getBuffer();
-            final int offs = bufferChunk.getStart();
-            for (int i = 0; i < length; i++) {
-                sb.append((char) Ascii.toLower(buffer.get(i + offs)));
-            }
-        } else {
-            final String s = name.toString();
-            for (int i = 0; i < length; i++) {
-                sb.append((char) Ascii.toLower(s.charAt(i)));
-            }
-        }
-        
-        return sb.toString();
-    }
     
     @SuppressWarnings("unused")
     private static int valueToByteArray(final DataChunk value,
@@ -41,6 +41,11 @@
 package org.glassfish.grizzly.http2;
 
 import org.glassfish.grizzly.Buffer;
+import org.glassfish.grizzly.http.util.Ascii;
+import org.glassfish.grizzly.http.util.BufferChunk;
+import org.glassfish.grizzly.http.util.ByteChunk;
+import org.glassfish.grizzly.http.util.CharChunk;
+import org.glassfish.grizzly.http.util.DataChunk;
 import org.glassfish.grizzly.http2.hpack.Encoder;
 import org.glassfish.grizzly.memory.CompositeBuffer;
 import org.glassfish.grizzly.memory.MemoryManager;
@@ -65,6 +70,11 @@ public class HeadersEncoder {
 
     private CompositeBuffer buffer;
 
+    // reusable views, so DataChunk headers are looked up and encoded
+    // without being converted to Strings
+    private final DataChunkSequence nameSequence = new DataChunkSequence(true);
+    private final DataChunkSequence valueSequence = new DataChunkSequence(false);
+
     public HeadersEncoder(final MemoryManager memoryManager,
                           final int maxHeaderTableSize) {
         this.memoryManager = memoryManager;
@@ -82,6 +92,28 @@ public class HeadersEncoder {
         }
     }
     
+    /**
+     * Encodes the header represented by {@link DataChunk}s. The name is
+     * lower-cased on the fly, as required by HTTP/2.
+     */
+    void encodeHeader(final DataChunk name, final DataChunk value, final Map<String,String> capture) {
+        nameSequence.reset(name);
+        valueSequence.reset(value);
+        try {
+            if (capture != null) {
+                capture.put(nameSequence.toString(), valueSequence.toString());
+            }
+            init();
+            hpackEncoder.header(nameSequence, valueSequence);
+            while (!hpackEncoder.encode(buffer)) {
+                buffer.append(memoryManager.allocate(DEFAULT_BUFFER_SIZE));
+            }
+        } finally {
+            nameSequence.reset(null);
+            valueSequence.reset(null);
+        }
+    }
+
     public Buffer flushHeaders() {
         final Buffer bufferLocal = buffer;
         bufferLocal.trim();
@@ -98,4 +130,110 @@ public class HeadersEncoder {
             buffer.append(memoryManager.allocate(DEFAULT_BUFFER_SIZE));
         }
     }
+
+    /**
+     * {@link CharSequence} view over the {@link DataChunk} content, bytes are
+     * interpreted as ISO-8859-1 characters.
+     */
+    private static final class DataChunkSequence implements CharSequence {
+        private final boolean lowerCase;
+
+        private DataChunk.Type type;
+        private byte[] bytes;
+        private Buffer bytesBuffer;
+        private char[] chars;
+        private String string;
+        private int start;
+        private int length;
+
+        private DataChunkSequence(final boolean lowerCase) {
+            this.lowerCase = lowerCase;
+        }
+
+        void reset(final DataChunk dataChunk) {
+            bytes = null;
+            bytesBuffer = null;
+            chars = null;
+            string = null;
+            start = 0;
+            length = 0;
+
+            if (dataChunk == null) {
+                type = null;
+                return;
+            }
+
+            type = dataChunk.getType();
+            switch (type) {
+                case Bytes:
+                    final ByteChunk byteChunk = dataChunk.getByteChunk();
+                    bytes = byteChunk.getBuffer();
+                    start = byteChunk.getStart();
+                    length = byteChunk.getLength();
+                    break;
+                case Buffer:
+                    final BufferChunk bufferChunk = dataChunk.getBufferChunk();
+                    bytesBuffer = bufferChunk.getBuffer();
+                    start = bufferChunk.getStart();
+                    length = bufferChunk.getLength();
+                    break;
+                case Chars:
+                    final CharChunk charChunk = dataChunk.getCharChunk();
+                    chars = charChunk.getBuffer();
+                    start = charChunk.getStart();
+                    length = charChunk.getLength();
+                    break;
+                case String:
+                    string = dataChunk.toString();
+                    length = string != null ? string.length() : 0;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(final int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException(String.valueOf(index));
+            }
+
+            final int c;
+            switch (type) {
+                case Bytes:
+                    c = bytes[start + index] & 0xFF;
+                    break;
+                case Buffer:
+                    c = bytesBuffer.get(start + index) & 0xFF;
+                    break;
+                case Chars:
+                    c = chars[start + index];
+                    break;
+                default:
+                    c = string.charAt(index);
+                    break;
+            }
+
+            return (char) (lowerCase ? Ascii.toLower(c) : c);
+        }
+
+        @Override
+        public CharSequence subSequence(final int start, final int end) {
+            return toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder(length);
+            for (int i = 0; i < length; i++) {
+                sb.append(charAt(i));
+            }
+            return sb.toString();
+        }
+    }
 }
@@ -46,7 +46,6 @@ import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.TreeMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.concurrent.locks.ReentrantLock;
@@ -99,6 +98,7 @@ import org.glassfish.grizzly.utils.NullaryFunction;
 import static org.glassfish.grizzly.http2.frames.SettingsFrame.*;
 import static org.glassfish.grizzly.http2.Http2BaseFilter.PRI_PAYLOAD;
 import org.glassfish.grizzly.http2.frames.HeaderBlockFragment;
+import org.glassfish.grizzly.http2.utils.IntObjectHashMap;
 import org.glassfish.grizzly.http2.frames.WindowUpdateFrame;
 
 
@@ -133,7 +133,8 @@ public class Http2Session {
     @SuppressWarnings("unused")
     private volatile int concurrentStreamsCount;
 
-    private final TreeMap<Integer, Http2Stream> streamsMap = new TreeMap<>();
+    // the streams are registered under sessionLock, but looked up lock-free
+    private final IntObjectHashMap<Http2Stream> streamsMap = new IntObjectHashMap<>();
     
     // (Optimization) We may read several DataFrames belonging to the same
     // Http2Stream, so in order to not process every DataFrame separately -
@@ -700,13 +701,10 @@ public class Http2Session {
         // close streams that rank above the last stream ID specified by the GOAWAY frame.
         // Allow other streams to continue processing.  Once the concurrent stream count reaches zero,
         // the session will be closed.
-        Map<Integer, Http2Stream> invalidStreams =
-                streamsMap.subMap(goingAwayLastStreamId,
-                        false,
-                        Integer.MAX_VALUE,
-                        true);
+        final List<Http2Stream> invalidStreams =
+                streamsMap.values(goingAwayLastStreamId, Integer.MAX_VALUE);
         if (!invalidStreams.isEmpty()) {
-            for (final Http2Stream stream : invalidStreams.values()) {
+            for (final Http2Stream stream : invalidStreams) {
                 stream.closedRemotely();
                 deregisterStream();
             }
@@ -1227,10 +1225,11 @@ public class Http2Session {
                     checkCount = 0;
                     int maxCount = Float.valueOf(streamsHighWaterMark * http2Configuration.getCleanPercentage()).intValue();
                     int count = 0;
-                    for (final Iterator<Map.Entry<Integer,Http2Stream>> streamIds = streamsMap.entrySet().iterator(); (streamIds.hasNext() && count < maxCount);) {
-                        final Map.Entry<Integer,Http2Stream> entry = streamIds.next();
-                        if (entry.getValue().isClosed()) {
-                            streamIds.remove();
+                    // check the oldest streams first
+                    for (final Iterator<Http2Stream> streams = streamsMap.values(0, Integer.MAX_VALUE).iterator(); (streams.hasNext() && count < maxCount);) {
+                        final Http2Stream stream = streams.next();
+                        if (stream.isClosed()) {
+                            streamsMap.remove(stream.getId());
                         }
                         count++;
                     }
@@ -1392,6 +1391,9 @@ public class Http2Session {
 
         streamsMap.put(streamId, stream);
         incStreamCount();
+
+        outputSink.onStreamOpen(streamId, stream.getParentStreamId(),
+                stream.isExclusive(), stream.getPriority());
     }
 
     private void registerUpgradeStream(final Http2Stream stream) throws Http2StreamException {
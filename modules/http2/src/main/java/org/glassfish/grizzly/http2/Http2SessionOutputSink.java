@@ -40,6 +40,7 @@
 
 package org.glassfish.grizzly.http2;
 
+import java.io.IOException;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -64,6 +65,8 @@ import org.glassfish.grizzly.http2.utils.ChunkedCompletionHandler;
 /**
  * Class represents an output sink associated with specific {@link Http2Session}
  * and is responsible for session (connection) level flow control.
+ * The queued DATA frames are flushed in the order chosen by the session
+ * {@link PriorityTree}, so stream weights and dependencies are respected.
  * 
  * @author Alexey Stashok
  */
@@ -85,6 +88,10 @@ public class Http2SessionOutputSink {
                 }
             });
 
+    // the session priority tree, which keeps the queued records
+    private final PriorityTree<Http2SessionOutputSink.OutputQueueRecord> priorityTree =
+            new PriorityTree<>();
+
     private final AtomicInteger availConnectionWindowSize;
     private final List<Http2Frame> tmpFramesList = new LinkedList<>();
     private final AtomicBoolean writerLock = new AtomicBoolean();
@@ -148,6 +155,41 @@ public class Http2SessionOutputSink {
         outputQueue.notifyWritePossible(writeHandler, MAX_OUTPUT_QUEUE_SIZE);
     }
 
+    /**
+     * Register the stream priority information.
+     *
+     * @param streamId the stream ID
+     * @param parentStreamId the ID of the stream the stream depends on, <tt>0</tt> if none
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the stream weight as it's sent on the wire [0; 255]
+     */
+    protected void onStreamOpen(final int streamId, final int parentStreamId,
+            final boolean exclusive, final int weight) {
+        priorityTree.addStream(streamId, parentStreamId, exclusive, weight + 1);
+    }
+
+    /**
+     * Update the stream priority information as requested by PRIORITY frame.
+     *
+     * @param streamId the stream ID
+     * @param parentStreamId the ID of the stream the stream depends on, <tt>0</tt> if none
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the stream weight as it's sent on the wire [0; 255]
+     */
+    protected void onStreamPriority(final int streamId, final int parentStreamId,
+            final boolean exclusive, final int weight) {
+        priorityTree.reprioritize(streamId, parentStreamId, exclusive, weight + 1);
+    }
+
+    /**
+     * Remove the stream from the priority tree, once the stream is closed.
+     *
+     * @param streamId the stream ID
+     */
+    protected void onStreamClosed(final int streamId) {
+        priorityTree.removeStream(streamId);
+    }
+
     protected void onPeerWindowUpdate(final int delta) throws Http2SessionException {
         final int currentWindow = availConnectionWindowSize.get();
         if (delta > 0 && currentWindow > 0 && currentWindow + delta < 0) {
@@ -210,7 +252,12 @@ public class Http2SessionOutputSink {
                 stream.getId(), data,
                 completionHandler, isLast);
 
-        outputQueue.offer(record);
+        // the record is scheduled in the current thread, so it's in the tree
+        // before the stream is closed and removed from the tree
+        if (!priorityTree.offer(record.streamId, record)) {
+            record.notifyFailure(new IOException("Stream " + stream.getId() + " is closed"));
+            return;
+        }
         outputQueue.reserveSpace(record.isZeroSizeData() ? 1 : dataSize);
 
         flushOutputQueue();
@@ -251,7 +298,7 @@ public class Http2SessionOutputSink {
             while (availWindowSize > bytesToTransfer &&
                     queueSize > queueSizeToFree) {
 
-                final Http2SessionOutputSink.OutputQueueRecord record = outputQueue.poll();
+                final Http2SessionOutputSink.OutputQueueRecord record = priorityTree.peek();
 
                 if (record == null) {
                     // keep this warning for now
@@ -269,13 +316,11 @@ public class Http2SessionOutputSink {
                 bytesToTransfer += serializedBytes;
                 queueSizeToFree += serializedBytes;
 
-                if (record.isFinished()) {
-                    if (record.isZeroSizeData()) {
-                        queueSizeToFree++;
-                    }
-                } else {
-                    outputQueue.setCurrentElement(record);
+                final boolean isFinished = record.isFinished();
+                if (isFinished && record.isZeroSizeData()) {
+                    queueSizeToFree++;
                 }
+                priorityTree.consumed(record.streamId, serializedBytes, isFinished);
 
                 final CompletionHandler<WriteResult> recordCompletionHandler =
                         record.getCompletionHandler();
@@ -337,6 +382,7 @@ public class Http2SessionOutputSink {
 
     public void close() {
         outputQueue.onClose();
+        priorityTree.onClose();
     }
 
     private static class OutputQueueRecord extends AsyncQueueRecord<WriteResult> {
@@ -266,16 +266,18 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
         return streamId;
     }
 
-    @SuppressWarnings("unused")
     public int getParentStreamId() {
         return parentStreamId;
     }
 
-    @SuppressWarnings("unused")
     public int getPriority() {
         return priority;
     }
 
+    public boolean isExclusive() {
+        return exclusive;
+    }
+
     public boolean isPushStream() {
         return (streamId & 1) == 0;
     }
@@ -685,6 +687,7 @@ public class Http2Stream implements AttributeStorage, OutputSink, Closeable {
     private void closeStream() {
         // TODO ensure stream proper transitions to CLOSED state
         //Http2StreamState.close(this);
+        http2Session.getOutputSink().onStreamClosed(streamId);
         http2Session.deregisterStream();
     }
     
@@ -0,0 +1,397 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.grizzly.http2;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import org.glassfish.grizzly.asyncqueue.AsyncQueueRecord;
+import org.glassfish.grizzly.http2.utils.IntObjectHashMap;
+
+/**
+ * Per-session HTTP/2 stream priority tree (RFC 7540, section 5.3) combined
+ * with a weighted fair scheduler, which {@link Http2SessionOutputSink}
+ * consults to pick the stream whose DATA has to be flushed next.
+ *
+ * Scheduling is incremental: every node keeps a virtual <tt>pass</tt> value,
+ * which is advanced by <tt>bytes * MAX_WEIGHT / weight</tt> every time data is
+ * sent on the node or any of its dependents. In order to pick the next
+ * element the tree is walked down from the root, choosing the active child
+ * with the smallest pass on each level, a stream having data of its own
+ * is served before its dependents.
+ *
+ * All the methods are guarded by the tree monitor. There is one tree per
+ * {@link Http2Session}, so streams of different sessions never contend.
+ *
+ * @param <E> the type of the queued elements
+ */
+final class PriorityTree<E extends AsyncQueueRecord<?>> {
+    /**
+     * The effective weight of the stream, which has no priority information.
+     */
+    static final int DEFAULT_WEIGHT = 16;
+    static final int MAX_WEIGHT = 256;
+
+    private final StreamNode<E> root = new StreamNode<>(0, DEFAULT_WEIGHT);
+    private final IntObjectHashMap<StreamNode<E>> nodes = new IntObjectHashMap<>();
+
+    /**
+     * Add the stream to the tree.
+     *
+     * @param streamId the stream ID
+     * @param parentStreamId the ID of the stream this stream depends on,
+     *                       <tt>0</tt> if none
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the effective stream weight [1; 256]
+     */
+    synchronized void addStream(final int streamId, final int parentStreamId,
+            final boolean exclusive, final int weight) {
+        final StreamNode<E> node = nodes.get(streamId);
+        if (node != null) {
+            reprioritize(node, parentStreamId, exclusive, weight);
+            return;
+        }
+
+        final StreamNode<E> newNode = new StreamNode<>(streamId, weight);
+        nodes.put(streamId, newNode);
+        attach(newNode, parentOf(streamId, parentStreamId), exclusive);
+    }
+
+    /**
+     * Apply the priority information received in a PRIORITY frame.
+     * The frames referring to streams, which are not in the tree, are ignored,
+     * so a peer can't grow the tree with the streams it never opens.
+     *
+     * @param streamId the stream ID
+     * @param parentStreamId the ID of the stream this stream depends on,
+     *                       <tt>0</tt> if none
+     * @param exclusive <tt>true</tt> if the dependency is exclusive
+     * @param weight the effective stream weight [1; 256]
+     */
+    synchronized void reprioritize(final int streamId, final int parentStreamId,
+            final boolean exclusive, final int weight) {
+        final StreamNode<E> node = nodes.get(streamId);
+        if (node != null) {
+            reprioritize(node, parentStreamId, exclusive, weight);
+        }
+    }
+
+    /**
+     * Remove the stream from the tree, the stream dependents are moved to its
+     * parent. If there are still queued elements for the stream - the removal
+     * is postponed until they are consumed.
+     *
+     * @param streamId the stream ID
+     */
+    synchronized void removeStream(final int streamId) {
+        final StreamNode<E> node = nodes.get(streamId);
+        if (node == null) {
+            return;
+        }
+
+        if (node.queue.isEmpty()) {
+            discard(node);
+        } else {
+            node.isClosed = true;
+        }
+    }
+
+    /**
+     * Queue the element to be scheduled on behalf of the stream.
+     * The element is rejected, if the stream is not in the tree, i.e. it has
+     * never been added or has already been removed.
+     *
+     * @param streamId the stream ID
+     * @param element the element
+     * @return <tt>true</tt> if the element has been queued, or <tt>false</tt>
+     *         if the stream is not in the tree
+     */
+    synchronized boolean offer(final int streamId, final E element) {
+        final StreamNode<E> node = nodes.get(streamId);
+        if (node == null || node.isClosed) {
+            return false;
+        }
+
+        final boolean wasActive = node.isActive();
+        node.queue.offer(element);
+        if (!wasActive) {
+            onActivated(node);
+        }
+
+        return true;
+    }
+
+    /**
+     * @return the element, which has to be served next, or <tt>null</tt> if
+     *  there are no queued elements. The element stays queued until it is
+     *  reported as finished via {@link #consumed(int, int, boolean)}.
+     */
+    synchronized E peek() {
+        StreamNode<E> node = root;
+        while (true) {
+            if (node != root && !node.queue.isEmpty()) {
+                return node.queue.peek();
+            }
+
+            StreamNode<E> next = null;
+            for (Node n = node.firstChild; n != null; n = n.next) {
+                final StreamNode<E> child = cast(n);
+                if (child.isActive() && (next == null || child.pass < next.pass)) {
+                    next = child;
+                }
+            }
+
+            if (next == null) {
+                return null;
+            }
+
+            node.virtualTime = next.pass;
+            node = next;
+        }
+    }
+
+    /**
+     * Account the bytes sent on behalf of the stream.
+     *
+     * @param streamId the stream ID
+     * @param bytes the number of bytes sent
+     * @param isFinished <tt>true</tt> if the current head element of the
+     *                   stream has been completely sent and has to be dequeued
+     */
+    synchronized void consumed(final int streamId, final int bytes,
+            final boolean isFinished) {
+        final StreamNode<E> node = nodes.get(streamId);
+        if (node == null) {
+            return;
+        }
+
+        // zero-length frames cost one byte, so they can't monopolize the scheduler
+        final long cost = (long) Math.max(bytes, 1) * MAX_WEIGHT;
+        for (StreamNode<E> n = node; n != root; n = n.parent()) {
+            n.pass += cost / n.weight;
+        }
+
+        if (isFinished) {
+            node.queue.poll();
+            if (node.queue.isEmpty()) {
+                if (node.activeChildren == 0) {
+                    onDeactivated(node);
+                }
+                if (node.isClosed) {
+                    discard(node);
+                }
+            }
+        }
+    }
+
+    /**
+     * Notify all the queued elements about the failure and reset the tree.
+     */
+    synchronized void onClose() {
+        IOException error = null;
+        for (StreamNode<E> node : nodes.values()) {
+            E element;
+            while ((element = node.queue.poll()) != null) {
+                if (error == null) {
+                    error = new IOException("Connection closed");
+                }
+                element.notifyFailure(error);
+            }
+        }
+
+        nodes.clear();
+        root.firstChild = null;
+        root.activeChildren = 0;
+    }
+
+    // ------------------------------------------------------- Private Methods
+
+
+    private StreamNode<E> parentOf(final int streamId, final int parentStreamId) {
+        if (parentStreamId == 0 || parentStreamId == streamId) {
+            return root;
+        }
+
+        final StreamNode<E> parent = nodes.get(parentStreamId);
+
+        // RFC 7540, 5.3.1: dependency on a stream, which is not in the tree,
+        // results in the default priority
+        return parent != null ? parent : root;
+    }
+
+    private void attach(final StreamNode<E> node, final StreamNode<E> parent,
+            final boolean exclusive) {
+        parent.addChild(node, exclusive);
+        node.pass = Math.max(node.pass, parent.virtualTime);
+        if (exclusive) {
+            refresh(node);
+        }
+        refresh(parent);
+    }
+
+    private void reprioritize(final StreamNode<E> node, final int parentStreamId,
+            final boolean exclusive, final int weight) {
+        node.weight = weight;
+
+        final StreamNode<E> newParent = parentOf(node.id, parentStreamId);
+        final StreamNode<E> oldParent = node.parent();
+        if (newParent == oldParent && !exclusive) {
+            return;
+        }
+
+        if (isDescendant(newParent, node)) {
+            // RFC 7540, 5.3.3: the dependent stream is first moved to be
+            // dependent on the reprioritized stream's previous parent
+            final StreamNode<E> p = newParent.parent();
+            newParent.detachFromTree();
+            refresh(p);
+            oldParent.addChild(newParent);
+            refresh(oldParent);
+        }
+
+        node.detachFromTree();
+        refresh(oldParent);
+        attach(node, newParent, exclusive);
+    }
+
+    private void discard(final StreamNode<E> node) {
+        nodes.remove(node.id);
+
+        final StreamNode<E> parent = node.parent();
+        node.removeFromTree();
+        refresh(parent);
+    }
+
+    private static <E extends AsyncQueueRecord<?>> boolean isDescendant(
+            final StreamNode<E> node, final StreamNode<E> ancestor) {
+        for (StreamNode<E> n = node.parent(); n != null; n = n.parent()) {
+            if (n == ancestor) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Called once the node became active: increment the active children
+     * counter of the ancestors, which are not active yet.
+     */
+    private void onActivated(final StreamNode<E> node) {
+        StreamNode<E> n = node;
+        StreamNode<E> p;
+        while ((p = n.parent()) != null) {
+            // don't let the node, which was idle, catch up with its siblings
+            n.pass = Math.max(n.pass, p.virtualTime);
+
+            final boolean wasActive = p.isActive();
+            p.activeChildren++;
+            if (wasActive) {
+                return;
+            }
+            n = p;
+        }
+    }
+
+    /**
+     * Called once the node became inactive: decrement the active children
+     * counter of the ancestors, which become inactive.
+     */
+    private void onDeactivated(final StreamNode<E> node) {
+        StreamNode<E> p = node.parent();
+        while (p != null) {
+            p.activeChildren--;
+            if (p.isActive()) {
+                return;
+            }
+            p = p.parent();
+        }
+    }
+
+    /**
+     * Recount the node active children after the tree structure change.
+     */
+    private void refresh(StreamNode<E> node) {
+        while (node != null) {
+            final boolean wasActive = node.isActive();
+
+            int count = 0;
+            for (Node n = node.firstChild; n != null; n = n.next) {
+                if (cast(n).isActive()) {
+                    count++;
+                }
+            }
+            node.activeChildren = count;
+
+            if (wasActive == node.isActive()) {
+                return;
+            }
+            node = node.parent();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <E extends AsyncQueueRecord<?>> StreamNode<E> cast(final Node node) {
+        return (StreamNode<E>) node;
+    }
+
+    private static final class StreamNode<E extends AsyncQueueRecord<?>> extends Node {
+        private final ArrayDeque<E> queue = new ArrayDeque<>(2);
+        private int weight;
+        // the number of children having queued elements in their subtrees
+        private int activeChildren;
+        private long pass;
+        // the pass of the child, which was served last
+        private long virtualTime;
+        private boolean isClosed;
+
+        private StreamNode(final int id, final int weight) {
+            super(id);
+            this.weight = weight;
+        }
+
+        private StreamNode<E> parent() {
+            return cast(parent);
+        }
+
+        private boolean isActive() {
+            return !queue.isEmpty() || activeChildren > 0;
+        }
+    }
+}
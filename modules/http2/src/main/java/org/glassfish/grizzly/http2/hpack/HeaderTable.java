@@ -40,9 +40,7 @@
 
 package org.glassfish.grizzly.http2.hpack;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 import static java.lang.String.format;
@@ -123,19 +121,25 @@ final class HeaderTable {
 
     private static final int STATIC_TABLE_LENGTH = staticTable.length - 1;
     private static final int ENTRY_SIZE = 32;
-    private static final Map<String, LinkedHashMap<String, Integer>> staticIndexes;
+
+    //
+    // Static table names are mapped to the index of their first entry with
+    // a perfect hash: the seed is chosen at class initialization so that no
+    // two distinct names share a slot. Entries with the same name are
+    // adjacent in the static table, so a value match is a short scan from
+    // there. Lookups hash the name's characters directly, with no String
+    // conversion and no allocation.
+    //
+    private static final int STATIC_INDEX_BITS = 9;
+    private static final int[] staticIndex = new int[1 << STATIC_INDEX_BITS];
+    private static final int staticSeed;
 
     static {
-        staticIndexes = new HashMap<>(STATIC_TABLE_LENGTH);
-        for (int i = 1; i <= STATIC_TABLE_LENGTH; i++) {
-            HeaderField f = staticTable[i];
-            LinkedHashMap<String,Integer> values = staticIndexes.get(f.name);
-            if (values == null) {
-                values = new LinkedHashMap<>();
-                values.put(f.value, i);
-            }
-            staticIndexes.put(f.name, values);
+        int seed = 0;
+        while (!buildStaticIndex(seed)) {
+            seed++;
         }
+        staticSeed = seed;
     }
 
     private final Table dynamicTable = new Table(0);
@@ -162,39 +166,37 @@ final class HeaderTable {
     // into a single invocation, facilitating a single pass where possible
     // (the idea is the same as in java.util.Arrays.binarySearch(int[], int)).
     //
+    // Names and values are compared by content, so any CharSequence
+    // (e.g. a view over a header's bytes) may be passed without allocating.
+    //
     public int indexOf(CharSequence name, CharSequence value) {
-        // Invoking toString() will possibly allocate Strings for the sake of
-        // the search, which doesn't feel right.
-        String n = name.toString();
-        String v = value.toString();
+        final int nameHash = hash(name);
+        final int valueHash = hash(value);
 
         // 1. Try exact match in the static region
-        Map<String, Integer> values = staticIndexes.get(n);
-        if (values != null) {
-            Integer idx = values.get(v);
-            if (idx != null) {
-                return idx;
+        final int first = staticIndexOf(name, nameHash);
+        if (first != 0) {
+            final String n = staticTable[first].name;
+            for (int i = first;
+                 i <= STATIC_TABLE_LENGTH && staticTable[i].name == n; i++) {
+                if (contentEquals(staticTable[i].value, value)) {
+                    return i;
+                }
             }
         }
         // 2. Try exact match in the dynamic region
-        int didx = dynamicTable.indexOf(n, v);
+        int didx = dynamicTable.indexOf(name, value, nameHash,
+                pairHash(nameHash, valueHash));
         if (didx > 0) {
             return STATIC_TABLE_LENGTH + didx;
+        } else if (first != 0) {
+            // 3. Return name match from the static region
+            return -first;
         } else if (didx < 0) {
-            if (values != null) {
-                // 3. Return name match from the static region
-                return -values.values().iterator().next(); // Iterator allocation
-            } else {
-                // 4. Return name match from the dynamic region
-                return -STATIC_TABLE_LENGTH + didx;
-            }
+            // 4. Return name match from the dynamic region
+            return -STATIC_TABLE_LENGTH + didx;
         } else {
-            if (values != null) {
-                // 3. Return name match from the static region
-                return -values.values().iterator().next(); // Iterator allocation
-            } else {
-                return 0;
-            }
+            return 0;
         }
     }
 
@@ -297,6 +299,65 @@ final class HeaderTable {
         return b.toString();
     }
 
+    private static boolean buildStaticIndex(int seed) {
+        Arrays.fill(staticIndex, 0);
+        for (int i = 1; i <= STATIC_TABLE_LENGTH; i++) {
+            final String name = staticTable[i].name;
+            if (staticTable[i - 1] != null && staticTable[i - 1].name == name) {
+                continue;
+            }
+            final int slot = staticSlot(name.hashCode(), seed);
+            if (staticIndex[slot] != 0) {
+                return false;
+            }
+            staticIndex[slot] = i;
+        }
+        return true;
+    }
+
+    private static int staticSlot(int nameHash, int seed) {
+        return ((nameHash ^ seed) * 0x9E3779B9) >>> (32 - STATIC_INDEX_BITS);
+    }
+
+    private static int staticIndexOf(CharSequence name, int nameHash) {
+        final int i = staticIndex[staticSlot(nameHash, staticSeed)];
+        return i != 0 && contentEquals(staticTable[i].name, name) ? i : 0;
+    }
+
+    //
+    // Same as String.hashCode(), but computed over any CharSequence
+    //
+    static int hash(CharSequence s) {
+        if (s instanceof String) {
+            return s.hashCode();
+        }
+        int h = 0;
+        for (int i = 0, len = s.length(); i < len; i++) {
+            h = 31 * h + s.charAt(i);
+        }
+        return h;
+    }
+
+    static boolean contentEquals(String s, CharSequence cs) {
+        if (cs instanceof String) {
+            return s.equals(cs);
+        }
+        final int len = s.length();
+        if (len != cs.length()) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) != cs.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int pairHash(int nameHash, int valueHash) {
+        return 31 * nameHash + valueHash;
+    }
+
     // Convert to a Value Object (JDK-8046159)?
     static final class HeaderField {
 
@@ -399,54 +460,70 @@ final class HeaderTable {
     // That's given, of course, the size of the table itself is less than
     // Long.MAX_VALUE :-)
     //
+    // The index itself is a pair of open-addressed (linear probing) tables
+    // of such counter snapshots: one keyed by (name, value), another keyed by
+    // name alone. Each slot refers to the newest entry with its key; since
+    // entries are evicted oldest first, an evicted entry still referenced by
+    // a slot is the last one with that key and the slot is simply cleared.
+    // The tables are kept at most half full, and rebuilt when the buffer's
+    // capacity changes.
+    //
     private static final class Table {
 
-        private final Map<String, Map<String, Long>> map;
         private final CircularBuffer<HeaderField> buffer;
         private long counter = 1;
 
+        private long[] pairSlots;
+        private int[] pairHashes;
+        private long[] nameSlots;
+        private int[] nameHashes;
+        private int mask;
+
         Table(int capacity) {
             buffer = new CircularBuffer<>(capacity);
-            map = new HashMap<>(capacity);
+            initIndex(capacity);
         }
 
         void add(HeaderField f) {
             buffer.add(f);
-            Map<String, Long> values = map.get(f.name);
-            if (values == null) {
-                values = new HashMap<>();
-                values.put(f.value, counter++);
-            }
-            map.put(f.name, values);
+            index(f, counter++);
         }
 
         HeaderField get(int index) {
             return buffer.get(index - 1);
         }
 
-        int indexOf(String name, String value) {
-            Map<String, Long> values = map.get(name);
-            if (values == null) {
-                return 0;
+        int indexOf(CharSequence name, CharSequence value,
+                    int nameHash, int pairHash) {
+            final int h = spread(pairHash);
+            for (int i = h & mask; pairSlots[i] != 0; i = (i + 1) & mask) {
+                if (pairHashes[i] == h) {
+                    final int idx = (int) (counter - pairSlots[i]);
+                    final HeaderField f = get(idx);
+                    if (contentEquals(f.name, name)
+                            && contentEquals(f.value, value)) {
+                        return idx;
+                    }
+                }
             }
-            Long index = values.get(value);
-            if (index != null) {
-                return (int) (counter - index);
-            } else {
-                assert !values.isEmpty();
-                Long any = values.values().iterator().next(); // Iterator allocation
-                return -(int) (counter - any);
+            final int nh = spread(nameHash);
+            for (int i = nh & mask; nameSlots[i] != 0; i = (i + 1) & mask) {
+                if (nameHashes[i] == nh) {
+                    final int idx = (int) (counter - nameSlots[i]);
+                    if (contentEquals(get(idx).name, name)) {
+                        return -idx;
+                    }
+                }
             }
+            return 0;
         }
 
         HeaderField remove() {
+            final long c = counter - buffer.size;
             HeaderField f = buffer.remove();
-            Map<String, Long> values = map.get(f.name);
-            Long index = values.remove(f.value);
-            assert index != null;
-            if (values.isEmpty()) {
-                map.remove(f.name);
-            }
+            unindex(pairSlots, pairHashes,
+                    spread(pairHash(f.name.hashCode(), f.value.hashCode())), c);
+            unindex(nameSlots, nameHashes, spread(f.name.hashCode()), c);
             return f;
         }
 
@@ -456,6 +533,77 @@ final class HeaderTable {
 
         public void setCapacity(int capacity) {
             buffer.resize(capacity);
+            initIndex(capacity);
+            for (int i = buffer.size; i >= 1; i--) {
+                index(get(i), counter - i);
+            }
+        }
+
+        private void initIndex(int capacity) {
+            int n = 2;
+            while (n < capacity * 2) {
+                n <<= 1;
+            }
+            pairSlots = new long[n];
+            pairHashes = new int[n];
+            nameSlots = new long[n];
+            nameHashes = new int[n];
+            mask = n - 1;
+        }
+
+        private void index(HeaderField f, long c) {
+            final int nameHash = f.name.hashCode();
+            final int h = spread(pairHash(nameHash, f.value.hashCode()));
+            int i = h & mask;
+            for (; pairSlots[i] != 0; i = (i + 1) & mask) {
+                if (pairHashes[i] == h) {
+                    final HeaderField e = get((int) (counter - pairSlots[i]));
+                    if (e.name.equals(f.name) && e.value.equals(f.value)) {
+                        break;
+                    }
+                }
+            }
+            pairSlots[i] = c;
+            pairHashes[i] = h;
+
+            final int nh = spread(nameHash);
+            i = nh & mask;
+            for (; nameSlots[i] != 0; i = (i + 1) & mask) {
+                if (nameHashes[i] == nh
+                        && get((int) (counter - nameSlots[i])).name.equals(f.name)) {
+                    break;
+                }
+            }
+            nameSlots[i] = c;
+            nameHashes[i] = nh;
+        }
+
+        private void unindex(long[] slots, int[] hashes, int h, long c) {
+            int i = h & mask;
+            for (; slots[i] != c; i = (i + 1) & mask) {
+                if (slots[i] == 0) {
+                    // Superseded by a newer entry with the same key
+                    return;
+                }
+            }
+            // Backward shift deletion, so probe sequences stay unbroken
+            for (int j = (i + 1) & mask; slots[j] != 0; j = (j + 1) & mask) {
+                final int home = hashes[j] & mask;
+                final boolean inPlace = i <= j
+                        ? i < home && home <= j
+                        : i < home || home <= j;
+                if (!inPlace) {
+                    slots[i] = slots[j];
+                    hashes[i] = hashes[j];
+                    i = j;
+                }
+            }
+            slots[i] = 0;
+        }
+
+        private static int spread(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
         }
     }
 
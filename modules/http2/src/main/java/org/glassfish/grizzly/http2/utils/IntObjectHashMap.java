@@ -0,0 +1,396 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.grizzly.http2.utils;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Open-addressing hash map with primitive positive <tt>int</tt> keys, like
+ * HTTP/2 stream IDs, so the keys are never boxed.
+ *
+ * The map is meant to have a single writer and many readers: the modifications
+ * ({@link #put(int, Object)}, {@link #remove(int)}, {@link #clear()} and the
+ * iterator removals) have to be serialized by the caller, but
+ * {@link #get(int)} is lock-free and may be called concurrently with them.
+ *
+ * @param <V> the type of the mapped values
+ */
+public final class IntObjectHashMap<V> {
+    private static final int FREE = 0;
+    private static final int REMOVED = -1;
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private volatile Table<V> table;
+
+    // the number of mappings
+    private int size;
+    // the number of mappings plus the number of REMOVED slots
+    private int occupied;
+
+    public IntObjectHashMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the expected number of mappings
+     */
+    public IntObjectHashMap(final int expectedSize) {
+        table = new Table<>(tableSizeFor(expectedSize));
+    }
+
+    /**
+     * Returns the value mapped to the key, or <tt>null</tt> if there is no
+     * mapping for the key.
+     * The method doesn't require any synchronization.
+     *
+     * @param key the key (positive)
+     * @return the value mapped to the key, or <tt>null</tt>
+     */
+    public V get(final int key) {
+        final Table<V> t = table;
+        final int mask = t.mask;
+
+        int idx = hash(key) & mask;
+        while (true) {
+            final int k = t.keys.get(idx);
+            if (k == key) {
+                // null, if the mapping is being removed
+                final V value = t.values.get(idx);
+                // the slot might have been removed and reused for another
+                // key after the key was read, so the value belongs to
+                // the key only if the key is still in place
+                if (t.keys.get(idx) == key) {
+                    return value;
+                }
+                return null;
+            }
+            if (k == FREE) {
+                return null;
+            }
+            idx = (idx + 1) & mask;
+        }
+    }
+
+    /**
+     * Maps the value to the key.
+     *
+     * @param key the key (positive)
+     * @param value the value (not <tt>null</tt>)
+     * @return the value previously mapped to the key, or <tt>null</tt>
+     */
+    public V put(final int key, final V value) {
+        if (key <= 0) {
+            throw new IllegalArgumentException("Key has to be positive: " + key);
+        }
+        if (value == null) {
+            throw new NullPointerException("Null value is not allowed");
+        }
+
+        Table<V> t = table;
+
+        int idx = indexOf(t, key);
+        if (idx != -1) {
+            final V oldValue = t.values.get(idx);
+            t.values.set(idx, value);
+            return oldValue;
+        }
+
+        if ((occupied + 1) > t.threshold) {
+            t = rehash(size + 1);
+        }
+
+        idx = hash(key) & t.mask;
+        int k;
+        while ((k = t.keys.get(idx)) != FREE && k != REMOVED) {
+            idx = (idx + 1) & t.mask;
+        }
+
+        if (k == FREE) {
+            occupied++;
+        }
+        size++;
+
+        // the value has to be visible before the key
+        t.values.lazySet(idx, value);
+        t.keys.set(idx, key);
+
+        return null;
+    }
+
+    /**
+     * Removes the mapping for the key.
+     *
+     * @param key the key
+     * @return the value previously mapped to the key, or <tt>null</tt>
+     */
+    public V remove(final int key) {
+        final Table<V> t = table;
+        final int idx = indexOf(t, key);
+        return idx != -1 ? removeAt(t, idx) : null;
+    }
+
+    /**
+     * Removes all the mappings.
+     */
+    public void clear() {
+        table = new Table<>(tableSizeFor(DEFAULT_CAPACITY));
+        size = 0;
+        occupied = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Returns the values view of the map in no particular order. The view
+     * iterator supports element removal, which follows the same rules as
+     * {@link #remove(int)}.
+     *
+     * @return the values view of the map
+     */
+    public Collection<V> values() {
+        return new AbstractCollection<V>() {
+            @Override
+            public Iterator<V> iterator() {
+                return new ValuesIterator();
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the values mapped to the keys in the <tt>(fromKey; toKey]</tt>
+     * range, ordered by key.
+     *
+     * @param fromKey the low end of the range (exclusive)
+     * @param toKey the high end of the range (inclusive)
+     * @return the values mapped to the keys in the range, ordered by key
+     */
+    public List<V> values(final int fromKey, final int toKey) {
+        final Table<V> t = table;
+        final int[] keys = new int[size];
+
+        int count = 0;
+        for (int i = 0; i < t.keys.length() && count < keys.length; i++) {
+            final int k = t.keys.get(i);
+            if (k > fromKey && k <= toKey) {
+                keys[count++] = k;
+            }
+        }
+
+        if (count == 0) {
+            return new ArrayList<>(0);
+        }
+
+        Arrays.sort(keys, 0, count);
+
+        final List<V> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            final V value = get(keys[i]);
+            if (value != null) {
+                result.add(value);
+            }
+        }
+
+        return result;
+    }
+
+    // ------------------------------------------------------- Private Methods
+
+
+    private static int indexOf(final Table<?> t, final int key) {
+        final int mask = t.mask;
+
+        int idx = hash(key) & mask;
+        int k;
+        while ((k = t.keys.get(idx)) != FREE) {
+            if (k == key) {
+                return idx;
+            }
+            idx = (idx + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private V removeAt(final Table<V> t, final int idx) {
+        final V oldValue = t.values.get(idx);
+        t.values.set(idx, null);
+        t.keys.set(idx, REMOVED);
+        size--;
+
+        return oldValue;
+    }
+
+    /**
+     * Copies the live mappings to a new table, which is published once it's
+     * completely initialized, so the concurrent readers always observe
+     * a consistent table.
+     */
+    private Table<V> rehash(final int expectedSize) {
+        final Table<V> oldTable = table;
+        final Table<V> newTable = new Table<>(tableSizeFor(expectedSize));
+
+        for (int i = 0; i < oldTable.keys.length(); i++) {
+            final int k = oldTable.keys.get(i);
+            if (k != FREE && k != REMOVED) {
+                int idx = hash(k) & newTable.mask;
+                while (newTable.keys.get(idx) != FREE) {
+                    idx = (idx + 1) & newTable.mask;
+                }
+                newTable.values.lazySet(idx, oldTable.values.get(i));
+                newTable.keys.lazySet(idx, k);
+            }
+        }
+
+        occupied = size;
+        table = newTable;
+
+        return newTable;
+    }
+
+    private static int hash(final int key) {
+        final int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * @return the power of two table size, which keeps the load factor
+     *         of the table with the given number of mappings under 0.5
+     */
+    private static int tableSizeFor(final int expectedSize) {
+        final int minSize = Math.max(expectedSize, DEFAULT_CAPACITY / 2) * 2;
+        return Integer.highestOneBit(minSize - 1) << 1;
+    }
+
+    private static final class Table<V> {
+        private final AtomicIntegerArray keys;
+        private final AtomicReferenceArray<V> values;
+        private final int mask;
+        private final int threshold;
+
+        private Table(final int capacity) {
+            keys = new AtomicIntegerArray(capacity);
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+            threshold = capacity / 2;
+        }
+    }
+
+    private final class ValuesIterator implements Iterator<V> {
+        private final Table<V> t = table;
+        private int nextIdx = -1;
+        private V nextValue;
+        private int currentIdx = -1;
+
+        private ValuesIterator() {
+            advance();
+        }
+
+        @Override
+        public boolean hasNext() {
+            return nextValue != null;
+        }
+
+        @Override
+        public V next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+
+            final V value = nextValue;
+            currentIdx = nextIdx;
+            advance();
+
+            return value;
+        }
+
+        @Override
+        public void remove() {
+            if (currentIdx == -1) {
+                throw new IllegalStateException();
+            }
+            if (t != table) {
+                throw new ConcurrentModificationException();
+            }
+
+            removeAt(t, currentIdx);
+            currentIdx = -1;
+        }
+
+        private void advance() {
+            final int length = t.keys.length();
+            for (int idx = nextIdx + 1; idx < length; idx++) {
+                final int k = t.keys.get(idx);
+                if (k != FREE && k != REMOVED) {
+                    // the value is null, if the mapping is being removed
+                    final V value = t.values.get(idx);
+                    if (value != null) {
+                        nextIdx = idx;
+                        nextValue = value;
+                        return;
+                    }
+                }
+            }
+
+            nextIdx = length;
+            nextValue = null;
+        }
+    }
+}
@@ -266,6 +266,22 @@ public class NaryTreeTest {
         assertNull(n12.prev);
     }
 
+    @Test
+    public void removeOnlyChild() {
+        final Node root = new TestNode(0);
+        final Node child = new TestNode(1);
+        root.addChild(child);
+        child.addChild(new TestNode(2));
+
+        assertNotNull(root.remove(1));
+        assertEquals(2, root.firstChild.id);
+        assertEquals(0, root.firstChild.parent.id);
+        assertNull(root.firstChild.next);
+
+        root.firstChild.removeFromTree();
+        assertNull(root.firstChild);
+    }
+
     @Test
     public void detach() {
         final Node root = createAndValidate();
@@ -0,0 +1,244 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.grizzly.http2;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.glassfish.grizzly.asyncqueue.AsyncQueueRecord;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class PriorityTreeTest {
+
+    private static final int CHUNK = 1024;
+
+
+    // ----------------------------------------------------------- Test Methods
+
+
+    @Test
+    public void weightedShare() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        tree.addStream(3, 0, false, 48);
+        for (int i = 0; i < 400; i++) {
+            tree.offer(1, new TestRecord(1));
+            tree.offer(3, new TestRecord(3));
+        }
+
+        final int[] bytes = serve(tree, 200);
+        assertEquals(50 * CHUNK, bytes[1]);
+        assertEquals(150 * CHUNK, bytes[3]);
+    }
+
+    @Test
+    public void parentServedBeforeDependents() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        tree.addStream(3, 1, false, 16);
+        tree.offer(3, new TestRecord(3));
+        tree.offer(1, new TestRecord(1));
+        tree.offer(1, new TestRecord(1));
+
+        assertEquals(1, next(tree));
+        assertEquals(1, next(tree));
+        assertEquals(3, next(tree));
+        assertNull(tree.peek());
+    }
+
+    @Test
+    public void exclusiveReprioritization() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        tree.addStream(3, 0, false, 16);
+        tree.addStream(5, 0, false, 16);
+        tree.offer(1, new TestRecord(1));
+        tree.offer(3, new TestRecord(3));
+
+        // 5 becomes the only dependency of the root, 1 and 3 depend on 5
+        tree.reprioritize(5, 0, true, 16);
+        tree.offer(5, new TestRecord(5));
+
+        assertEquals(5, next(tree));
+        final int first = next(tree);
+        final int second = next(tree);
+        assertTrue((first == 1 && second == 3) || (first == 3 && second == 1));
+        assertNull(tree.peek());
+    }
+
+    @Test
+    public void dependencyOnDependent() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        tree.addStream(3, 1, false, 16);
+        tree.offer(1, new TestRecord(1));
+        tree.offer(3, new TestRecord(3));
+
+        // RFC 7540, 5.3.3: 3 is moved to the root first, then 1 depends on 3
+        tree.reprioritize(1, 3, false, 16);
+
+        assertEquals(3, next(tree));
+        assertEquals(1, next(tree));
+        assertNull(tree.peek());
+    }
+
+    @Test
+    public void removeWithQueuedData() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        tree.addStream(3, 1, false, 16);
+        tree.offer(1, new TestRecord(1));
+        tree.offer(3, new TestRecord(3));
+
+        // the data queued for the closed stream is still served
+        tree.removeStream(1);
+        assertEquals(1, next(tree));
+        assertEquals(3, next(tree));
+        assertNull(tree.peek());
+
+        // the stream is gone, so the new data is rejected
+        assertFalse(tree.offer(1, new TestRecord(1)));
+        assertNull(tree.peek());
+    }
+
+    @Test
+    public void closeWithQueuedOutputThenDrain() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        tree.addStream(3, 0, false, 16);
+        assertTrue(tree.offer(1, new TestRecord(1)));
+        assertTrue(tree.offer(1, new TestRecord(1)));
+
+        // the stream is closed, but its queued output is still drained
+        tree.removeStream(1);
+        assertFalse(tree.offer(1, new TestRecord(1)));
+        assertEquals(1, next(tree));
+        assertEquals(1, next(tree));
+        assertNull(tree.peek());
+
+        // the drained stream has been discarded, so it isn't scheduled anymore
+        assertFalse(tree.offer(1, new TestRecord(1)));
+        assertTrue(tree.offer(3, new TestRecord(3)));
+        assertEquals(3, next(tree));
+        assertNull(tree.peek());
+    }
+
+    @Test
+    public void partialConsumption() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        tree.addStream(1, 0, false, 16);
+        final TestRecord record = new TestRecord(1);
+        tree.offer(1, record);
+
+        tree.consumed(1, CHUNK / 2, false);
+        assertSame(record, tree.peek());
+        tree.consumed(1, CHUNK / 2, true);
+        assertNull(tree.peek());
+    }
+
+    @Test
+    public void closeFailsQueuedRecords() {
+        final PriorityTree<TestRecord> tree = new PriorityTree<>();
+        final List<TestRecord> records = new ArrayList<>();
+        for (int i = 1; i < 10; i += 2) {
+            tree.addStream(i, 0, false, 16);
+            final TestRecord record = new TestRecord(i);
+            records.add(record);
+            tree.offer(i, record);
+        }
+
+        tree.onClose();
+        assertNull(tree.peek());
+        for (TestRecord record : records) {
+            assertTrue(record.failed);
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private static int next(final PriorityTree<TestRecord> tree) {
+        final TestRecord record = tree.peek();
+        tree.consumed(record.streamId, CHUNK, true);
+        return record.streamId;
+    }
+
+    private static int[] serve(final PriorityTree<TestRecord> tree,
+            final int count) {
+        final int[] bytes = new int[4];
+        for (int i = 0; i < count; i++) {
+            bytes[next(tree)] += CHUNK;
+        }
+        return bytes;
+    }
+
+
+    // --------------------------------------------------------- Nested Classes
+
+
+    private static final class TestRecord extends AsyncQueueRecord<Object> {
+        private final int streamId;
+        private boolean failed;
+
+        TestRecord(final int streamId) {
+            this.streamId = streamId;
+        }
+
+        @Override
+        public Object getCurrentResult() {
+            return null;
+        }
+
+        @Override
+        public void notifyFailure(final Throwable e) {
+            failed = true;
+        }
+
+        @Override
+        public void recycle() {
+        }
+    }
+}
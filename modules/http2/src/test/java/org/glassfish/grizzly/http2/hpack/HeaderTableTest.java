@@ -0,0 +1,142 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.http2.hpack;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HeaderTableTest {
+
+
+    // ----------------------------------------------------------- Test Methods
+
+
+    @Test
+    public void staticTableExactMatch() {
+        final HeaderTable table = new HeaderTable(0);
+        for (int i = 1; i <= 61; i++) {
+            final HeaderTable.HeaderField f = table.get(i);
+            assertEquals(f.toString(), i, table.indexOf(f.name, f.value));
+            assertEquals(f.toString(), i, table.indexOf(
+                    new StringBuilder(f.name), new StringBuilder(f.value)));
+        }
+    }
+
+    @Test
+    public void staticTableNameMatch() {
+        final HeaderTable table = new HeaderTable(0);
+        assertEquals(3, table.indexOf(":method", "POST"));
+        assertEquals(-2, table.indexOf(":method", "PUT"));
+        assertEquals(14, table.indexOf(new StringBuilder(":status"), "500"));
+        assertEquals(-8, table.indexOf(":status", new StringBuilder("201")));
+        assertEquals(-31, table.indexOf("content-type", "text/html"));
+        assertEquals(0, table.indexOf("x-custom", "value"));
+        assertEquals(0, table.indexOf("content-typ", ""));
+    }
+
+    @Test
+    public void dynamicTable() {
+        final HeaderTable table = new HeaderTable(4096);
+        table.put("x-custom", "a");
+        table.put("content-type", "text/html");
+        table.put("x-custom", "b");
+
+        assertEquals(64, table.indexOf("x-custom", "a"));
+        assertEquals(62, table.indexOf(new StringBuilder("x-custom"), "b"));
+        assertEquals(-62, table.indexOf("x-custom", "c"));
+        assertEquals(63, table.indexOf("content-type", "text/html"));
+        // static name match is preferred to the dynamic one
+        assertEquals(-31, table.indexOf("content-type", "text/plain"));
+
+        // the newest duplicate is found
+        table.put("x-custom", "a");
+        assertEquals(62, table.indexOf("x-custom", "a"));
+        table.evictEntry();
+        assertEquals(62, table.indexOf("x-custom", "a"));
+        assertEquals(63, table.indexOf("x-custom", "b"));
+    }
+
+    @Test
+    public void dynamicTableEvictionAndResize() {
+        final Random random = new Random(7541);
+        final HeaderTable table = new HeaderTable(512);
+        for (int op = 0; op < 20000; op++) {
+            final int r = random.nextInt(100);
+            if (r == 0) {
+                table.setMaxSize(random.nextInt(1024));
+            } else if (r < 10 && table.length() > 61) {
+                table.evictEntry();
+            } else {
+                table.put("n" + random.nextInt(8), "v" + random.nextInt(8));
+            }
+            for (int n = 0; n < 8; n++) {
+                for (int v = 0; v < 8; v++) {
+                    assertEquals(bruteForceIndexOf(table, "n" + n, "v" + v),
+                            table.indexOf("n" + n, new StringBuilder("v" + v)));
+                }
+            }
+        }
+    }
+
+
+    // -------------------------------------------------------- Private Methods
+
+
+    private static int bruteForceIndexOf(final HeaderTable table,
+                                         final String name,
+                                         final String value) {
+        int nameMatch = 0;
+        for (int i = 1; i <= table.length(); i++) {
+            final HeaderTable.HeaderField f = table.get(i);
+            if (f.name.equals(name)) {
+                if (f.value.equals(value)) {
+                    return i;
+                }
+                if (nameMatch == 0) {
+                    nameMatch = -i;
+                }
+            }
+        }
+        return nameMatch;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+package org.glassfish.grizzly.http2.utils;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IntObjectHashMapTest {
+
+
+    // ----------------------------------------------------------- Test Methods
+
+
+    @Test
+    public void putGetRemove() {
+        final IntObjectHashMap<String> map = new IntObjectHashMap<>();
+        for (int i = 1; i < 2000; i += 2) {
+            assertNull(map.put(i, String.valueOf(i)));
+        }
+        assertEquals(1000, map.size());
+
+        for (int i = 1; i < 2000; i += 2) {
+            assertEquals(String.valueOf(i), map.get(i));
+            assertNull(map.get(i + 1));
+        }
+
+        assertEquals("3", map.put(3, "three"));
+        assertEquals("three", map.get(3));
+        assertEquals(1000, map.size());
+
+        for (int i = 1; i < 2000; i += 4) {
+            assertEquals(String.valueOf(i), map.remove(i));
+        }
+        assertEquals(500, map.size());
+        assertNull(map.remove(1));
+
+        for (int i = 1; i < 2000; i += 2) {
+            if (i % 4 == 1) {
+                assertNull(map.get(i));
+            } else {
+                assertTrue(map.get(i) != null);
+            }
+        }
+    }
+
+    @Test
+    public void removedSlotsAreReclaimed() {
+        final IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        for (int i = 1; i < 100000; i++) {
+            map.put(i, i);
+            assertEquals(Integer.valueOf(i), map.remove(i));
+        }
+        assertTrue(map.isEmpty());
+        assertNull(map.get(99999));
+    }
+
+    @Test
+    public void orderedRange() {
+        final IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        for (int i = 99; i > 0; i -= 2) {
+            map.put(i, i);
+        }
+
+        final List<Integer> range = map.values(50, Integer.MAX_VALUE);
+        assertEquals(25, range.size());
+        int prev = 50;
+        for (Integer value : range) {
+            assertTrue(value > prev);
+            prev = value;
+        }
+
+        assertTrue(map.values(Integer.MAX_VALUE, Integer.MAX_VALUE).isEmpty());
+        assertEquals(50, map.values(0, Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    public void iteratorRemove() {
+        final IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        for (int i = 1; i <= 100; i++) {
+            map.put(i, i);
+        }
+
+        for (Iterator<Integer> it = map.values().iterator(); it.hasNext();) {
+            if (it.next() % 2 == 0) {
+                it.remove();
+            }
+        }
+
+        assertEquals(50, map.size());
+        int count = 0;
+        for (Integer value : map.values()) {
+            assertTrue(value % 2 == 1);
+            count++;
+        }
+        assertEquals(50, count);
+    }
+
+    @Test
+    public void concurrentReads() throws Exception {
+        final IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        final AtomicBoolean isDone = new AtomicBoolean();
+        final AtomicReference<String> error = new AtomicReference<>();
+        final CountDownLatch readersDone = new CountDownLatch(4);
+
+        // the key 1 is always mapped, other keys are added and removed
+        map.put(1, 1);
+        for (int i = 0; i < 4; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!isDone.get()) {
+                            if (!Integer.valueOf(1).equals(map.get(1))) {
+                                error.set("Mapping is lost");
+                            }
+                            final Integer value = map.get(7);
+                            if (value != null && value != 7) {
+                                error.set("Unexpected value: " + value);
+                            }
+                        }
+                    } finally {
+                        readersDone.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        for (int i = 3; i < 200000; i += 2) {
+            map.put(i, i);
+            if (i > 101) {
+                map.remove(i - 100);
+            }
+        }
+        isDone.set(true);
+        readersDone.await();
+
+        assertNull(error.get());
+    }
+    @Test
+    public void concurrentReadsOfReusedSlots() throws Exception {
+        final IntObjectHashMap<Integer> map = new IntObjectHashMap<>();
+        final AtomicBoolean isDone = new AtomicBoolean();
+        final AtomicReference<String> error = new AtomicReference<>();
+        final CountDownLatch readersDone = new CountDownLatch(4);
+
+        // the keys 1 and 69 hash to the same slot of the default size table,
+        // so each of them reuses the slot removed by the other one
+        final Integer one = 1;
+        final Integer sixtyNine = 69;
+        for (int i = 0; i < 4; i++) {
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        while (!isDone.get()) {
+                            Integer value = map.get(1);
+                            if (value != null && value != 1) {
+                                error.set("Key 1 is mapped to " + value);
+                            }
+                            value = map.get(69);
+                            if (value != null && value != 69) {
+                                error.set("Key 69 is mapped to " + value);
+                            }
+                        }
+                    } finally {
+                        readersDone.countDown();
+                    }
+                }
+            }.start();
+        }
+
+        for (int i = 0; i < 5000000; i++) {
+            map.put(1, one);
+            map.remove(1);
+            map.put(69, sixtyNine);
+            map.remove(69);
+        }
+        isDone.set(true);
+        readersDone.await();
+
+        assertNull(error.get());
+    }
+}
@@ -66,6 +66,8 @@ public class MemoryManager extends JmxObject {
     private final AtomicLong realAllocatedBytes = new AtomicLong();
     private final AtomicLong poolAllocatedBytes = new AtomicLong();
     private final AtomicLong poolReleasedBytes = new AtomicLong();
+    private final AtomicLong leakedBuffersCount = new AtomicLong();
+    private final AtomicLong poolTrimmedBytes = new AtomicLong();
     
     public MemoryManager(org.glassfish.grizzly.memory.MemoryManager memoryManager) {
         this.memoryManager = memoryManager;
@@ -118,6 +120,18 @@ public class MemoryManager extends JmxObject {
         return poolReleasedBytes.get();
     }
 
+    @ManagedAttribute(id="leaked-buffers-count")
+    @Description("Number of sampled buffers, which were garbage collected without being disposed")
+    public long getLeakedBuffersCount() {
+        return leakedBuffersCount.get();
+    }
+
+    @ManagedAttribute(id="pool-trimmed-bytes")
+    @Description("Total number of idle pooled bytes released by memory pool")
+    public long getPoolTrimmedBytes() {
+        return poolTrimmedBytes.get();
+    }
+
     private class JmxMemoryProbe implements MemoryProbe {
 
         @Override
@@ -137,5 +151,19 @@ public class MemoryManager extends JmxObject {
             poolReleasedBytes.addAndGet(size);
         }
 
+        @Override
+        public void onBufferLeakEvent(int size, Throwable allocationTrace) {
+            leakedBuffersCount.incrementAndGet();
+        }
+
+        @Override
+        public void onPoolHighWaterMarkEvent(int bufferSize, int buffersCount) {
+        }
+
+        @Override
+        public void onPoolTrimEvent(int bufferSize, int buffersCount) {
+            poolTrimmedBytes.addAndGet((long) bufferSize * buffersCount);
+        }
+
     }
 }
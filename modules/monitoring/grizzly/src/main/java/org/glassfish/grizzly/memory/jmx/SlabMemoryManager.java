@@ -0,0 +1,102 @@
+/*
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *
+ * Copyright (c) 2017 Oracle and/or its affiliates. All rights reserved.
+ *
+ * The contents of this file are subject to the terms of either the GNU
+ * General Public License Version 2 only ("GPL") or the Common Development
+ * and Distribution License("CDDL") (collectively, the "License").  You
+ * may not use this file except in compliance with the License.  You can
+ * obtain a copy of the License at
+ * https://oss.oracle.com/licenses/CDDL+GPL-1.1
+ * or LICENSE.txt.  See the License for the specific
+ * language governing permissions and limitations under the License.
+ *
+ * When distributing the software, include this License Header Notice in each
+ * file and include the License file at LICENSE.txt.
+ *
+ * GPL Classpath Exception:
+ * Oracle designates this particular file as subject to the "Classpath"
+ * exception as provided by Oracle in the GPL Version 2 section of the License
+ * file that accompanied this code.
+ *
+ * Modifications:
+ * If applicable, add the following below the License Header, with the fields
+ * enclosed by brackets [] replaced by your own identifying information:
+ * "Portions Copyright [year] [name of copyright owner]"
+ *
+ * Contributor(s):
+ * If you wish your version of this file to be governed by only the CDDL or
+ * only the GPL Version 2, indicate your decision by adding "[Contributor]
+ * elects to include this software in this distribution under the [CDDL or GPL
+ * Version 2] license."  If you don't indicate a single choice of license, a
+ * recipient has the option to distribute your version of this file under
+ * either the CDDL, the GPL Version 2 or to extend the choice of license to
+ * its licensees as provided above.  However, if you add GPL Version 2 code
+ * and therefore, elected the GPL Version 2 license, then the option applies
+ * only if the new code is made subject to such option by the copyright
+ * holder.
+ */
+
+package org.glassfish.grizzly.memory.jmx;
+
+import org.glassfish.gmbal.Description;
+import org.glassfish.gmbal.ManagedAttribute;
+import org.glassfish.gmbal.ManagedObject;
+
+/**
+ * {@link org.glassfish.grizzly.memory.SlabMemoryManager} JMX object.
+ *
+ * @since 2.4.3
+ */
+@ManagedObject
+@Description("Grizzly Slab Memory Manager, which carves off-heap chunks into size classes")
+public class SlabMemoryManager extends MemoryManager {
+
+    public SlabMemoryManager(org.glassfish.grizzly.memory.SlabMemoryManager memoryManager) {
+        super(memoryManager);
+    }
+
+    @ManagedAttribute(id="chunk-size")
+    @Description("The size of the chunk, which is carved into the size class buffers")
+    public int getChunkSize() {
+        return slabMemoryManager().getChunkSize();
+    }
+
+    @ManagedAttribute(id="max-direct-bytes")
+    @Description("The max number of direct memory bytes to be used for the chunks")
+    public long getMaxDirectBytes() {
+        return slabMemoryManager().getMaxDirectBytes();
+    }
+
+    @ManagedAttribute(id="allocated-direct-bytes")
+    @Description("The number of direct memory bytes currently allocated for the chunks")
+    public long getAllocatedDirectBytes() {
+        return slabMemoryManager().getAllocatedDirectBytes();
+    }
+
+    @ManagedAttribute(id="size-classes-utilization")
+    @Description("The used/total bytes of every size class")
+    public String getSizeClassesUtilization() {
+        final org.glassfish.grizzly.memory.SlabMemoryManager mm = slabMemoryManager();
+        final StringBuilder sb = new StringBuilder(128);
+        
+        sb.append('[');
+        for (int i = 0; i < mm.getSizeClassesCount(); i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            
+            sb.append(mm.getSizeClassBufferSize(i)).append(": ")
+                    .append(mm.getSizeClassUsedBytes(i)).append('/')
+                    .append(mm.getSizeClassCapacity(i));
+        }
+        sb.append(']');
+        
+        return sb.toString();
+    }
+
+    private org.glassfish.grizzly.memory.SlabMemoryManager slabMemoryManager() {
+        return (org.glassfish.grizzly.memory.SlabMemoryManager) memoryManager;
+    }
+}
@@ -82,6 +82,16 @@ public class FileCache extends JmxObject {
      */
     private final AtomicLong cacheMissCount = new AtomicLong();
 
+    /**
+     * The number of entries evicted to make room for more popular resources.
+     */
+    private final AtomicLong cacheEvictionCount = new AtomicLong();
+
+    /**
+     * The number of resources, which were not admitted to the full cache.
+     */
+    private final AtomicLong cacheRejectionCount = new AtomicLong();
+
     /**
      * The number of cache errors.
      */
@@ -246,6 +256,35 @@ public class FileCache extends JmxObject {
         return cacheMissCount.get();
     }
 
+    /**
+     * @return the ratio of cache hits to all the cache lookups.
+     */
+    @ManagedAttribute(id="cache-hit-ratio")
+    @Description("The ratio of cache hits to the total number of cache lookups.")
+    public double getCacheHitRatio() {
+        final long hits = cacheHitCount.get();
+        final long lookups = hits + cacheMissCount.get();
+        return lookups != 0 ? (double) hits / lookups : 0;
+    }
+
+    /**
+     * @return the total number of cache evictions.
+     */
+    @ManagedAttribute(id="cache-eviction-count")
+    @Description("The total number of entries evicted to make room for more popular resources.")
+    public long getCacheEvictionCount() {
+        return cacheEvictionCount.get();
+    }
+
+    /**
+     * @return the total number of resources rejected by the cache admission policy.
+     */
+    @ManagedAttribute(id="cache-rejection-count")
+    @Description("The total number of resources not cached, because they were less popular than the cached ones.")
+    public long getCacheRejectionCount() {
+        return cacheRejectionCount.get();
+    }
+
     /**
      * @return the total number of cache errors.
      */
@@ -298,6 +337,16 @@ public class FileCache extends JmxObject {
             }
         }
 
+        @Override
+        public void onEntryEvictedEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
+            cacheEvictionCount.incrementAndGet();
+        }
+
+        @Override
+        public void onEntryRejectedEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
+            cacheRejectionCount.incrementAndGet();
+        }
+
         @Override
         public void onEntryHitEvent(org.glassfish.grizzly.http.server.filecache.FileCache fileCache, FileCacheEntry entry) {
             cacheHitCount.incrementAndGet();